@@ -4,6 +4,8 @@ package database;
 import common.AssignedSite;
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A <code>interface</code> that specifies the allowable operations on assigned sites 
@@ -17,6 +19,47 @@ public interface AssignedSiteManager {
     public AssignedSite getAssignedSiteById(int assignedSiteId);
     public Collection<AssignedSite> getAssignedSiteByReservationId(int reservationId);
     public Collection<AssignedSite> getAllAssignedSites();
+    /**
+     * Passes the assigned sites that overlap the given dates to the action
+     * one at a time, as they are read, without collecting them first.
+     * 
+     * @param startDate The start of the range, or null for no lower bound.
+     * @param endDate The end of the range, or null for no upper bound.
+     * @param action Called once for each assigned site, in order of arrival.
+     * @return True if every assigned site was passed to the action; false if
+     * reading failed part way.
+     */
+    public boolean forEachAssignedSite(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super AssignedSite> action);
     public boolean deleteAssignedSiteById(int assignedSiteId);
     public boolean sitesAvailableInDateRange(int campsiteID, LocalDateTime startDate, LocalDateTime endDate);
+    /**
+     * Assigns several sites to one reservation at once. Every requested site
+     * is checked for availability and the available ones are added together.
+     * 
+     * @param reservationId The id of the reservation the sites belong to.
+     * @param assignedSites The sites to assign.
+     * @return A list in the same order as <code>assignedSites</code> holding 
+     * the added <code>AssignedSite</code>, or null where the site was not available.
+     */
+    public List<AssignedSite> assignSites(int reservationId, List<AssignedSite> assignedSites);
+    /**
+     * Moves unlocked assigned sites to the campsites they now hold. Either
+     * every site is moved or none are.
+     * 
+     * @param assignedSites The assigned sites with their new campsite ids.
+     * @return True if every site was moved.
+     */
+    public boolean reassignSites(List<AssignedSite> assignedSites);
+    /**
+     * Changes the assigned sites of a reservation to the submitted ones,
+     * writing only the sites that differ. Sites that are not changed keep 
+     * their id, check in and deposit.
+     * 
+     * @param reservationId The id of the reservation.
+     * @param submitted The sites the reservation should have.
+     * @return The sites of the reservation after the edit, or null if the 
+     * edit failed.
+     */
+    public List<AssignedSite> editSites(int reservationId, List<AssignedSite> submitted);
 }
@@ -0,0 +1,557 @@
+package database;
+
+import common.AssignedSite;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of the <code>AssignedSite</code> date ranges for every
+ * campsite. Each campsite has its own interval tree so the question "is this
+ * site free between these dates" is answered without a database round trip.
+ *
+ * An assigned site occupies the half open range [arrival, departure), so a
+ * site that is vacated at 9:00 AM may be assigned again at 2:00 PM the same day.
+ *
+ * The index is loaded once at startup and is then kept current by the
+ * <code>AssignedSiteManager</code> add, update and delete methods. Until it
+ * has been loaded, <code>isLoaded()</code> returns false and the managers
+ * fall back to their SQL queries.
+ *
+ * Sample Usage:
+ * <pre>
+ * AvailabilityIndex index = AvailabilityIndex.getInstance();
+ * index.load(assignedSiteManager.getAllAssignedSites());
+ * boolean free = index.isAvailable(campsiteId, arrivalDate, departureDate);
+ * </pre>
+ *
+ * Other in-memory structures that are derived from the assigned sites, such
+ * as the <code>OccupancyBitmap</code>, register a <code>Listener</code> and
+ * are told about every change while the index is still locked, so they can
+ * never observe the changes out of order.
+ */
+public class AvailabilityIndex {
+
+    /**
+     * Receives the changes made to an <code>AvailabilityIndex</code>. The
+     * methods are called while the index holds its write lock, so they should
+     * be quick and must not call back into the index.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the index is emptied, before it is reloaded.
+         */
+        public void indexCleared();
+
+        /**
+         * Called when the assigned sites of a campsite within a date range
+         * have changed.
+         *
+         * @param campsiteId The id of the campsite that changed.
+         * @param startDate The start of the date range that changed.
+         * @param endDate The end of the date range that changed.
+         * @param current The assigned sites that now overlap the range.
+         */
+        public void assignmentsChanged(int campsiteId, LocalDateTime startDate,
+                LocalDateTime endDate, Collection<AssignedSite> current);
+    }
+
+    private static AvailabilityIndex index = null;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, IntervalTree> treesByCampsite = new HashMap<>();
+    private final Map<Integer, AssignedSite> sitesById = new HashMap<>();
+    private final Collection<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean loaded = false;
+
+    /**
+     * Gets the shared <code>AvailabilityIndex</code> for this application.
+     *
+     * @return The <code>AvailabilityIndex</code> object.
+     */
+    public static synchronized AvailabilityIndex getInstance() {
+        if (index == null) {
+            index = new AvailabilityIndex();
+        }
+        return index;
+    }
+
+    /**
+     * Replaces the contents of this index with the given assigned sites.
+     * Once loaded the index answers in place of the database, so pass it only
+     * a read that completed; a site missing from it would look free.
+     *
+     * @param assignedSites Every <code>AssignedSite</code> in the database.
+     */
+    public void load(Collection<AssignedSite> assignedSites) {
+        lock.writeLock().lock();
+        try {
+            treesByCampsite.clear();
+            sitesById.clear();
+            for (AssignedSite assignedSite : assignedSites) {
+                insert(assignedSite);
+            }
+            loaded = true;
+            for (Listener listener : listeners) {
+                replay(listener);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true once the index has been loaded and may be used in place of
+     * the database.
+     *
+     * @return True if the index has been loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Discards the contents of this index. Lookups go back to the database
+     * until <code>load</code> is called again.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            treesByCampsite.clear();
+            sitesById.clear();
+            for (Listener listener : listeners) {
+                listener.indexCleared();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a listener and replays the current contents of the index to it.
+     *
+     * @param listener The <code>Listener</code> to add.
+     */
+    public void addListener(Listener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            replay(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replays the current contents of the index to a registered listener, as
+     * if the index had just been loaded.
+     *
+     * @param listener The <code>Listener</code> to bring up to date.
+     */
+    public void refresh(Listener listener) {
+        lock.writeLock().lock();
+        try {
+            replay(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces an assigned site in the index.
+     *
+     * @param assignedSite The <code>AssignedSite</code> that was written to the
+     * database.
+     */
+    public void put(AssignedSite assignedSite) {
+        if (assignedSite == null || assignedSite.getArrivalDate() == null
+                || assignedSite.getDepartureDate() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            AssignedSite old = delete(assignedSite.getAssignedSiteId());
+            insert(assignedSite);
+            if (old != null) {
+                fireChanged(old);
+            }
+            fireChanged(assignedSite);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an assigned site from the index.
+     *
+     * @param assignedSiteId The id of the <code>AssignedSite</code> that was
+     * deleted.
+     */
+    public void remove(int assignedSiteId) {
+        lock.writeLock().lock();
+        try {
+            AssignedSite old = delete(assignedSiteId);
+            if (old != null) {
+                fireChanged(old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every assigned site that belongs to a reservation.
+     *
+     * @param reservationId The id of the reservation that was deleted.
+     */
+    public void removeReservation(int reservationId) {
+        lock.writeLock().lock();
+        try {
+            for (AssignedSite assignedSite : new ArrayList<>(sitesById.values())) {
+                if (assignedSite.getReservationId() == reservationId) {
+                    delete(assignedSite.getAssignedSiteId());
+                    fireChanged(assignedSite);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every assigned site for a campsite.
+     *
+     * @param campsiteId The id of the campsite that was deleted.
+     */
+    public void removeCampsite(int campsiteId) {
+        lock.writeLock().lock();
+        try {
+            IntervalTree tree = treesByCampsite.remove(campsiteId);
+            if (tree != null) {
+                for (AssignedSite assignedSite : tree.all()) {
+                    sitesById.remove(assignedSite.getAssignedSiteId());
+                }
+                for (Listener listener : listeners) {
+                    listener.assignmentsChanged(campsiteId, LocalDateTime.MIN,
+                            LocalDateTime.MAX, new ArrayList<AssignedSite>());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if no assigned site for the campsite overlaps the given range.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param startDate The start of the requested range.
+     * @param endDate The end of the requested range.
+     * @return True if the campsite is free for the whole range.
+     */
+    public boolean isAvailable(int campsiteId, LocalDateTime startDate, LocalDateTime endDate) {
+        long start = toKey(startDate);
+        long end = toKey(endDate);
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = treesByCampsite.get(campsiteId);
+            return tree == null || !tree.overlaps(start, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the assigned sites for a campsite that overlap the given range.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param startDate The start of the requested range.
+     * @param endDate The end of the requested range.
+     * @return The overlapping <code>AssignedSite</code> objects.
+     */
+    public Collection<AssignedSite> getOverlapping(int campsiteId, LocalDateTime startDate,
+            LocalDateTime endDate) {
+        Collection<AssignedSite> overlapping = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = treesByCampsite.get(campsiteId);
+            if (tree != null) {
+                tree.collect(toKey(startDate), toKey(endDate), overlapping);
+            }
+            Collection<AssignedSite> copies = new ArrayList<>(overlapping.size());
+            for (AssignedSite assignedSite : overlapping) {
+                copies.add(copy(assignedSite));
+            }
+            overlapping = copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return overlapping;
+    }
+
+    /**
+     * Returns the ids of all campsites that have at least one assigned site
+     * overlapping the given range.
+     *
+     * @param startDate The start of the requested range.
+     * @param endDate The end of the requested range.
+     * @return The ids of the occupied campsites.
+     */
+    public Set<Integer> getOccupiedCampsiteIds(LocalDateTime startDate, LocalDateTime endDate) {
+        long start = toKey(startDate);
+        long end = toKey(endDate);
+        Set<Integer> occupied = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, IntervalTree> entry : treesByCampsite.entrySet()) {
+                if (entry.getValue().overlaps(start, end)) {
+                    occupied.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return occupied;
+    }
+
+    private void insert(AssignedSite assignedSite) {
+        assignedSite = copy(assignedSite);
+        IntervalTree tree = treesByCampsite.get(assignedSite.getCampsiteId());
+        if (tree == null) {
+            tree = new IntervalTree();
+            treesByCampsite.put(assignedSite.getCampsiteId(), tree);
+        }
+        tree.insert(assignedSite);
+        sitesById.put(assignedSite.getAssignedSiteId(), assignedSite);
+    }
+
+    private AssignedSite delete(int assignedSiteId) {
+        AssignedSite old = sitesById.remove(assignedSiteId);
+        if (old == null) {
+            return null;
+        }
+        IntervalTree tree = treesByCampsite.get(old.getCampsiteId());
+        if (tree != null) {
+            tree.delete(old);
+            if (tree.isEmpty()) {
+                treesByCampsite.remove(old.getCampsiteId());
+            }
+        }
+        return old;
+    }
+
+    private void fireChanged(AssignedSite changed) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        int campsiteId = changed.getCampsiteId();
+        LocalDateTime startDate = changed.getArrivalDate();
+        LocalDateTime endDate = changed.getDepartureDate();
+        Collection<AssignedSite> current = new ArrayList<>();
+        IntervalTree tree = treesByCampsite.get(campsiteId);
+        if (tree != null) {
+            tree.collect(toKey(startDate), toKey(endDate), current);
+        }
+        for (Listener listener : listeners) {
+            listener.assignmentsChanged(campsiteId, startDate, endDate, current);
+        }
+    }
+
+    private void replay(Listener listener) {
+        listener.indexCleared();
+        for (Map.Entry<Integer, IntervalTree> entry : treesByCampsite.entrySet()) {
+            listener.assignmentsChanged(entry.getKey(), LocalDateTime.MIN,
+                    LocalDateTime.MAX, entry.getValue().all());
+        }
+    }
+
+    /**
+     * The index keeps its own copies so callers that reuse or modify an
+     * <code>AssignedSite</code> after writing it cannot corrupt the trees.
+     */
+    private static AssignedSite copy(AssignedSite assignedSite) {
+        return new AssignedSite(assignedSite.getAssignedSiteId(), assignedSite.getReservationId(),
+                assignedSite.getCustomerId(), assignedSite.getCampsiteId(), assignedSite.getLockSite(),
+                assignedSite.getSiteDeposit(), assignedSite.getCheckIn(),
+                assignedSite.getArrivalDate(), assignedSite.getDepartureDate());
+    }
+
+    static long toKey(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * An interval tree of the assigned sites for one campsite. It is a treap
+     * ordered by arrival (then assigned site id) where every node also stores
+     * the latest departure in its subtree so whole subtrees can be skipped
+     * during an overlap search.
+     */
+    static class IntervalTree {
+
+        private static final Random random = new Random();
+        private Node root = null;
+
+        private static class Node {
+            final AssignedSite site;
+            final long start;
+            final long end;
+            final int priority;
+            long maxEnd;
+            Node left;
+            Node right;
+
+            Node(AssignedSite site) {
+                this.site = site;
+                this.start = toKey(site.getArrivalDate());
+                this.end = toKey(site.getDepartureDate());
+                this.priority = random.nextInt();
+                this.maxEnd = end;
+            }
+        }
+
+        boolean isEmpty() {
+            return root == null;
+        }
+
+        void insert(AssignedSite site) {
+            root = insert(root, new Node(site));
+        }
+
+        void delete(AssignedSite site) {
+            root = delete(root, toKey(site.getArrivalDate()), site.getAssignedSiteId());
+        }
+
+        boolean overlaps(long start, long end) {
+            Node node = root;
+            while (node != null) {
+                if (node.start < end && node.end > start) {
+                    return true;
+                }
+                if (node.left != null && node.left.maxEnd > start) {
+                    node = node.left;
+                } else if (node.start < end) {
+                    node = node.right;
+                } else {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        void collect(long start, long end, Collection<AssignedSite> result) {
+            collect(root, start, end, result);
+        }
+
+        Collection<AssignedSite> all() {
+            Collection<AssignedSite> result = new ArrayList<>();
+            collect(root, Long.MIN_VALUE, Long.MAX_VALUE, result);
+            return result;
+        }
+
+        private static void collect(Node node, long start, long end, Collection<AssignedSite> result) {
+            if (node == null || node.maxEnd <= start) {
+                return;
+            }
+            collect(node.left, start, end, result);
+            if (node.start < end && node.end > start) {
+                result.add(node.site);
+            }
+            if (node.start < end) {
+                collect(node.right, start, end, result);
+            }
+        }
+
+        private static int compare(long start, int id, Node node) {
+            if (start != node.start) {
+                return start < node.start ? -1 : 1;
+            }
+            return Integer.compare(id, node.site.getAssignedSiteId());
+        }
+
+        private static Node insert(Node node, Node newNode) {
+            if (node == null) {
+                return newNode;
+            }
+            if (compare(newNode.start, newNode.site.getAssignedSiteId(), node) < 0) {
+                node.left = insert(node.left, newNode);
+                if (node.left.priority > node.priority) {
+                    node = rotateRight(node);
+                }
+            } else {
+                node.right = insert(node.right, newNode);
+                if (node.right.priority > node.priority) {
+                    node = rotateLeft(node);
+                }
+            }
+            update(node);
+            return node;
+        }
+
+        private static Node delete(Node node, long start, int id) {
+            if (node == null) {
+                return null;
+            }
+            int cmp = compare(start, id, node);
+            if (cmp < 0) {
+                node.left = delete(node.left, start, id);
+            } else if (cmp > 0) {
+                node.right = delete(node.right, start, id);
+            } else {
+                if (node.left == null) {
+                    return node.right;
+                }
+                if (node.right == null) {
+                    return node.left;
+                }
+                if (node.left.priority > node.right.priority) {
+                    node = rotateRight(node);
+                    node.right = delete(node.right, start, id);
+                } else {
+                    node = rotateLeft(node);
+                    node.left = delete(node.left, start, id);
+                }
+            }
+            update(node);
+            return node;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node left = node.left;
+            node.left = left.right;
+            left.right = node;
+            update(node);
+            update(left);
+            return left;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node right = node.right;
+            node.right = right.left;
+            right.left = node;
+            update(node);
+            update(right);
+            return right;
+        }
+
+        private static void update(Node node) {
+            long maxEnd = node.end;
+            if (node.left != null && node.left.maxEnd > maxEnd) {
+                maxEnd = node.left.maxEnd;
+            }
+            if (node.right != null && node.right.maxEnd > maxEnd) {
+                maxEnd = node.right.maxEnd;
+            }
+            node.maxEnd = maxEnd;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package database;
+
+import common.Campsite;
+import common.SiteType;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A <code>CampsiteManager</code> that answers reads from an in-memory copy
+ * of the campsite catalog and passes writes on to another
+ * <code>CampsiteManager</code>.
+ *
+ * The campsites change a few times a season but are read on almost every
+ * page, so the whole catalog is read from the wrapped manager the first time
+ * it is needed and kept as an immutable snapshot, indexed by id, by name and
+ * by site type. Reads take the current snapshot without locking. Adding,
+ * updating or deleting a campsite goes to the wrapped manager first and then
+ * builds a new snapshot with the change, which replaces the old one in a
+ * single write, so a reader sees either the catalog before the change or
+ * after it.
+ *
+ * The campsites handed out are copies, so a caller that changes one does not
+ * change the catalog.
+ *
+ * Sample Usage:
+ * <pre>
+ * CachingCampsiteManager campsiteCache = new CachingCampsiteManager(new mysql.CampsiteManager());
+ * Campsite campsite = campsiteCache.getCampsiteById(12);
+ * double hitRatio = campsiteCache.getHitRatio();
+ * </pre>
+ *
+ * <code>mysql.DatabaseManagement.getCampsiteCache</code> returns the cache
+ * the application uses, whose counts <code>ManagerTimingsServlet</code>
+ * shows.
+ */
+public class CachingCampsiteManager implements CampsiteManager {
+
+    private final CampsiteManager campsiteManager;
+    private volatile Catalog catalog = null;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Creates a cache in front of the given manager. Nothing is read until
+     * the first call.
+     *
+     * @param campsiteManager The manager that reads and writes the campsites.
+     */
+    public CachingCampsiteManager(CampsiteManager campsiteManager) {
+        this.campsiteManager = campsiteManager;
+    }
+
+    /**
+     * The campsites at one point in time and their indexes. Never changed
+     * once built.
+     */
+    private static class Catalog {
+
+        private final List<Campsite> campsites;
+        private final Map<Integer, Campsite> byId = new HashMap<>();
+        private final Map<String, Campsite> byName = new HashMap<>();
+        private final Map<SiteType, List<Campsite>> bySiteType = new EnumMap<>(SiteType.class);
+
+        private Catalog(Collection<Campsite> campsites) {
+            List<Campsite> sorted = new ArrayList<>(campsites);
+            sorted.sort(Comparator.comparingInt(Campsite::getCampsiteId));
+            this.campsites = Collections.unmodifiableList(sorted);
+            for (Campsite campsite : sorted) {
+                byId.put(campsite.getCampsiteId(), campsite);
+                if (campsite.getCampsiteName() != null) {
+                    // Several campsites may share a name; the database returns the first
+                    byName.putIfAbsent(nameKey(campsite.getCampsiteName()), campsite);
+                }
+                if (campsite.getSiteType() != null) {
+                    bySiteType.computeIfAbsent(campsite.getSiteType(), type -> new ArrayList<>()).add(campsite);
+                }
+            }
+        }
+
+        private Catalog with(Campsite campsite) {
+            List<Campsite> changed = new ArrayList<>(campsites.size() + 1);
+            for (Campsite current : campsites) {
+                if (current.getCampsiteId() != campsite.getCampsiteId()) {
+                    changed.add(current);
+                }
+            }
+            changed.add(campsite);
+            return new Catalog(changed);
+        }
+
+        private Catalog without(int campsiteId) {
+            List<Campsite> changed = new ArrayList<>(campsites.size());
+            for (Campsite current : campsites) {
+                if (current.getCampsiteId() != campsiteId) {
+                    changed.add(current);
+                }
+            }
+            return new Catalog(changed);
+        }
+    }
+
+    @Override
+    public Campsite addCampsite(Campsite campsite) {
+        synchronized (this) {
+            Campsite added = campsiteManager.addCampsite(campsite);
+            if (added == null || added.getCampsiteId() <= 0) {
+                // The add failed or the new id is unknown; read it all again
+                catalog = null;
+            } else if (catalog != null) {
+                catalog = catalog.with(withoutImage(added));
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public boolean deleteCampsite(Campsite campsite) {
+        if (campsite == null) {
+            return false;
+        }
+        return deleteCampsiteById(campsite.getCampsiteId());
+    }
+
+    @Override
+    public Campsite updateCampsite(Campsite campsite) {
+        synchronized (this) {
+            Campsite updated = campsiteManager.updateCampsite(campsite);
+            if (updated == null) {
+                // The campsite is gone or the update failed; read it all again
+                catalog = null;
+            } else if (catalog != null) {
+                catalog = catalog.with(withoutImage(updated));
+            }
+            return updated;
+        }
+    }
+
+    @Override
+    public boolean deleteCampsiteById(int campsiteId) {
+        synchronized (this) {
+            boolean deleted = campsiteManager.deleteCampsiteById(campsiteId);
+            if (deleted && catalog != null) {
+                catalog = catalog.without(campsiteId);
+            }
+            return deleted;
+        }
+    }
+
+    @Override
+    public Campsite getCampsiteById(int campsiteId) {
+        return copy(getCatalog().byId.get(campsiteId));
+    }
+
+    @Override
+    public Campsite getCampsiteByCampsiteName(String campsiteName) {
+        if (campsiteName == null) {
+            return null;
+        }
+        return copy(getCatalog().byName.get(nameKey(campsiteName)));
+    }
+
+    @Override
+    public Collection<Campsite> getAllCampsitesBySiteType(SiteType siteType) {
+        List<Campsite> campsites = getCatalog().bySiteType.get(siteType);
+        return campsites == null ? new ArrayList<>() : copy(campsites);
+    }
+
+    /**
+     * Returns the campsites with no assigned site overlapping the given
+     * dates. The occupied campsites come from the
+     * <code>AvailabilityIndex</code> once it is loaded; until then the
+     * wrapped manager answers.
+     */
+    @Override
+    public Collection<Campsite> getUnassignedSitesByDateRange(LocalDateTime startDate,
+            LocalDateTime endDate) {
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        if (!index.isLoaded()) {
+            return campsiteManager.getUnassignedSitesByDateRange(startDate, endDate);
+        }
+        Set<Integer> occupied = index.getOccupiedCampsiteIds(startDate, endDate);
+        Collection<Campsite> campsites = new ArrayList<>();
+        for (Campsite campsite : getCatalog().campsites) {
+            if (!occupied.contains(campsite.getCampsiteId())) {
+                campsites.add(copy(campsite));
+            }
+        }
+        return campsites;
+    }
+
+    @Override
+    public Collection<Campsite> getAllCampsites() {
+        return copy(getCatalog().campsites);
+    }
+
+    /**
+     * Streamed from the wrapped manager, so a failed read is reported rather
+     * than answered from an empty snapshot.
+     */
+    @Override
+    public boolean forEachCampsite(Consumer<? super Campsite> action) {
+        return campsiteManager.forEachCampsite(action);
+    }
+
+    @Override
+    public Campsite getCampsiteWithNameNumberSection(Campsite campsite) {
+        if (campsite.getCampsiteName() == null) {
+            return null;
+        }
+        String name = nameKey(campsite.getCampsiteName());
+        for (Campsite current : getCatalog().campsites) {
+            if (current.getCampsiteNumber() == campsite.getCampsiteNumber()
+                    && Character.toLowerCase(current.getCampsiteSection())
+                    == Character.toLowerCase(campsite.getCampsiteSection())
+                    && current.getCampsiteName() != null && nameKey(current.getCampsiteName()).equals(name)) {
+                return copy(current);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Images are not cached; they are read from the wrapped manager.
+     */
+    @Override
+    public boolean readCampsiteImage(int campsiteId, ImageConsumer consumer) throws IOException {
+        return campsiteManager.readCampsiteImage(campsiteId, consumer);
+    }
+
+    /**
+     * Drops the snapshot so the next read loads the catalog again. Use this
+     * after the campsite table was changed by something other than this
+     * manager.
+     */
+    public synchronized void invalidate() {
+        catalog = null;
+    }
+
+    /**
+     * @return The number of reads answered from the snapshot.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of reads that had to load the catalog first.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of times the catalog was read from the wrapped
+     * manager.
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * @return The share of reads answered from the snapshot, from 0 to 1,
+     * or 0 before the first read.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Catalog getCatalog() {
+        Catalog current = catalog;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        synchronized (this) {
+            if (catalog == null) {
+                loads.incrementAndGet();
+                List<Campsite> campsites = new ArrayList<>();
+                if (!campsiteManager.forEachCampsite(campsite -> campsites.add(copy(campsite)))) {
+                    // Do not keep a failed read; the next call reads again
+                    return new Catalog(campsites);
+                }
+                catalog = new Catalog(campsites);
+            }
+            return catalog;
+        }
+    }
+
+    // Campsite names are compared the way the database compares them
+    private static String nameKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<Campsite> copy(List<Campsite> campsites) {
+        List<Campsite> copies = new ArrayList<>(campsites.size());
+        for (Campsite campsite : campsites) {
+            copies.add(copy(campsite));
+        }
+        return copies;
+    }
+
+    // Images are read on demand, so the catalog does not hold them
+    private static Campsite withoutImage(Campsite campsite) {
+        Campsite copy = copy(campsite);
+        copy.setImage(null);
+        return copy;
+    }
+
+    private static Campsite copy(Campsite campsite) {
+        if (campsite == null) {
+            return null;
+        }
+        return new Campsite(campsite.getCampsiteId(), campsite.getCampsiteName(),
+                campsite.getCampsiteNumber(), campsite.getCampsiteSection(), campsite.getMaxLength(),
+                campsite.getWidth(), campsite.getAcceptsSlideOut(), campsite.getPullThru(),
+                campsite.getSiteType(), campsite.getNotes(), campsite.getImage(),
+                campsite.getImageSource());
+    }
+
+    @Override
+    public String toString() {
+        Catalog current = catalog;
+        return "CachingCampsiteManager{campsites=" + (current == null ? "not loaded" : current.campsites.size())
+                + ", hits=" + hits.get() + ", misses=" + misses.get() + ", loads=" + loads.get()
+                + String.format(", hitRatio=%.3f}", getHitRatio());
+    }
+}
@@ -2,8 +2,11 @@
 package database;
 import common.Campsite;
 import common.SiteType;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * A <code>interface</code> that specifies the allowable operations on campsites 
@@ -21,7 +24,47 @@ public interface CampsiteManager {
     public Collection<Campsite> getUnassignedSitesByDateRange(LocalDateTime startDate,
             LocalDateTime endDate);
     public Collection<Campsite> getAllCampsites();
+
+    /**
+     * Passes every campsite to the action one at a time, as they are read.
+     * Unlike <code>getAllCampsites</code> it tells a failed read from an
+     * empty table.
+     *
+     * @param action Called once for each campsite, in order of id.
+     * @return True if every campsite was passed to the action; false if
+     * reading failed part way.
+     */
+    public boolean forEachCampsite(Consumer<? super Campsite> action);
     public boolean deleteCampsiteById(int campsiteId);
     public Campsite getCampsiteWithNameNumberSection(Campsite campsite);
 
+    /**
+     * Receives the image of a campsite as a stream.
+     */
+    public interface ImageConsumer {
+
+        /**
+         * Reads the image. The stream is only valid during this call.
+         *
+         * @param image The bytes of the image.
+         * @param length The number of bytes in the image.
+         * @throws IOException If the image could not be passed on.
+         */
+        public void accept(InputStream image, long length) throws IOException;
+    }
+
+    /**
+     * Passes the stored image of a campsite to the consumer as a stream.
+     * The campsites returned by the other methods do not carry their image,
+     * so lists and lookups do not read the image bytes; this is the one way
+     * to read them.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param consumer Receives the image, if the campsite has one.
+     * @return True if the campsite has an image and it was passed to the
+     * consumer; false if it has none or it could not be read.
+     * @throws IOException If the consumer throws it.
+     */
+    public boolean readCampsiteImage(int campsiteId, ImageConsumer consumer) throws IOException;
+
 }
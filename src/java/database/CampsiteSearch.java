@@ -0,0 +1,443 @@
+package database;
+
+import common.Campsite;
+import common.SiteType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Searches for free campsites that fit a customer's RV without going to the
+ * database. The campsite attributes are kept in an in-memory catalog and the
+ * free campsites come from the <code>OccupancyBitmap</code> (or the
+ * <code>AvailabilityIndex</code> when the dates fall outside of the season
+ * the bitmap tracks).
+ *
+ * The catalog is an immutable array that is replaced as a whole when a
+ * campsite is added, updated or deleted, so searches never wait on a lock.
+ *
+ * Matches are ranked by fit. The best fit is the shortest campsite the RV
+ * still fits in, and a campsite with a feature that was not asked for (pull
+ * thru or slide out) ranks below one without it, so those campsites are kept
+ * for the customers that need them.
+ *
+ * Sample Usage:
+ * <pre>
+ * CampsiteSearch.Criteria criteria = new CampsiteSearch.Criteria();
+ * criteria.setRvLength(32);
+ * criteria.setSlideOuts(2);
+ * List&lt;CampsiteSearch.Match&gt; matches = CampsiteSearch.getInstance().search(arrival, departure, criteria);
+ * </pre>
+ */
+public class CampsiteSearch {
+
+    // Customers arrive after noon and leave before noon.
+    private static final LocalTime CHANGEOVER = LocalTime.NOON;
+    private static CampsiteSearch search = null;
+
+    private volatile Entry[] catalog = null;
+
+    private CampsiteSearch() {
+    }
+
+    /**
+     * Gets the shared <code>CampsiteSearch</code> for this application.
+     *
+     * @return The <code>CampsiteSearch</code> object.
+     */
+    public static synchronized CampsiteSearch getInstance() {
+        if (search == null) {
+            search = new CampsiteSearch();
+        }
+        return search;
+    }
+
+    /**
+     * Replaces the catalog with the given campsites.
+     *
+     * @param campsites Every <code>Campsite</code> in the campground.
+     */
+    public synchronized void load(Collection<Campsite> campsites) {
+        List<Entry> entries = new ArrayList<>();
+        for (Campsite campsite : campsites) {
+            entries.add(new Entry(campsite));
+        }
+        catalog = entries.toArray(new Entry[entries.size()]);
+    }
+
+    /**
+     * Returns true once the catalog has been loaded.
+     *
+     * @return True if searches can be answered.
+     */
+    public boolean isLoaded() {
+        return catalog != null;
+    }
+
+    /**
+     * Adds a campsite to the catalog or replaces the entry with the same id.
+     *
+     * @param campsite The added or updated <code>Campsite</code>.
+     */
+    public synchronized void put(Campsite campsite) {
+        if (catalog == null || campsite == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(catalog.length + 1);
+        for (Entry entry : catalog) {
+            if (entry.campsiteId != campsite.getCampsiteId()) {
+                entries.add(entry);
+            }
+        }
+        entries.add(new Entry(campsite));
+        catalog = entries.toArray(new Entry[entries.size()]);
+    }
+
+    /**
+     * Removes a campsite from the catalog.
+     *
+     * @param campsiteId The id of the deleted campsite.
+     */
+    public synchronized void remove(int campsiteId) {
+        if (catalog == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(catalog.length);
+        for (Entry entry : catalog) {
+            if (entry.campsiteId != campsiteId) {
+                entries.add(entry);
+            }
+        }
+        catalog = entries.toArray(new Entry[entries.size()]);
+    }
+
+    /**
+     * Finds the free campsites that meet the given criteria for the nights
+     * from the arrival date up to the departure date.
+     *
+     * @param arrivalDate The first night of the stay.
+     * @param departureDate The date the customer leaves.
+     * @param criteria The RV and campsite constraints.
+     * @return The matching campsites, best fit first. Empty if the catalog
+     * or the availability data is not loaded.
+     */
+    public List<Match> search(LocalDate arrivalDate, LocalDate departureDate, Criteria criteria) {
+        Entry[] entries = catalog;
+        if (entries == null || arrivalDate == null || departureDate == null
+                || !departureDate.isAfter(arrivalDate)) {
+            return Collections.emptyList();
+        }
+        OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        Set<Integer> occupied = null;
+        boolean useBitmap = bitmap.isLoaded() && bitmap.covers(arrivalDate, departureDate);
+        if (!useBitmap) {
+            if (!index.isLoaded()) {
+                return Collections.emptyList();
+            }
+            occupied = index.getOccupiedCampsiteIds(arrivalDate.atTime(CHANGEOVER),
+                    departureDate.atTime(CHANGEOVER));
+        }
+        List<Match> matches = new ArrayList<>();
+        for (Entry entry : entries) {
+            int score = criteria.score(entry);
+            if (score < 0) {
+                continue;
+            }
+            boolean free = useBitmap ? bitmap.isFree(entry.campsiteId, arrivalDate, departureDate)
+                    : !occupied.contains(entry.campsiteId);
+            if (free) {
+                matches.add(new Match(entry, score));
+            }
+        }
+        Collections.sort(matches, BY_FIT);
+        if (criteria.getLimit() > 0 && matches.size() > criteria.getLimit()) {
+            return new ArrayList<>(matches.subList(0, criteria.getLimit()));
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the campsites that meet the given criteria whether or not they
+     * are free.
+     *
+     * @param criteria The RV and campsite constraints. The limit is ignored.
+     * @return The matching campsites, best fit first.
+     */
+    public List<Match> match(Criteria criteria) {
+        Entry[] entries = catalog;
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        List<Match> matches = new ArrayList<>();
+        for (Entry entry : entries) {
+            int score = criteria.score(entry);
+            if (score >= 0) {
+                matches.add(new Match(entry, score));
+            }
+        }
+        Collections.sort(matches, BY_FIT);
+        return matches;
+    }
+
+    /**
+     * Gets the site type of a campsite in the catalog.
+     *
+     * @param campsiteId The id of the campsite.
+     * @return The <code>SiteType</code>, or null if the campsite is not in the catalog.
+     */
+    public SiteType getSiteType(int campsiteId) {
+        Entry[] entries = catalog;
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (entry.campsiteId == campsiteId) {
+                    return entry.siteType;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final Comparator<Match> BY_FIT = (a, b) -> {
+        int result = Integer.compare(a.score, b.score);
+        if (result == 0) {
+            result = String.valueOf(a.entry.campsiteName).compareTo(String.valueOf(b.entry.campsiteName));
+        }
+        return result == 0 ? Integer.compare(a.entry.campsiteId, b.entry.campsiteId) : result;
+    };
+
+    /**
+     * The constraints of a search. A value of zero or null means the
+     * constraint is not used.
+     */
+    public static class Criteria {
+
+        private int rvLength;
+        private int slideOuts;
+        private Boolean pullThru;
+        private SiteType siteType;
+        private int limit;
+
+        public int getRvLength() {
+            return rvLength;
+        }
+
+        /**
+         * @param rvLength The length of the RV. The campsite's max length
+         * must be at least this long.
+         */
+        public void setRvLength(int rvLength) {
+            this.rvLength = rvLength;
+        }
+
+        public int getSlideOuts() {
+            return slideOuts;
+        }
+
+        /**
+         * @param slideOuts The number of slide outs on the RV. Any slide out
+         * requires a campsite that accepts slide outs.
+         */
+        public void setSlideOuts(int slideOuts) {
+            this.slideOuts = slideOuts;
+        }
+
+        public Boolean getPullThru() {
+            return pullThru;
+        }
+
+        /**
+         * @param pullThru True to only return pull thru campsites, false to
+         * only return back in campsites, or null for either.
+         */
+        public void setPullThru(Boolean pullThru) {
+            this.pullThru = pullThru;
+        }
+
+        public SiteType getSiteType() {
+            return siteType;
+        }
+
+        public void setSiteType(SiteType siteType) {
+            this.siteType = siteType;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * @param limit The maximum number of matches to return.
+         */
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Returns how well the campsite fits, lower is better, or -1 when it
+         * does not meet the criteria.
+         */
+        private int score(Entry entry) {
+            if (entry.maxLength < rvLength
+                    || (slideOuts > 0 && !entry.acceptsSlideOut)
+                    || (pullThru != null && pullThru != entry.pullThru)
+                    || (siteType != null && siteType != entry.siteType)) {
+                return -1;
+            }
+            // Length left over counts one point per foot; an unused feature
+            // costs more than any realistic amount of left over length.
+            int score = rvLength > 0 ? entry.maxLength - rvLength : 0;
+            if (entry.pullThru && pullThru == null) {
+                score += 1000;
+            }
+            if (entry.acceptsSlideOut && slideOuts == 0) {
+                score += 1000;
+            }
+            return score;
+        }
+    }
+
+    /**
+     * A free campsite that meets the criteria of a search.
+     */
+    public static class Match {
+
+        private final Entry entry;
+        private final int score;
+
+        private Match(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        public int getCampsiteId() {
+            return entry.campsiteId;
+        }
+
+        public String getCampsiteName() {
+            return entry.campsiteName;
+        }
+
+        public int getMaxLength() {
+            return entry.maxLength;
+        }
+
+        public int getWidth() {
+            return entry.width;
+        }
+
+        public boolean getAcceptsSlideOut() {
+            return entry.acceptsSlideOut;
+        }
+
+        public boolean getPullThru() {
+            return entry.pullThru;
+        }
+
+        public SiteType getSiteType() {
+            return entry.siteType;
+        }
+
+        /**
+         * @return How well the campsite fits, lower is better.
+         */
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * The attributes of a campsite that searches use. The image is not kept.
+     */
+    private static class Entry {
+
+        private final int campsiteId;
+        private final String campsiteName;
+        private final int maxLength;
+        private final int width;
+        private final boolean acceptsSlideOut;
+        private final boolean pullThru;
+        private final SiteType siteType;
+
+        private Entry(Campsite campsite) {
+            this.campsiteId = campsite.getCampsiteId();
+            this.campsiteName = campsite.getCampsiteName();
+            this.maxLength = campsite.getMaxLength();
+            this.width = campsite.getWidth();
+            this.acceptsSlideOut = campsite.getAcceptsSlideOut();
+            this.pullThru = campsite.getPullThru();
+            this.siteType = campsite.getSiteType();
+        }
+    }
+
+    /**
+     * Measures the search latency with 1,000 campsites and a season of
+     * random assigned sites, and prints the median and 99th percentile.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(5);
+        int numberOfCampsites = 1000;
+        LocalDate opening = LocalDate.of(2030, 4, 15);
+        List<Campsite> campsites = new ArrayList<>();
+        for (int i = 1; i <= numberOfCampsites; i++) {
+            Campsite campsite = new Campsite();
+            campsite.setCampsiteId(i);
+            campsite.setCampsiteName("Site " + i);
+            campsite.setMaxLength(20 + random.nextInt(30));
+            campsite.setWidth(12 + random.nextInt(8));
+            campsite.setAcceptsSlideOut(random.nextBoolean());
+            campsite.setPullThru(random.nextInt(4) == 0);
+            campsite.setSiteType(SiteType.values()[random.nextInt(SiteType.values().length)]);
+            campsites.add(campsite);
+        }
+        List<common.AssignedSite> assignedSites = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            LocalDateTime arrival = opening.plusDays(random.nextInt(190)).atTime(14, 0);
+            common.AssignedSite assignedSite = new common.AssignedSite();
+            assignedSite.setAssignedSiteId(i + 1);
+            assignedSite.setCampsiteId(1 + random.nextInt(numberOfCampsites));
+            assignedSite.setArrivalDate(arrival);
+            assignedSite.setDepartureDate(arrival.plusDays(1 + random.nextInt(7)).withHour(11));
+            assignedSites.add(assignedSite);
+        }
+        AvailabilityIndex.getInstance().load(assignedSites);
+        common.YearlyInformation season = new common.YearlyInformation();
+        season.setOpeningDate(opening);
+        season.setClosingDate(opening.plusDays(200));
+        OccupancyBitmap.getInstance().load(season, campsites);
+        CampsiteSearch campsiteSearch = CampsiteSearch.getInstance();
+        campsiteSearch.load(campsites);
+
+        int runs = 20000;
+        long[] times = new long[runs];
+        int found = 0;
+        for (int i = 0; i < runs; i++) {
+            Criteria criteria = new Criteria();
+            criteria.setRvLength(20 + random.nextInt(30));
+            criteria.setSlideOuts(random.nextInt(3));
+            if (random.nextInt(4) == 0) {
+                criteria.setPullThru(Boolean.TRUE);
+            }
+            LocalDate arrival = opening.plusDays(random.nextInt(190));
+            LocalDate departure = arrival.plusDays(1 + random.nextInt(7));
+            long start = System.nanoTime();
+            found += campsiteSearch.search(arrival, departure, criteria).size();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.println(runs + " searches over " + numberOfCampsites + " campsites, "
+                + found / runs + " matches on average");
+        System.out.println("p50 " + times[runs / 2] / 1000 + " us, p99 "
+                + times[runs * 99 / 100] / 1000 + " us");
+    }
+}
@@ -0,0 +1,774 @@
+package database;
+
+import common.Customer;
+import common.CustomerType;
+import common.RVType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory directory of every customer, indexed so that the customer
+ * lookups used by the reservation and customer pages are answered without a
+ * database round trip.
+ *
+ * The directory has hash indexes on the customer name, the email addresses,
+ * the phone numbers, the zip code, the group and the customer information
+ * row, and an index of the three letter sequences (trigrams) of every last
+ * name for searches on part of a last name. Names, email addresses and zip
+ * codes are compared without case or surrounding spaces, as the database
+ * compares them. Phone numbers are compared by their digits only, so
+ * "(555) 123-4567" finds "555-123-4567".
+ *
+ * A last name search for three or more letters reads only the customers
+ * whose last name holds the rarest trigram of the search, then checks each of
+ * them; a shorter search checks every last name. Names and last names are
+ * also kept in a sorted index for completing a name as it is typed.
+ *
+ * The directory is loaded once at startup and is then kept current by the
+ * <code>CustomerManager</code> add, update and delete methods. Until it has
+ * been loaded, <code>isLoaded()</code> returns false and the managers fall
+ * back to their SQL queries. The customers handed out are copies.
+ *
+ * Sample Usage:
+ * <pre>
+ * CustomerDirectory directory = CustomerDirectory.getInstance();
+ * directory.load(customers);
+ * Customer customer = directory.getCustomerByName("Smith Family");
+ * List&lt;Customer&gt; smiths = directory.search("mit", null, null, null);
+ * </pre>
+ */
+public class CustomerDirectory {
+
+    private static final int GRAM_LENGTH = 3;
+    private static CustomerDirectory directory = null;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Customer> customersById = new HashMap<>();
+    private final Map<String, IdList> byName = new HashMap<>();
+    private final Map<String, IdList> byEmail = new HashMap<>();
+    private final Map<String, IdList> byPhone = new HashMap<>();
+    private final Map<String, IdList> byZip = new HashMap<>();
+    private final Map<String, IdList> byLastNameGram = new HashMap<>();
+    private final TreeMap<String, IdList> byNameInOrder = new TreeMap<>();
+    private final Map<Integer, IdList> byGroup = new HashMap<>();
+    private final Map<Integer, IdList> byInformation = new HashMap<>();
+    private final IdList allIds = new IdList();
+    private volatile boolean loaded = false;
+
+    private CustomerDirectory() {
+    }
+
+    /**
+     * Gets the shared <code>CustomerDirectory</code> for this application.
+     *
+     * @return The <code>CustomerDirectory</code> object.
+     */
+    public static synchronized CustomerDirectory getInstance() {
+        if (directory == null) {
+            directory = new CustomerDirectory();
+        }
+        return directory;
+    }
+
+    /**
+     * Replaces the contents of this directory with the given customers.
+     *
+     * @param customers Every <code>Customer</code> in the database.
+     */
+    public void load(Collection<Customer> customers) {
+        lock.writeLock().lock();
+        try {
+            clearIndexes();
+            for (Customer customer : customers) {
+                insert(copy(customer));
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true once the directory has been loaded and may be used in
+     * place of the database.
+     *
+     * @return True if the directory has been loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Discards the contents of this directory. Lookups go back to the
+     * database until <code>load</code> is called again.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clearIndexes();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a customer or replaces the customer with the same id. The
+     * customer information (everything but the type, name, primary phone,
+     * notes and group) is shared by every customer linked to the same
+     * information row, so it is copied to them as well.
+     *
+     * @param customer The added or updated <code>Customer</code>.
+     */
+    public void put(Customer customer) {
+        if (!loaded || customer == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            delete(customer.getCustomerId());
+            IdList linked = byInformation.get(customer.getCustomerInformationId());
+            if (linked != null) {
+                for (int id : linked.toArray()) {
+                    Customer other = delete(id);
+                    copyInformation(customer, other);
+                    insert(other);
+                }
+            }
+            insert(copy(customer));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a customer that was linked to an existing customer information
+     * row. The information is taken from the customers already linked to
+     * the row, when there are any, rather than from the given customer.
+     *
+     * @param customer The added <code>Customer</code>.
+     */
+    public void link(Customer customer) {
+        if (!loaded || customer == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Customer added = copy(customer);
+            IdList linked = byInformation.get(customer.getCustomerInformationId());
+            if (linked != null && linked.size() > 0) {
+                copyInformation(customersById.get(linked.get(0)), added);
+            }
+            delete(added.getCustomerId());
+            insert(added);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a customer from the directory.
+     *
+     * @param customerId The id of the deleted customer.
+     */
+    public void remove(int customerId) {
+        if (!loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            delete(customerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param customerId The id of a customer.
+     * @return The customer, or null if there is none with the id.
+     */
+    public Customer getCustomerById(int customerId) {
+        lock.readLock().lock();
+        try {
+            return copy(customersById.get(customerId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param name A customer name.
+     * @return The customer with the lowest id that has the name, or null if
+     * there is none.
+     */
+    public Customer getCustomerByName(String name) {
+        String key = text(name);
+        lock.readLock().lock();
+        try {
+            IdList ids = key == null ? null : byName.get(key);
+            return ids == null ? null : copy(customersById.get(ids.get(0)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param emailAddress An email address.
+     * @return The customers whose own or spouse's email address it is.
+     */
+    public List<Customer> getCustomersWithEmailAddress(String emailAddress) {
+        return lookup(byEmail, text(emailAddress));
+    }
+
+    /**
+     * @param phoneNumber A phone number, in any format.
+     * @return The customers with the number as their primary, mobile or
+     * spouse's phone.
+     */
+    public List<Customer> getCustomersWithPhoneNumber(String phoneNumber) {
+        return lookup(byPhone, digits(phoneNumber));
+    }
+
+    /**
+     * @param groupId The id of a group.
+     * @return The individual customers that belong to the group.
+     */
+    public List<Customer> getIndividualsInGroup(int groupId) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>();
+            IdList ids = byGroup.get(groupId);
+            if (ids != null) {
+                for (int id : ids.toArray()) {
+                    Customer customer = customersById.get(id);
+                    if (customer.getCustomerType() == CustomerType.Individual) {
+                        customers.add(copy(customer));
+                    }
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Every customer, in order of id.
+     */
+    public List<Customer> getAllCustomers() {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(allIds.size());
+            for (int i = 0; i < allIds.size(); i++) {
+                customers.add(copy(customersById.get(allIds.get(i))));
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the customers that meet every given condition. A null condition
+     * is not checked.
+     *
+     * @param lastNamePart Text the last name contains.
+     * @param zip The zip code.
+     * @param phoneNumber The mobile or spouse's phone number.
+     * @param customerTypes The names of the customer types to include.
+     * @return The customers found, in order of id.
+     */
+    public List<Customer> search(String lastNamePart, String zip, String phoneNumber,
+            Collection<String> customerTypes) {
+        String part = lastNamePart == null ? null : lastNamePart.trim().toLowerCase(Locale.ROOT);
+        String zipKey = zip == null ? null : text(zip);
+        String phone = phoneNumber == null ? null : digits(phoneNumber);
+        Set<String> types = null;
+        if (customerTypes != null) {
+            types = new LinkedHashSet<>();
+            for (String type : customerTypes) {
+                types.add(type.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        List<Customer> customers = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int id : candidates(part, zipKey, phone)) {
+                Customer customer = customersById.get(id);
+                if (matches(customer, part, zipKey, phone, types)) {
+                    customers.add(copy(customer));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Completes a name typed into a customer field. A customer matches when
+     * its name or its last name starts with the typed text, and the matches
+     * are listed in order of the name or last name that matched, so the
+     * first page is the best completion.
+     *
+     * The given customers, usually the reservation's customer and the
+     * members of its group, are listed before every other match. The names
+     * are kept in a sorted index, so a page costs the same however many
+     * customers there are and however deep it is.
+     *
+     * @param prefix The typed text, in any case; null or empty for every
+     * customer.
+     * @param firstIds The ids of the customers to list first, or null.
+     * @param after The cursor of the previous page, or null for the first.
+     * @param limit The most customers to return; see
+     * <code>Page.clampLimit</code>.
+     * @return The page of matching customers.
+     */
+    public Page<Customer> complete(String prefix, Collection<Integer> firstIds, String after, int limit) {
+        limit = Page.clampLimit(limit);
+        String key = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        Set<Integer> first = firstIds == null ? new HashSet<>() : new HashSet<>(firstIds);
+        // The cursor holds the rank (0 for the customers listed first) and the
+        // matched key; a cursor that does not is read as the first page
+        int afterId = Page.cursorId(after);
+        String afterValue = Page.cursorValue(after);
+        boolean validCursor = afterId >= 0 && afterValue != null
+                && (afterValue.startsWith("0") || afterValue.startsWith("1"));
+        boolean afterFirst = validCursor && afterValue.startsWith("0");
+        String afterKey = validCursor ? afterValue.substring(1) : null;
+        List<Customer> customers = new ArrayList<>(Math.min(limit, Page.DEFAULT_LIMIT));
+        lock.readLock().lock();
+        try {
+            String lastKey = null;
+            int lastId = -1;
+            boolean lastFirst = false;
+            if (afterKey == null || afterFirst) {
+                List<Object[]> ranked = new ArrayList<>();
+                for (int id : first) {
+                    Customer customer = customersById.get(id);
+                    String matched = customer == null ? null : matchedKey(customer, key);
+                    if (matched != null && (afterKey == null || isAfter(matched, id, afterKey, afterId))) {
+                        ranked.add(new Object[]{matched, id});
+                    }
+                }
+                ranked.sort((a, b) -> {
+                    int order = ((String) a[0]).compareTo((String) b[0]);
+                    return order != 0 ? order : Integer.compare((Integer) a[1], (Integer) b[1]);
+                });
+                for (Object[] match : ranked) {
+                    if (customers.size() == limit) {
+                        return new Page<>(customers, Page.encodeCursor("0" + lastKey, lastId));
+                    }
+                    lastKey = (String) match[0];
+                    lastId = (Integer) match[1];
+                    lastFirst = true;
+                    customers.add(copy(customersById.get(lastId)));
+                }
+                afterKey = null;
+            }
+            Map<String, IdList> keys = afterKey == null ? byNameInOrder.tailMap(key, true)
+                    : byNameInOrder.tailMap(afterKey, true);
+            for (Map.Entry<String, IdList> entry : keys.entrySet()) {
+                if (!entry.getKey().startsWith(key)) {
+                    break;
+                }
+                IdList ids = entry.getValue();
+                for (int i = 0; i < ids.size(); i++) {
+                    int id = ids.get(i);
+                    if (first.contains(id) || (afterKey != null && !isAfter(entry.getKey(), id, afterKey, afterId))) {
+                        continue;
+                    }
+                    // A customer whose name and last name both match is listed once, under the first
+                    if (!entry.getKey().equals(matchedKey(customersById.get(id), key))) {
+                        continue;
+                    }
+                    if (customers.size() == limit) {
+                        return new Page<>(customers, Page.encodeCursor((lastFirst ? "0" : "1") + lastKey, lastId));
+                    }
+                    lastKey = entry.getKey();
+                    lastId = id;
+                    lastFirst = false;
+                    customers.add(copy(customersById.get(id)));
+                }
+            }
+            return new Page<>(customers, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of customers in the directory.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return customersById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The first of the customer's name and last name that starts with the
+    // prefix, or null if neither does
+    private static String matchedKey(Customer customer, String prefix) {
+        String name = text(customer.getName());
+        String lastName = text(customer.getLastName());
+        if (name == null || !name.startsWith(prefix)) {
+            name = null;
+        }
+        if (lastName == null || !lastName.startsWith(prefix)) {
+            return name;
+        }
+        return name == null || lastName.compareTo(name) < 0 ? lastName : name;
+    }
+
+    private static boolean isAfter(String key, int id, String afterKey, int afterId) {
+        int order = key.compareTo(afterKey);
+        return order > 0 || (order == 0 && id > afterId);
+    }
+
+    // The ids to check for a search: the smallest index entry that every
+    // match must be in, or every id when no indexed condition is given
+    private int[] candidates(String part, String zipKey, String phone) {
+        IdList smallest = null;
+        boolean indexed = false;
+        if (part != null && part.length() >= GRAM_LENGTH) {
+            indexed = true;
+            for (String gram : grams(part)) {
+                IdList ids = byLastNameGram.get(gram);
+                if (ids == null) {
+                    return new int[0];
+                }
+                if (smallest == null || ids.size() < smallest.size()) {
+                    smallest = ids;
+                }
+            }
+        }
+        if (zipKey != null) {
+            indexed = true;
+            IdList ids = byZip.get(zipKey);
+            if (ids == null) {
+                return new int[0];
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        if (phone != null) {
+            indexed = true;
+            IdList ids = byPhone.get(phone);
+            if (ids == null) {
+                return new int[0];
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return indexed ? smallest.toArray() : allIds.toArray();
+    }
+
+    private static boolean matches(Customer customer, String part, String zipKey, String phone,
+            Set<String> types) {
+        if (part != null && (customer.getLastName() == null
+                || !customer.getLastName().toLowerCase(Locale.ROOT).contains(part))) {
+            return false;
+        }
+        if (zipKey != null && !zipKey.equals(text(customer.getZip()))) {
+            return false;
+        }
+        if (phone != null && !phone.equals(digits(customer.getMobilePhone()))
+                && !phone.equals(digits(customer.getSpousePhone()))) {
+            return false;
+        }
+        return types == null || (customer.getCustomerType() != null
+                && types.contains(customer.getCustomerType().toString().toLowerCase(Locale.ROOT)));
+    }
+
+    private List<Customer> lookup(Map<String, IdList> index, String key) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>();
+            IdList ids = key == null ? null : index.get(key);
+            if (ids != null) {
+                for (int id : ids.toArray()) {
+                    customers.add(copy(customersById.get(id)));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(Customer customer) {
+        int id = customer.getCustomerId();
+        customersById.put(id, customer);
+        allIds.add(id);
+        add(byName, text(customer.getName()), id);
+        add(byNameInOrder, text(customer.getName()), id);
+        add(byNameInOrder, text(customer.getLastName()), id);
+        add(byEmail, text(customer.getEmailAddress()), id);
+        add(byEmail, text(customer.getSpouseEmailAddress()), id);
+        add(byPhone, digits(customer.getPrimaryPhone()), id);
+        add(byPhone, digits(customer.getMobilePhone()), id);
+        add(byPhone, digits(customer.getSpousePhone()), id);
+        add(byZip, text(customer.getZip()), id);
+        if (customer.getLastName() != null) {
+            for (String gram : grams(customer.getLastName().toLowerCase(Locale.ROOT))) {
+                add(byLastNameGram, gram, id);
+            }
+        }
+        add(byGroup, customer.getGroupId(), id);
+        add(byInformation, customer.getCustomerInformationId(), id);
+    }
+
+    private Customer delete(int customerId) {
+        Customer customer = customersById.remove(customerId);
+        if (customer == null) {
+            return null;
+        }
+        allIds.remove(customerId);
+        remove(byName, text(customer.getName()), customerId);
+        remove(byNameInOrder, text(customer.getName()), customerId);
+        remove(byNameInOrder, text(customer.getLastName()), customerId);
+        remove(byEmail, text(customer.getEmailAddress()), customerId);
+        remove(byEmail, text(customer.getSpouseEmailAddress()), customerId);
+        remove(byPhone, digits(customer.getPrimaryPhone()), customerId);
+        remove(byPhone, digits(customer.getMobilePhone()), customerId);
+        remove(byPhone, digits(customer.getSpousePhone()), customerId);
+        remove(byZip, text(customer.getZip()), customerId);
+        if (customer.getLastName() != null) {
+            for (String gram : grams(customer.getLastName().toLowerCase(Locale.ROOT))) {
+                remove(byLastNameGram, gram, customerId);
+            }
+        }
+        remove(byGroup, customer.getGroupId(), customerId);
+        remove(byInformation, customer.getCustomerInformationId(), customerId);
+        return customer;
+    }
+
+    private void clearIndexes() {
+        customersById.clear();
+        allIds.clear();
+        byName.clear();
+        byEmail.clear();
+        byPhone.clear();
+        byZip.clear();
+        byLastNameGram.clear();
+        byNameInOrder.clear();
+        byGroup.clear();
+        byInformation.clear();
+    }
+
+    private static <K> void add(Map<K, IdList> index, K key, int id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new IdList()).add(id);
+        }
+    }
+
+    private static <K> void remove(Map<K, IdList> index, K key, int id) {
+        if (key == null) {
+            return;
+        }
+        IdList ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.size() == 0) {
+            index.remove(key);
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static String text(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim().toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+
+    private static String digits(String value) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isDigit(value.charAt(i))) {
+                digits.append(value.charAt(i));
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    // The columns of customer_information
+    private static void copyInformation(Customer from, Customer to) {
+        to.setFirstName(from.getFirstName());
+        to.setLastName(from.getLastName());
+        to.setSpouseFirstName(from.getSpouseFirstName());
+        to.setSpouseLastName(from.getSpouseLastName());
+        to.setMobilePhone(from.getMobilePhone());
+        to.setSpousePhone(from.getSpousePhone());
+        to.setAddressLine1(from.getAddressLine1());
+        to.setAddressLine2(from.getAddressLine2());
+        to.setTown(from.getTown());
+        to.setState(from.getState());
+        to.setZip(from.getZip());
+        to.setEmailAddress(from.getEmailAddress());
+        to.setSpouseEmailAddress(from.getSpouseEmailAddress());
+        to.setRvType(from.getRvType());
+        to.setRvLength(from.getRvLength());
+        to.setNumberOfSlideOuts(from.getNumberOfSlideOuts());
+        to.setFlagged(from.isFlagged());
+    }
+
+    private static Customer copy(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        return new Customer(customer.getCustomerId(), customer.getCustomerInformationId(),
+                customer.getCustomerType(), customer.getName(), customer.getFirstName(),
+                customer.getLastName(), customer.getSpouseFirstName(), customer.getSpouseLastName(),
+                customer.getPrimaryPhone(), customer.getMobilePhone(), customer.getSpousePhone(),
+                customer.getAddressLine1(), customer.getAddressLine2(), customer.getTown(),
+                customer.getState(), customer.getZip(), customer.getEmailAddress(),
+                customer.getSpouseEmailAddress(), customer.getRvType(), customer.getRvLength(),
+                customer.getNumberOfSlideOuts(), customer.isFlagged(), customer.getNotes(),
+                customer.getGroupId());
+    }
+
+    /**
+     * A sorted set of customer ids, kept in an int array.
+     */
+    private static class IdList {
+
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        private void add(int id) {
+            // Ids mostly arrive in increasing order
+            int at = size == 0 || id > ids[size - 1] ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        private int get(int i) {
+            return ids[i];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        private void clear() {
+            ids = new int[2];
+            size = 0;
+        }
+    }
+
+    /**
+     * Times the lookups on a directory of 100,000 generated customers.
+     */
+    public static void main(String[] args) {
+        String[] lastNames = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis",
+            "Garcia", "Rodriguez", "Wilson", "Martinez", "Anderson", "Taylor", "Thomas", "Moore"};
+        Random random = new Random(42);
+        List<Customer> customers = new ArrayList<>();
+        for (int id = 1; id <= 100000; id++) {
+            String lastName = lastNames[random.nextInt(lastNames.length)] + (id % 997);
+            customers.add(new Customer(id, id, CustomerType.values()[id % CustomerType.values().length],
+                    lastName + " Family " + id, "First" + id, lastName, "", "",
+                    String.format("555-%03d-%04d", id % 1000, id), "", "", "", "", "Town", "PA",
+                    String.format("%05d", 15000 + id % 500), "customer" + id + "@example.com", "",
+                    RVType.values()[id % RVType.values().length], 30, 1, false, "", id / 10));
+        }
+        CustomerDirectory directory = new CustomerDirectory();
+        long start = System.nanoTime();
+        directory.load(customers);
+        System.out.printf("Loaded %,d customers in %.1f ms%n", directory.size(), (System.nanoTime() - start) / 1e6);
+
+        int iterations = 20000;
+        int found = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                found += directory.getCustomerByName(customers.get(i * 5 - 1).getName()) == null ? 0 : 1;
+            }
+            report(pass, "getCustomerByName", start, iterations);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                found += directory.getCustomersWithEmailAddress("Customer" + i + "@example.com").size();
+            }
+            report(pass, "getCustomersWithEmailAddress", start, iterations);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                found += directory.getCustomersWithPhoneNumber(String.format("(555) %03d %04d", i % 1000, i)).size();
+            }
+            report(pass, "getCustomersWithPhoneNumber", start, iterations);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations / 10; i++) {
+                found += directory.search("iams" + (i % 997), null, null, null).size();
+            }
+            report(pass, "search(last name part)", start, iterations / 10);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations / 10; i++) {
+                found += directory.search(null, String.format("%05d", 15000 + i % 500), null,
+                        Arrays.asList("Individual")).size();
+            }
+            report(pass, "search(zip, type)", start, iterations / 10);
+            start = System.nanoTime();
+            for (int i = 1; i <= iterations; i++) {
+                Page<Customer> page = directory.complete("smi", directory.getIndividualsInGroup(i % 10000)
+                        .stream().map(Customer::getCustomerId).collect(java.util.stream.Collectors.toList()),
+                        null, 10);
+                found += directory.complete("smi", null, page.getNextCursor(), 10).getItems().size();
+            }
+            report(pass, "complete(prefix, 2 pages)", start, iterations);
+        }
+        System.out.println("Found " + found);
+    }
+
+    private static void report(int pass, String name, long start, int iterations) {
+        if (pass > 0) {
+            System.out.printf("%-30s %8.2f us per lookup%n", name, (System.nanoTime() - start) / 1e3 / iterations);
+        }
+    }
+}
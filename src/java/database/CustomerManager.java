@@ -3,6 +3,7 @@ package database;
 import common.Customer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * An interface that specifies the allowable operations on customers in
@@ -25,6 +26,56 @@ public interface CustomerManager {
     public Collection<Customer> getAllCustomersWithPhoneNumber(String phoneNumber);
     public Collection<Customer> getAllCustomersWithFilter(ArrayList<String> filter);
     public Collection<Customer> getAllCustomers();
+
+    /**
+     * Passes every customer to the action one at a time, as they are read,
+     * without collecting them first. Meant for exports.
+     *
+     * @param action Called once for each customer, in order of id.
+     * @return True if every customer was passed to the action; false if
+     * reading failed part way.
+     */
+    public boolean forEachCustomer(Consumer<? super Customer> action);
     public Collection<Integer> checkPreexisting(Customer customer);
+
+    /**
+     * The orders in which <code>getCustomerPage</code> can list the
+     * customers. Customers with equal values are listed by id.
+     */
+    public enum Sort {
+        /** By id, which is the order the customers were added in. */
+        ID,
+        /** By customer name. */
+        NAME,
+        /** By last name; customers without one come first. */
+        LAST_NAME
+    }
+
+    /**
+     * Returns one page of the customers.
+     *
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most customers to return; see
+     * <code>Page.clampLimit</code>.
+     * @param sort The order to list the customers in. The cursor must come
+     * from a page in the same order.
+     * @return The page, or null if the customers could not be read.
+     */
+    public Page<Customer> getCustomerPage(String after, int limit, Sort sort);
+
+    /**
+     * Returns one page of the customers whose name starts with the given
+     * text, in any case, in order of name. For completing a name while the
+     * <code>CustomerDirectory</code> is not loaded.
+     *
+     * @param prefix The start of the name; null or empty for every customer.
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most customers to return; see
+     * <code>Page.clampLimit</code>.
+     * @return The page, or null if the customers could not be read.
+     */
+    public Page<Customer> getCustomerPageByName(String prefix, String after, int limit);
 }
 
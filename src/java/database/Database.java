@@ -14,9 +14,19 @@ public  class Database {
        return database;
    }
 
+    /**
+     * Creates the <code>DatabaseManagement</code> named by the property
+     * <code>DatabaseImplementation</code>: <code>memory</code> for the tables
+     * kept in memory, or MySQL otherwise. The property has to be in the
+     * property file, since the database properties are read from the
+     * database this chooses.
+     */
     private static void intialize() {
-
+        if ("memory".equalsIgnoreCase(utilities.PropertyManager.getProperty("DatabaseImplementation"))) {
+            database = new memory.DatabaseManagement();
+        } else {
             database = new mysql.DatabaseManagement();
+        }
 
         
         // database.initializeDatabaseManagement(); // may or may not be needed by your application
@@ -3,6 +3,7 @@ package database;
 
 import common.ErrorLog;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  *
@@ -11,10 +12,42 @@ import java.util.Collection;
 public interface DatabaseErrorLogManager {
     public Collection<ErrorLog> getAllErrorLogs();
     public String getAllErrorLogsAsHTMLTable();
+
+    /**
+     * Passes every error log to the action one at a time, as they are read,
+     * without collecting them first.
+     *
+     * @param action Called once for each log, oldest first.
+     * @return True if every log was passed to the action; false if reading
+     * failed part way.
+     */
+    public boolean forEachErrorLog(Consumer<? super ErrorLog> action);
     public void addErrorLog(ErrorLog errorLog);
     public ErrorLog getErrorLogByID(int id);
     public void deleteErrorLog(int id);
     public void deleteAllErrorLogs();
+
+    /**
+     * The orders in which <code>getErrorLogPage</code> can list the logs.
+     */
+    public enum Sort {
+        /** The most recent log first. */
+        NEWEST_FIRST,
+        /** The oldest log first. */
+        OLDEST_FIRST
+    }
+
+    /**
+     * Returns one page of the error logs.
+     *
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most logs to return; see <code>Page.clampLimit</code>.
+     * @param sort The order to list the logs in. The cursor must come from a
+     * page in the same order.
+     * @return The page, or null if the logs could not be read.
+     */
+    public Page<ErrorLog> getErrorLogPage(String after, int limit, Sort sort);
     
   
 }
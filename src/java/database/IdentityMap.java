@@ -0,0 +1,159 @@
+package database;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the entities read or written by one request, one object per row, so
+ * a request that asks for the same reservation, customer or campsite several
+ * times reads it from the database once and gets the same object each time.
+ *
+ * <code>servlets.filter.IdentityMapFilter</code> calls <code>begin</code>
+ * before a request runs and <code>end</code> after it. In between, the
+ * <code>getXxxByID</code> methods of the managers look an entity up with
+ * <code>get</code> before they query and keep what they read with
+ * <code>put</code>, and the add, update and delete methods put or remove
+ * what they wrote. A thread with no request begun, such as a background
+ * task, has no map, and every call falls through to the database.
+ *
+ * The entities are shared within the request, so a change made to one
+ * without saving it is seen by the later lookups of the same request. The
+ * map is dropped when the request ends and never outlives it.
+ *
+ * Sample Usage:
+ * <pre>
+ * Reservation cached = IdentityMap.get(Reservation.class, reservationId);
+ * if (cached != null) {
+ *     return cached;
+ * }
+ * // Read the reservation
+ * return IdentityMap.put(Reservation.class, reservationId, reservation);
+ * </pre>
+ */
+public final class IdentityMap {
+
+    private static final ThreadLocal<IdentityMap> CURRENT = new ThreadLocal<>();
+
+    private final Map<Class<?>, Map<Integer, Object>> entities = new HashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+
+    private IdentityMap() {
+    }
+
+    /**
+     * Starts an empty map for the current thread, replacing any map left
+     * over from an earlier request.
+     *
+     * @return The new map.
+     */
+    public static IdentityMap begin() {
+        IdentityMap map = new IdentityMap();
+        CURRENT.set(map);
+        return map;
+    }
+
+    /**
+     * Drops the map of the current thread.
+     *
+     * @return The map, or null if none was begun.
+     */
+    public static IdentityMap end() {
+        IdentityMap map = CURRENT.get();
+        CURRENT.remove();
+        return map;
+    }
+
+    /**
+     * Looks an entity up in the map of the current thread.
+     *
+     * @param <T> The type of the entity.
+     * @param type The type of the entity.
+     * @param id The id of the entity.
+     * @return The entity, or null if it is not in the map or there is no map.
+     */
+    public static <T> T get(Class<T> type, int id) {
+        IdentityMap map = CURRENT.get();
+        if (map == null) {
+            return null;
+        }
+        Map<Integer, Object> ofType = map.entities.get(type);
+        Object entity = ofType == null ? null : ofType.get(id);
+        if (entity == null) {
+            map.misses++;
+            return null;
+        }
+        map.hits++;
+        return type.cast(entity);
+    }
+
+    /**
+     * Keeps an entity read or written by the current request.
+     *
+     * @param <T> The type of the entity.
+     * @param type The type of the entity.
+     * @param id The id of the entity.
+     * @param entity The entity, which may be null.
+     * @return The entity, so a manager can return it.
+     */
+    public static <T> T put(Class<T> type, int id, T entity) {
+        IdentityMap map = CURRENT.get();
+        if (map != null && entity != null) {
+            map.entities.computeIfAbsent(type, key -> new HashMap<>()).put(id, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Forgets an entity that was deleted, or whose row may now differ from
+     * the object in the map.
+     *
+     * @param type The type of the entity.
+     * @param id The id of the entity.
+     */
+    public static void remove(Class<?> type, int id) {
+        IdentityMap map = CURRENT.get();
+        if (map != null) {
+            Map<Integer, Object> ofType = map.entities.get(type);
+            if (ofType != null) {
+                ofType.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Forgets every entity of a type, after a write that may have changed
+     * rows other than the one written.
+     *
+     * @param type The type of the entities.
+     */
+    public static void removeAll(Class<?> type) {
+        IdentityMap map = CURRENT.get();
+        if (map != null) {
+            map.entities.remove(type);
+        }
+    }
+
+    /**
+     * @return The number of lookups answered from the map.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that went to the database.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        int size = 0;
+        for (Map<Integer, Object> ofType : entities.values()) {
+            size += ofType.size();
+        }
+        return "IdentityMap{entities=" + size + ", hits=" + hits + ", misses=" + misses + '}';
+    }
+}
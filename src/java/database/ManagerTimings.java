@@ -0,0 +1,341 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import utilities.PropertyManager;
+import utilities.WebErrorLogger;
+
+/**
+ * Measures every call to the database managers, to find the methods that
+ * take up the time of a request.
+ *
+ * A <code>DatabaseManagement</code> passes each manager it creates to
+ * <code>instrument</code>, which returns the manager itself unless the
+ * property <code>ManagerTimings</code> is <code>on</code>. So when timing is
+ * off the managers are called directly and it costs nothing. When it is on,
+ * the manager is wrapped in a dynamic proxy that records, for each method of
+ * the interface, such as
+ * <code>CustomerManager.getCustomerPage(String, int, Sort)</code>:
+ * <ul>
+ * <li>the number of calls,</li>
+ * <li>the number of calls that failed, either by throwing an exception or
+ * by logging a <code>SEVERE</code> message, which is how the managers
+ * report a <code>SQLException</code> before returning null or false,</li>
+ * <li>the number of rows returned, counting the items of a collection or
+ * page, the rows passed to a <code>forEach</code> action, and one for any
+ * other object,</li>
+ * <li>a <code>LatencyHistogram</code> of the time each call took.</li>
+ * </ul>
+ *
+ * The statistics cover the time since the application started or since
+ * they were last reset. They are shown by <code>ManagerTimingsServlet</code>,
+ * and the slowest methods are logged every
+ * <code>ManagerTimingsLogMinutes</code> minutes, 15 by default, or never if
+ * it is 0.
+ */
+public class ManagerTimings {
+
+    private static final int DEFAULT_LOG_MINUTES = 15;
+    private static final int LOGGED_METHODS = 10;
+
+    private static ManagerTimings timings = null;
+
+    private final Map<String, MethodStatistics> statistics = new ConcurrentHashMap<>();
+    private ScheduledExecutorService logger = null;
+
+    private ManagerTimings() {
+    }
+
+    /**
+     * Gets the shared <code>ManagerTimings</code> for this application.
+     *
+     * @return The <code>ManagerTimings</code> object.
+     */
+    public static synchronized ManagerTimings getInstance() {
+        if (timings == null) {
+            timings = new ManagerTimings();
+        }
+        return timings;
+    }
+
+    /**
+     * @return True if the property <code>ManagerTimings</code> turns timing
+     * on.
+     */
+    public static boolean isEnabled() {
+        String value = PropertyManager.getProperty("ManagerTimings");
+        return "on".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Wraps a manager so its calls are measured, if timing is on. The
+     * property is read when the manager is wrapped, so it takes effect for
+     * the managers created after it is set.
+     *
+     * @param <T> The manager interface.
+     * @param type The manager interface, whose name names the methods.
+     * @param manager The manager.
+     * @return A manager that measures its calls, or the manager itself if
+     * timing is off.
+     */
+    public static <T> T instrument(Class<T> type, T manager) {
+        if (manager == null || !isEnabled()) {
+            return manager;
+        }
+        ManagerTimings timings = getInstance();
+        timings.startLogging();
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new TimingHandler(timings, type.getSimpleName(), manager)));
+    }
+
+    /**
+     * @return The statistics of every method called so far, the most total
+     * time first.
+     */
+    public List<MethodStatistics> getStatistics() {
+        // Sort on a snapshot, as the totals change while the list is sorted
+        Map<MethodStatistics, Long> totals = new HashMap<>();
+        for (MethodStatistics method : statistics.values()) {
+            totals.put(method, method.getHistogram().getTotalNanos());
+        }
+        List<MethodStatistics> sorted = new ArrayList<>(totals.keySet());
+        sorted.sort(Comparator.comparing(totals::get, Comparator.reverseOrder()));
+        return sorted;
+    }
+
+    /**
+     * Clears the statistics of every method.
+     */
+    public void reset() {
+        for (MethodStatistics method : statistics.values()) {
+            method.reset();
+        }
+    }
+
+    /**
+     * Returns one line with the methods that took the most total time, for
+     * the log.
+     *
+     * @param methods The most methods to list.
+     * @return The line.
+     */
+    public String summarize(int methods) {
+        StringBuilder line = new StringBuilder("Manager timings:");
+        List<MethodStatistics> sorted = getStatistics();
+        for (int i = 0; i < sorted.size() && i < methods; i++) {
+            MethodStatistics method = sorted.get(i);
+            LatencyHistogram histogram = method.getHistogram();
+            line.append(i == 0 ? " " : "; ").append(method.getName())
+                    .append(" calls=").append(method.getCalls())
+                    .append(" errors=").append(method.getErrors())
+                    .append(" rows=").append(method.getRows())
+                    .append(String.format(" total=%.1fms p50=%.2fms p99=%.2fms max=%.2fms",
+                            histogram.getTotalNanos() / 1e6, histogram.getPercentileNanos(50) / 1e6,
+                            histogram.getPercentileNanos(99) / 1e6, histogram.getMaxNanos() / 1e6));
+        }
+        if (sorted.isEmpty()) {
+            line.append(" no calls");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Stops the periodic log line. Called when the application stops.
+     */
+    public synchronized void shutdown() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    private synchronized void startLogging() {
+        if (logger != null) {
+            return;
+        }
+        int minutes = DEFAULT_LOG_MINUTES;
+        String value = PropertyManager.getProperty("ManagerTimingsLogMinutes");
+        if (value != null) {
+            try {
+                minutes = Integer.parseInt(value.trim());
+            } catch (NumberFormatException ex) {
+                WebErrorLogger.log(Level.WARNING, "ManagerTimingsLogMinutes is not a number: " + value);
+            }
+        }
+        if (minutes <= 0) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ManagerTimings");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> WebErrorLogger.log(Level.INFO, summarize(LOGGED_METHODS)),
+                minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    private MethodStatistics statisticsFor(String name) {
+        MethodStatistics method = statistics.get(name);
+        return method != null ? method : statistics.computeIfAbsent(name, MethodStatistics::new);
+    }
+
+    /**
+     * The statistics of one method of a manager interface.
+     */
+    public static final class MethodStatistics {
+
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private MethodStatistics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return The interface and method with its parameter types, such as
+         * <code>CustomerManager.getAllCustomers()</code>.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of calls.
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * @return The number of calls that threw an exception or logged a
+         * <code>SEVERE</code> message.
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return The number of rows the calls returned.
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @return The time the calls took.
+         */
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        private void reset() {
+            calls.reset();
+            errors.reset();
+            rows.reset();
+            histogram.reset();
+        }
+    }
+
+    private static final class TimingHandler implements InvocationHandler {
+
+        private final ManagerTimings timings;
+        private final String interfaceName;
+        private final Object manager;
+        private final Map<Method, MethodStatistics> byMethod = new ConcurrentHashMap<>();
+
+        TimingHandler(ManagerTimings timings, String interfaceName, Object manager) {
+            this.timings = timings;
+            this.interfaceName = interfaceName;
+            this.manager = manager;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                // The proxy is equal only to itself, as the managers are
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return method.invoke(manager, args);
+                }
+            }
+            MethodStatistics statistics = byMethod.get(method);
+            if (statistics == null) {
+                statistics = byMethod.computeIfAbsent(method,
+                        m -> timings.statisticsFor(signatureOf(m)));
+            }
+            LongAdder rows = statistics.rows;
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i] instanceof Consumer) {
+                        Consumer<Object> action = (Consumer<Object>) args[i];
+                        args[i] = (Consumer<Object>) row -> {
+                            rows.increment();
+                            action.accept(row);
+                        };
+                    }
+                }
+            }
+            int logged = WebErrorLogger.getSevereCount();
+            boolean failed = true;
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(manager, args);
+                rows.add(rowsIn(result));
+                failed = WebErrorLogger.getSevereCount() != logged;
+                return result;
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            } finally {
+                if (failed) {
+                    statistics.errors.increment();
+                }
+                statistics.calls.increment();
+                statistics.histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        // Keyed by the parameter types too, so overloads are kept apart
+        private String signatureOf(Method method) {
+            StringBuilder signature = new StringBuilder(interfaceName).append('.')
+                    .append(method.getName()).append('(');
+            Class<?>[] parameters = method.getParameterTypes();
+            for (int i = 0; i < parameters.length; i++) {
+                signature.append(i == 0 ? "" : ", ").append(parameters[i].getSimpleName());
+            }
+            return signature.append(')').toString();
+        }
+
+        private static long rowsIn(Object result) {
+            if (result instanceof Collection) {
+                return ((Collection<?>) result).size();
+            }
+            if (result instanceof Page) {
+                return ((Page<?>) result).getItems().size();
+            }
+            return result == null || result instanceof Boolean ? 0 : 1;
+        }
+    }
+}
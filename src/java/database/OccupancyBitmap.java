@@ -0,0 +1,633 @@
+package database;
+
+import common.AssignedSite;
+import common.Campsite;
+import common.YearlyInformation;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A campsite by night occupancy matrix for one season. Every campsite has a
+ * <code>long[]</code> bitset with one bit per night from the opening date of
+ * the season up to (but not including) the closing date. A bit is set when an
+ * <code>AssignedSite</code> holds the campsite for that night.
+ *
+ * The night of an assigned site is the date it starts on, so a site that
+ * arrives on June 1 and departs on June 3 holds the nights of June 1 and
+ * June 2.
+ *
+ * The bitmap listens to the <code>AvailabilityIndex</code>, so it is updated
+ * for just the affected nights whenever an assigned site is added, updated or
+ * deleted.
+ *
+ * Sample Usage:
+ * <pre>
+ * OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+ * bitmap.load(yearlyInformation, campsiteManager.getAllCampsites());
+ * Collection&lt;Integer&gt; free = bitmap.getFreeCampsiteIds(firstNight, departureDate);
+ * </pre>
+ */
+public class OccupancyBitmap implements AvailabilityIndex.Listener {
+
+    private static OccupancyBitmap bitmap = null;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, long[]> rows = new HashMap<>();
+    private volatile LocalDate openingDate = null;
+    private int numberOfNights = 0;
+    private int numberOfWords = 0;
+
+    /**
+     * Gets the shared <code>OccupancyBitmap</code> for this application. The
+     * bitmap registers itself with the shared <code>AvailabilityIndex</code>.
+     *
+     * @return The <code>OccupancyBitmap</code> object.
+     */
+    public static synchronized OccupancyBitmap getInstance() {
+        if (bitmap == null) {
+            bitmap = new OccupancyBitmap();
+            AvailabilityIndex.getInstance().addListener(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Sets the season and the campsites of this bitmap and fills it from the
+     * <code>AvailabilityIndex</code>.
+     *
+     * @param yearlyInformation The season to track. Its opening and closing
+     * dates bound the bitmap.
+     * @param campsites Every <code>Campsite</code> in the campground.
+     */
+    public void load(YearlyInformation yearlyInformation, Collection<Campsite> campsites) {
+        if (yearlyInformation == null || yearlyInformation.getOpeningDate() == null
+                || yearlyInformation.getClosingDate() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            openingDate = yearlyInformation.getOpeningDate();
+            numberOfNights = (int) Math.max(0, ChronoUnit.DAYS.between(openingDate,
+                    yearlyInformation.getClosingDate()));
+            numberOfWords = (numberOfNights + 63) / 64;
+            rows.clear();
+            for (Campsite campsite : campsites) {
+                rows.put(campsite.getCampsiteId(), new long[numberOfWords]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        AvailabilityIndex.getInstance().refresh(this);
+    }
+
+    /**
+     * Returns true once the bitmap has a season and the
+     * <code>AvailabilityIndex</code> it is filled from has been loaded.
+     *
+     * @return True if the bitmap has been loaded.
+     */
+    public boolean isLoaded() {
+        return openingDate != null && AvailabilityIndex.getInstance().isLoaded();
+    }
+
+    /**
+     * Gets the opening date of the season this bitmap tracks.
+     *
+     * @return The first night of the season, or null if not loaded.
+     */
+    public LocalDate getOpeningDate() {
+        return openingDate;
+    }
+
+    /**
+     * Gets the date after the last night of the season this bitmap tracks.
+     *
+     * @return The closing date of the season, or null if not loaded.
+     */
+    public LocalDate getClosingDate() {
+        return openingDate == null ? null : openingDate.plusDays(numberOfNights);
+    }
+
+    /**
+     * Returns true if the given nights are inside the season of this bitmap.
+     *
+     * @param firstNight The first night.
+     * @param departureDate The date after the last night.
+     * @return True if every night is inside the season.
+     */
+    public boolean covers(LocalDate firstNight, LocalDate departureDate) {
+        return isLoaded() && !firstNight.isBefore(openingDate)
+                && !departureDate.isAfter(getClosingDate());
+    }
+
+    /**
+     * Adds an empty row for a new campsite.
+     *
+     * @param campsiteId The id of the campsite that was added.
+     */
+    public void addCampsite(int campsiteId) {
+        lock.writeLock().lock();
+        try {
+            if (openingDate != null && !rows.containsKey(campsiteId)) {
+                rows.put(campsiteId, new long[numberOfWords]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the row of a deleted campsite.
+     *
+     * @param campsiteId The id of the campsite that was deleted.
+     */
+    public void removeCampsite(int campsiteId) {
+        lock.writeLock().lock();
+        try {
+            rows.remove(campsiteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the campsites that are free for every night in
+     * [firstNight, departureDate). Nights outside the season are ignored.
+     *
+     * @param firstNight The first night that must be free.
+     * @param departureDate The date after the last night that must be free.
+     * @return The ids of the free campsites, in ascending order.
+     */
+    public Collection<Integer> getFreeCampsiteIds(LocalDate firstNight, LocalDate departureDate) {
+        Collection<Integer> free = new TreeSet<>();
+        lock.readLock().lock();
+        try {
+            int from = toNight(firstNight);
+            int to = toNight(departureDate);
+            for (Map.Entry<Integer, long[]> row : rows.entrySet()) {
+                if (isClear(row.getValue(), from, to)) {
+                    free.add(row.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return free;
+    }
+
+    /**
+     * Returns true if the campsite is free for every night in
+     * [firstNight, departureDate).
+     *
+     * @param campsiteId The id of the campsite.
+     * @param firstNight The first night that must be free.
+     * @param departureDate The date after the last night that must be free.
+     * @return True if the campsite is free for the whole range.
+     */
+    public boolean isFree(int campsiteId, LocalDate firstNight, LocalDate departureDate) {
+        lock.readLock().lock();
+        try {
+            long[] row = rows.get(campsiteId);
+            return row == null || isClear(row, toNight(firstNight), toNight(departureDate));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns how many campsites are free on each night in
+     * [firstNight, departureDate).
+     *
+     * @param firstNight The first night to count.
+     * @param departureDate The date after the last night to count.
+     * @return The number of free campsites, indexed by night from firstNight.
+     */
+    public int[] getFreeCountPerNight(LocalDate firstNight, LocalDate departureDate) {
+        int length = (int) Math.max(0, ChronoUnit.DAYS.between(firstNight, departureDate));
+        int[] free = new int[length];
+        lock.readLock().lock();
+        try {
+            if (openingDate == null) {
+                return free;
+            }
+            int offset = (int) ChronoUnit.DAYS.between(openingDate, firstNight);
+            int from = clamp(offset);
+            int to = clamp(offset + length);
+            for (int night = from; night < to; night++) {
+                free[night - offset] = rows.size();
+            }
+            for (long[] row : rows.values()) {
+                for (int word = from >>> 6; word < numberOfWords && word << 6 < to; word++) {
+                    long bits = row[word] & mask(word, from, to);
+                    while (bits != 0) {
+                        int night = (word << 6) + Long.numberOfTrailingZeros(bits);
+                        free[night - offset]--;
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return free;
+    }
+
+    /**
+     * Counts the free nights right before and right after a stay on a
+     * campsite. The season's opening and closing count as occupied, so a
+     * stay that starts on opening night has no gap before it.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param firstNight The first night of the stay.
+     * @param departureDate The date after the last night of the stay.
+     * @param max Stop counting after this many free nights.
+     * @return The free nights before and after the stay, each at most max.
+     */
+    public int[] getGaps(int campsiteId, LocalDate firstNight, LocalDate departureDate, int max) {
+        lock.readLock().lock();
+        try {
+            long[] row = rows.get(campsiteId);
+            return row == null ? new int[]{max, max}
+                    : gaps(row, toNight(firstNight), toNight(departureDate), max);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the gaps around a stay for each of the given campsites that is
+     * free for the whole stay, under one read lock.
+     *
+     * @param campsiteIds The ids of the campsites.
+     * @param firstNight The first night of the stay.
+     * @param departureDate The date after the last night of the stay.
+     * @param max Stop counting after this many free nights.
+     * @return For each campsite, in the same order, the free nights before
+     * and after the stay, or null if the campsite is not free.
+     */
+    public int[][] getFreeGaps(int[] campsiteIds, LocalDate firstNight, LocalDate departureDate, int max) {
+        int[][] gaps = new int[campsiteIds.length][];
+        lock.readLock().lock();
+        try {
+            int from = toNight(firstNight);
+            int to = toNight(departureDate);
+            for (int i = 0; i < campsiteIds.length; i++) {
+                long[] row = rows.get(campsiteIds[i]);
+                if (row == null) {
+                    gaps[i] = new int[]{max, max};
+                } else if (isClear(row, from, to)) {
+                    gaps[i] = gaps(row, from, to, max);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return gaps;
+    }
+
+    private int[] gaps(long[] row, int from, int to, int max) {
+        int before = 0;
+        for (int night = from - 1; before < max && night >= 0 && !isSet(row, night); night--) {
+            before++;
+        }
+        int after = 0;
+        for (int night = to; after < max && night < numberOfNights && !isSet(row, night); night++) {
+            after++;
+        }
+        return new int[]{before, after};
+    }
+
+    /**
+     * Finds the first run of free nights for a campsite that starts on or
+     * after the given date.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param from The earliest first night of the window.
+     * @param nights The number of nights needed.
+     * @return The first night of the window, or null if the campsite has no
+     * such window before the season closes.
+     */
+    public LocalDate getFirstFreeWindow(int campsiteId, LocalDate from, int nights) {
+        lock.readLock().lock();
+        try {
+            long[] row = rows.get(campsiteId);
+            if (row == null) {
+                return null;
+            }
+            int night = findFreeWindow(row, toNight(from), nights);
+            return night < 0 ? null : openingDate.plusDays(night);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the first run of free nights for every campsite that starts on or
+     * after the given date.
+     *
+     * @param from The earliest first night of the window.
+     * @param nights The number of nights needed.
+     * @return The first night of the window for each campsite that has one,
+     * ordered by that date.
+     */
+    public Map<Integer, LocalDate> getFirstFreeWindows(LocalDate from, int nights) {
+        final Map<Integer, Integer> found = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int start = toNight(from);
+            for (Map.Entry<Integer, long[]> row : rows.entrySet()) {
+                int night = findFreeWindow(row.getValue(), start, nights);
+                if (night >= 0) {
+                    found.put(row.getKey(), night);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        ArrayList<Map.Entry<Integer, Integer>> ordered = new ArrayList<>(found.entrySet());
+        ordered.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? a.getKey().compareTo(b.getKey()) : a.getValue().compareTo(b.getValue()));
+        Map<Integer, LocalDate> windows = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> entry : ordered) {
+            windows.put(entry.getKey(), openingDate.plusDays(entry.getValue()));
+        }
+        return windows;
+    }
+
+    @Override
+    public void indexCleared() {
+        lock.writeLock().lock();
+        try {
+            for (long[] row : rows.values()) {
+                Arrays.fill(row, 0L);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void assignmentsChanged(int campsiteId, LocalDateTime startDate,
+            LocalDateTime endDate, Collection<AssignedSite> current) {
+        lock.writeLock().lock();
+        try {
+            long[] row = rows.get(campsiteId);
+            if (row == null) {
+                return;
+            }
+            int from = toNight(startDate);
+            int to = toNight(endDate);
+            // Every assigned site that holds one of these nights also overlaps
+            // the changed date range, so current has all of them.
+            setRange(row, from, to, false);
+            for (AssignedSite assignedSite : current) {
+                int first = Math.max(from, toNight(assignedSite.getArrivalDate()));
+                int last = Math.min(to, toNight(assignedSite.getDepartureDate()));
+                setRange(row, first, last, true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int toNight(LocalDateTime dateTime) {
+        if (dateTime.equals(LocalDateTime.MIN)) {
+            return 0;
+        }
+        if (dateTime.equals(LocalDateTime.MAX)) {
+            return numberOfNights;
+        }
+        return toNight(dateTime.toLocalDate());
+    }
+
+    private int toNight(LocalDate date) {
+        if (openingDate == null || date.isBefore(openingDate)) {
+            return 0;
+        }
+        return clamp(ChronoUnit.DAYS.between(openingDate, date));
+    }
+
+    private int clamp(long night) {
+        return (int) Math.max(0, Math.min(numberOfNights, night));
+    }
+
+    /**
+     * Returns the bits of a word that fall inside [from, to).
+     */
+    private static long mask(int word, int from, int to) {
+        int low = word << 6;
+        long mask = -1L;
+        if (from > low) {
+            mask &= -1L << (from - low);
+        }
+        if (to < low + 64) {
+            mask &= (1L << (to - low)) - 1;
+        }
+        return mask;
+    }
+
+    private static boolean isSet(long[] row, int night) {
+        return (row[night >>> 6] & (1L << night)) != 0;
+    }
+
+    private boolean isClear(long[] row, int from, int to) {
+        for (int word = from >>> 6; word < numberOfWords && word << 6 < to; word++) {
+            if ((row[word] & mask(word, from, to)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setRange(long[] row, int from, int to, boolean value) {
+        for (int word = from >>> 6; word < numberOfWords && word << 6 < to; word++) {
+            if (value) {
+                row[word] |= mask(word, from, to);
+            } else {
+                row[word] &= ~mask(word, from, to);
+            }
+        }
+    }
+
+    private int nextSetBit(long[] row, int from) {
+        if (from >= numberOfNights) {
+            return numberOfNights;
+        }
+        int word = from >>> 6;
+        long bits = row[word] & (-1L << (from & 63));
+        while (bits == 0) {
+            if (++word == numberOfWords) {
+                return numberOfNights;
+            }
+            bits = row[word];
+        }
+        return Math.min(numberOfNights, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    private int nextClearBit(long[] row, int from) {
+        if (from >= numberOfNights) {
+            return numberOfNights;
+        }
+        int word = from >>> 6;
+        long bits = ~row[word] & (-1L << (from & 63));
+        while (bits == 0) {
+            if (++word == numberOfWords) {
+                return numberOfNights;
+            }
+            bits = ~row[word];
+        }
+        return Math.min(numberOfNights, (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    private int findFreeWindow(long[] row, int from, int nights) {
+        int start = nextClearBit(row, from);
+        while (start < numberOfNights) {
+            int end = nextSetBit(row, start);
+            if (end - start >= nights) {
+                return start;
+            }
+            start = nextClearBit(row, end);
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the bitmap against the interval index on 500 generated
+     * campsites and 50,000 generated assigned sites in one season.
+     *
+     * Given a property file, it then compares the MySQL query against the
+     * bitmap on the campsites and assigned sites of the configured database,
+     * with the bitmap spanning every season the database holds. Both sides of
+     * that comparison use the same data, but it is not the generated data, so
+     * those numbers can not be compared with the ones above.
+     *
+     * @param args An optional path to the General.properties file.
+     */
+    public static void main(String[] args) {
+        final int sites = 500;
+        final int assignments = 50000;
+        final int queries = 1000;
+        LocalDate opening = LocalDate.of(2021, 5, 1);
+        YearlyInformation season = new YearlyInformation();
+        season.setOpeningDate(opening);
+        season.setClosingDate(LocalDate.of(2021, 10, 15));
+        int seasonNights = (int) ChronoUnit.DAYS.between(opening, season.getClosingDate());
+
+        Random random = new Random(42);
+        Collection<Campsite> campsites = new ArrayList<>();
+        for (int i = 1; i <= sites; i++) {
+            Campsite campsite = new Campsite();
+            campsite.setCampsiteId(i);
+            campsites.add(campsite);
+        }
+        Collection<AssignedSite> assignedSites = new ArrayList<>();
+        for (int i = 1; i <= assignments; i++) {
+            LocalDateTime arrival = opening.plusDays(random.nextInt(seasonNights)).atTime(14, 0);
+            LocalDateTime departure = arrival.plusDays(1 + random.nextInt(3)).withHour(9);
+            assignedSites.add(new AssignedSite(i, i, 1, 1 + random.nextInt(sites), false,
+                    null, false, arrival, departure));
+        }
+
+        long time = System.nanoTime();
+        AvailabilityIndex.getInstance().load(assignedSites);
+        System.out.println("Interval index load: " + (System.nanoTime() - time) / 1000000 + " ms");
+        time = System.nanoTime();
+        OccupancyBitmap occupancy = OccupancyBitmap.getInstance();
+        occupancy.load(season, campsites);
+        System.out.println("Bitmap load: " + (System.nanoTime() - time) / 1000000 + " ms");
+
+        LocalDate[] starts = new LocalDate[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = opening.plusDays(random.nextInt(seasonNights - 7));
+        }
+        long found = 0;
+        time = System.nanoTime();
+        for (LocalDate start : starts) {
+            found += occupancy.getFreeCampsiteIds(start, start.plusDays(3)).size();
+        }
+        System.out.println("Bitmap free sites: " + (System.nanoTime() - time) / queries / 1000
+                + " us per query (" + found / queries + " free on average)");
+        found = 0;
+        time = System.nanoTime();
+        for (LocalDate start : starts) {
+            found += sites - AvailabilityIndex.getInstance().getOccupiedCampsiteIds(
+                    start.atTime(14, 0), start.plusDays(3).atTime(9, 0)).size();
+        }
+        System.out.println("Interval index free sites: " + (System.nanoTime() - time) / queries / 1000
+                + " us per query (" + found / queries + " free on average)");
+        time = System.nanoTime();
+        for (LocalDate start : starts) {
+            occupancy.getFreeCountPerNight(start, start.plusDays(7));
+        }
+        System.out.println("Bitmap free count per night: " + (System.nanoTime() - time) / queries / 1000
+                + " us per query");
+        time = System.nanoTime();
+        for (LocalDate start : starts) {
+            occupancy.getFirstFreeWindows(start, 5);
+        }
+        System.out.println("Bitmap first free window: " + (System.nanoTime() - time) / queries / 1000
+                + " us per query");
+
+        if (args.length > 0) {
+            compareWithDatabase(args[0], random);
+        }
+    }
+
+    private static void compareWithDatabase(String propertyFilePath, Random random) {
+        final int queries = 100;
+        utilities.PropertyManager.configure(propertyFilePath);
+        utilities.PropertyManager.setProperty("UseDBPooling", "no");
+        AvailabilityIndex.getInstance().clear();
+        CampsiteManager campsiteManager = new mysql.CampsiteManager();
+        Collection<Campsite> campsites = campsiteManager.getAllCampsites();
+        Collection<AssignedSite> assignedSites = new mysql.AssignedSiteManager().getAllAssignedSites();
+        LocalDate first = null;
+        LocalDate last = null;
+        for (AssignedSite assignedSite : assignedSites) {
+            LocalDate arrival = assignedSite.getArrivalDate().toLocalDate();
+            LocalDate departure = assignedSite.getDepartureDate().toLocalDate();
+            first = first == null || arrival.isBefore(first) ? arrival : first;
+            last = last == null || departure.isAfter(last) ? departure : last;
+        }
+        if (first == null || ChronoUnit.DAYS.between(first, last) < 8) {
+            System.out.println("The database has too few assigned sites to compare with");
+            return;
+        }
+        System.out.println("Database: " + campsites.size() + " campsites, " + assignedSites.size()
+                + " assigned sites from " + first + " to " + last);
+        LocalDate[] starts = new LocalDate[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = first.plusDays(random.nextInt((int) ChronoUnit.DAYS.between(first, last) - 7));
+        }
+
+        long time = System.nanoTime();
+        for (LocalDate start : starts) {
+            campsiteManager.getUnassignedSitesByDateRange(start.atTime(14, 0), start.plusDays(3).atTime(9, 0));
+        }
+        System.out.println("MySQL getUnassignedSitesByDateRange: "
+                + (System.nanoTime() - time) / queries / 1000 + " us per query");
+
+        YearlyInformation seasons = new YearlyInformation();
+        seasons.setOpeningDate(first);
+        seasons.setClosingDate(last);
+        AvailabilityIndex.getInstance().load(assignedSites);
+        OccupancyBitmap occupancy = OccupancyBitmap.getInstance();
+        occupancy.load(seasons, campsites);
+        time = System.nanoTime();
+        for (LocalDate start : starts) {
+            occupancy.getFreeCampsiteIds(start, start.plusDays(3));
+        }
+        System.out.println("Bitmap free sites on the same data: "
+                + (System.nanoTime() - time) / queries / 1000 + " us per query");
+    }
+}
@@ -0,0 +1,203 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a list that is read a page at a time, in a fixed order, by
+ * the <code>get...Page</code> methods of the managers.
+ *
+ * A page does not know its number. Instead it carries a cursor that names
+ * the last row it holds, and the next page is the rows that come after that
+ * row in the same order. Because the next page starts from a key instead of
+ * an offset, reading page 500 costs the same as reading page 1, and rows
+ * added or deleted between requests never shift a row onto two pages.
+ *
+ * Sample Usage:
+ * <pre>
+ * Page&lt;Reservation&gt; page = reservationManager.getReservationPage(null, 50,
+ *         ReservationManager.Sort.ARRIVAL_DATE);
+ * while (page != null) {
+ *     show(page.getItems());
+ *     page = page.hasNext() ? reservationManager.getReservationPage(
+ *             page.getNextCursor(), 50, ReservationManager.Sort.ARRIVAL_DATE) : null;
+ * }
+ * </pre>
+ *
+ * The cursor is an opaque, URL safe string and is only meaningful to the
+ * method, and the sort order, that returned it.
+ *
+ * @param <T> The type of the items on the page.
+ */
+public final class Page<T> {
+
+    /**
+     * The number of items on a page when the request does not ask for one.
+     */
+    public static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * The largest number of items a page may hold.
+     */
+    public static final int MAX_LIMIT = 500;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Creates a page.
+     *
+     * @param items The items on the page, in order.
+     * @param nextCursor The cursor of the page after this one, or null if
+     * this is the last page.
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return The items on the page, in order. The list cannot be changed.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return The cursor to pass back for the page after this one, or null
+     * if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return True if there is a page after this one.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Brings a requested page size into the range 1 to
+     * <code>MAX_LIMIT</code>, using <code>DEFAULT_LIMIT</code> when none was
+     * given.
+     *
+     * @param limit The requested number of items, or 0 or less for the
+     * default.
+     * @return The number of items to put on the page.
+     */
+    public static int clampLimit(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Parses a page size request parameter.
+     *
+     * @param parameter The parameter, which may be null or not a number.
+     * @return The number of items to put on the page.
+     */
+    public static int parseLimit(String parameter) {
+        if (parameter == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            return clampLimit(Integer.parseInt(parameter.trim()));
+        } catch (NumberFormatException ex) {
+            return DEFAULT_LIMIT;
+        }
+    }
+
+    /**
+     * Parses a sort order request parameter.
+     *
+     * @param parameter The name of the sort order, in any case, which may be
+     * null.
+     * @param type The enum of the sort orders.
+     * @param defaultSort The order to use when the parameter does not name
+     * one.
+     * @return The sort order.
+     */
+    public static <E extends Enum<E>> E parseSort(String parameter, Class<E> type, E defaultSort) {
+        if (parameter == null) {
+            return defaultSort;
+        }
+        for (E sort : type.getEnumConstants()) {
+            if (sort.name().equalsIgnoreCase(parameter.trim())) {
+                return sort;
+            }
+        }
+        return defaultSort;
+    }
+
+    /**
+     * Builds the cursor for the row a page ends on.
+     *
+     * @param sortValue The row's value in the column the list is sorted on,
+     * as text, or null if the list is sorted on the id alone or the value is
+     * null.
+     * @param id The row's id, which breaks ties between equal sort values.
+     * @return The cursor.
+     */
+    public static String encodeCursor(String sortValue, int id) {
+        String key = sortValue == null ? Integer.toString(id) : id + ":" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the id out of a cursor.
+     *
+     * @param cursor A cursor returned by <code>encodeCursor</code>.
+     * @return The id, or -1 if the cursor is null or was not made by
+     * <code>encodeCursor</code>.
+     */
+    public static int cursorId(String cursor) {
+        String key = decode(cursor);
+        if (key == null) {
+            return -1;
+        }
+        int colon = key.indexOf(':');
+        try {
+            return Integer.parseInt(colon < 0 ? key : key.substring(0, colon));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the sort value out of a cursor.
+     *
+     * @param cursor A cursor returned by <code>encodeCursor</code>.
+     * @return The sort value, or null if the cursor holds none.
+     */
+    public static String cursorValue(String cursor) {
+        String key = decode(cursor);
+        if (key == null || key.indexOf(':') < 0) {
+            return null;
+        }
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    private static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Page{items=" + items.size() + ", nextCursor=" + nextCursor + '}';
+    }
+}
@@ -4,6 +4,7 @@ import common.Reservation;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * An interface that specifies the allowable operations on reservations in
@@ -23,4 +24,44 @@ public interface ReservationManager {
             LocalDateTime endDate); 
     public Collection<Reservation> getAllReservationsWithFilter(ArrayList<String> filter);
     public Collection<Reservation> getAllReservations();
+
+    /**
+     * Passes the reservations that overlap the given dates to the action one
+     * at a time, as they are read, without collecting them first. Meant for
+     * reports and exports that cover many seasons.
+     *
+     * @param startDate The start of the range, or null for no lower bound.
+     * @param endDate The end of the range, or null for no upper bound.
+     * @param action Called once for each reservation, in order of arrival.
+     * @return True if every reservation was passed to the action; false if
+     * reading failed part way.
+     */
+    public boolean forEachReservation(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super Reservation> action);
+
+    /**
+     * The orders in which <code>getReservationPage</code> can list the
+     * reservations. Reservations with equal values are listed by id.
+     */
+    public enum Sort {
+        /** By id, which is the order the reservations were made in. */
+        ID,
+        /** By arrival date, earliest first. */
+        ARRIVAL_DATE,
+        /** By arrival date, latest first. */
+        ARRIVAL_DATE_DESCENDING
+    }
+
+    /**
+     * Returns one page of the reservations.
+     *
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most reservations to return; see
+     * <code>Page.clampLimit</code>.
+     * @param sort The order to list the reservations in. The cursor must come
+     * from a page in the same order.
+     * @return The page, or null if the reservations could not be read.
+     */
+    public Page<Reservation> getReservationPage(String after, int limit, Sort sort);
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package database;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts rows of a <code>ResultSet</code> to objects, reading the columns
+ * by index instead of by name.
+ *
+ * A mapper is created with the names of the columns it reads. The first
+ * time it sees a result set with a given set of column labels it looks the
+ * names up once and caches the indexes for that shape, so every following
+ * row, and every later query that returns the same columns, is read
+ * without any name lookups. Subclasses read the row with the index array,
+ * where <code>column[i]</code> is the index of the i-th name given to the
+ * constructor.
+ *
+ * Mappers are thread safe and meant to be kept in static fields; see
+ * <code>SQLUtility</code>.
+ *
+ * @param <T> The type of object a row is converted to.
+ */
+public abstract class RowMapper<T> {
+
+    private static final DateTimeFormatter SQL_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String[] columnNames;
+    // Column labels of a result set, joined, to the indexes of columnNames
+    private final ConcurrentHashMap<String, int[]> shapes = new ConcurrentHashMap<>();
+    // The result set each thread read last, so a loop over its rows only
+    // resolves the indexes once
+    private final ThreadLocal<Binding> lastResultSet = new ThreadLocal<>();
+
+    /**
+     * Creates a mapper that reads the given columns.
+     *
+     * @param columnNames The column labels read by <code>map</code>, in the
+     * order of the index array it is given.
+     */
+    protected RowMapper(String... columnNames) {
+        this.columnNames = columnNames.clone();
+    }
+
+    /**
+     * Converts the current row of the result set.
+     *
+     * @param rs A result set positioned on a row.
+     * @return The object for the row.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public final T map(ResultSet rs) throws SQLException {
+        return map(rs, columnsOf(rs));
+    }
+
+    /**
+     * Converts the current row and all rows after it.
+     *
+     * @param rs A result set positioned on its first row to convert.
+     * @return The objects for the rows.
+     * @throws SQLException If a column is missing or cannot be read.
+     */
+    public final List<T> mapRemaining(ResultSet rs) throws SQLException {
+        int[] column = columnsOf(rs);
+        List<T> rows = new ArrayList<>();
+        do {
+            rows.add(map(rs, column));
+        } while (rs.next());
+        return rows;
+    }
+
+    /**
+     * Converts the current row.
+     *
+     * @param rs A result set positioned on a row.
+     * @param column The index of each column, in the order of the names given
+     * to the constructor.
+     * @return The object for the row.
+     * @throws SQLException If a column cannot be read.
+     */
+    protected abstract T map(ResultSet rs, int[] column) throws SQLException;
+
+    /**
+     * Reads a date and time column that may be stored as a
+     * <code>DATETIME</code> or as text, either in ISO form or in the form
+     * MySQL prints.
+     *
+     * @return The date and time, or null if the column is null.
+     */
+    protected static LocalDateTime getLocalDateTime(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        String text = value.toString();
+        if (text.length() > 10 && text.charAt(10) == ' ') {
+            return LocalDateTime.parse(text.length() > 19 ? text.substring(0, 19) : text, SQL_DATE_TIME);
+        }
+        return LocalDateTime.parse(text);
+    }
+
+    private int[] columnsOf(ResultSet rs) throws SQLException {
+        Binding binding = lastResultSet.get();
+        if (binding != null && binding.resultSet.get() == rs) {
+            return binding.column;
+        }
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        String[] labels = new String[count];
+        StringBuilder shape = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            shape.append(labels[i]).append('\u0000');
+        }
+        int[] column = shapes.get(shape.toString());
+        if (column == null) {
+            column = resolve(labels);
+            shapes.putIfAbsent(shape.toString(), column);
+        }
+        lastResultSet.set(new Binding(rs, column));
+        return column;
+    }
+
+    private int[] resolve(String[] labels) throws SQLException {
+        int[] column = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            for (int j = 0; j < labels.length && column[i] == 0; j++) {
+                if (columnNames[i].equalsIgnoreCase(labels[j])) {
+                    column[i] = j + 1;
+                }
+            }
+            if (column[i] == 0) {
+                throw new SQLException("Column '" + columnNames[i] + "' not found.");
+            }
+        }
+        return column;
+    }
+
+    private static class Binding {
+
+        private final WeakReference<ResultSet> resultSet;
+        private final int[] column;
+
+        private Binding(ResultSet resultSet, int[] column) {
+            this.resultSet = new WeakReference<>(resultSet);
+            this.column = column;
+        }
+    }
+}
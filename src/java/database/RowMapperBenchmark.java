@@ -0,0 +1,215 @@
+package database;
+
+import common.Customer;
+import common.CustomerType;
+import common.RVType;
+import common.Reservation;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Compares the index based <code>RowMapper</code>s in <code>SQLUtility</code>
+ * with reading every column by name, as the converters did before, on
+ * 100,000 customer rows and 100,000 reservation rows.
+ *
+ * The rows are held in a <code>CachedRowSet</code> so the comparison needs
+ * no database and measures only the conversion. Each load is run a number of
+ * times to warm up the JIT before it is timed.
+ *
+ * Usage: java database.RowMapperBenchmark [rows]
+ */
+class RowMapperBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    private static final String[] CUSTOMER_COLUMNS = {"customer_id", "customer_information_id",
+        "customer_type", "customer_name", "first_name", "last_name", "spouse_first_name",
+        "spouse_last_name", "primary_phone_number", "mobile_phone", "spouse_phone",
+        "address_line_1", "address_line_2", "town", "state", "zip", "email_address",
+        "spouse_email_address", "rv_type", "rv_length", "number_of_slide_outs", "notes",
+        "flagged", "group_id"};
+
+    private static final String[] RESERVATION_COLUMNS = {"reservation_id", "customer_id",
+        "arrival_date", "departure_date", "number_of_nights", "number_of_sites_requested",
+        "number_of_sites_assigned", "date_reservation_made", "deposit", "notes"};
+
+    private interface Load {
+
+        List<?> run(ResultSet rs) throws SQLException;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        CachedRowSet customers = customerRows(rows);
+        CachedRowSet reservations = reservationRows(rows);
+
+        compare("getAllCustomers()", customers, rows,
+                rs -> load(rs, RowMapperBenchmark::customerByName),
+                rs -> load(rs, SQLUtility::convertResultSetToCustomer));
+        compare("getAllReservations()", reservations, rows,
+                rs -> load(rs, RowMapperBenchmark::reservationByName),
+                rs -> load(rs, SQLUtility::convertResultSetToReservation));
+    }
+
+    private interface Converter<T> {
+
+        T convert(ResultSet rs) throws SQLException;
+    }
+
+    // The loop the managers run: one converter call per row
+    private static <T> List<T> load(ResultSet rs, Converter<T> converter) throws SQLException {
+        List<T> list = new ArrayList<>();
+        rs.beforeFirst();
+        while (rs.next()) {
+            list.add(converter.convert(rs));
+        }
+        return list;
+    }
+
+    private static void compare(String name, ResultSet rs, int rows, Load byName, Load byIndex)
+            throws SQLException {
+        double nameMillis = measure(rs, byName);
+        double indexMillis = measure(rs, byIndex);
+        System.out.printf("%-22s %,d rows  by name %8.1f ms (%5.0f ns/row)  by index %8.1f ms (%5.0f ns/row)  %.1fx%n",
+                name, rows, nameMillis, nameMillis * 1e6 / rows, indexMillis, indexMillis * 1e6 / rows,
+                nameMillis / indexMillis);
+    }
+
+    private static double measure(ResultSet rs, Load load) throws SQLException {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += load.run(rs).size();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += load.run(rs).size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 0) {
+            System.out.println("no rows");
+        }
+        return best / 1e6;
+    }
+
+    private static CachedRowSet customerRows(int rows) throws SQLException {
+        int[] types = new int[CUSTOMER_COLUMNS.length];
+        Arrays.fill(types, Types.VARCHAR);
+        types[0] = types[1] = types[19] = types[20] = types[23] = Types.INTEGER;
+        types[22] = Types.BIT;
+        CachedRowSet rs = emptyRowSet(CUSTOMER_COLUMNS, types);
+        for (int row = 1; row <= rows; row++) {
+            rs.moveToInsertRow();
+            for (int column = 1; column <= CUSTOMER_COLUMNS.length; column++) {
+                if (types[column - 1] == Types.VARCHAR) {
+                    rs.updateString(column, CUSTOMER_COLUMNS[column - 1] + row);
+                }
+            }
+            rs.updateInt(1, row);
+            rs.updateInt(2, row);
+            rs.updateString(3, CustomerType.values()[row % CustomerType.values().length].toString());
+            rs.updateString(19, RVType.values()[row % RVType.values().length].toString());
+            rs.updateInt(20, 20 + row % 25);
+            rs.updateInt(21, row % 3);
+            rs.updateBoolean(23, row % 50 == 0);
+            rs.updateInt(24, row % 100);
+            rs.insertRow();
+        }
+        rs.moveToCurrentRow();
+        return rs;
+    }
+
+    private static CachedRowSet reservationRows(int rows) throws SQLException {
+        CachedRowSet rs = emptyRowSet(RESERVATION_COLUMNS, new int[]{Types.INTEGER, Types.INTEGER,
+            Types.TIMESTAMP, Types.TIMESTAMP, Types.INTEGER, Types.INTEGER, Types.INTEGER,
+            Types.TIMESTAMP, Types.DECIMAL, Types.VARCHAR});
+        LocalDateTime opening = LocalDateTime.of(2024, 5, 1, 14, 0);
+        for (int row = 1; row <= rows; row++) {
+            LocalDateTime arrival = opening.plusDays(row % 150);
+            rs.moveToInsertRow();
+            rs.updateInt(1, row);
+            rs.updateInt(2, row % 5000);
+            rs.updateTimestamp(3, Timestamp.valueOf(arrival));
+            rs.updateTimestamp(4, Timestamp.valueOf(arrival.plusDays(3).withHour(11)));
+            rs.updateInt(5, 3);
+            rs.updateInt(6, 1);
+            rs.updateInt(7, 1);
+            rs.updateTimestamp(8, Timestamp.valueOf(opening.minusDays(30)));
+            rs.updateBigDecimal(9, BigDecimal.valueOf(2500, 2));
+            rs.updateString(10, "notes" + row);
+            rs.insertRow();
+        }
+        rs.moveToCurrentRow();
+        return rs;
+    }
+
+    private static CachedRowSet emptyRowSet(String[] columns, int[] types) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            metaData.setColumnName(i + 1, columns[i]);
+            metaData.setColumnLabel(i + 1, columns[i]);
+            metaData.setColumnType(i + 1, types[i]);
+        }
+        CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+        rs.setMetaData(metaData);
+        return rs;
+    }
+
+    // The converters as they were before RowMapper, for comparison
+
+    private static Customer customerByName(ResultSet rs) throws SQLException {
+        Customer customer = new Customer();
+        customer.setCustomerId(rs.getInt("customer_id"));
+        customer.setCustomerInformationId(rs.getInt("customer_information_id"));
+        customer.setCustomerType(CustomerType.getCustomerType(rs.getString("customer_type")));
+        customer.setName(rs.getString("customer_name"));
+        customer.setFirstName(rs.getString("first_name"));
+        customer.setLastName(rs.getString("last_name"));
+        customer.setSpouseFirstName(rs.getString("spouse_first_name"));
+        customer.setSpouseLastName(rs.getString("spouse_last_name"));
+        customer.setPrimaryPhone(rs.getString("primary_phone_number"));
+        customer.setMobilePhone(rs.getString("mobile_phone"));
+        customer.setSpousePhone(rs.getString("spouse_phone"));
+        customer.setAddressLine1(rs.getString("address_line_1"));
+        customer.setAddressLine2(rs.getString("address_line_2"));
+        customer.setTown(rs.getString("town"));
+        customer.setState(rs.getString("state"));
+        customer.setZip(rs.getString("zip"));
+        customer.setEmailAddress(rs.getString("email_address"));
+        customer.setSpouseEmailAddress(rs.getString("spouse_email_address"));
+        customer.setRvType(RVType.getRVType(rs.getString("rv_type")));
+        customer.setRvLength(rs.getInt("rv_length"));
+        customer.setNumberOfSlideOuts(rs.getInt("number_of_slide_outs"));
+        customer.setNotes(rs.getString("notes"));
+        customer.setFlagged(rs.getBoolean("flagged"));
+        customer.setGroupId(rs.getInt("group_id"));
+        return customer;
+    }
+
+    private static Reservation reservationByName(ResultSet rs) throws SQLException {
+        Reservation reservation = new Reservation();
+        reservation.setReservationId(rs.getInt("reservation_id"));
+        reservation.setCustomerId(rs.getInt("customer_id"));
+        reservation.setArrivalDate(rs.getTimestamp("arrival_date").toLocalDateTime());
+        reservation.setDepartureDate(rs.getTimestamp("departure_date").toLocalDateTime());
+        reservation.setNumberOfNights(rs.getInt("number_of_nights"));
+        reservation.setNumberOfSitesRequested(rs.getInt("number_of_sites_requested"));
+        reservation.setNumberOfSitesAssigned(rs.getInt("number_of_sites_assigned"));
+        reservation.setDateReservationMade(rs.getTimestamp("date_reservation_made").toLocalDateTime());
+        reservation.setDeposit(rs.getBigDecimal("deposit"));
+        reservation.setNotes(rs.getString("notes"));
+        return reservation;
+    }
+}
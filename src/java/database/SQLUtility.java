@@ -16,231 +16,303 @@ import common.YearlyInformation;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
 
 /**
- * A utility class designed to convert result set entries to  
- * Java objects. 
- * 
+ * A utility class designed to convert result set entries to
+ * Java objects.
+ *
+ * Each conversion uses a <code>RowMapper</code>, which looks the column
+ * names up once per query shape and then reads every row by index.
+ *
  * @author Curt Jones (2018) Conor Smetana(2021)
  */
 public class SQLUtility {
 
+    static final RowMapper<User> USER_MAPPER = new RowMapper<User>("userNumber", "userPassword",
+            "loginName", "emailAddress", "firstName", "lastName", "userRole", "lastLoginTime",
+            "LastAttemptedLoginTime", "loginCount", "attemptedLoginCount", "locked", "salt") {
+        @Override
+        protected User map(ResultSet rs, int[] column) throws SQLException {
+            User user = new User();
+            user.setUserNumber(rs.getInt(column[0]));
+            user.setUserPassword(rs.getString(column[1]));
+            user.setLoginName(rs.getString(column[2]));
+            user.setEmailAddress(rs.getString(column[3]));
+            user.setFirstName(rs.getString(column[4]));
+            user.setLastName(rs.getString(column[5]));
+            user.setUserRole(UserRole.getUserRole(rs.getString(column[6])));
+            user.setLastLoginTime(getLocalDateTime(rs, column[7]));
+            LocalDateTime lastAttempt = getLocalDateTime(rs, column[8]);
+            user.setLastAttemptedLoginTime(lastAttempt == null ? LocalDateTime.now() : lastAttempt);
+            user.setLoginCount(rs.getInt(column[9]));
+            user.setAttemptedLoginCount(rs.getInt(column[10]));
+            user.setLocked(rs.getBoolean(column[11]));
+            user.setSalt(rs.getString(column[12]));
+            return user;
+        }
+    };
+
+    static final RowMapper<DatabaseProperty> DATABASE_PROPERTY_MAPPER = new RowMapper<DatabaseProperty>(
+            "propertyNumber", "propertyName", "propertyValue", "description", "previousValue", "defaultValue") {
+        @Override
+        protected DatabaseProperty map(ResultSet rs, int[] column) throws SQLException {
+            DatabaseProperty property = new DatabaseProperty();
+            property.setPropertyNumber(rs.getInt(column[0]));
+            property.setPropertyName(rs.getString(column[1]));
+            property.setPropertyValue(rs.getString(column[2]));
+            property.setDescription(rs.getString(column[3]));
+            property.setPreviousValue(rs.getString(column[4]));
+            property.setDefaultValue(rs.getString(column[5]));
+            return property;
+        }
+    };
+
+    static final RowMapper<ErrorLog> ERROR_LOG_MAPPER = new RowMapper<ErrorLog>(
+            "EVENT_ID", "EVENT_DATE", "LEVEL", "LOGGER", "MSG", "THROWABLE") {
+        @Override
+        protected ErrorLog map(ResultSet rs, int[] column) throws SQLException {
+            ErrorLog errorLog = new ErrorLog();
+            errorLog.setErrorLogID(rs.getInt(column[0]));
+            errorLog.setErrorLogDateTime(rs.getTimestamp(column[1]).toLocalDateTime());
+            errorLog.setErrLevel(rs.getString(column[2]));
+            errorLog.setLoggerName(rs.getString(column[3]));
+            errorLog.setErrorMessage(rs.getString(column[4]));
+            errorLog.setException(rs.getString(column[5]));
+            return errorLog;
+        }
+    };
+
+    static final RowMapper<Customer> CUSTOMER_MAPPER = new RowMapper<Customer>("customer_id",
+            "customer_information_id", "customer_type", "customer_name", "first_name", "last_name",
+            "spouse_first_name", "spouse_last_name", "primary_phone_number", "mobile_phone",
+            "spouse_phone", "address_line_1", "address_line_2", "town", "state", "zip",
+            "email_address", "spouse_email_address", "rv_type", "rv_length", "number_of_slide_outs",
+            "notes", "flagged", "group_id") {
+        @Override
+        protected Customer map(ResultSet rs, int[] column) throws SQLException {
+            Customer customer = new Customer();
+            customer.setCustomerId(rs.getInt(column[0]));
+            customer.setCustomerInformationId(rs.getInt(column[1]));
+            customer.setCustomerType(CustomerType.getCustomerType(rs.getString(column[2])));
+            customer.setName(rs.getString(column[3]));
+            customer.setFirstName(rs.getString(column[4]));
+            customer.setLastName(rs.getString(column[5]));
+            customer.setSpouseFirstName(rs.getString(column[6]));
+            customer.setSpouseLastName(rs.getString(column[7]));
+            customer.setPrimaryPhone(rs.getString(column[8]));
+            customer.setMobilePhone(rs.getString(column[9]));
+            customer.setSpousePhone(rs.getString(column[10]));
+            customer.setAddressLine1(rs.getString(column[11]));
+            customer.setAddressLine2(rs.getString(column[12]));
+            customer.setTown(rs.getString(column[13]));
+            customer.setState(rs.getString(column[14]));
+            customer.setZip(rs.getString(column[15]));
+            customer.setEmailAddress(rs.getString(column[16]));
+            customer.setSpouseEmailAddress(rs.getString(column[17]));
+            customer.setRvType(RVType.getRVType(rs.getString(column[18])));
+            customer.setRvLength(rs.getInt(column[19]));
+            customer.setNumberOfSlideOuts(rs.getInt(column[20]));
+            customer.setNotes(rs.getString(column[21]));
+            customer.setFlagged(rs.getBoolean(column[22]));
+            customer.setGroupId(rs.getInt(column[23]));
+            return customer;
+        }
+    };
+
+    static final RowMapper<Reservation> RESERVATION_MAPPER = new RowMapper<Reservation>("reservation_id",
+            "customer_id", "arrival_date", "departure_date", "number_of_nights",
+            "number_of_sites_requested", "number_of_sites_assigned", "date_reservation_made",
+            "deposit", "notes") {
+        @Override
+        protected Reservation map(ResultSet rs, int[] column) throws SQLException {
+            Reservation reservation = new Reservation();
+            reservation.setReservationId(rs.getInt(column[0]));
+            reservation.setCustomerId(rs.getInt(column[1]));
+            reservation.setArrivalDate(rs.getTimestamp(column[2]).toLocalDateTime());
+            reservation.setDepartureDate(rs.getTimestamp(column[3]).toLocalDateTime());
+            reservation.setNumberOfNights(rs.getInt(column[4]));
+            reservation.setNumberOfSitesRequested(rs.getInt(column[5]));
+            reservation.setNumberOfSitesAssigned(rs.getInt(column[6]));
+            reservation.setDateReservationMade(rs.getTimestamp(column[7]).toLocalDateTime());
+            reservation.setDeposit(rs.getBigDecimal(column[8]));
+            reservation.setNotes(rs.getString(column[9]));
+            return reservation;
+        }
+    };
+
+    static final RowMapper<Campsite> CAMPSITE_MAPPER = new RowMapper<Campsite>("campsite_id",
+            "campsite_name", "campsite_number", "campsite_section", "max_length", "width",
+            "accepts_slide_out", "pull_thru", "campsite_type", "notes") {
+        @Override
+        protected Campsite map(ResultSet rs, int[] column) throws SQLException {
+            Campsite campsite = new Campsite();
+            campsite.setCampsiteId(rs.getInt(column[0]));
+            campsite.setCampsiteName(rs.getString(column[1]));
+            campsite.setCampsiteNumber(rs.getInt(column[2]));
+            campsite.setCampsiteSection(rs.getString(column[3]).charAt(0));
+            campsite.setMaxLength(rs.getInt(column[4]));
+            campsite.setWidth(rs.getInt(column[5]));
+            campsite.setAcceptsSlideOut(rs.getBoolean(column[6]));
+            campsite.setPullThru(rs.getBoolean(column[7]));
+            campsite.setSiteType(SiteType.getSiteType(rs.getString(column[8])));
+            campsite.setNotes(rs.getString(column[9]));
+            // The image is not read with the campsite; see CampsiteManager.readCampsiteImage
+            campsite.setImageSource("image_source");
+            return campsite;
+        }
+    };
+
+    static final RowMapper<AssignedSite> ASSIGNED_SITE_MAPPER = new RowMapper<AssignedSite>(
+            "assigned_site_id", "reservation_id", "customer_id", "campsite_id", "lock_site",
+            "deposit", "checked_in", "arrival_date", "departure_date") {
+        @Override
+        protected AssignedSite map(ResultSet rs, int[] column) throws SQLException {
+            AssignedSite assignedSite = new AssignedSite();
+            assignedSite.setAssignedSiteId(rs.getInt(column[0]));
+            assignedSite.setReservationId(rs.getInt(column[1]));
+            assignedSite.setCustomerId(rs.getInt(column[2]));
+            assignedSite.setCampsiteId(rs.getInt(column[3]));
+            assignedSite.setLockSite(rs.getBoolean(column[4]));
+            assignedSite.setSiteDeposit(rs.getBigDecimal(column[5]));
+            assignedSite.setCheckIn(rs.getBoolean(column[6]));
+            assignedSite.setArrivalDate(getLocalDateTime(rs, column[7]));
+            assignedSite.setDepartureDate(getLocalDateTime(rs, column[8]));
+            return assignedSite;
+        }
+    };
+
+    static final RowMapper<WaitingList> WAITING_LIST_MAPPER = new RowMapper<WaitingList>(
+            "waiting_list_id", "customer_id", "date_of_request", "arrival_date", "departure_date",
+            "number_of_nights", "number_of_sites", "priority", "notes") {
+        @Override
+        protected WaitingList map(ResultSet rs, int[] column) throws SQLException {
+            WaitingList waitingList = new WaitingList();
+            waitingList.setWaitingListId(rs.getInt(column[0]));
+            waitingList.setCustomerId(rs.getInt(column[1]));
+            waitingList.setDateOfRequest(rs.getDate(column[2]).toLocalDate());
+            waitingList.setArrivalDate(rs.getTimestamp(column[3]).toLocalDateTime());
+            waitingList.setDepartureDate(rs.getTimestamp(column[4]).toLocalDateTime());
+            waitingList.setNumberOfNights((int) rs.getByte(column[5]));
+            waitingList.setNumberOfSites((int) rs.getByte(column[6]));
+            waitingList.setPriority(rs.getBoolean(column[7]));
+            waitingList.setNotes(rs.getString(column[8]));
+            return waitingList;
+        }
+    };
+
+    static final RowMapper<YearlyInformation> YEARLY_INFORMATION_MAPPER = new RowMapper<YearlyInformation>(
+            "current_year", "daily_rate", "weekly_rate", "monthly_rate", "seasonal_rate",
+            "opening_date", "closing_date", "seasonal_visitor_pass_rate", "nightly_visitor_fee",
+            "daily_visitor_fee", "early_check_in_fee_per_hour", "late_stay_fee_per_hour",
+            "nightly_cancellation_fee", "weekly_cancellation_fee", "monthly_cancellation_fee",
+            "electrical_rate_per_KWH") {
+        @Override
+        protected YearlyInformation map(ResultSet rs, int[] column) throws SQLException {
+            YearlyInformation yearlyInformation = new YearlyInformation();
+            yearlyInformation.setYear(rs.getInt(column[0]));
+            yearlyInformation.setDailyRate(rs.getBigDecimal(column[1]));
+            yearlyInformation.setWeeklyRate(rs.getBigDecimal(column[2]));
+            yearlyInformation.setMonthlyRate(rs.getBigDecimal(column[3]));
+            yearlyInformation.setSeasonalRate(rs.getBigDecimal(column[4]));
+            yearlyInformation.setOpeningDate(rs.getDate(column[5]).toLocalDate());
+            yearlyInformation.setClosingDate(rs.getDate(column[6]).toLocalDate());
+            yearlyInformation.setSeasonalVisitorPassRate(rs.getBigDecimal(column[7]));
+            yearlyInformation.setNightlyVisitorFee(rs.getBigDecimal(column[8]));
+            yearlyInformation.setDailyVisitorFee(rs.getBigDecimal(column[9]));
+            yearlyInformation.setEarlyCheckInFeePerHour(rs.getBigDecimal(column[10]));
+            yearlyInformation.setLateStayFeePerHour(rs.getBigDecimal(column[11]));
+            yearlyInformation.setNightlyCancellationFee(rs.getBigDecimal(column[12]));
+            yearlyInformation.setWeeklyCancellationFee(rs.getBigDecimal(column[13]));
+            yearlyInformation.setMonthlyCancellationFee(rs.getBigDecimal(column[14]));
+            yearlyInformation.setElectricalRatePerKWH(rs.getBigDecimal(column[15]));
+            return yearlyInformation;
+        }
+    };
+
     public static User convertResultSetToUser(ResultSet rs) {
-        User user = new User();
         try {
-            user.setUserNumber(rs.getInt("userNumber"));
-            user.setUserPassword(rs.getString("userPassword"));
-            user.setLoginName(rs.getString("loginName"));
-            user.setEmailAddress(rs.getString("emailAddress"));
-            user.setFirstName(rs.getString("firstName"));
-            user.setLastName(rs.getString("lastName"));
-            user.setUserRole(UserRole.getUserRole(rs.getString("userRole")));
-            LocalDateTime now = LocalDateTime.parse(rs.getString("lastLoginTime"));
-            user.setLastLoginTime(now);
-            if (rs.getString("LastAttemptedLoginTime") == null) {
-                user.setLastAttemptedLoginTime(LocalDateTime.now());
-            } else {
-                user.setLastAttemptedLoginTime(LocalDateTime.parse(rs.getString("LastAttemptedLoginTime")));
-            }
-            int loginCount = rs.getInt("loginCount");
-            user.setLoginCount(loginCount);
-            user.setAttemptedLoginCount(rs.getInt("attemptedLoginCount"));
-            user.setLocked(rs.getBoolean("locked"));
-            user.setSalt(rs.getString("salt"));
-
+            return USER_MAPPER.map(rs);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToUser()" + ex, ex);
             return null;
         }
-        return user;
     }
-    
+
     public static DatabaseProperty convertResultSetToDatabaseProperty(ResultSet rs) {
-        DatabaseProperty property = new DatabaseProperty();
         try {
-            property.setPropertyNumber(rs.getInt("propertyNumber"));
-            property.setPropertyName(rs.getString("propertyName"));
-            property.setPropertyValue(rs.getString("propertyValue"));
-            property.setDescription(rs.getString("description"));
-            property.setPreviousValue(rs.getString("previousValue"));
-            property.setDefaultValue(rs.getString("defaultValue"));
+            return DATABASE_PROPERTY_MAPPER.map(rs);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToDatabaseProperty. " + ex, ex);
             return null;
         }
-        return property;
     }
 
     public static ErrorLog convertResultSetToErrorLog(ResultSet rs) {
-         ErrorLog errorLog = new ErrorLog();
-         try {
-            errorLog.setErrorLogID(rs.getInt("EVENT_ID"));
-            //String date = rs.getString("EVENT_DATE");
-            //LocalDateTime time = LocalDateTime.parse(date);
-            errorLog.setErrorLogDateTime(rs.getTimestamp("EVENT_DATE").toLocalDateTime());
-            errorLog.setErrLevel(rs.getString("LEVEL"));
-            errorLog.setLoggerName(rs.getString("LOGGER"));
-            errorLog.setErrorMessage(rs.getString("MSG"));
-            errorLog.setException(rs.getString("THROWABLE"));
+        try {
+            return ERROR_LOG_MAPPER.map(rs);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToErrorLog(ResultSet rs). " + ex, ex);
             return null;
         }
-         
-         return errorLog;
     }
-    
+
     public static Customer convertResultSetToCustomer(ResultSet rs){
-        Customer customer = new Customer();
         try{
-            
-            customer.setCustomerId(rs.getInt("customer_id"));
-            customer.setCustomerInformationId(rs.getInt("customer_information_id"));
-            customer.setCustomerType(CustomerType.getCustomerType(rs.getString("customer_type")));
-            customer.setName(rs.getString("customer_name"));
-            customer.setFirstName(rs.getString("first_name"));
-            customer.setLastName(rs.getString("last_name"));
-            customer.setSpouseFirstName(rs.getString("spouse_first_name"));
-            customer.setSpouseLastName(rs.getString("spouse_last_name"));
-            customer.setPrimaryPhone(rs.getString("primary_phone_number"));
-            customer.setMobilePhone(rs.getString("mobile_phone"));
-            customer.setSpousePhone(rs.getString("spouse_phone"));
-            customer.setAddressLine1(rs.getString("address_line_1"));
-            customer.setAddressLine2(rs.getString("address_line_2"));
-            customer.setTown(rs.getString("town"));
-            customer.setState(rs.getString("state"));
-            customer.setZip(rs.getString("zip"));
-            customer.setEmailAddress(rs.getString("email_address"));
-            customer.setSpouseEmailAddress(rs.getString("spouse_email_address"));
-            customer.setRvType(RVType.getRVType(rs.getString("rv_type")));
-            customer.setRvLength(rs.getInt("rv_length"));
-            customer.setNumberOfSlideOuts(rs.getInt("number_of_slide_outs"));
-            customer.setNotes(rs.getString("notes"));
-            customer.setFlagged(rs.getBoolean("flagged"));
-            customer.setGroupId(rs.getInt("group_id"));
+            return CUSTOMER_MAPPER.map(rs);
         }catch (SQLException ex) {
-            System.out.println("the resultset is erroring");
              WebErrorLogger.log(Level.SEVERE, "SQLException in "
                      + "convertResultSetToCustomer(ResultSet rs). " + ex, ex);
             return null;
         }
-        return customer;
     }
-    
+
     public static Reservation convertResultSetToReservation(ResultSet rs){
-        Reservation reservation = new Reservation();
         try{
-            reservation.setReservationId(rs.getInt("reservation_id"));
-            reservation.setCustomerId(rs.getInt("customer_id"));
-            reservation.setArrivalDate(rs.getTimestamp("arrival_date").toLocalDateTime());
-            reservation.setDepartureDate(rs.getTimestamp("departure_date").toLocalDateTime());
-            reservation.setNumberOfNights(rs.getInt("number_of_nights"));
-            reservation.setNumberOfSitesRequested(rs.getInt("number_of_sites_requested"));
-            reservation.setNumberOfSitesAssigned(rs.getInt("number_of_sites_assigned"));
-            reservation.setDateReservationMade(rs.getTimestamp("date_reservation_made").toLocalDateTime());
-            reservation.setDeposit(rs.getBigDecimal("deposit"));
-            reservation.setNotes(rs.getString("notes"));
+            return RESERVATION_MAPPER.map(rs);
         }catch (SQLException ex) {
              WebErrorLogger.log(Level.SEVERE, "SQLException in "
                      + "convertResultSetToReservation(ResultSet rs). " + ex, ex);
             return null;
         }
-        return reservation;
     }
-    
+
     public static Campsite convertResultSetToCampsite(ResultSet rs){
-        Campsite campsite= new Campsite();
-        
         try{
-            campsite.setCampsiteId(rs.getInt("campsite_id"));
-            campsite.setCampsiteName(rs.getString("campsite_name"));
-            campsite.setCampsiteNumber(rs.getInt("campsite_number"));
-            campsite.setCampsiteSection(rs.getString("campsite_section").charAt(0));
-            campsite.setMaxLength(rs.getInt("max_length"));
-            campsite.setWidth(rs.getInt("width"));
-            campsite.setAcceptsSlideOut(rs.getBoolean("accepts_slide_out"));
-            campsite.setPullThru(rs.getBoolean("pull_thru"));
-            campsite.setSiteType(SiteType.getSiteType(rs.getString("campsite_type")));
-            campsite.setNotes(rs.getString("notes"));
-            campsite.setImage(rs.getBlob("image"));
-            campsite.setImageSource("image_source");
+            return CAMPSITE_MAPPER.map(rs);
         }catch(SQLException ex){
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToCampsite(ResultSet rs)", ex);
             return null;
         }
-            return campsite;
     }
-    
+
     public static AssignedSite convertResultSetToAssignedSite(ResultSet rs){
-        AssignedSite assignedSite= new AssignedSite();
-        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         try{
-            assignedSite.setAssignedSiteId(rs.getInt("assigned_site_id"));
-            assignedSite.setReservationId(rs.getInt("reservation_id"));
-            assignedSite.setCustomerId(rs.getInt("customer_id"));
-            assignedSite.setCampsiteId(rs.getInt("campsite_id"));
-            assignedSite.setLockSite(rs.getBoolean("lock_site"));
-            assignedSite.setSiteDeposit(rs.getBigDecimal("deposit"));
-            assignedSite.setCheckIn(rs.getBoolean("checked_in"));
-            assignedSite.setArrivalDate(LocalDateTime.parse(rs.getString("arrival_date"), format));
-            assignedSite.setDepartureDate(LocalDateTime.parse(rs.getString("departure_date"), format));
+            return ASSIGNED_SITE_MAPPER.map(rs);
         }catch(SQLException ex){
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToAssignedSite(ResultSet rs)", ex);
             return null;
         }
-            return assignedSite;
     }
-    
-    public static WaitingList convertResultSetToWaitingList(ResultSet rs){
-        WaitingList waitingList= new WaitingList();
 
+    public static WaitingList convertResultSetToWaitingList(ResultSet rs){
         try{
-            waitingList.setWaitingListId(rs.getInt("waiting_list_id"));
-            waitingList.setCustomerId(rs.getInt("customer_id"));
-            waitingList.setDateOfRequest(rs.getDate("date_of_request").toLocalDate());
-            waitingList.setArrivalDate(rs.getTimestamp("arrival_date").toLocalDateTime());
-            waitingList.setDepartureDate(rs.getTimestamp("departure_date").toLocalDateTime());
-            waitingList.setNumberOfNights((int)rs.getByte("number_of_nights"));
-            waitingList.setNumberOfSites((int)rs.getByte("number_of_sites"));
-            waitingList.setPriority(rs.getBoolean("priority"));
-            waitingList.setNotes(rs.getString("notes"));
+            return WAITING_LIST_MAPPER.map(rs);
         }catch(SQLException ex){
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToWaitingList(ResultSet rs)", ex);
             return null;
         }
-            return waitingList;
     }
-    
-    
-        public static YearlyInformation convertResultSetToYearlyInformation(ResultSet rs){
-        YearlyInformation yearlyInformation= new YearlyInformation();
 
+
+        public static YearlyInformation convertResultSetToYearlyInformation(ResultSet rs){
         try{
-            yearlyInformation.setYear(rs.getInt("current_year"));
-            yearlyInformation.setDailyRate(rs.getBigDecimal("daily_rate"));
-            yearlyInformation.setWeeklyRate(rs.getBigDecimal("weekly_rate"));
-            yearlyInformation.setMonthlyRate(rs.getBigDecimal("monthly_rate"));
-            yearlyInformation.setSeasonalRate(rs.getBigDecimal("seasonal_rate"));
-            yearlyInformation.setOpeningDate(rs.getDate("opening_date").toLocalDate());
-            yearlyInformation.setClosingDate(rs.getDate("closing_date").toLocalDate());
-            yearlyInformation.setSeasonalVisitorPassRate(rs.getBigDecimal("seasonal_visitor_pass_rate"));
-            yearlyInformation.setNightlyVisitorFee(rs.getBigDecimal("nightly_visitor_fee"));
-            yearlyInformation.setDailyVisitorFee(rs.getBigDecimal("daily_visitor_fee"));
-            yearlyInformation.setEarlyCheckInFeePerHour(rs.getBigDecimal("early_check_in_fee_per_hour"));
-            yearlyInformation.setLateStayFeePerHour(rs.getBigDecimal("late_stay_fee_per_hour"));
-            yearlyInformation.setNightlyCancellationFee(rs.getBigDecimal("nightly_cancellation_fee"));
-            yearlyInformation.setWeeklyCancellationFee(rs.getBigDecimal("weekly_cancellation_fee"));
-            yearlyInformation.setMonthlyCancellationFee(rs.getBigDecimal("monthly_cancellation_fee"));
-            yearlyInformation.setElectricalRatePerKWH(rs.getBigDecimal("electrical_rate_per_KWH"));
-            
+            return YEARLY_INFORMATION_MAPPER.map(rs);
         }catch(SQLException ex){
             WebErrorLogger.log(Level.SEVERE, "SQLException in convertResultSetToWaitingList(ResultSet rs)", ex);
             return null;
         }
-            return yearlyInformation;
     }
 }
@@ -0,0 +1,417 @@
+package database;
+
+import common.AssignedSite;
+import common.Campsite;
+import common.Customer;
+import common.SiteType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Picks campsites for a reservation so the season is left with as few
+ * unsellable gaps as possible.
+ *
+ * Each free campsite that fits the RV is scored by the free nights it would
+ * leave right before and right after the stay. A stay that touches the
+ * booking before or after it leaves no gap and is the best fit. A gap that
+ * is shorter than <code>MINIMUM_STAY</code> nights can hardly be sold, so it
+ * is the worst fit. Ties go to the campsite that fits the RV best.
+ *
+ * The live allocation reads the <code>OccupancyBitmap</code>. The
+ * re-optimise mode plans on a private copy of the calendar and then moves
+ * the unlocked assigned sites in one transaction.
+ *
+ * Sample Usage:
+ * <pre>
+ * List&lt;Integer&gt; campsiteIds = SiteAllocator.getInstance().allocate(arrival, departure, 2, criteria, Collections.emptySet());
+ * List&lt;AssignedSite&gt; moved = SiteAllocator.getInstance().reoptimizeUnlockedAssignments(LocalDate.now());
+ * </pre>
+ */
+public class SiteAllocator {
+
+    /**
+     * Gaps shorter than this many nights are unlikely to be booked.
+     */
+    public static final int MINIMUM_STAY = 3;
+    private static SiteAllocator allocator = null;
+
+    private SiteAllocator() {
+    }
+
+    /**
+     * Gets the shared <code>SiteAllocator</code> for this application.
+     *
+     * @return The <code>SiteAllocator</code> object.
+     */
+    public static synchronized SiteAllocator getInstance() {
+        if (allocator == null) {
+            allocator = new SiteAllocator();
+        }
+        return allocator;
+    }
+
+    /**
+     * Picks the best fitting free campsites for a stay.
+     *
+     * @param firstNight The first night of the stay.
+     * @param departureDate The date the customer leaves.
+     * @param numberOfSites The number of campsites wanted.
+     * @param criteria The RV and campsite constraints.
+     * @param excluded Campsite ids that must not be picked, such as the ones
+     * already picked for other sites of the same reservation.
+     * @return Up to <code>numberOfSites</code> campsite ids, best fit first.
+     */
+    public List<Integer> allocate(LocalDate firstNight, LocalDate departureDate, int numberOfSites,
+            CampsiteSearch.Criteria criteria, Set<Integer> excluded) {
+        OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+        if (!bitmap.covers(firstNight, departureDate)) {
+            // Outside the season there is nothing to pack against
+            List<Integer> campsiteIds = new ArrayList<>();
+            for (CampsiteSearch.Match match : CampsiteSearch.getInstance().search(firstNight, departureDate, criteria)) {
+                if (campsiteIds.size() < numberOfSites && !excluded.contains(match.getCampsiteId())) {
+                    campsiteIds.add(match.getCampsiteId());
+                }
+            }
+            return campsiteIds;
+        }
+        List<CampsiteSearch.Match> candidates = CampsiteSearch.getInstance().match(criteria);
+        int[] campsiteIds = new int[candidates.size()];
+        for (int i = 0; i < campsiteIds.length; i++) {
+            campsiteIds[i] = candidates.get(i).getCampsiteId();
+        }
+        int[][] gaps = bitmap.getFreeGaps(campsiteIds, firstNight, departureDate, MINIMUM_STAY);
+        List<long[]> scored = new ArrayList<>();
+        for (int i = 0; i < campsiteIds.length; i++) {
+            if (gaps[i] != null && !excluded.contains(campsiteIds[i])) {
+                scored.add(new long[]{cost(gaps[i]), i, campsiteIds[i]});
+            }
+        }
+        // Candidates are in order of fit, so the index breaks ties
+        Collections.sort(scored, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<Integer> allocated = new ArrayList<>();
+        for (int i = 0; i < scored.size() && i < numberOfSites; i++) {
+            allocated.add((int) scored.get(i)[2]);
+        }
+        return allocated;
+    }
+
+    /**
+     * Re-packs the assigned sites that are not locked, not checked in and
+     * arrive on or after the given date. The longest stays are placed first,
+     * each on the best fitting campsite of the same site type that the
+     * customer's RV fits on. A site only moves when another campsite is a
+     * strictly better fit than its own.
+     *
+     * @param from The first arrival date that may be moved.
+     * @return The assigned sites that were moved, with their new campsite ids.
+     * Empty if nothing improved or the moves could not be saved.
+     */
+    public List<AssignedSite> reoptimizeUnlockedAssignments(LocalDate from) {
+        DatabaseManagement databaseManagement = Database.getDatabaseManagement();
+        AssignedSiteManager assignedSiteManager = databaseManagement.getAssignedSiteManager();
+        CustomerManager customerManager = databaseManagement.getCustomerManager();
+        List<AssignedSite> fixed = new ArrayList<>();
+        List<AssignedSite> movable = new ArrayList<>();
+        boolean read = assignedSiteManager.forEachAssignedSite(from.atStartOfDay(), null, assignedSite -> {
+            if (!assignedSite.getDepartureDate().toLocalDate().isAfter(from)) {
+                return;
+            }
+            if (assignedSite.getLockSite() || assignedSite.getCheckIn()
+                    || assignedSite.getArrivalDate().toLocalDate().isBefore(from)) {
+                fixed.add(assignedSite);
+            } else {
+                movable.add(assignedSite);
+            }
+        });
+        if (!read) {
+            // Planning around a partial list could move a site onto a taken one
+            return Collections.emptyList();
+        }
+        Map<Integer, Customer> customers = new HashMap<>();
+        List<AssignedSite> moved = plan(from, fixed, movable, assignedSite -> {
+            Customer customer = customers.computeIfAbsent(assignedSite.getCustomerId(),
+                    customerManager::getCustomerByID);
+            CampsiteSearch.Criteria criteria = new CampsiteSearch.Criteria();
+            if (customer != null) {
+                criteria.setRvLength(customer.getRvLength());
+                criteria.setSlideOuts(customer.getNumberOfSlideOuts());
+            }
+            criteria.setSiteType(CampsiteSearch.getInstance().getSiteType(assignedSite.getCampsiteId()));
+            return criteria;
+        });
+        if (moved.isEmpty() || !assignedSiteManager.reassignSites(moved)) {
+            return Collections.emptyList();
+        }
+        return moved;
+    }
+
+    /**
+     * Gives the search criteria for the assigned site being placed.
+     */
+    interface CriteriaSource {
+
+        CampsiteSearch.Criteria getCriteria(AssignedSite assignedSite);
+    }
+
+    /**
+     * Plans new campsites for the movable sites around the fixed ones.
+     *
+     * @return Copies of the movable sites whose campsite changed.
+     */
+    List<AssignedSite> plan(LocalDate from, Collection<AssignedSite> fixed,
+            List<AssignedSite> movable, CriteriaSource criteriaSource) {
+        NightCalendar calendar = new NightCalendar(from);
+        for (AssignedSite assignedSite : fixed) {
+            calendar.set(assignedSite.getCampsiteId(), firstNight(assignedSite), lastNight(assignedSite));
+        }
+        // The movable sites hold their own campsites until they are placed,
+        // so an earlier move can not take a campsite a later site must keep
+        for (AssignedSite assignedSite : movable) {
+            calendar.set(assignedSite.getCampsiteId(), firstNight(assignedSite), lastNight(assignedSite));
+        }
+        List<AssignedSite> ordered = new ArrayList<>(movable);
+        Collections.sort(ordered, (a, b) -> {
+            int result = Long.compare(lastNight(b) - firstNight(b), lastNight(a) - firstNight(a));
+            return result != 0 ? result : Long.compare(firstNight(a), firstNight(b));
+        });
+        List<AssignedSite> moved = new ArrayList<>();
+        for (AssignedSite assignedSite : ordered) {
+            long first = firstNight(assignedSite);
+            long last = lastNight(assignedSite);
+            int current = assignedSite.getCampsiteId();
+            calendar.clear(current, first, last);
+            int best = current;
+            long bestCost = calendar.isFree(current, first, last)
+                    ? cost(calendar.getGaps(current, first, last)) : Long.MAX_VALUE;
+            for (CampsiteSearch.Match match : CampsiteSearch.getInstance().match(criteriaSource.getCriteria(assignedSite))) {
+                int campsiteId = match.getCampsiteId();
+                if (campsiteId == current || !calendar.isFree(campsiteId, first, last)) {
+                    continue;
+                }
+                long cost = cost(calendar.getGaps(campsiteId, first, last));
+                if (cost < bestCost) {
+                    best = campsiteId;
+                    bestCost = cost;
+                }
+            }
+            calendar.set(best, first, last);
+            if (best != current) {
+                AssignedSite copy = new AssignedSite(assignedSite.getAssignedSiteId(),
+                        assignedSite.getReservationId(), assignedSite.getCustomerId(), best,
+                        assignedSite.getLockSite(), assignedSite.getSiteDeposit(), assignedSite.getCheckIn(),
+                        assignedSite.getArrivalDate(), assignedSite.getDepartureDate());
+                moved.add(copy);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Returns the cost of the gaps left before and after a stay, lower is
+     * better.
+     */
+    private static long cost(int[] gaps) {
+        return gapCost(gaps[0]) + gapCost(gaps[1]);
+    }
+
+    private static long gapCost(int gap) {
+        if (gap == 0) {
+            return 0;
+        }
+        if (gap < MINIMUM_STAY) {
+            // A one night gap is the hardest to sell
+            return 2 + 2 * (MINIMUM_STAY - gap);
+        }
+        return 1;
+    }
+
+    private static long firstNight(AssignedSite assignedSite) {
+        return assignedSite.getArrivalDate().toLocalDate().toEpochDay();
+    }
+
+    private static long lastNight(AssignedSite assignedSite) {
+        return Math.max(firstNight(assignedSite) + 1,
+                assignedSite.getDepartureDate().toLocalDate().toEpochDay());
+    }
+
+    /**
+     * A private campsite by night calendar that the re-optimise mode plans
+     * on. Nights are epoch days; the season of the <code>OccupancyBitmap</code>
+     * bounds the gaps when it is loaded.
+     */
+    private static class NightCalendar {
+
+        private final Map<Integer, BitSet> rows = new HashMap<>();
+        private final long origin;
+        private final long opening;
+        private final long closing;
+
+        private NightCalendar(LocalDate from) {
+            OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+            LocalDate openingDate = bitmap.getOpeningDate();
+            LocalDate closingDate = bitmap.getClosingDate();
+            opening = openingDate == null ? Long.MIN_VALUE : openingDate.toEpochDay();
+            closing = closingDate == null ? Long.MAX_VALUE : closingDate.toEpochDay();
+            origin = Math.min(from.toEpochDay(), openingDate == null ? Long.MAX_VALUE : opening) - MINIMUM_STAY;
+        }
+
+        private BitSet row(int campsiteId) {
+            return rows.computeIfAbsent(campsiteId, id -> new BitSet());
+        }
+
+        private int index(long night) {
+            return (int) Math.max(0, night - origin);
+        }
+
+        private void set(int campsiteId, long first, long last) {
+            row(campsiteId).set(index(first), index(last));
+        }
+
+        private void clear(int campsiteId, long first, long last) {
+            row(campsiteId).clear(index(first), index(last));
+        }
+
+        private boolean isFree(int campsiteId, long first, long last) {
+            BitSet row = row(campsiteId);
+            int next = row.nextSetBit(index(first));
+            return next < 0 || next >= index(last);
+        }
+
+        private int[] getGaps(int campsiteId, long first, long last) {
+            BitSet row = row(campsiteId);
+            int before = 0;
+            for (long night = first - 1; before < MINIMUM_STAY && night >= opening
+                    && night >= origin && !row.get(index(night)); night--) {
+                before++;
+            }
+            int after = 0;
+            for (long night = last; after < MINIMUM_STAY && night < closing
+                    && !row.get(index(night)); night++) {
+                after++;
+            }
+            return new int[]{before, after};
+        }
+    }
+
+    /**
+     * Measures the allocation time on 1,000 campsites with a busy season and
+     * shows how much re-packing a random layout reduces the short gaps.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(6);
+        int numberOfCampsites = 1000;
+        LocalDate opening = LocalDate.of(2030, 4, 15);
+        List<Campsite> campsites = new ArrayList<>();
+        for (int i = 1; i <= numberOfCampsites; i++) {
+            Campsite campsite = new Campsite();
+            campsite.setCampsiteId(i);
+            campsite.setCampsiteName("Site " + i);
+            campsite.setMaxLength(20 + random.nextInt(30));
+            campsite.setAcceptsSlideOut(random.nextBoolean());
+            campsite.setPullThru(random.nextInt(4) == 0);
+            campsite.setSiteType(SiteType.Daily);
+            campsites.add(campsite);
+        }
+        List<AssignedSite> assignedSites = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            LocalDateTime arrival = opening.plusDays(random.nextInt(190)).atTime(14, 0);
+            AssignedSite assignedSite = new AssignedSite();
+            assignedSite.setAssignedSiteId(i + 1);
+            assignedSite.setCampsiteId(1 + random.nextInt(numberOfCampsites));
+            assignedSite.setArrivalDate(arrival);
+            assignedSite.setDepartureDate(arrival.plusDays(1 + random.nextInt(7)).withHour(9));
+            assignedSites.add(assignedSite);
+        }
+        AvailabilityIndex.getInstance().load(assignedSites);
+        common.YearlyInformation season = new common.YearlyInformation();
+        season.setOpeningDate(opening);
+        season.setClosingDate(opening.plusDays(200));
+        OccupancyBitmap.getInstance().load(season, campsites);
+        CampsiteSearch.getInstance().load(campsites);
+        SiteAllocator siteAllocator = SiteAllocator.getInstance();
+
+        int runs = 20000;
+        long[] times = new long[runs];
+        for (int i = -runs; i < runs; i++) {
+            CampsiteSearch.Criteria criteria = new CampsiteSearch.Criteria();
+            criteria.setRvLength(20 + random.nextInt(30));
+            LocalDate arrival = opening.plusDays(random.nextInt(190));
+            long start = System.nanoTime();
+            siteAllocator.allocate(arrival, arrival.plusDays(1 + random.nextInt(7)), 1 + random.nextInt(3),
+                    criteria, Collections.emptySet());
+            if (i >= 0) {
+                times[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        System.out.println("allocate: p50 " + times[runs / 2] / 1000 + " us, p99 "
+                + times[runs * 99 / 100] / 1000 + " us");
+
+        // Re-pack a random, non overlapping layout and count the short gaps
+        List<AssignedSite> layout = new ArrayList<>();
+        NightCalendar calendar = new NightCalendar(opening);
+        for (AssignedSite assignedSite : assignedSites) {
+            for (int attempt = 0; attempt < 20; attempt++) {
+                int campsiteId = 1 + random.nextInt(numberOfCampsites);
+                if (calendar.isFree(campsiteId, firstNight(assignedSite), lastNight(assignedSite))) {
+                    calendar.set(campsiteId, firstNight(assignedSite), lastNight(assignedSite));
+                    assignedSite.setCampsiteId(campsiteId);
+                    layout.add(assignedSite);
+                    break;
+                }
+            }
+        }
+        long start = System.nanoTime();
+        List<AssignedSite> moved = siteAllocator.plan(opening, Collections.emptyList(), layout,
+                assignedSite -> new CampsiteSearch.Criteria());
+        long time = (System.nanoTime() - start) / 1000000;
+        Map<Integer, Integer> newCampsites = new HashMap<>();
+        for (AssignedSite assignedSite : moved) {
+            newCampsites.put(assignedSite.getAssignedSiteId(), assignedSite.getCampsiteId());
+        }
+        NightCalendar after = new NightCalendar(opening);
+        int overlaps = 0;
+        for (AssignedSite assignedSite : layout) {
+            int campsiteId = newCampsites.getOrDefault(assignedSite.getAssignedSiteId(),
+                    assignedSite.getCampsiteId());
+            if (!after.isFree(campsiteId, firstNight(assignedSite), lastNight(assignedSite))) {
+                overlaps++;
+            }
+            after.set(campsiteId, firstNight(assignedSite), lastNight(assignedSite));
+        }
+        System.out.println("re-pack of " + layout.size() + " sites moved " + moved.size() + " in " + time
+                + " ms, short gaps " + shortGaps(calendar, numberOfCampsites, opening)
+                + " -> " + shortGaps(after, numberOfCampsites, opening) + ", overlaps " + overlaps);
+    }
+
+    private static int shortGaps(NightCalendar calendar, int numberOfCampsites, LocalDate opening) {
+        int count = 0;
+        int from = calendar.index(opening.toEpochDay());
+        int to = calendar.index(opening.plusDays(200).toEpochDay());
+        for (int campsiteId = 1; campsiteId <= numberOfCampsites; campsiteId++) {
+            BitSet row = calendar.row(campsiteId);
+            int start = row.nextClearBit(from);
+            while (start < to) {
+                int end = row.nextSetBit(start);
+                end = end < 0 || end > to ? to : end;
+                if (end - start < MINIMUM_STAY) {
+                    count++;
+                }
+                start = row.nextClearBit(end);
+            }
+        }
+        return count;
+    }
+}
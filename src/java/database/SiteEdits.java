@@ -0,0 +1,124 @@
+package database;
+
+import common.AssignedSite;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The rules for editing the assigned sites of a reservation, shared by
+ * <code>mysql.BookingCoordinator</code> and
+ * <code>memory.AssignedSiteManager</code> so both decide an edit the same
+ * way: which existing site each submitted site replaces, which of the
+ * changes can be written, and when two stays overlap.
+ */
+public final class SiteEdits {
+
+    private SiteEdits() {
+    }
+
+    /**
+     * Pairs each submitted site with an existing site it replaces: identical
+     * sites first, then sites on the same campsite, then the rest in order.
+     *
+     * @param submitted The submitted sites.
+     * @param unpaired The existing sites. The paired ones are removed, so
+     * the sites left over are the ones to delete.
+     * @return The existing site for each submitted site, or null where a site
+     * is new.
+     */
+    public static AssignedSite[] pair(List<AssignedSite> submitted, List<AssignedSite> unpaired) {
+        AssignedSite[] pairs = new AssignedSite[submitted.size()];
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < submitted.size(); i++) {
+                AssignedSite site = submitted.get(i);
+                for (int j = 0; pairs[i] == null && j < unpaired.size(); j++) {
+                    AssignedSite candidate = unpaired.get(j);
+                    if (pass == 2 || candidate.getCampsiteId() == site.getCampsiteId()
+                            && (pass == 1 || isSameStay(candidate, site))) {
+                        pairs[i] = unpaired.remove(j);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Decides which submitted sites are written. A change is refused if it
+     * overlaps a stay that remains: one in <code>taken</code>, a change
+     * accepted before it, or the old stay of a change that was refused.
+     * Refusing a change puts its old stay back, which can be in the way of
+     * a change already accepted, so the changes are checked again until no
+     * more are refused. A site whose only change is its lock keeps its stay,
+     * so it is written without a check.
+     *
+     * @param submitted The submitted sites.
+     * @param pairs The existing site for each submitted site, or null where
+     * a site is new.
+     * @param taken The stays that remain whatever is changed.
+     * @return True for each submitted site that is new or changed, including
+     * a change of its lock only, and can be written; false where it is
+     * unchanged or refused.
+     */
+    public static boolean[] acceptChanges(List<AssignedSite> submitted, AssignedSite[] pairs,
+            List<AssignedSite> taken) {
+        boolean[] accepted = new boolean[submitted.size()];
+        boolean[] refused = new boolean[submitted.size()];
+        boolean refusedMore = true;
+        while (refusedMore) {
+            refusedMore = false;
+            List<AssignedSite> remaining = new ArrayList<>(taken);
+            for (int i = 0; i < submitted.size(); i++) {
+                if (refused[i] && pairs[i] != null) {
+                    remaining.add(pairs[i]);
+                }
+            }
+            for (int i = 0; i < submitted.size(); i++) {
+                AssignedSite site = submitted.get(i);
+                accepted[i] = false;
+                if (refused[i]) {
+                    continue;
+                }
+                if (pairs[i] != null && isSameStay(pairs[i], site)) {
+                    accepted[i] = pairs[i].getLockSite() != site.getLockSite();
+                    continue;
+                }
+                if (overlapsAny(site, remaining)) {
+                    refused[i] = true;
+                    refusedMore = true;
+                } else {
+                    accepted[i] = true;
+                    remaining.add(site);
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Returns true if both sites are for the same customer, campsite and
+     * dates. Whether the site is locked is not compared.
+     */
+    public static boolean isSameStay(AssignedSite existing, AssignedSite submitted) {
+        return existing.getCampsiteId() == submitted.getCampsiteId()
+                && existing.getCustomerId() == submitted.getCustomerId()
+                && existing.getArrivalDate().equals(submitted.getArrivalDate())
+                && existing.getDepartureDate().equals(submitted.getDepartureDate());
+    }
+
+    /**
+     * Returns true if the given site overlaps any of the other sites for the
+     * same campsite.
+     */
+    public static boolean overlapsAny(AssignedSite assignedSite, Collection<AssignedSite> others) {
+        for (AssignedSite other : others) {
+            if (other.getCampsiteId() == assignedSite.getCampsiteId()
+                    && other.getArrivalDate().isBefore(assignedSite.getDepartureDate())
+                    && other.getDepartureDate().isAfter(assignedSite.getArrivalDate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@ package database;
 
 import common.WaitingList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * A <code>interface</code> that specifies the allowable operations on waiting 
@@ -17,5 +18,42 @@ public interface WaitingListManager {
     public WaitingList getWaitingListById(int waitingListId);
     public Collection<WaitingList> getWaitingListsByCustomerId(int waitingListId);
     public Collection<WaitingList> getAllWaitingLists();
+
+    /**
+     * Passes every waiting list entry to the action one at a time, as they
+     * are read. Unlike <code>getAllWaitingLists</code> it tells a failed
+     * read from an empty table.
+     *
+     * @param action Called once for each entry, in order of id.
+     * @return True if every entry was passed to the action; false if reading
+     * failed part way.
+     */
+    public boolean forEachWaitingList(Consumer<? super WaitingList> action);
     public boolean deleteWaitingListById(int waitingListId);
+
+    /**
+     * The orders in which <code>getWaitingListPage</code> can list the
+     * entries. Entries with equal values are listed by id.
+     */
+    public enum Sort {
+        /** By id, which is the order the entries were added in. */
+        ID,
+        /** By the arrival date asked for, earliest first. */
+        ARRIVAL_DATE,
+        /** By the date the request was made, oldest first. */
+        DATE_OF_REQUEST
+    }
+
+    /**
+     * Returns one page of the waiting list.
+     *
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most entries to return; see
+     * <code>Page.clampLimit</code>.
+     * @param sort The order to list the entries in. The cursor must come from
+     * a page in the same order.
+     * @return The page, or null if the entries could not be read.
+     */
+    public Page<WaitingList> getWaitingListPage(String after, int limit, Sort sort);
 }
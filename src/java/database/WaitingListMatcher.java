@@ -0,0 +1,428 @@
+package database;
+
+import common.AssignedSite;
+import common.WaitingList;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * Matches waiting list entries against campsites as they become free.
+ *
+ * The entries are kept in an interval index on their arrival and departure
+ * dates. The matcher listens to the <code>AvailabilityIndex</code>; whenever
+ * nights on a campsite are freed (an assigned site or a reservation is
+ * deleted, or an assigned site is moved) the freed range is queued and only
+ * the entries overlapping it are evaluated, in order of priority and then
+ * date of request. An entry matches when at least its number of sites are
+ * free for its whole stay. Campsites are handed out to the better placed
+ * entries first, so two entries are never offered the same campsite.
+ *
+ * Evaluation runs on a background thread, after the change has been made,
+ * so it never holds up the request that freed the nights.
+ *
+ * Sample Usage:
+ * <pre>
+ * WaitingListMatcher.getInstance().addMatchListener(match -&gt; notifyStaff(match));
+ * Collection&lt;WaitingListMatcher.Match&gt; candidates = WaitingListMatcher.getInstance().getCandidates();
+ * </pre>
+ */
+public class WaitingListMatcher implements AvailabilityIndex.Listener {
+
+    /**
+     * Receives the match candidates published by a <code>WaitingListMatcher</code>.
+     */
+    public interface MatchListener {
+
+        /**
+         * Called on the matcher's thread when a waiting list entry can be
+         * booked.
+         *
+         * @param match The entry and the campsites that are free for it.
+         */
+        public void matchFound(Match match);
+    }
+
+    /**
+     * A waiting list entry and the campsites that are free for its stay.
+     */
+    public static class Match {
+
+        private final WaitingList waitingList;
+        private final List<Integer> campsiteIds;
+
+        private Match(WaitingList waitingList, List<Integer> campsiteIds) {
+            this.waitingList = waitingList;
+            this.campsiteIds = Collections.unmodifiableList(campsiteIds);
+        }
+
+        public WaitingList getWaitingList() {
+            return waitingList;
+        }
+
+        public List<Integer> getCampsiteIds() {
+            return campsiteIds;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{waitingListId=" + waitingList.getWaitingListId()
+                    + ", customerId=" + waitingList.getCustomerId()
+                    + ", campsiteIds=" + campsiteIds + '}';
+        }
+    }
+
+    /**
+     * Priority entries first, then the oldest requests.
+     */
+    public static final Comparator<WaitingList> BY_PRIORITY = (a, b) -> {
+        if (a.isPriority() != b.isPriority()) {
+            return a.isPriority() ? -1 : 1;
+        }
+        int order = compareDates(a.getDateOfRequest(), b.getDateOfRequest());
+        return order != 0 ? order : Integer.compare(a.getWaitingListId(), b.getWaitingListId());
+    };
+
+    private static WaitingListMatcher matcher = null;
+
+    // Entries by arrival; every entry starts within maxLength of any range it overlaps
+    private final NavigableMap<Long, Map<Integer, WaitingList>> byArrival = new TreeMap<>();
+    private final Map<Integer, WaitingList> entriesById = new HashMap<>();
+    private long maxLength = 0;
+    private volatile boolean loaded = false;
+
+    private final ConcurrentLinkedQueue<long[]> freedRanges = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Match> candidates = new ConcurrentHashMap<>();
+    private final Collection<MatchListener> matchListeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WaitingListMatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WaitingListMatcher() {
+    }
+
+    /**
+     * Gets the shared <code>WaitingListMatcher</code> for this application.
+     * The matcher registers itself with the shared <code>AvailabilityIndex</code>.
+     *
+     * @return The <code>WaitingListMatcher</code> object.
+     */
+    public static synchronized WaitingListMatcher getInstance() {
+        if (matcher == null) {
+            matcher = new WaitingListMatcher();
+            AvailabilityIndex.getInstance().addListener(matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Replaces the entries of the matcher and evaluates all of them once.
+     *
+     * @param waitingLists Every <code>WaitingList</code> entry.
+     */
+    public void load(Collection<WaitingList> waitingLists) {
+        synchronized (this) {
+            byArrival.clear();
+            entriesById.clear();
+            maxLength = 0;
+            for (WaitingList waitingList : waitingLists) {
+                insert(waitingList);
+            }
+            loaded = true;
+        }
+        candidates.clear();
+        executor.execute(() -> evaluate(new ArrayList<>(waitingLists)));
+    }
+
+    /**
+     * Returns true once the entries have been loaded.
+     *
+     * @return True if the matcher is loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds or replaces an entry and evaluates it.
+     *
+     * @param waitingList The added or updated <code>WaitingList</code>.
+     */
+    public void put(WaitingList waitingList) {
+        if (!loaded || waitingList == null) {
+            return;
+        }
+        synchronized (this) {
+            delete(waitingList.getWaitingListId());
+            insert(waitingList);
+        }
+        candidates.remove(waitingList.getWaitingListId());
+        executor.execute(() -> evaluate(new ArrayList<>(Collections.singletonList(waitingList))));
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param waitingListId The id of the deleted entry.
+     */
+    public void remove(int waitingListId) {
+        synchronized (this) {
+            delete(waitingListId);
+        }
+        candidates.remove(waitingListId);
+    }
+
+    /**
+     * Registers a listener for new match candidates.
+     *
+     * @param matchListener The listener to add.
+     */
+    public void addMatchListener(MatchListener matchListener) {
+        matchListeners.add(matchListener);
+    }
+
+    /**
+     * Gets the current match candidates.
+     *
+     * @return The candidates in order of priority and date of request.
+     */
+    public List<Match> getCandidates() {
+        List<Match> matches = new ArrayList<>();
+        for (Match match : candidates.values()) {
+            if (isStillFree(match)) {
+                matches.add(match);
+            } else {
+                // Booked by someone else since it was published
+                candidates.remove(match.getWaitingList().getWaitingListId(), match);
+            }
+        }
+        matches.sort((a, b) -> BY_PRIORITY.compare(a.getWaitingList(), b.getWaitingList()));
+        return matches;
+    }
+
+    /**
+     * Gets the entries whose stay overlaps the given range.
+     *
+     * @param startDate The start of the range.
+     * @param endDate The end of the range.
+     * @return The overlapping entries in order of priority and date of request.
+     */
+    public synchronized List<WaitingList> getOverlapping(LocalDateTime startDate, LocalDateTime endDate) {
+        return overlapping(AvailabilityIndex.toKey(startDate), AvailabilityIndex.toKey(endDate));
+    }
+
+    /**
+     * Stops the background thread. Called when the web application stops.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void indexCleared() {
+        candidates.clear();
+    }
+
+    @Override
+    public void assignmentsChanged(int campsiteId, LocalDateTime startDate,
+            LocalDateTime endDate, Collection<AssignedSite> current) {
+        if (!loaded || startDate.equals(LocalDateTime.MIN) || endDate.equals(LocalDateTime.MAX)
+                || isCovered(startDate, endDate, current)) {
+            return;
+        }
+        freedRanges.add(new long[]{AvailabilityIndex.toKey(startDate), AvailabilityIndex.toKey(endDate)});
+        executor.execute(this::drainFreedRanges);
+    }
+
+    /**
+     * Returns true if the assigned sites hold every moment of the range, so
+     * nothing was freed.
+     */
+    private static boolean isCovered(LocalDateTime startDate, LocalDateTime endDate,
+            Collection<AssignedSite> current) {
+        List<AssignedSite> ordered = new ArrayList<>(current);
+        ordered.sort(Comparator.comparing(AssignedSite::getArrivalDate));
+        LocalDateTime covered = startDate;
+        for (AssignedSite assignedSite : ordered) {
+            if (assignedSite.getArrivalDate().isAfter(covered)) {
+                return false;
+            }
+            if (assignedSite.getDepartureDate().isAfter(covered)) {
+                covered = assignedSite.getDepartureDate();
+            }
+        }
+        return !covered.isBefore(endDate);
+    }
+
+    private void drainFreedRanges() {
+        Map<Integer, WaitingList> affected = new LinkedHashMap<>();
+        long[] range;
+        while ((range = freedRanges.poll()) != null) {
+            synchronized (this) {
+                for (WaitingList waitingList : overlapping(range[0], range[1])) {
+                    affected.put(waitingList.getWaitingListId(), waitingList);
+                }
+            }
+        }
+        if (!affected.isEmpty()) {
+            evaluate(new ArrayList<>(affected.values()));
+        }
+    }
+
+    /**
+     * Checks the given entries against the free campsites, best placed entry
+     * first, and publishes the ones that match.
+     */
+    private void evaluate(List<WaitingList> waitingLists) {
+        try {
+            waitingLists.sort(BY_PRIORITY);
+            // Campsites already offered to a better placed entry, with the offered stays
+            Map<Integer, List<WaitingList>> offered = new HashMap<>();
+            for (Match match : getCandidates()) {
+                for (int campsiteId : match.getCampsiteIds()) {
+                    offered.computeIfAbsent(campsiteId, id -> new ArrayList<>()).add(match.getWaitingList());
+                }
+            }
+            for (WaitingList waitingList : waitingLists) {
+                if (candidates.containsKey(waitingList.getWaitingListId())
+                        || waitingList.getArrivalDate() == null || waitingList.getDepartureDate() == null) {
+                    continue;
+                }
+                List<Integer> campsiteIds = new ArrayList<>();
+                for (int campsiteId : getFreeCampsiteIds(waitingList)) {
+                    if (campsiteIds.size() < Math.max(1, waitingList.getNumberOfSites())
+                            && !isOffered(offered.get(campsiteId), waitingList)) {
+                        campsiteIds.add(campsiteId);
+                    }
+                }
+                if (campsiteIds.size() < Math.max(1, waitingList.getNumberOfSites())) {
+                    continue;
+                }
+                for (int campsiteId : campsiteIds) {
+                    offered.computeIfAbsent(campsiteId, id -> new ArrayList<>()).add(waitingList);
+                }
+                Match match = new Match(waitingList, campsiteIds);
+                candidates.put(waitingList.getWaitingListId(), match);
+                for (MatchListener matchListener : matchListeners) {
+                    matchListener.matchFound(match);
+                }
+            }
+        } catch (RuntimeException ex) {
+            WebErrorLogger.log(Level.SEVERE, "Exception in WaitingListMatcher.evaluate", ex);
+        }
+    }
+
+    private static boolean isOffered(List<WaitingList> offeredTo, WaitingList waitingList) {
+        if (offeredTo == null) {
+            return false;
+        }
+        for (WaitingList other : offeredTo) {
+            if (other.getArrivalDate().isBefore(waitingList.getDepartureDate())
+                    && other.getDepartureDate().isAfter(waitingList.getArrivalDate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStillFree(Match match) {
+        WaitingList waitingList = match.getWaitingList();
+        LocalDate firstNight = waitingList.getArrivalDate().toLocalDate();
+        LocalDate departureDate = waitingList.getDepartureDate().toLocalDate();
+        OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+        boolean useBitmap = bitmap.covers(firstNight, departureDate);
+        for (int campsiteId : match.getCampsiteIds()) {
+            boolean free = useBitmap ? bitmap.isFree(campsiteId, firstNight, departureDate)
+                    : AvailabilityIndex.getInstance().isAvailable(campsiteId,
+                            waitingList.getArrivalDate(), waitingList.getDepartureDate());
+            if (!free) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Collection<Integer> getFreeCampsiteIds(WaitingList waitingList) {
+        LocalDate firstNight = waitingList.getArrivalDate().toLocalDate();
+        LocalDate departureDate = waitingList.getDepartureDate().toLocalDate();
+        OccupancyBitmap bitmap = OccupancyBitmap.getInstance();
+        if (bitmap.covers(firstNight, departureDate)) {
+            return bitmap.getFreeCampsiteIds(firstNight, departureDate);
+        }
+        Set<Integer> occupied = AvailabilityIndex.getInstance().getOccupiedCampsiteIds(
+                waitingList.getArrivalDate(), waitingList.getDepartureDate());
+        List<Integer> free = new ArrayList<>();
+        for (CampsiteSearch.Match match : CampsiteSearch.getInstance().match(new CampsiteSearch.Criteria())) {
+            if (!occupied.contains(match.getCampsiteId())) {
+                free.add(match.getCampsiteId());
+            }
+        }
+        Collections.sort(free);
+        return free;
+    }
+
+    private List<WaitingList> overlapping(long start, long end) {
+        List<WaitingList> found = new ArrayList<>();
+        for (Map<Integer, WaitingList> entries : byArrival.subMap(start - maxLength, false, end, false).values()) {
+            for (WaitingList waitingList : entries.values()) {
+                if (AvailabilityIndex.toKey(waitingList.getDepartureDate()) > start) {
+                    found.add(waitingList);
+                }
+            }
+        }
+        found.sort(BY_PRIORITY);
+        return found;
+    }
+
+    private void insert(WaitingList waitingList) {
+        if (waitingList.getArrivalDate() == null || waitingList.getDepartureDate() == null) {
+            return;
+        }
+        long arrival = AvailabilityIndex.toKey(waitingList.getArrivalDate());
+        long departure = AvailabilityIndex.toKey(waitingList.getDepartureDate());
+        byArrival.computeIfAbsent(arrival, key -> new HashMap<>()).put(waitingList.getWaitingListId(), waitingList);
+        entriesById.put(waitingList.getWaitingListId(), waitingList);
+        maxLength = Math.max(maxLength, departure - arrival);
+    }
+
+    private void delete(int waitingListId) {
+        WaitingList waitingList = entriesById.remove(waitingListId);
+        if (waitingList == null) {
+            return;
+        }
+        long arrival = AvailabilityIndex.toKey(waitingList.getArrivalDate());
+        Map<Integer, WaitingList> entries = byArrival.get(arrival);
+        if (entries != null) {
+            entries.remove(waitingListId);
+            if (entries.isEmpty()) {
+                byArrival.remove(arrival);
+            }
+        }
+    }
+
+    private static int compareDates(LocalDate a, LocalDate b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return a.compareTo(b);
+    }
+}
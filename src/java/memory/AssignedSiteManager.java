@@ -0,0 +1,287 @@
+package memory;
+
+import common.AssignedSite;
+import database.AvailabilityIndex;
+import database.SiteEdits;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An <code>AssignedSiteManager</code> that keeps the assigned sites in
+ * memory, with the same results as <code>mysql.AssignedSiteManager</code>.
+ *
+ * The methods that check for overlapping sites before they write are
+ * synchronized, which does for them what the transaction and the campsite
+ * locks of <code>mysql.BookingCoordinator</code> do in the database.
+ */
+public class AssignedSiteManager implements database.AssignedSiteManager {
+
+    private final ConcurrentSkipListMap<Integer, AssignedSite> assignedSites = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * @return The assigned site, or null if its campsite is already assigned
+     * for overlapping dates.
+     */
+    @Override
+    public synchronized AssignedSite addAssignedSite(AssignedSite assignedSite) {
+        if (SiteEdits.overlapsAny(assignedSite, assignedSites.values())) {
+            return null;
+        }
+        return insert(assignedSite);
+    }
+
+    /**
+     * @return The assigned site, or null if there is no assigned site with
+     * its id or the change would overlap another assigned site.
+     */
+    @Override
+    public synchronized AssignedSite updateAssignedSite(AssignedSite assignedSite) {
+        if (!assignedSites.containsKey(assignedSite.getAssignedSiteId())) {
+            return null;
+        }
+        List<AssignedSite> others = find(other -> other.getAssignedSiteId() != assignedSite.getAssignedSiteId());
+        if (SiteEdits.overlapsAny(assignedSite, others)) {
+            return null;
+        }
+        return store(assignedSite);
+    }
+
+    @Override
+    public AssignedSite getAssignedSiteById(int assignedSiteId) {
+        return Rows.copy(assignedSites.get(assignedSiteId));
+    }
+
+    @Override
+    public Collection<AssignedSite> getAssignedSiteByReservationId(int reservationId) {
+        return find(assignedSite -> assignedSite.getReservationId() == reservationId);
+    }
+
+    @Override
+    public Collection<AssignedSite> getAllAssignedSites() {
+        return find(assignedSite -> true);
+    }
+
+    /**
+     * Passes the assigned sites that overlap the given dates to the action in
+     * order of arrival.
+     */
+    @Override
+    public boolean forEachAssignedSite(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super AssignedSite> action) {
+        List<AssignedSite> found = find(assignedSite -> Rows.overlaps(assignedSite.getArrivalDate(),
+                assignedSite.getDepartureDate(), startDate, endDate));
+        found.sort(Comparator.comparing(AssignedSite::getArrivalDate)
+                .thenComparingInt(AssignedSite::getAssignedSiteId));
+        for (AssignedSite assignedSite : found) {
+            action.accept(assignedSite);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteAssignedSiteById(int assignedSiteId) {
+        assignedSites.remove(assignedSiteId);
+        AvailabilityIndex.getInstance().remove(assignedSiteId);
+        return true;
+    }
+
+    @Override
+    public boolean deleteAssignedSite(AssignedSite assignedSite) {
+        if (assignedSite == null) {
+            return false;
+        }
+        return deleteAssignedSiteById(assignedSite.getAssignedSiteId());
+    }
+
+    @Override
+    public boolean sitesAvailableInDateRange(int campsiteId, LocalDateTime startDate, LocalDateTime endDate) {
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.isAvailable(campsiteId, startDate, endDate);
+        }
+        for (AssignedSite assignedSite : assignedSites.values()) {
+            if (assignedSite.getCampsiteId() == campsiteId && Rows.overlaps(assignedSite.getArrivalDate(),
+                    assignedSite.getDepartureDate(), startDate, endDate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assigns several sites to one reservation. A requested site is rejected
+     * if it overlaps an assigned site or an earlier site in the same request.
+     * The <code>AvailabilityIndex</code> is asked about the assigned sites
+     * once it has been loaded, as it holds the same sites.
+     *
+     * @return A list in the same order as <code>assignedSites</code> holding
+     * the added <code>AssignedSite</code>, or null where the site was not
+     * available.
+     */
+    @Override
+    public synchronized List<AssignedSite> assignSites(int reservationId, List<AssignedSite> requested) {
+        List<AssignedSite> results = new ArrayList<>();
+        List<AssignedSite> accepted = new ArrayList<>();
+        for (AssignedSite assignedSite : requested) {
+            if (!sitesAvailableInDateRange(assignedSite.getCampsiteId(), assignedSite.getArrivalDate(),
+                    assignedSite.getDepartureDate()) || SiteEdits.overlapsAny(assignedSite, accepted)) {
+                results.add(null);
+                continue;
+            }
+            assignedSite.setReservationId(reservationId);
+            accepted.add(assignedSite);
+            results.add(assignedSite);
+        }
+        for (AssignedSite assignedSite : accepted) {
+            insert(assignedSite);
+        }
+        return results;
+    }
+
+    /**
+     * Moves assigned sites to other campsites. Every move is checked against
+     * the assigned sites that are not being moved, so a set of moves may
+     * swap campsites between its own sites. Nothing is changed if any move
+     * conflicts or a site is locked or does not exist.
+     *
+     * @return True if every site was moved.
+     */
+    @Override
+    public synchronized boolean reassignSites(List<AssignedSite> moved) {
+        Set<Integer> movedIds = new HashSet<>();
+        for (AssignedSite assignedSite : moved) {
+            movedIds.add(assignedSite.getAssignedSiteId());
+        }
+        List<AssignedSite> staying = find(assignedSite -> !movedIds.contains(assignedSite.getAssignedSiteId()));
+        List<AssignedSite> stored = new ArrayList<>();
+        for (AssignedSite assignedSite : moved) {
+            AssignedSite existing = assignedSites.get(assignedSite.getAssignedSiteId());
+            if (existing == null || existing.getLockSite() || SiteEdits.overlapsAny(assignedSite, staying)) {
+                return false;
+            }
+            stored.add(existing);
+        }
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        for (int i = 0; i < moved.size(); i++) {
+            // Only the campsite is changed, as the update statement changes
+            AssignedSite updated = Rows.copy(stored.get(i));
+            updated.setCampsiteId(moved.get(i).getCampsiteId());
+            assignedSites.put(updated.getAssignedSiteId(), updated);
+            index.put(updated);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the assigned sites of a reservation with the submitted ones,
+     * changing only what differs. A submitted site that matches an existing
+     * site is left alone, a changed site is updated in place so it keeps its
+     * id, check in and deposit, and the rest are added or deleted.
+     *
+     * A change that would overlap another booking is refused: a new site is
+     * not added and a changed site keeps its old campsite and dates.
+     *
+     * @return The sites of the reservation after the edit.
+     */
+    @Override
+    public synchronized List<AssignedSite> editSites(int reservationId, List<AssignedSite> submitted) {
+        List<AssignedSite> unpaired = find(assignedSite -> assignedSite.getReservationId() == reservationId);
+        AssignedSite[] pairs = SiteEdits.pair(submitted, unpaired);
+
+        // What the changes must not overlap: the other reservations' sites
+        // and this reservation's unchanged sites
+        List<AssignedSite> taken = find(assignedSite -> assignedSite.getReservationId() != reservationId);
+        for (int i = 0; i < submitted.size(); i++) {
+            if (pairs[i] != null && SiteEdits.isSameStay(pairs[i], submitted.get(i))) {
+                taken.add(pairs[i]);
+            }
+        }
+
+        boolean[] accepted = SiteEdits.acceptChanges(submitted, pairs, taken);
+        List<AssignedSite> kept = new ArrayList<>();
+        List<AssignedSite> updated = new ArrayList<>();
+        List<AssignedSite> inserted = new ArrayList<>();
+        for (int i = 0; i < submitted.size(); i++) {
+            AssignedSite site = submitted.get(i);
+            AssignedSite pair = pairs[i];
+            if (!accepted[i]) {
+                if (pair != null) {
+                    kept.add(pair);
+                }
+                continue;
+            }
+            site.setReservationId(reservationId);
+            if (pair == null) {
+                inserted.add(site);
+            } else {
+                site.setAssignedSiteId(pair.getAssignedSiteId());
+                site.setCheckIn(pair.getCheckIn());
+                site.setSiteDeposit(pair.getSiteDeposit());
+                updated.add(site);
+            }
+        }
+
+        for (AssignedSite site : unpaired) {
+            deleteAssignedSiteById(site.getAssignedSiteId());
+        }
+        // Already checked together, which the single writes can not do for a
+        // swap
+        for (AssignedSite site : updated) {
+            store(site);
+        }
+        for (AssignedSite site : inserted) {
+            insert(site);
+        }
+        List<AssignedSite> sites = new ArrayList<>(kept);
+        sites.addAll(updated);
+        sites.addAll(inserted);
+        return sites;
+    }
+
+    /**
+     * @return The number of assigned sites.
+     */
+    public int size() {
+        return assignedSites.size();
+    }
+
+    /**
+     * Adds an assigned site that has been checked, giving it a new id.
+     */
+    private AssignedSite insert(AssignedSite assignedSite) {
+        assignedSite.setAssignedSiteId(lastId.incrementAndGet());
+        return store(assignedSite);
+    }
+
+    /**
+     * Writes an assigned site that has been checked under its id.
+     */
+    private AssignedSite store(AssignedSite assignedSite) {
+        assignedSites.put(assignedSite.getAssignedSiteId(), Rows.copy(assignedSite));
+        AvailabilityIndex.getInstance().put(assignedSite);
+        return assignedSite;
+    }
+
+    /**
+     * Finds assigned sites, in order of id.
+     */
+    private List<AssignedSite> find(Predicate<AssignedSite> condition) {
+        List<AssignedSite> found = new ArrayList<>();
+        for (AssignedSite assignedSite : assignedSites.values()) {
+            if (condition.test(assignedSite)) {
+                found.add(Rows.copy(assignedSite));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,190 @@
+package memory;
+
+import common.AssignedSite;
+import common.Campsite;
+import common.SiteType;
+import database.AvailabilityIndex;
+import database.CampsiteSearch;
+import database.OccupancyBitmap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>CampsiteManager</code> that keeps the campsites in memory, with the
+ * same results as <code>mysql.CampsiteManager</code>. As in the database, a
+ * campsite is read without its image, which is kept apart and only read by
+ * <code>readCampsiteImage</code>.
+ */
+public class CampsiteManager implements database.CampsiteManager {
+
+    private final ConcurrentSkipListMap<Integer, Campsite> campsites = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, Blob> images = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final AssignedSiteManager assignedSiteManager;
+
+    /**
+     * @param assignedSiteManager The assigned sites checked for free
+     * campsites while the <code>AvailabilityIndex</code> is not loaded.
+     */
+    public CampsiteManager(AssignedSiteManager assignedSiteManager) {
+        this.assignedSiteManager = assignedSiteManager;
+    }
+
+    @Override
+    public Campsite addCampsite(Campsite campsite) {
+        campsite.setCampsiteName(campsite.getCampsiteName().trim());
+        campsite.setNotes(campsite.getNotes().trim());
+        campsite.setCampsiteId(lastId.incrementAndGet());
+        if (campsite.getImage() != null) {
+            images.put(campsite.getCampsiteId(), campsite.getImage());
+        }
+        campsites.put(campsite.getCampsiteId(), Rows.copy(campsite));
+        OccupancyBitmap.getInstance().addCampsite(campsite.getCampsiteId());
+        CampsiteSearch.getInstance().put(campsite);
+        return campsite;
+    }
+
+    /**
+     * Writes the campsite over the stored one with the same id. If it has no
+     * image the stored image is kept.
+     *
+     * @return The campsite, or null if there is no campsite with its id.
+     */
+    @Override
+    public synchronized Campsite updateCampsite(Campsite campsite) {
+        campsite.setCampsiteName(campsite.getCampsiteName().trim());
+        campsite.setNotes(campsite.getNotes().trim());
+        if (!campsites.containsKey(campsite.getCampsiteId())) {
+            return null;
+        }
+        if (campsite.getImage() != null) {
+            images.put(campsite.getCampsiteId(), campsite.getImage());
+        }
+        campsites.put(campsite.getCampsiteId(), Rows.copy(campsite));
+        CampsiteSearch.getInstance().put(campsite);
+        return campsite;
+    }
+
+    @Override
+    public Campsite getCampsiteById(int campsiteId) {
+        return Rows.copy(campsites.get(campsiteId));
+    }
+
+    @Override
+    public Campsite getCampsiteByCampsiteName(String campsiteName) {
+        List<Campsite> found = find(campsite -> Rows.same(campsite.getCampsiteName(), campsiteName));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public Collection<Campsite> getAllCampsitesBySiteType(SiteType siteType) {
+        return find(campsite -> campsite.getSiteType() == siteType);
+    }
+
+    /**
+     * Returns the campsites with no assigned site in the date range, from
+     * the <code>AvailabilityIndex</code> once it has been loaded and from the
+     * assigned sites until then.
+     */
+    @Override
+    public Collection<Campsite> getUnassignedSitesByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        Set<Integer> occupied;
+        if (index.isLoaded()) {
+            occupied = index.getOccupiedCampsiteIds(startDate, endDate);
+        } else {
+            occupied = new HashSet<>();
+            for (AssignedSite assignedSite : assignedSiteManager.getAllAssignedSites()) {
+                if (Rows.overlaps(assignedSite.getArrivalDate(), assignedSite.getDepartureDate(),
+                        startDate, endDate)) {
+                    occupied.add(assignedSite.getCampsiteId());
+                }
+            }
+        }
+        return find(campsite -> !occupied.contains(campsite.getCampsiteId()));
+    }
+
+    @Override
+    public Collection<Campsite> getAllCampsites() {
+        return find(campsite -> true);
+    }
+
+    @Override
+    public boolean forEachCampsite(Consumer<? super Campsite> action) {
+        for (Campsite campsite : find(campsite -> true)) {
+            action.accept(campsite);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean deleteCampsiteById(int campsiteId) {
+        campsites.remove(campsiteId);
+        images.remove(campsiteId);
+        AvailabilityIndex.getInstance().removeCampsite(campsiteId);
+        OccupancyBitmap.getInstance().removeCampsite(campsiteId);
+        CampsiteSearch.getInstance().remove(campsiteId);
+        return true;
+    }
+
+    @Override
+    public boolean deleteCampsite(Campsite campsite) {
+        if (campsite == null) {
+            return false;
+        }
+        return deleteCampsiteById(campsite.getCampsiteId());
+    }
+
+    @Override
+    public boolean readCampsiteImage(int campsiteId, ImageConsumer consumer) throws IOException {
+        Blob image = images.get(campsiteId);
+        if (image == null || !campsites.containsKey(campsiteId)) {
+            return false;
+        }
+        try (InputStream stream = image.getBinaryStream()) {
+            consumer.accept(stream, image.length());
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in readCampsiteImage"
+                    + "(int campsiteId, ImageConsumer consumer) campsiteId=" + campsiteId + " error: " + ex);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Campsite getCampsiteWithNameNumberSection(Campsite campsite) {
+        List<Campsite> found = find(stored -> Rows.same(stored.getCampsiteName(), campsite.getCampsiteName())
+                && Character.toLowerCase(stored.getCampsiteSection())
+                == Character.toLowerCase(campsite.getCampsiteSection())
+                && stored.getCampsiteNumber() == campsite.getCampsiteNumber());
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Finds campsites, in order of id.
+     */
+    private List<Campsite> find(Predicate<Campsite> condition) {
+        List<Campsite> found = new ArrayList<>();
+        for (Campsite campsite : campsites.values()) {
+            if (condition.test(campsite)) {
+                found.add(Rows.copy(campsite));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,307 @@
+package memory;
+
+import common.Customer;
+import common.CustomerType;
+import database.CustomerDirectory;
+import database.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>CustomerManager</code> that keeps the customers in memory, with the
+ * same results as <code>mysql.CustomerManager</code>.
+ *
+ * As in the database, a customer is linked to customer information, which
+ * several customers may share: updating one of them changes the information
+ * of all of them, and the information is deleted with the last customer that
+ * uses it. Each customer is stored already joined to its information, so a
+ * read is one lookup. Text is compared without regard to case, as the
+ * database compares it.
+ *
+ * The <code>CustomerDirectory</code> is kept up to date the same way the
+ * MySQL manager keeps it.
+ */
+public class CustomerManager implements database.CustomerManager {
+
+    private final ConcurrentSkipListMap<Integer, Customer> customers = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Integer, Customer> information = new ConcurrentHashMap<>();
+    private final AtomicInteger lastCustomerId = new AtomicInteger();
+    private final AtomicInteger lastInformationId = new AtomicInteger();
+
+    private final Pager<Customer> byId = new Pager<>(Customer::getCustomerId, null, null, false);
+    private final Pager<Customer> byName = new Pager<>(Customer::getCustomerId, Customer::getName,
+            String.CASE_INSENSITIVE_ORDER, false);
+    private final Pager<Customer> byLastName = new Pager<>(Customer::getCustomerId, Customer::getLastName,
+            String.CASE_INSENSITIVE_ORDER, false);
+
+    /**
+     * Adds the customer with new customer information. A group or club is
+     * its own group, named by its information id.
+     */
+    @Override
+    public synchronized Customer addCustomer(Customer customer) {
+        trimStoredFields(customer);
+        customer.setCustomerInformationId(lastInformationId.incrementAndGet());
+        if (customer.getCustomerType() != CustomerType.Individual) {
+            customer.setGroupId(customer.getCustomerInformationId());
+        }
+        customer.setCustomerId(lastCustomerId.incrementAndGet());
+        information.put(customer.getCustomerInformationId(), Rows.copy(customer));
+        customers.put(customer.getCustomerId(), Rows.copy(customer));
+        CustomerDirectory.getInstance().put(customer);
+        return customer;
+    }
+
+    /**
+     * Adds the customer linked to the existing information with its
+     * customer information id.
+     */
+    @Override
+    public synchronized Customer addOnlyCustomer(Customer customer) {
+        trimStoredFields(customer);
+        Customer shared = information.get(customer.getCustomerInformationId());
+        if (shared == null) {
+            WebErrorLogger.log(Level.SEVERE, "No customer information in addOnlyCustomer"
+                    + "(Customer customer) customer=" + customer);
+            return customer;
+        }
+        customer.setCustomerId(lastCustomerId.incrementAndGet());
+        customers.put(customer.getCustomerId(), Rows.join(customer, shared));
+        CustomerDirectory.getInstance().link(customer);
+        return customer;
+    }
+
+    /**
+     * Updates the customer and the information it shares with the customers
+     * linked to it.
+     *
+     * @return The customer, or null if there is no customer with its id.
+     */
+    @Override
+    public synchronized Customer updateCustomer(Customer customer) {
+        trimStoredFields(customer);
+        int informationId = customer.getCustomerInformationId();
+        // Like the two UPDATE statements, the information is written even
+        // when the customer is missing
+        if (information.containsKey(informationId)) {
+            Customer shared = Rows.copy(customer);
+            information.put(informationId, shared);
+            for (Customer linked : customers.values()) {
+                if (linked.getCustomerInformationId() == informationId) {
+                    customers.put(linked.getCustomerId(), Rows.join(linked, shared));
+                }
+            }
+        }
+        Customer row = customers.get(customer.getCustomerId());
+        if (row == null) {
+            return null;
+        }
+        // The customer keeps the information it is linked to
+        Customer updated = Rows.join(customer, row);
+        updated.setCustomerInformationId(row.getCustomerInformationId());
+        customers.put(updated.getCustomerId(), updated);
+        CustomerDirectory.getInstance().put(customer);
+        return customer;
+    }
+
+    /**
+     * Deletes the customer, and its information unless another customer is
+     * linked to it.
+     */
+    @Override
+    public synchronized boolean deleteCustomer(Customer customer) {
+        customers.remove(customer.getCustomerId());
+        int informationId = customer.getCustomerInformationId();
+        if (!any(row -> row.getCustomerInformationId() == informationId)) {
+            information.remove(informationId);
+        }
+        CustomerDirectory.getInstance().remove(customer.getCustomerId());
+        return true;
+    }
+
+    @Override
+    public boolean deleteCustomerbyID(int customerID) {
+        Customer customer = getCustomerByID(customerID);
+        if (customer == null) {
+            return false;
+        }
+        return deleteCustomer(customer);
+    }
+
+    @Override
+    public Customer getCustomerByID(int customerID) {
+        return Rows.copy(customers.get(customerID));
+    }
+
+    /**
+     * @return The customer with the lowest id that has the name, or null.
+     */
+    @Override
+    public Customer getCustomerByName(String name) {
+        List<Customer> found = find(row -> Rows.same(row.getName(), name), 1);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * @return The group or club the customer belongs to, or null if the
+     * customer or the group does not exist.
+     */
+    @Override
+    public Customer getGroupByCustomer(int customerID) {
+        Customer customer = customers.get(customerID);
+        if (customer == null) {
+            return null;
+        }
+        int groupId = customer.getGroupId();
+        List<Customer> found = find(row -> row.getGroupId() == groupId
+                && row.getCustomerType() != CustomerType.Individual, 1);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public Collection<Customer> getAllCustomersInGroup(int groupID) {
+        return find(row -> row.getGroupId() == groupID
+                && row.getCustomerType() == CustomerType.Individual, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<Customer> getAllCustomersWithEmailAddress(String emailAddress) {
+        return find(customer -> Rows.same(customer.getEmailAddress(), emailAddress)
+                || Rows.same(customer.getSpouseEmailAddress(), emailAddress), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<Customer> getAllCustomersWithPhoneNumber(String phoneNumber) {
+        return find(customer -> Rows.same(customer.getPrimaryPhone(), phoneNumber)
+                || Rows.same(customer.getMobilePhone(), phoneNumber)
+                || Rows.same(customer.getSpousePhone(), phoneNumber), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the customers whose last name contains the first element of the
+     * filter, whose zip is the second, whose mobile or spouse's phone is the
+     * third and whose type is any of the rest. A null element is not
+     * checked; a filter of nulls finds nothing, as the query it would build
+     * is not valid.
+     */
+    @Override
+    public Collection<Customer> getAllCustomersWithFilter(ArrayList<String> filter) {
+        String lastName = filter.get(0);
+        String zip = filter.get(1);
+        String phone = filter.get(2);
+        List<String> types = new ArrayList<>();
+        for (int i = 3; i <= 5; i++) {
+            if (filter.get(i) != null) {
+                types.add(filter.get(i));
+            }
+        }
+        if (lastName == null && zip == null && phone == null && types.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return find(customer -> (lastName == null || Rows.contains(customer.getLastName(), lastName))
+                && (zip == null || Rows.same(customer.getZip(), zip))
+                && (phone == null || Rows.same(customer.getMobilePhone(), phone)
+                || Rows.same(customer.getSpousePhone(), phone))
+                && (types.isEmpty() || types.stream().anyMatch(
+                        type -> Rows.same(customer.getCustomerType().toString(), type))), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Collection<Customer> getAllCustomers() {
+        return find(row -> true, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action) {
+        for (Customer row : customers.values()) {
+            action.accept(Rows.copy(row));
+        }
+        return true;
+    }
+
+    @Override
+    public Page<Customer> getCustomerPage(String after, int limit, Sort sort) {
+        Pager<Customer> pager = sort == Sort.NAME ? byName : sort == Sort.LAST_NAME ? byLastName : byId;
+        return pager.page(customers, after, limit, Rows::copy);
+    }
+
+    @Override
+    public Page<Customer> getCustomerPageByName(String prefix, String after, int limit) {
+        String start = prefix == null ? "" : prefix.trim();
+        return byName.page(customers, customer -> customer.getName() != null
+                && customer.getName().regionMatches(true, 0, start, 0, start.length()),
+                after, limit, Rows::copy);
+    }
+
+    /**
+     * @return The ids of the customers with the same name and primary phone
+     * number as the given customer.
+     */
+    @Override
+    public Collection<Integer> checkPreexisting(Customer customer) {
+        Collection<Integer> customerIds = new ArrayList<>();
+        for (Customer row : customers.values()) {
+            if (Rows.same(row.getName(), customer.getName())
+                    && Rows.same(row.getPrimaryPhone(), customer.getPrimaryPhone())) {
+                customerIds.add(row.getCustomerId());
+            }
+        }
+        return customerIds;
+    }
+
+    /**
+     * @return The number of customers.
+     */
+    public int size() {
+        return customers.size();
+    }
+
+    private boolean any(Predicate<Customer> condition) {
+        for (Customer row : customers.values()) {
+            if (condition.test(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds customers, in order of id.
+     */
+    private List<Customer> find(Predicate<Customer> condition, int limit) {
+        List<Customer> found = new ArrayList<>();
+        for (Customer row : customers.values()) {
+            if (found.size() == limit) {
+                break;
+            }
+            if (condition.test(row)) {
+                found.add(Rows.copy(row));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Trims the fields the database stores trimmed.
+     */
+    private static void trimStoredFields(Customer customer) {
+        customer.setName(Rows.trim(customer.getName()));
+        customer.setPrimaryPhone(Rows.trim(customer.getPrimaryPhone()));
+        customer.setFirstName(Rows.trim(customer.getFirstName()));
+        customer.setLastName(Rows.trim(customer.getLastName()));
+        customer.setSpouseFirstName(Rows.trim(customer.getSpouseFirstName()));
+        customer.setSpouseLastName(Rows.trim(customer.getSpouseLastName()));
+        customer.setMobilePhone(Rows.trim(customer.getMobilePhone()));
+        customer.setSpousePhone(Rows.trim(customer.getSpousePhone()));
+        customer.setEmailAddress(Rows.trim(customer.getEmailAddress()));
+        customer.setSpouseEmailAddress(Rows.trim(customer.getSpouseEmailAddress()));
+    }
+}
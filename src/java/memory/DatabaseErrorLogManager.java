@@ -0,0 +1,87 @@
+package memory;
+
+import common.ErrorLog;
+import database.Page;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A <code>DatabaseErrorLogManager</code> that keeps the error logs in
+ * memory, in the order they were written.
+ */
+public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager {
+
+    private static final Pager<ErrorLog> NEWEST_FIRST = new Pager<>(ErrorLog::getErrorLogID, null, null, true);
+    private static final Pager<ErrorLog> OLDEST_FIRST = new Pager<>(ErrorLog::getErrorLogID, null, null, false);
+
+    private final ConcurrentSkipListMap<Integer, ErrorLog> errorLogs = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    @Override
+    public Collection<ErrorLog> getAllErrorLogs() {
+        Collection<ErrorLog> found = new ArrayList<>(errorLogs.size());
+        for (ErrorLog errorLog : errorLogs.values()) {
+            found.add(Rows.copy(errorLog));
+        }
+        return found;
+    }
+
+    @Override
+    public String getAllErrorLogsAsHTMLTable() {
+        List<Object[]> rows = new ArrayList<>();
+        for (ErrorLog errorLog : errorLogs.values()) {
+            rows.add(new Object[]{errorLog.getErrorLogID(), errorLog.getErrorLogDateTime(),
+                errorLog.getErrLevel(), errorLog.getLoggerName(), errorLog.getErrorMessage(),
+                errorLog.getException()});
+        }
+        return Rows.htmlTable(new String[]{"EVENT_ID", "EVENT_DATE", "LEVEL", "LOGGER", "MSG", "THROWABLE"},
+                rows);
+    }
+
+    @Override
+    public boolean forEachErrorLog(Consumer<? super ErrorLog> action) {
+        for (ErrorLog errorLog : errorLogs.values()) {
+            action.accept(Rows.copy(errorLog));
+        }
+        return true;
+    }
+
+    @Override
+    public Page<ErrorLog> getErrorLogPage(String after, int limit, Sort sort) {
+        Pager<ErrorLog> pager = sort == Sort.OLDEST_FIRST ? OLDEST_FIRST : NEWEST_FIRST;
+        return pager.page(errorLogs, after, limit, Rows::copy);
+    }
+
+    @Override
+    public void addErrorLog(ErrorLog errorLog) {
+        if (errorLog == null) {
+            return;
+        }
+        ErrorLog added = Rows.copy(errorLog);
+        added.setErrLevel(errorLog.getErrLevel().trim());
+        added.setLoggerName(errorLog.getLoggerName().trim());
+        added.setErrorMessage(errorLog.getErrorMessage().trim());
+        added.setException(errorLog.getException().trim());
+        added.setErrorLogID(lastId.incrementAndGet());
+        errorLogs.put(added.getErrorLogID(), added);
+    }
+
+    @Override
+    public ErrorLog getErrorLogByID(int id) {
+        return Rows.copy(errorLogs.get(id));
+    }
+
+    @Override
+    public void deleteErrorLog(int id) {
+        errorLogs.remove(id);
+    }
+
+    @Override
+    public void deleteAllErrorLogs() {
+        errorLogs.clear();
+    }
+}
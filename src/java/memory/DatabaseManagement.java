@@ -0,0 +1,118 @@
+package memory;
+
+import common.Campsite;
+import common.Customer;
+import database.AvailabilityIndex;
+import database.CampsiteSearch;
+import database.CustomerDirectory;
+import database.OccupancyBitmap;
+import database.WaitingListMatcher;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>DatabaseManagement</code> that keeps every table in memory. It
+ * gives the same results as <code>mysql.DatabaseManagement</code>, including
+ * the generated ids and what the filters find, without any I/O, so it can
+ * stand in for the database when timing the code above it or running the
+ * application without MySQL. Nothing is kept when the application stops.
+ *
+ * It is used instead of MySQL when the property
+ * <code>DatabaseImplementation</code> is <code>memory</code>.
+ *
+ * @see database.Database
+ */
+public class DatabaseManagement implements database.DatabaseManagement {
+
+    private final UserManager userManager = new UserManager();
+    private final DatabasePropertyManager databasePropertyManager = new DatabasePropertyManager();
+    private final DatabaseErrorLogManager databaseErrorLogManager = new DatabaseErrorLogManager();
+    private final CustomerManager customerManager = new CustomerManager();
+    private final ReservationManager reservationManager = new ReservationManager(customerManager);
+    private final AssignedSiteManager assignedSiteManager = new AssignedSiteManager();
+    private final CampsiteManager campsiteManager = new CampsiteManager(assignedSiteManager);
+    private final WaitingListManager waitingListManager = new WaitingListManager();
+    private final YearlyInformationManager yearlyInformationManager = new YearlyInformationManager();
+
+    /**
+     * Loads the in-memory structures that sit in front of the tables, the
+     * same ones <code>mysql.DatabaseManagement</code> loads.
+     *
+     * @see database.AvailabilityIndex
+     * @see database.OccupancyBitmap
+     * @see database.CampsiteSearch
+     * @see database.WaitingListMatcher
+     * @see database.CustomerDirectory
+     */
+    @Override
+    public void initializeDatabaseManagement() {
+        AvailabilityIndex.getInstance().load(assignedSiteManager.getAllAssignedSites());
+        Collection<Campsite> campsites = campsiteManager.getAllCampsites();
+        OccupancyBitmap.getInstance().load(
+                yearlyInformationManager.getYearlyInformationByYear(LocalDate.now().getYear()), campsites);
+        CampsiteSearch.getInstance().load(campsites);
+        WaitingListMatcher matcher = WaitingListMatcher.getInstance();
+        matcher.addMatchListener(match -> WebErrorLogger.log(Level.INFO,
+                "Waiting list entry can be booked: " + match));
+        matcher.load(waitingListManager.getAllWaitingLists());
+        List<Customer> customers = new ArrayList<>();
+        customerManager.forEachCustomer(customers::add);
+        CustomerDirectory.getInstance().load(customers);
+    }
+
+    /**
+     * Does nothing: the tables exist as soon as this object does.
+     */
+    @Override
+    public void CreateTables() {
+    }
+
+    @Override
+    public database.UserManager getUserManager() {
+        return userManager;
+    }
+
+    @Override
+    public database.DatabasePropertyManager getDatabasePropertyManager() {
+        return databasePropertyManager;
+    }
+
+    @Override
+    public database.DatabaseErrorLogManager getDatabaseErrorLogManager() {
+        return databaseErrorLogManager;
+    }
+
+    @Override
+    public database.CustomerManager getCustomerManager() {
+        return customerManager;
+    }
+
+    @Override
+    public database.ReservationManager getReservationManager() {
+        return reservationManager;
+    }
+
+    @Override
+    public database.CampsiteManager getCampsiteManager() {
+        return campsiteManager;
+    }
+
+    @Override
+    public database.AssignedSiteManager getAssignedSiteManager() {
+        return assignedSiteManager;
+    }
+
+    @Override
+    public database.WaitingListManager getWaitingListManager() {
+        return waitingListManager;
+    }
+
+    @Override
+    public database.YearlyInformationManager getYearlyInformationManager() {
+        return yearlyInformationManager;
+    }
+}
@@ -0,0 +1,104 @@
+package memory;
+
+import common.DatabaseProperty;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>DatabasePropertyManager</code> that keeps the properties in
+ * memory. Property names are unique and compared without regard to case, as
+ * in the properties table.
+ */
+public class DatabasePropertyManager implements database.DatabasePropertyManager {
+
+    private final ConcurrentSkipListMap<Integer, DatabaseProperty> properties = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastPropertyNumber = new AtomicInteger();
+
+    @Override
+    public Collection<DatabaseProperty> getAllDatabaseProperties() {
+        Collection<DatabaseProperty> found = new ArrayList<>(properties.size());
+        for (DatabaseProperty property : properties.values()) {
+            found.add(Rows.copy(property));
+        }
+        return found;
+    }
+
+    @Override
+    public String getAllDatabasePropertiesAsHTMLTable() {
+        List<Object[]> rows = new ArrayList<>();
+        for (DatabaseProperty property : properties.values()) {
+            rows.add(new Object[]{property.getPropertyNumber(), property.getPropertyName(),
+                property.getPropertyValue(), property.getDescription(), property.getPreviousValue(),
+                property.getDefaultValue()});
+        }
+        return Rows.htmlTable(new String[]{"propertyNumber", "propertyName", "propertyValue",
+            "description", "previousValue", "defaultValue"}, rows);
+    }
+
+    @Override
+    public String getPropertyValue(String propertyName) {
+        if (propertyName == null) {
+            return null;
+        }
+        DatabaseProperty property = getDataBasePropertyByName(propertyName.trim());
+        return property == null ? null : property.getPropertyValue();
+    }
+
+    @Override
+    public DatabaseProperty getDataBasePropertyByID(int propertyID) {
+        return Rows.copy(properties.get(propertyID));
+    }
+
+    @Override
+    public DatabaseProperty getDataBasePropertyByName(String propertyName) {
+        for (DatabaseProperty property : properties.values()) {
+            if (Rows.same(property.getPropertyName(), propertyName)) {
+                return Rows.copy(property);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a property with the next property number, or updates the
+     * property with the same name if there is one.
+     */
+    @Override
+    public synchronized void addDatabaseProperty(DatabaseProperty databaseProperty) {
+        if (databaseProperty == null) {
+            return;
+        }
+        DatabaseProperty existing = getDataBasePropertyByName(databaseProperty.getPropertyName());
+        if (existing != null) {
+            databaseProperty.setPropertyNumber(existing.getPropertyNumber());
+            updateDatabaseProperty(databaseProperty);
+            return;
+        }
+        databaseProperty.setPropertyNumber(lastPropertyNumber.incrementAndGet());
+        properties.put(databaseProperty.getPropertyNumber(), trimmed(databaseProperty));
+    }
+
+    /**
+     * Writes the property over the stored one with the same property number.
+     */
+    @Override
+    public synchronized void updateDatabaseProperty(DatabaseProperty databaseProperty) {
+        if (databaseProperty == null || !properties.containsKey(databaseProperty.getPropertyNumber())) {
+            return;
+        }
+        properties.put(databaseProperty.getPropertyNumber(), trimmed(databaseProperty));
+    }
+
+    private static DatabaseProperty trimmed(DatabaseProperty databaseProperty) {
+        DatabaseProperty property = Rows.copy(databaseProperty);
+        property.setPropertyName(property.getPropertyName().trim());
+        property.setPropertyValue(property.getPropertyValue().trim());
+        property.setDescription(property.getDescription().trim());
+        property.setPreviousValue(property.getPreviousValue().trim());
+        property.setDefaultValue(property.getDefaultValue().trim());
+        return property;
+    }
+}
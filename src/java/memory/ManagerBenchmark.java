@@ -0,0 +1,121 @@
+package memory;
+
+import common.AssignedSite;
+import common.Campsite;
+import common.Customer;
+import common.CustomerType;
+import common.Reservation;
+import common.SiteType;
+import database.CustomerManager;
+import database.Page;
+import database.ReservationManager;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Times the in-memory managers on a campground of 200 campsites with
+ * 100,000 customers, each with a reservation and an assigned site. With no
+ * I/O the times are the cost of the code above the database alone, the
+ * baseline to compare the same calls against MySQL with.
+ *
+ * Each call is run a number of times to warm up the JIT before it is timed,
+ * and the best time is printed.
+ *
+ * Usage: java memory.ManagerBenchmark [customers]
+ */
+class ManagerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int CAMPSITES = 200;
+
+    public static void main(String[] args) {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        DatabaseManagement database = new DatabaseManagement();
+        database.initializeDatabaseManagement();
+        long start = System.nanoTime();
+        populate(database, customers);
+        System.out.printf("%-34s %,d customers %8.1f ms%n", "populate", customers,
+                (System.nanoTime() - start) / 1e6);
+
+        ReservationManager reservations = database.getReservationManager();
+        CustomerManager customerManager = database.getCustomerManager();
+        time("getReservationByID(int)", () -> reservations.getReservationByID(customers / 2) == null ? 0 : 1);
+        time("getAllReservationsWithFilter(dates)", () -> reservations.getAllReservationsWithFilter(
+                new ArrayList<>(Arrays.asList("07/01/2030", "07/08/2030", null))).size());
+        time("getAllReservationsWithFilter(name)", () -> reservations.getAllReservationsWithFilter(
+                new ArrayList<>(Arrays.asList(null, null, "Customer " + (customers / 3) + "x"))).size());
+        time("getReservationPage(ARRIVAL_DATE)", () -> reservations.getReservationPage(null, Page.DEFAULT_LIMIT,
+                ReservationManager.Sort.ARRIVAL_DATE).getItems().size());
+        time("getCustomerPage(NAME)", () -> customerManager.getCustomerPage(null, Page.DEFAULT_LIMIT,
+                CustomerManager.Sort.NAME).getItems().size());
+        time("getAllCustomersWithPhoneNumber", () -> customerManager.getAllCustomersWithPhoneNumber(
+                phone(customers / 4)).size());
+        time("getUnassignedSitesByDateRange", () -> database.getCampsiteManager().getUnassignedSitesByDateRange(
+                LocalDateTime.of(2030, 7, 1, 14, 0), LocalDateTime.of(2030, 7, 8, 9, 0)).size());
+    }
+
+    private interface Call {
+
+        int run();
+    }
+
+    private static void time(String name, Call call) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += call.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink += call.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-34s %8.3f ms  (%d found)%n", name, best / 1e6, sink / (WARMUP_ITERATIONS
+                + MEASURED_ITERATIONS));
+    }
+
+    private static void populate(DatabaseManagement database, int customers) {
+        List<Integer> campsiteIds = new ArrayList<>();
+        for (int i = 1; i <= CAMPSITES; i++) {
+            Campsite campsite = database.getCampsiteManager().addCampsite(new Campsite("Site " + i, i,
+                    (char) ('A' + i % 4), 40, 25, true, i % 2 == 0, SiteType.Daily, "", null, null));
+            campsiteIds.add(campsite.getCampsiteId());
+        }
+        Collections.shuffle(campsiteIds, new java.util.Random(1));
+        LocalDateTime opening = LocalDateTime.of(2030, 5, 1, 14, 0);
+        for (int i = 1; i <= customers; i++) {
+            Customer customer = new Customer();
+            customer.setCustomerType(CustomerType.Individual);
+            customer.setName("Customer " + i + "x");
+            customer.setLastName("Last" + (i % 5000));
+            customer.setPrimaryPhone(phone(i));
+            customer.setZip(String.valueOf(10000 + i % 900));
+            customer = database.getCustomerManager().addCustomer(customer);
+
+            // One week per campsite in turn, so the sites never overlap
+            int campsiteId = campsiteIds.get(i % CAMPSITES);
+            LocalDateTime arrival = opening.plusWeeks(i / CAMPSITES);
+            LocalDateTime departure = arrival.plusDays(7).withHour(9);
+            Reservation reservation = database.getReservationManager().addReservation(new Reservation(
+                    customer.getCustomerId(), arrival, departure, 7, 1, 1, arrival.minusMonths(2),
+                    BigDecimal.TEN, ""));
+            AssignedSite assignedSite = new AssignedSite();
+            assignedSite.setCustomerId(customer.getCustomerId());
+            assignedSite.setCampsiteId(campsiteId);
+            assignedSite.setSiteDeposit(BigDecimal.TEN);
+            assignedSite.setArrivalDate(arrival);
+            assignedSite.setDepartureDate(departure);
+            database.getAssignedSiteManager().assignSites(reservation.getReservationId(),
+                    Collections.singletonList(assignedSite));
+        }
+    }
+
+    private static String phone(int customer) {
+        return String.format("555-%07d", customer);
+    }
+}
@@ -0,0 +1,159 @@
+package memory;
+
+import database.Page;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads one page of an in-memory table for the <code>get...Page</code>
+ * methods, in the same order and with the same kind of cursor as
+ * <code>mysql.KeysetPager</code>: the rows are ordered by a sort value and
+ * then by the id, a null sort value comes before all others, and the next
+ * page is the rows after the last row of the previous page.
+ *
+ * A page sorted on the id alone is read straight from the table, which is
+ * kept in id order. A page sorted on another value keeps only the first
+ * <code>limit + 1</code> rows past the cursor while it scans the table, so a
+ * page costs one pass over the rows and no sort of the whole table.
+ *
+ * @param <T> The type of the rows.
+ */
+final class Pager<T> {
+
+    private final ToIntFunction<T> id;
+    private final Function<T, String> sortValue;
+    private final Comparator<String> valueOrder;
+    private final boolean descending;
+    private final Comparator<T> order;
+
+    /**
+     * Creates a pager.
+     *
+     * @param id The id of a row.
+     * @param sortValue The value a row is sorted on, as the text the cursor
+     * carries, or null to sort on the id alone.
+     * @param valueOrder The order of the sort values, or null to sort on the
+     * id alone. The ISO text of a date sorts in date order.
+     * @param descending True to list the largest values first.
+     */
+    Pager(ToIntFunction<T> id, Function<T, String> sortValue, Comparator<String> valueOrder,
+            boolean descending) {
+        this.id = id;
+        this.sortValue = sortValue;
+        this.valueOrder = valueOrder == null ? null : Comparator.nullsFirst(valueOrder);
+        this.descending = descending;
+        this.order = (a, b) -> compare(valueOf(a), id.applyAsInt(a), valueOf(b), id.applyAsInt(b));
+    }
+
+    /**
+     * Reads a page.
+     *
+     * @param rows The table, by id.
+     * @param after The cursor of the previous page, or null for the first
+     * page. A cursor that cannot be read also gives the first page.
+     * @param limit The most rows to return; see <code>Page.clampLimit</code>.
+     * @param copy Copies a row to hand out.
+     * @return The page.
+     */
+    Page<T> page(NavigableMap<Integer, T> rows, String after, int limit, UnaryOperator<T> copy) {
+        return page(rows, row -> true, after, limit, copy);
+    }
+
+    /**
+     * Reads a page of the rows that meet a condition.
+     *
+     * @param rows The table, by id.
+     * @param condition The rows to list.
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most rows to return; see <code>Page.clampLimit</code>.
+     * @param copy Copies a row to hand out.
+     * @return The page.
+     */
+    Page<T> page(NavigableMap<Integer, T> rows, Predicate<T> condition, String after, int limit,
+            UnaryOperator<T> copy) {
+        limit = Page.clampLimit(limit);
+        int afterId = Page.cursorId(after);
+        String afterValue = Page.cursorValue(after);
+        List<T> rowsPast = sortValue == null
+                ? following(rows, condition, afterId, limit + 1)
+                : smallest(rows, condition, afterId, afterValue, limit + 1);
+        List<T> items = new ArrayList<>(Math.min(limit, rowsPast.size()));
+        for (int i = 0; i < rowsPast.size() && i < limit; i++) {
+            items.add(copy.apply(rowsPast.get(i)));
+        }
+        String nextCursor = null;
+        if (rowsPast.size() > limit) {
+            T last = rowsPast.get(limit - 1);
+            nextCursor = Page.encodeCursor(valueOf(last), id.applyAsInt(last));
+        }
+        return new Page<>(items, nextCursor);
+    }
+
+    /**
+     * Takes the first rows after the given id straight from the table.
+     */
+    private List<T> following(NavigableMap<Integer, T> rows, Predicate<T> condition, int afterId, int count) {
+        NavigableMap<Integer, T> past = descending ? rows.descendingMap() : rows;
+        if (afterId >= 0) {
+            past = past.tailMap(afterId, false);
+        }
+        List<T> taken = new ArrayList<>(count);
+        for (T row : past.values()) {
+            if (!condition.test(row)) {
+                continue;
+            }
+            taken.add(row);
+            if (taken.size() == count) {
+                break;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Finds the first rows after the cursor in the order of the pager.
+     */
+    private List<T> smallest(NavigableMap<Integer, T> rows, Predicate<T> condition, int afterId,
+            String afterValue, int count) {
+        // The last row kept is at the head, to be dropped for an earlier one
+        PriorityQueue<T> kept = new PriorityQueue<>(count, order.reversed());
+        for (T row : rows.values()) {
+            if (!condition.test(row)) {
+                continue;
+            }
+            if (afterId >= 0 && compare(valueOf(row), id.applyAsInt(row), afterValue, afterId) <= 0) {
+                continue;
+            }
+            if (kept.size() < count) {
+                kept.add(row);
+            } else if (order.compare(row, kept.peek()) < 0) {
+                kept.poll();
+                kept.add(row);
+            }
+        }
+        List<T> sorted = new ArrayList<>(kept);
+        Collections.sort(sorted, order);
+        return sorted;
+    }
+
+    private String valueOf(T row) {
+        return sortValue == null ? null : sortValue.apply(row);
+    }
+
+    private int compare(String value, int rowId, String otherValue, int otherId) {
+        int compared = valueOrder == null ? 0 : valueOrder.compare(value, otherValue);
+        if (compared == 0) {
+            compared = Integer.compare(rowId, otherId);
+        }
+        return descending ? -compared : compared;
+    }
+}
@@ -0,0 +1,209 @@
+package memory;
+
+import common.Reservation;
+import database.AvailabilityIndex;
+import database.Page;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>ReservationManager</code> that keeps the reservations in memory,
+ * with the same results as <code>mysql.ReservationManager</code>.
+ */
+public class ReservationManager implements database.ReservationManager {
+
+    private static final Pager<Reservation> BY_ID = new Pager<>(Reservation::getReservationId, null, null, false);
+    private static final Pager<Reservation> BY_ARRIVAL_DATE = new Pager<>(Reservation::getReservationId,
+            reservation -> reservation.getArrivalDate().toString(), Comparator.naturalOrder(), false);
+    private static final Pager<Reservation> BY_ARRIVAL_DATE_DESCENDING = new Pager<>(
+            Reservation::getReservationId, reservation -> reservation.getArrivalDate().toString(),
+            Comparator.naturalOrder(), true);
+
+    private final ConcurrentSkipListMap<Integer, Reservation> reservations = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final CustomerManager customerManager;
+
+    /**
+     * @param customerManager The customers the filter looks names up in.
+     */
+    public ReservationManager(CustomerManager customerManager) {
+        this.customerManager = customerManager;
+    }
+
+    @Override
+    public Reservation addReservation(Reservation reservation) {
+        reservation.setReservationId(lastId.incrementAndGet());
+        reservations.put(reservation.getReservationId(), Rows.copy(reservation));
+        return reservation;
+    }
+
+    /**
+     * Updates the dates, sites, deposit and notes of the reservation. Like
+     * the update statement, the customer and the date it was made are left
+     * as they were.
+     *
+     * @return The reservation, or null if there is no reservation with its
+     * id.
+     */
+    @Override
+    public synchronized Reservation updateReservation(Reservation reservation) {
+        Reservation stored = reservations.get(reservation.getReservationId());
+        if (stored == null) {
+            return null;
+        }
+        Reservation updated = Rows.copy(reservation);
+        updated.setCustomerId(stored.getCustomerId());
+        updated.setDateReservationMade(stored.getDateReservationMade());
+        reservations.put(updated.getReservationId(), updated);
+        return reservation;
+    }
+
+    @Override
+    public boolean deleteReservation(Reservation reservation) {
+        reservations.remove(reservation.getReservationId());
+        AvailabilityIndex.getInstance().removeReservation(reservation.getReservationId());
+        return true;
+    }
+
+    @Override
+    public boolean deleteReservationByID(int reservationID) {
+        Reservation reservation = getReservationByID(reservationID);
+        if (reservation == null) {
+            return false;
+        }
+        return deleteReservation(reservation);
+    }
+
+    @Override
+    public Reservation getReservationByID(int reservationID) {
+        return Rows.copy(reservations.get(reservationID));
+    }
+
+    @Override
+    public Collection<Reservation> getReservationsByCustomerID(int customerID) {
+        return find(reservation -> reservation.getCustomerId() == customerID);
+    }
+
+    @Override
+    public Collection<Reservation> getReservationsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return find(reservation -> Rows.overlaps(reservation.getArrivalDate(), reservation.getDepartureDate(),
+                startDate, endDate));
+    }
+
+    /**
+     * Finds the reservations by the filter of
+     * <code>mysql.ReservationManager</code>: an arrival date and a departure
+     * date as MM/dd/yyyy, either of which may be null, and part of the name
+     * of the customer. A filter of nulls finds nothing, as the query it would
+     * build is not valid, and so does a name that more than one customer
+     * has, as the subquery would return more than one row.
+     */
+    @Override
+    public Collection<Reservation> getAllReservationsWithFilter(ArrayList<String> filter) {
+        LocalDateTime start = filter.get(0) == null ? null : parseFilterDate(filter.get(0), 14);
+        LocalDateTime end = filter.get(1) == null ? null : parseFilterDate(filter.get(1), 9);
+        String name = filter.get(2);
+        if (start == null && end == null && name == null) {
+            return new ArrayList<>();
+        }
+        Integer customerId = null;
+        if (name != null) {
+            List<Integer> named = new ArrayList<>();
+            customerManager.forEachCustomer(customer -> {
+                if (Rows.contains(customer.getName(), name)) {
+                    named.add(customer.getCustomerId());
+                }
+            });
+            if (named.size() > 1) {
+                WebErrorLogger.log(Level.SEVERE, "More than one customer in "
+                        + "getAllReservationsWithFilter(ArrayList<String> filter) filter=" + filter);
+                return new ArrayList<>();
+            }
+            if (named.isEmpty()) {
+                return new ArrayList<>();
+            }
+            customerId = named.get(0);
+        }
+        Integer customer = customerId;
+        return find(reservation -> {
+            if (start != null && end != null) {
+                if (!Rows.overlaps(reservation.getArrivalDate(), reservation.getDepartureDate(), start, end)) {
+                    return false;
+                }
+            } else if (start != null) {
+                if (reservation.getArrivalDate().isBefore(start)) {
+                    return false;
+                }
+            } else if (end != null && reservation.getDepartureDate().isAfter(end)) {
+                return false;
+            }
+            return customer == null || reservation.getCustomerId() == customer;
+        });
+    }
+
+    @Override
+    public Collection<Reservation> getAllReservations() {
+        return find(reservation -> true);
+    }
+
+    /**
+     * Passes the reservations that overlap the given dates to the action in
+     * order of arrival.
+     */
+    @Override
+    public boolean forEachReservation(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super Reservation> action) {
+        List<Reservation> found = find(reservation -> Rows.overlaps(reservation.getArrivalDate(),
+                reservation.getDepartureDate(), startDate, endDate));
+        found.sort(Comparator.comparing(Reservation::getArrivalDate)
+                .thenComparingInt(Reservation::getReservationId));
+        for (Reservation reservation : found) {
+            action.accept(reservation);
+        }
+        return true;
+    }
+
+    @Override
+    public Page<Reservation> getReservationPage(String after, int limit, Sort sort) {
+        Pager<Reservation> pager = sort == Sort.ARRIVAL_DATE ? BY_ARRIVAL_DATE
+                : sort == Sort.ARRIVAL_DATE_DESCENDING ? BY_ARRIVAL_DATE_DESCENDING : BY_ID;
+        return pager.page(reservations, after, limit, Rows::copy);
+    }
+
+    /**
+     * @return The number of reservations.
+     */
+    public int size() {
+        return reservations.size();
+    }
+
+    /**
+     * Reads a MM/dd/yyyy date of the filter at the given hour.
+     */
+    private static LocalDateTime parseFilterDate(String date, int hour) {
+        return LocalDateTime.of(Integer.parseInt(date.substring(6)), Integer.parseInt(date.substring(0, 2)),
+                Integer.parseInt(date.substring(3, 5)), hour, 0);
+    }
+
+    /**
+     * Finds reservations, in order of id.
+     */
+    private List<Reservation> find(Predicate<Reservation> condition) {
+        List<Reservation> found = new ArrayList<>();
+        for (Reservation reservation : reservations.values()) {
+            if (condition.test(reservation)) {
+                found.add(Rows.copy(reservation));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,254 @@
+package memory;
+
+import common.AssignedSite;
+import common.Campsite;
+import common.Customer;
+import common.DatabaseProperty;
+import common.ErrorLog;
+import common.Reservation;
+import common.User;
+import common.WaitingList;
+import common.YearlyInformation;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Helpers shared by the in-memory managers: the copies that go in and out of
+ * the tables, and the comparisons MySQL makes in a <code>WHERE</code>.
+ *
+ * Every row is copied when it is stored and again when it is read, the way a
+ * row is written to and read back from the database, so a caller that
+ * changes an object it was given does not change the table.
+ */
+final class Rows {
+
+    private Rows() {
+    }
+
+    /**
+     * Compares two column values the way <code>column = ?</code> does with
+     * the default MySQL collation: without regard to case, and never equal
+     * when either is null.
+     */
+    static boolean same(String value, String parameter) {
+        return value != null && parameter != null && value.equalsIgnoreCase(parameter);
+    }
+
+    /**
+     * Matches <code>column LIKE '%part%'</code>, without regard to case.
+     */
+    static boolean contains(String value, String part) {
+        return value != null && part != null
+                && value.toLowerCase(Locale.ROOT).contains(part.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns true if a stay overlaps the given range, as
+     * <code>arrival_date &lt; end AND departure_date &gt; start</code>. A
+     * null end of the range does not limit it.
+     */
+    static boolean overlaps(LocalDateTime arrival, LocalDateTime departure, LocalDateTime start,
+            LocalDateTime end) {
+        return (end == null || arrival.isBefore(end)) && (start == null || departure.isAfter(start));
+    }
+
+    static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * Builds an HTML table of the rows, one column per value, with a header
+     * row of the column names.
+     */
+    static String htmlTable(String[] columns, Iterable<Object[]> rows) {
+        StringBuilder table = new StringBuilder("<table><tr>");
+        for (String column : columns) {
+            table.append("<th>").append(column).append("</th>");
+        }
+        table.append("</tr>");
+        for (Object[] row : rows) {
+            table.append("<tr>");
+            for (Object value : row) {
+                table.append("<td>").append(value).append("</td>");
+            }
+            table.append("</tr>");
+        }
+        return table.append("</table>").toString();
+    }
+
+    static User copy(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        copy.setUserNumber(user.getUserNumber());
+        copy.setUserPassword(user.getUserPassword());
+        copy.setLoginName(user.getLoginName());
+        copy.setEmailAddress(user.getEmailAddress());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setUserRole(user.getUserRole());
+        copy.setLastLoginTime(user.getLastLoginTime());
+        copy.setLastAttemptedLoginTime(user.getLastAttemptedLoginTime());
+        copy.setLoginCount(user.getLoginCount());
+        copy.setAttemptedLoginCount(user.getAttemptedLoginCount());
+        copy.setLocked(user.isLocked());
+        copy.setSalt(user.getSalt());
+        return copy;
+    }
+
+    static DatabaseProperty copy(DatabaseProperty property) {
+        if (property == null) {
+            return null;
+        }
+        DatabaseProperty copy = new DatabaseProperty();
+        copy.setPropertyNumber(property.getPropertyNumber());
+        copy.setPropertyName(property.getPropertyName());
+        copy.setPropertyValue(property.getPropertyValue());
+        copy.setDescription(property.getDescription());
+        copy.setPreviousValue(property.getPreviousValue());
+        copy.setDefaultValue(property.getDefaultValue());
+        return copy;
+    }
+
+    static ErrorLog copy(ErrorLog errorLog) {
+        if (errorLog == null) {
+            return null;
+        }
+        ErrorLog copy = new ErrorLog();
+        copy.setErrorLogID(errorLog.getErrorLogID());
+        copy.setErrorLogDateTime(errorLog.getErrorLogDateTime());
+        copy.setErrLevel(errorLog.getErrLevel());
+        copy.setLoggerName(errorLog.getLoggerName());
+        copy.setErrorMessage(errorLog.getErrorMessage());
+        copy.setException(errorLog.getException());
+        return copy;
+    }
+
+    /**
+     * Joins a row of the customers table with its row of the
+     * customer_information table, which may be shared with other customers.
+     */
+    static Customer join(Customer customer, Customer information) {
+        Customer copy = new Customer();
+        copy.setCustomerId(customer.getCustomerId());
+        copy.setCustomerInformationId(customer.getCustomerInformationId());
+        copy.setCustomerType(customer.getCustomerType());
+        copy.setName(customer.getName());
+        copy.setPrimaryPhone(customer.getPrimaryPhone());
+        copy.setNotes(customer.getNotes());
+        copy.setGroupId(customer.getGroupId());
+        copy.setFirstName(information.getFirstName());
+        copy.setLastName(information.getLastName());
+        copy.setSpouseFirstName(information.getSpouseFirstName());
+        copy.setSpouseLastName(information.getSpouseLastName());
+        copy.setMobilePhone(information.getMobilePhone());
+        copy.setSpousePhone(information.getSpousePhone());
+        copy.setAddressLine1(information.getAddressLine1());
+        copy.setAddressLine2(information.getAddressLine2());
+        copy.setTown(information.getTown());
+        copy.setState(information.getState());
+        copy.setZip(information.getZip());
+        copy.setEmailAddress(information.getEmailAddress());
+        copy.setSpouseEmailAddress(information.getSpouseEmailAddress());
+        copy.setRvType(information.getRvType());
+        copy.setRvLength(information.getRvLength());
+        copy.setNumberOfSlideOuts(information.getNumberOfSlideOuts());
+        copy.setFlagged(information.isFlagged());
+        return copy;
+    }
+
+    static Customer copy(Customer customer) {
+        return customer == null ? null : join(customer, customer);
+    }
+
+    static Reservation copy(Reservation reservation) {
+        if (reservation == null) {
+            return null;
+        }
+        Reservation copy = new Reservation();
+        copy.setReservationId(reservation.getReservationId());
+        copy.setCustomerId(reservation.getCustomerId());
+        copy.setArrivalDate(reservation.getArrivalDate());
+        copy.setDepartureDate(reservation.getDepartureDate());
+        copy.setNumberOfNights(reservation.getNumberOfNights());
+        copy.setNumberOfSitesRequested(reservation.getNumberOfSitesRequested());
+        copy.setNumberOfSitesAssigned(reservation.getNumberOfSitesAssigned());
+        copy.setDateReservationMade(reservation.getDateReservationMade());
+        copy.setDeposit(reservation.getDeposit());
+        copy.setNotes(reservation.getNotes());
+        return copy;
+    }
+
+    /**
+     * Copies a campsite without its image, which is kept apart and read with
+     * <code>readCampsiteImage</code>.
+     */
+    static Campsite copy(Campsite campsite) {
+        if (campsite == null) {
+            return null;
+        }
+        return new Campsite(campsite.getCampsiteId(), campsite.getCampsiteName(),
+                campsite.getCampsiteNumber(), campsite.getCampsiteSection(), campsite.getMaxLength(),
+                campsite.getWidth(), campsite.getAcceptsSlideOut(), campsite.getPullThru(),
+                campsite.getSiteType(), campsite.getNotes(), null, campsite.getImageSource());
+    }
+
+    static AssignedSite copy(AssignedSite assignedSite) {
+        if (assignedSite == null) {
+            return null;
+        }
+        AssignedSite copy = new AssignedSite();
+        copy.setAssignedSiteId(assignedSite.getAssignedSiteId());
+        copy.setReservationId(assignedSite.getReservationId());
+        copy.setCustomerId(assignedSite.getCustomerId());
+        copy.setCampsiteId(assignedSite.getCampsiteId());
+        copy.setLockSite(assignedSite.getLockSite());
+        copy.setSiteDeposit(assignedSite.getSiteDeposit());
+        copy.setCheckIn(assignedSite.getCheckIn());
+        copy.setArrivalDate(assignedSite.getArrivalDate());
+        copy.setDepartureDate(assignedSite.getDepartureDate());
+        return copy;
+    }
+
+    static WaitingList copy(WaitingList waitingList) {
+        if (waitingList == null) {
+            return null;
+        }
+        WaitingList copy = new WaitingList();
+        copy.setWaitingListId(waitingList.getWaitingListId());
+        copy.setCustomerId(waitingList.getCustomerId());
+        copy.setDateOfRequest(waitingList.getDateOfRequest());
+        copy.setArrivalDate(waitingList.getArrivalDate());
+        copy.setDepartureDate(waitingList.getDepartureDate());
+        copy.setNumberOfNights(waitingList.getNumberOfNights());
+        copy.setNumberOfSites(waitingList.getNumberOfSites());
+        copy.setPriority(waitingList.isPriority());
+        copy.setNotes(waitingList.getNotes());
+        return copy;
+    }
+
+    static YearlyInformation copy(YearlyInformation yearlyInformation) {
+        if (yearlyInformation == null) {
+            return null;
+        }
+        YearlyInformation copy = new YearlyInformation();
+        copy.setYear(yearlyInformation.getYear());
+        copy.setDailyRate(yearlyInformation.getDailyRate());
+        copy.setWeeklyRate(yearlyInformation.getWeeklyRate());
+        copy.setMonthlyRate(yearlyInformation.getMonthlyRate());
+        copy.setSeasonalRate(yearlyInformation.getSeasonalRate());
+        copy.setOpeningDate(yearlyInformation.getOpeningDate());
+        copy.setClosingDate(yearlyInformation.getClosingDate());
+        copy.setSeasonalVisitorPassRate(yearlyInformation.getSeasonalVisitorPassRate());
+        copy.setNightlyVisitorFee(yearlyInformation.getNightlyVisitorFee());
+        copy.setDailyVisitorFee(yearlyInformation.getDailyVisitorFee());
+        copy.setEarlyCheckInFeePerHour(yearlyInformation.getEarlyCheckInFeePerHour());
+        copy.setLateStayFeePerHour(yearlyInformation.getLateStayFeePerHour());
+        copy.setNightlyCancellationFee(yearlyInformation.getNightlyCancellationFee());
+        copy.setWeeklyCancellationFee(yearlyInformation.getWeeklyCancellationFee());
+        copy.setMonthlyCancellationFee(yearlyInformation.getMonthlyCancellationFee());
+        copy.setElectricalRatePerKWH(yearlyInformation.getElectricalRatePerKWH());
+        return copy;
+    }
+}
@@ -0,0 +1,164 @@
+package memory;
+
+import common.User;
+import common.UserRole;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>UserManager</code> that keeps the users in memory, with the same
+ * results as <code>mysql.UserManager</code>. Login names are unique and
+ * compared without regard to case, as in the users table.
+ */
+public class UserManager implements database.UserManager {
+
+    private final ConcurrentSkipListMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastUserNumber = new AtomicInteger();
+
+    /**
+     * Returns the user with the login name and password, after counting the
+     * login with <code>updateUser</code>.
+     */
+    @Override
+    public User validateUser(String loginName, String password) {
+        for (User user : users.values()) {
+            if (Rows.same(user.getLoginName(), loginName) && Rows.same(user.getUserPassword(), password)) {
+                User found = Rows.copy(user);
+                updateUser(found);
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a user with the next user number. The columns the insert leaves
+     * out get the table's defaults.
+     *
+     * @return The user as stored, or the given user unchanged if its login
+     * name is taken.
+     */
+    @Override
+    public synchronized User addUser(User user) {
+        User added = Rows.copy(user);
+        trim(added);
+        if (getUserByLoginName(added.getLoginName()) != null) {
+            WebErrorLogger.log(Level.SEVERE, "Duplicate loginName in addUser(User user) user=" + user);
+            return user;
+        }
+        added.setUserNumber(lastUserNumber.incrementAndGet());
+        added.setLastAttemptedLoginTime(LocalDateTime.now());
+        added.setAttemptedLoginCount(0);
+        added.setLocked(false);
+        users.put(added.getUserNumber(), added);
+        return Rows.copy(added);
+    }
+
+    /**
+     * Writes the user over the stored one with the same user number. The
+     * text fields of the given user are trimmed.
+     *
+     * @return The user, or null if there is no user with its number.
+     */
+    @Override
+    public synchronized User updateUser(User user) {
+        trim(user);
+        if (!users.containsKey(user.getUserNumber())) {
+            return null;
+        }
+        users.put(user.getUserNumber(), Rows.copy(user));
+        return user;
+    }
+
+    @Override
+    public boolean deleteUser(User user) {
+        users.remove(user.getUserNumber());
+        return true;
+    }
+
+    @Override
+    public User getUserByID(int userID) {
+        return Rows.copy(users.get(userID));
+    }
+
+    @Override
+    public User getUserByLoginName(String loginName) {
+        for (User user : users.values()) {
+            if (Rows.same(user.getLoginName(), loginName)) {
+                return Rows.copy(user);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<User> getAllUsersWithEmailAddress(String emailAddress) {
+        Collection<User> found = new ArrayList<>();
+        for (User user : users.values()) {
+            if (Rows.same(user.getEmailAddress(), emailAddress)) {
+                found.add(Rows.copy(user));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        Collection<User> found = new ArrayList<>(users.size());
+        for (User user : users.values()) {
+            found.add(Rows.copy(user));
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteUserbyID(int userID) {
+        User user = getUserByID(userID);
+        if (user == null) {
+            return false;
+        }
+        return deleteUser(user);
+    }
+
+    @Override
+    public Collection<User> getAllUsersWithoutSystemAdmins() {
+        Collection<User> found = new ArrayList<>();
+        for (User user : users.values()) {
+            if (user.getUserRole() != UserRole.SystemAdmin) {
+                found.add(Rows.copy(user));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String getSaltByLoginName(String loginName) {
+        User user = getUserByLoginName(loginName.trim());
+        return user == null ? null : user.getSalt();
+    }
+
+    @Override
+    public Collection<User> getSystemAdmins() {
+        Collection<User> found = new ArrayList<>();
+        for (User user : users.values()) {
+            if (user.getUserRole() == UserRole.SystemAdmin) {
+                found.add(Rows.copy(user));
+            }
+        }
+        return found;
+    }
+
+    private static void trim(User user) {
+        user.setLoginName(user.getLoginName().trim());
+        user.setUserPassword(user.getUserPassword().trim());
+        user.setSalt(user.getSalt().trim());
+        user.setFirstName(user.getFirstName().trim());
+        user.setLastName(user.getLastName().trim());
+        user.setEmailAddress(user.getEmailAddress().trim());
+    }
+}
@@ -0,0 +1,114 @@
+package memory;
+
+import common.WaitingList;
+import database.Page;
+import database.WaitingListMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A <code>WaitingListManager</code> that keeps the waiting list in memory,
+ * with the same results as <code>mysql.WaitingListManager</code>. The
+ * <code>WaitingListMatcher</code> is given each entry as it is stored.
+ */
+public class WaitingListManager implements database.WaitingListManager {
+
+    private static final Pager<WaitingList> BY_ID = new Pager<>(WaitingList::getWaitingListId, null, null, false);
+    private static final Pager<WaitingList> BY_ARRIVAL_DATE = new Pager<>(WaitingList::getWaitingListId,
+            waitingList -> waitingList.getArrivalDate().toString(), Comparator.naturalOrder(), false);
+    private static final Pager<WaitingList> BY_DATE_OF_REQUEST = new Pager<>(WaitingList::getWaitingListId,
+            waitingList -> waitingList.getDateOfRequest().toString(), Comparator.naturalOrder(), false);
+
+    private final ConcurrentSkipListMap<Integer, WaitingList> waitingLists = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    @Override
+    public WaitingList addWaitingList(WaitingList waitingList) {
+        waitingList.setWaitingListId(lastId.incrementAndGet());
+        WaitingList added = Rows.copy(waitingList);
+        waitingLists.put(added.getWaitingListId(), added);
+        WaitingListMatcher.getInstance().put(Rows.copy(added));
+        return Rows.copy(added);
+    }
+
+    /**
+     * @return The entry as stored, or null if there is no entry with its id.
+     */
+    @Override
+    public synchronized WaitingList updateWaitingList(WaitingList waitingList) {
+        if (!waitingLists.containsKey(waitingList.getWaitingListId())) {
+            return null;
+        }
+        WaitingList updated = Rows.copy(waitingList);
+        waitingLists.put(updated.getWaitingListId(), updated);
+        WaitingListMatcher.getInstance().put(Rows.copy(updated));
+        return Rows.copy(updated);
+    }
+
+    @Override
+    public WaitingList getWaitingListById(int waitingListId) {
+        return Rows.copy(waitingLists.get(waitingListId));
+    }
+
+    /**
+     * @return The entries of the customer with the given id.
+     */
+    @Override
+    public Collection<WaitingList> getWaitingListsByCustomerId(int customerId) {
+        return find(waitingList -> waitingList.getCustomerId() == customerId);
+    }
+
+    @Override
+    public Collection<WaitingList> getAllWaitingLists() {
+        return find(waitingList -> true);
+    }
+
+    @Override
+    public boolean forEachWaitingList(Consumer<? super WaitingList> action) {
+        for (WaitingList waitingList : find(waitingList -> true)) {
+            action.accept(waitingList);
+        }
+        return true;
+    }
+
+    @Override
+    public Page<WaitingList> getWaitingListPage(String after, int limit, Sort sort) {
+        Pager<WaitingList> pager = sort == Sort.ARRIVAL_DATE ? BY_ARRIVAL_DATE
+                : sort == Sort.DATE_OF_REQUEST ? BY_DATE_OF_REQUEST : BY_ID;
+        return pager.page(waitingLists, after, limit, Rows::copy);
+    }
+
+    @Override
+    public boolean deleteWaitingListById(int waitingListId) {
+        waitingLists.remove(waitingListId);
+        WaitingListMatcher.getInstance().remove(waitingListId);
+        return true;
+    }
+
+    @Override
+    public boolean deleteWaitingList(WaitingList waitingList) {
+        if (waitingList == null) {
+            return false;
+        }
+        return deleteWaitingListById(waitingList.getWaitingListId());
+    }
+
+    /**
+     * Finds entries, in order of id.
+     */
+    private List<WaitingList> find(Predicate<WaitingList> condition) {
+        List<WaitingList> found = new ArrayList<>();
+        for (WaitingList waitingList : waitingLists.values()) {
+            if (condition.test(waitingList)) {
+                found.add(Rows.copy(waitingList));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,89 @@
+package memory;
+
+import common.YearlyInformation;
+import database.OccupancyBitmap;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A <code>YearlyInformationManager</code> that keeps the information of each
+ * year in memory, with the same results as
+ * <code>mysql.YearlyInformationManager</code>.
+ */
+public class YearlyInformationManager implements database.YearlyInformationManager {
+
+    private final ConcurrentSkipListMap<Integer, YearlyInformation> years = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds the information of a year.
+     *
+     * @return The information as stored, or the given information unchanged
+     * if its year is already there.
+     */
+    @Override
+    public YearlyInformation addYearlyInformation(YearlyInformation yearlyInformation) {
+        if (years.putIfAbsent(yearlyInformation.getYear(), Rows.copy(yearlyInformation)) != null) {
+            WebErrorLogger.log(Level.SEVERE, "Duplicate year in addYearlyInformation"
+                    + "(YearlyInformation yearlyInformation) yearlyInformation=" + yearlyInformation);
+            return yearlyInformation;
+        }
+        return reloadSeason(getYearlyInformationByYear(yearlyInformation.getYear()));
+    }
+
+    /**
+     * @return The information as stored, or null if there is no information
+     * for its year.
+     */
+    @Override
+    public synchronized YearlyInformation updateYearlyInformation(YearlyInformation yearlyInformation) {
+        if (!years.containsKey(yearlyInformation.getYear())) {
+            return null;
+        }
+        years.put(yearlyInformation.getYear(), Rows.copy(yearlyInformation));
+        return reloadSeason(getYearlyInformationByYear(yearlyInformation.getYear()));
+    }
+
+    /**
+     * Reloads the <code>OccupancyBitmap</code> when the information of the
+     * current season has been written.
+     */
+    private static YearlyInformation reloadSeason(YearlyInformation yearlyInformation) {
+        if (yearlyInformation != null && yearlyInformation.getYear() == LocalDate.now().getYear()) {
+            OccupancyBitmap.getInstance().load(yearlyInformation,
+                    database.Database.getDatabaseManagement().getCampsiteManager().getAllCampsites());
+        }
+        return yearlyInformation;
+    }
+
+    @Override
+    public YearlyInformation getYearlyInformationByYear(int year) {
+        return Rows.copy(years.get(year));
+    }
+
+    @Override
+    public Collection<YearlyInformation> getAllYearlyInformations() {
+        Collection<YearlyInformation> found = new ArrayList<>(years.size());
+        for (YearlyInformation yearlyInformation : years.values()) {
+            found.add(Rows.copy(yearlyInformation));
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteYearlyInformationByYear(int year) {
+        years.remove(year);
+        return true;
+    }
+
+    @Override
+    public boolean deleteYearlyInformation(YearlyInformation yearlyInformation) {
+        if (yearlyInformation == null) {
+            return false;
+        }
+        return deleteYearlyInformationByYear(yearlyInformation.getYear());
+    }
+}
@@ -0,0 +1,7 @@
+
+/**
+ * Contains an implementation of our <code>Database</code> interfaces that
+ * keeps every table in memory, for timing and for running without MySQL.
+ */
+
+package memory;
@@ -2,6 +2,7 @@
 package mysql;
 
 import common.AssignedSite;
+import database.AvailabilityIndex;
 import database.SQLUtility;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -11,6 +12,9 @@ import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
@@ -23,88 +27,44 @@ import utilities.WebErrorLogger;
  * @author Drew Wagner, Scott Harchar (2021)
  */
 public class AssignedSiteManager implements database.AssignedSiteManager {
+
+    // Also explained by SchemaMigrations.main, to check it uses its index
+    static final String AVAILABILITY_SQL = "SELECT 1 FROM assigned_site WHERE campsite_id = ? "
+            + "AND arrival_date < ? AND departure_date > ? LIMIT 1";
+
     /**
      * Returns this <code>AssignedSite</code> object which has been added to the assigned
-     * site's database successfully.
+     * site's database successfully. The site is booked through the
+     * <code>BookingCoordinator</code>, so it is refused if its campsite is
+     * already assigned for overlapping dates.
      *
      * @param assignedSite An <code>AssignedSite</code> object which will be used to add 
      * to the database.
      * @return An <code>AssignedSite</code> object which has been added to the assigned site's
-     * database.
+     * database, or null if the campsite is not available or the insert failed.
      */
     @Override
     public AssignedSite addAssignedSite(AssignedSite assignedSite){
-        String sql = "INSERT INTO assigned_site "
-                + "(assigned_site_id, reservation_id, customer_id, campsite_id, "
-                + "lock_site, deposit, checked_in, arrival_date,"
-                + "departure_date) VALUES (DEFAULT,?,?,?,?,?,?,?,?); ";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
-        PreparedStatement stmt2 = null;
-        try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
-            stmt2.setInt(1, assignedSite.getReservationId());
-            stmt2.setInt(2, assignedSite.getCustomerId());
-            stmt2.setInt(3, assignedSite.getCampsiteId());
-            stmt2.setBoolean(4, assignedSite.getLockSite());
-            stmt2.setBigDecimal(5, assignedSite.getSiteDeposit());
-            stmt2.setBoolean(6, assignedSite.getCheckIn());
-            stmt2.setTimestamp(7, Timestamp.valueOf(assignedSite.getArrivalDate()));
-            stmt2.setTimestamp(8, Timestamp.valueOf(assignedSite.getDepartureDate()));
-
-            stmt2.executeUpdate();
-
-        } catch (SQLException ex) {
-            WebErrorLogger.log(Level.SEVERE, "SQLException in addAssignedSite"
-                    + "(AssignedSite assignedSite) assignedSite="+assignedSite+" error: "+ex);
-            Web_MYSQL_Helper.closePreparedStatement(stmt2);
-            Web_MYSQL_Helper.returnConnection(conn);
-            return assignedSite;
-        }
-        Web_MYSQL_Helper.closePreparedStatement(stmt2);
-        Web_MYSQL_Helper.returnConnection(conn);
-        return getAssignedSiteById(assignedSite.getAssignedSiteId());
+        List<AssignedSite> added = BookingCoordinator.getInstance().assignSites(
+                assignedSite.getReservationId(), Collections.singletonList(assignedSite));
+        return added.get(0);
     }
     
     
     /**
      * Returns an <code>AssignedSite</code> object with latest update, which is stored in
-     * the database. 
+     * the database. The update goes through the <code>BookingCoordinator</code>,
+     * so it is refused if it would overlap another assigned site.
      *
      * @param assignedSite A <code>AssignedSite</code> object which contains the latest
      * information.
-     * @return A <code>AssignedSite</code> object with latest update.
+     * @return A <code>AssignedSite</code> object with latest update, or null if
+     * there is no assigned site with its id or the change would overlap
+     * another booking.
      */
     @Override
     public AssignedSite updateAssignedSite(AssignedSite assignedSite){
-        String sql="UPDATE assigned_site SET "
-                + "reservation_id =?, customer_id =?, campsite_id =?, "
-                + "lock_site =?, deposit =?, checked_in =?, arrival_date =?,"
-                + "departure_date =?, WHERE assigned_site_id=?";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
-        PreparedStatement stmt2 = null;
-        try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
-            stmt2.setInt(1, assignedSite.getReservationId());
-            stmt2.setInt(2, assignedSite.getCustomerId());
-            stmt2.setInt(3, assignedSite.getCampsiteId());
-            stmt2.setBoolean(4, assignedSite.getLockSite());
-            stmt2.setBigDecimal(5, assignedSite.getSiteDeposit());
-            stmt2.setBoolean(6, assignedSite.getCheckIn());
-            //stmt2.set
-            //stmt2.
-            stmt2.setInt(9, assignedSite.getAssignedSiteId());
-
-            stmt2.executeUpdate();
-            } catch (SQLException ex) {
-            WebErrorLogger.log(Level.SEVERE, "SQLException in updateAssignedSite"
-                    + "(AssignedSite assignedSite) assignedSite="+assignedSite+" error: "+ex);
-            Web_MYSQL_Helper.closePreparedStatement(stmt2);
-            Web_MYSQL_Helper.returnConnection(conn);
-            return assignedSite;
-        }
-        Web_MYSQL_Helper.closePreparedStatement(stmt2);
-        Web_MYSQL_Helper.returnConnection(conn);
-        return getAssignedSiteById(assignedSite.getAssignedSiteId());
+        return BookingCoordinator.getInstance().updateSite(assignedSite);
     }
     
     /**
@@ -121,7 +81,7 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         AssignedSite assignedSite = null;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, assignedSiteId);
             
             rs = stmt2.executeQuery();
@@ -160,7 +120,7 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         AssignedSite assignedSite;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, reservationId);
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -200,7 +160,7 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         AssignedSite assignedSite;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -222,6 +182,26 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         Web_MYSQL_Helper.returnConnection(conn);
         return assignedSites;
     }
+
+    /**
+     * Streams the assigned sites that overlap the given dates to the action
+     * without holding them in memory.
+     * @param startDate The start of the range, or null for no lower bound
+     * @param endDate The end of the range, or null for no upper bound
+     * @param action Called once for each assigned site, in order of arrival
+     * @return True if every assigned site was passed to the action
+     */
+    @Override
+    public boolean forEachAssignedSite(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super AssignedSite> action){
+        String sql = "SELECT * FROM assigned_site" + StreamingQuery.overlapping(startDate, endDate)
+                + " ORDER BY arrival_date, assigned_site_id";
+        // Site assignments are planned from these rows, so they must be current
+        return StreamingQuery.forEachOnPrimary(sql, StreamingQuery.bindRange(startDate, endDate),
+                SQLUtility::convertResultSetToAssignedSite, action,
+                "forEachAssignedSite(LocalDateTime startDate, LocalDateTime endDate, Consumer action) "
+                + "startDate=" + startDate + " endDate=" + endDate);
+    }
     
     /**
      * Return ture if the given assigned site has been deleted from the database.
@@ -238,7 +218,7 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, assignedSiteId);
             stmt2.executeUpdate();
         }catch (SQLException ex) {
@@ -250,6 +230,7 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
+        AvailabilityIndex.getInstance().remove(assignedSiteId);
         return true;
     }
     
@@ -267,26 +248,35 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         if(assignedSite==null){return false;}
         return deleteAssignedSiteById(assignedSite.getAssignedSiteId());
     }
+    /**
+     * Returns true if no assigned site for the given campsite overlaps the 
+     * given date range. The in-memory <code>AvailabilityIndex</code> answers
+     * the question once it has been loaded, otherwise the database is queried.
+     *
+     * @param campsiteId The id of the campsite to check.
+     * @param startDate The start of the date range.
+     * @param endDate The end of the date range.
+     * @return True if the campsite is available for the whole date range.
+     */
     @Override
     public boolean sitesAvailableInDateRange(int campsiteId, LocalDateTime startDate, LocalDateTime endDate){
-        String sql = "SELECT * FROM assigned_site WHERE campsite_id = ? AND "
-                + "campsite_id = ANY (SELECT campsite_id FROM assigned_site WHERE "
-                + "? BETWEEN arrival_date AND departure_date "
-                + "OR ? BETWEEN arrival_date AND departure_date "
-                + "OR campsite_id = ANY (SELECT campsite_id from assigned_site "
-                + "WHERE ? <= arrival_date AND ? >=departure_date))";
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        if(index.isLoaded()){
+            return index.isAvailable(campsiteId, startDate, endDate);
+        }
+        String sql = AVAILABILITY_SQL;
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, campsiteId);
-            stmt.setTimestamp(2, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(3, Timestamp.valueOf(endDate));
-            stmt.setTimestamp(4, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(5, Timestamp.valueOf(endDate));
+            stmt.setTimestamp(2, Timestamp.valueOf(endDate));
+            stmt.setTimestamp(3, Timestamp.valueOf(startDate));
             rs = stmt.executeQuery();
             if(rs == null){
+                Web_MYSQL_Helper.closePreparedStatement(stmt);
+                Web_MYSQL_Helper.returnConnection(conn);
                 return true;
             }else if(rs.next() == false)
             {
@@ -306,4 +296,51 @@ public class AssignedSiteManager implements database.AssignedSiteManager {
         Web_MYSQL_Helper.returnConnection(conn);
         return false;
     }
+
+    /**
+     * Assigns several sites to one reservation. The availability check and
+     * the inserts are done by the <code>BookingCoordinator</code> while the
+     * requested campsites are locked, so concurrent bookings can not assign
+     * the same campsite for overlapping dates.
+     *
+     * @param reservationId The id of the reservation the sites belong to.
+     * @param assignedSites The sites to assign.
+     * @return A list in the same order as <code>assignedSites</code> holding 
+     * the added <code>AssignedSite</code>, or null where the site was not available.
+     * @see BookingCoordinator#assignSites(int, java.util.List) 
+     */
+    @Override
+    public List<AssignedSite> assignSites(int reservationId, List<AssignedSite> assignedSites){
+        return BookingCoordinator.getInstance().assignSites(reservationId, assignedSites);
+    }
+    
+    /**
+     * Moves unlocked assigned sites to the campsites they now hold, in one
+     * transaction while the campsites are locked.
+     *
+     * @param assignedSites The assigned sites with their new campsite ids.
+     * @return True if every site was moved.
+     * @see BookingCoordinator#reassignSites(java.util.List) 
+     */
+    @Override
+    public boolean reassignSites(List<AssignedSite> assignedSites){
+        return BookingCoordinator.getInstance().reassignSites(assignedSites);
+    }
+    
+    /**
+     * Changes the assigned sites of a reservation to the submitted ones in
+     * one transaction, inserting, updating and deleting only the sites that
+     * differ. A change that is not available is refused and the site keeps
+     * its old campsite and dates.
+     *
+     * @param reservationId The id of the reservation.
+     * @param submitted The sites the reservation should have.
+     * @return The sites of the reservation after the edit, or null if the 
+     * edit failed.
+     * @see BookingCoordinator#editSites(int, java.util.List) 
+     */
+    @Override
+    public List<AssignedSite> editSites(int reservationId, List<AssignedSite> submitted){
+        return BookingCoordinator.getInstance().editSites(reservationId, submitted);
+    }
 }
@@ -0,0 +1,790 @@
+package mysql;
+
+import common.AssignedSite;
+import database.AvailabilityIndex;
+import database.SQLUtility;
+import database.SiteEdits;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import utilities.PropertyManager;
+import utilities.WebErrorLogger;
+
+/**
+ * Coordinates the booking of campsites so the same campsite can never be
+ * assigned twice for overlapping dates.
+ *
+ * Two levels of locking are used. Inside this web application a booking
+ * takes a striped lock for each campsite it touches, so bookings for
+ * different campsites run in parallel while bookings for the same campsite
+ * wait for each other. Inside the database the availability check and the
+ * inserts run in one transaction that first locks the campsite rows with
+ * <code>SELECT ... FOR UPDATE</code>, which also protects against other
+ * applications writing to the same database.
+ *
+ * Locks are always taken in ascending order (stripes by index, rows by
+ * campsite id) so two bookings can not deadlock each other.
+ *
+ * Sample Usage:
+ * <pre>
+ * List&lt;AssignedSite&gt; added = BookingCoordinator.getInstance().assignSites(reservationId, sites);
+ * </pre>
+ */
+public class BookingCoordinator {
+
+    private static final int NUMBER_OF_STRIPES = 64;
+    private static BookingCoordinator coordinator = null;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[NUMBER_OF_STRIPES];
+
+    private BookingCoordinator() {
+        for (int i = 0; i < NUMBER_OF_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the <code>BookingCoordinator</code> for this application.
+     *
+     * @return The <code>BookingCoordinator</code> object.
+     */
+    public static synchronized BookingCoordinator getInstance() {
+        if (coordinator == null) {
+            coordinator = new BookingCoordinator();
+        }
+        return coordinator;
+    }
+
+    /**
+     * Assigns several sites to one reservation. A requested site is rejected
+     * if it overlaps an assigned site in the database or an earlier site in
+     * the same request. The check and the inserts happen in one transaction
+     * while the campsites are locked.
+     *
+     * @param reservationId The id of the reservation the sites belong to.
+     * @param assignedSites The sites to assign.
+     * @return A list in the same order as <code>assignedSites</code> holding
+     * the added <code>AssignedSite</code>, or null where the site was not available.
+     */
+    public List<AssignedSite> assignSites(int reservationId, List<AssignedSite> assignedSites) {
+        List<AssignedSite> results = new ArrayList<>();
+        for (int i = 0; i < assignedSites.size(); i++) {
+            results.add(null);
+        }
+        if (assignedSites.isEmpty()) {
+            return results;
+        }
+        TreeSet<Integer> campsiteIds = new TreeSet<>();
+        for (AssignedSite assignedSite : assignedSites) {
+            campsiteIds.add(assignedSite.getCampsiteId());
+        }
+        TreeSet<Integer> stripeIndexes = lockStripes(campsiteIds);
+        try {
+            return assignSitesLocked(reservationId, assignedSites, campsiteIds, results);
+        } finally {
+            unlockStripes(stripeIndexes);
+        }
+    }
+
+    /**
+     * Moves assigned sites to other campsites in one transaction. Every move
+     * is checked against the assigned sites that are not being moved, so a
+     * set of moves may swap campsites between its own sites. Nothing is
+     * changed if any move conflicts or a site has been locked or deleted
+     * since it was read.
+     *
+     * @param assignedSites The assigned sites with their new campsite ids.
+     * @return True if every site was moved.
+     */
+    public boolean reassignSites(List<AssignedSite> assignedSites) {
+        if (assignedSites.isEmpty()) {
+            return true;
+        }
+        TreeSet<Integer> campsiteIds = new TreeSet<>();
+        for (AssignedSite assignedSite : assignedSites) {
+            campsiteIds.add(assignedSite.getCampsiteId());
+        }
+        TreeSet<Integer> stripeIndexes = lockStripes(campsiteIds);
+        try {
+            return reassignSitesLocked(assignedSites, campsiteIds);
+        } finally {
+            unlockStripes(stripeIndexes);
+        }
+    }
+
+    /**
+     * Saves every field of one assigned site. The change is refused if the
+     * site's campsite and dates would overlap another assigned site. The
+     * check and the update happen in one transaction while the campsite is
+     * locked.
+     *
+     * @param assignedSite The assigned site with its new values.
+     * @return The assigned site, or null if it would overlap another booking,
+     * there is no assigned site with its id, or the update failed.
+     */
+    public AssignedSite updateSite(AssignedSite assignedSite) {
+        TreeSet<Integer> campsiteIds = new TreeSet<>();
+        campsiteIds.add(assignedSite.getCampsiteId());
+        TreeSet<Integer> stripeIndexes = lockStripes(campsiteIds);
+        try {
+            return updateSiteLocked(assignedSite, campsiteIds) ? assignedSite : null;
+        } finally {
+            unlockStripes(stripeIndexes);
+        }
+    }
+
+    /**
+     * Replaces the assigned sites of a reservation with the submitted ones,
+     * changing only what differs. A submitted site that matches an existing
+     * site is left alone, a changed site is updated in place so it keeps its
+     * id, check in and deposit, and the rest are inserted or deleted. All of
+     * it happens in one transaction.
+     *
+     * A change that would overlap another booking is refused: a new site is
+     * not added and a changed site keeps its old campsite and dates.
+     *
+     * @param reservationId The id of the reservation.
+     * @param submitted The sites the reservation should have.
+     * The campsites of both the submitted sites and the reservation's current
+     * sites are locked before the reservation's sites are read. If another
+     * edit moved one of its sites to a campsite that is not locked in the
+     * meantime, the edit is started again with that campsite locked too.
+     *
+     * @return The sites of the reservation after the edit, or null if the
+     * edit failed and nothing was changed.
+     */
+    public List<AssignedSite> editSites(int reservationId, List<AssignedSite> submitted) {
+        TreeSet<Integer> campsiteIds = new TreeSet<>();
+        for (AssignedSite assignedSite : submitted) {
+            campsiteIds.add(assignedSite.getCampsiteId());
+        }
+        for (AssignedSite assignedSite : new AssignedSiteManager().getAssignedSiteByReservationId(reservationId)) {
+            campsiteIds.add(assignedSite.getCampsiteId());
+        }
+        while (true) {
+            int lockedCount = campsiteIds.size();
+            TreeSet<Integer> stripeIndexes = lockStripes(campsiteIds);
+            try {
+                List<AssignedSite> sites = editSitesLocked(reservationId, submitted, campsiteIds);
+                if (sites != null || campsiteIds.size() == lockedCount) {
+                    return sites;
+                }
+            } finally {
+                unlockStripes(stripeIndexes);
+            }
+        }
+    }
+
+    /**
+     * Locks the stripes of the given campsites in ascending order.
+     *
+     * @return The locked stripes, to pass to <code>unlockStripes</code>.
+     */
+    private TreeSet<Integer> lockStripes(Collection<Integer> campsiteIds) {
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (int campsiteId : campsiteIds) {
+            stripeIndexes.add(stripeFor(campsiteId));
+        }
+        for (int stripe : stripeIndexes) {
+            stripes[stripe].lock();
+        }
+        return stripeIndexes;
+    }
+
+    private void unlockStripes(TreeSet<Integer> stripeIndexes) {
+        for (int stripe : stripeIndexes.descendingSet()) {
+            stripes[stripe].unlock();
+        }
+    }
+
+    private static int stripeFor(int campsiteId) {
+        return Math.floorMod(Integer.hashCode(campsiteId) * 0x9E3779B9, NUMBER_OF_STRIPES);
+    }
+
+    /**
+     * Locks the rows of the given campsites until the current transaction
+     * ends.
+     */
+    private static void lockCampsiteRows(Connection conn, Collection<Integer> campsiteIds) throws SQLException {
+        StringBuilder lockSql = new StringBuilder("SELECT campsite_id FROM campsite_information "
+                + "WHERE campsite_id IN (");
+        for (int i = 0; i < campsiteIds.size(); i++) {
+            lockSql.append(i == 0 ? "?" : ",?");
+        }
+        lockSql.append(") ORDER BY campsite_id FOR UPDATE;");
+        PreparedStatement lockStatement = Web_MYSQL_Helper.prepareStatement(conn, lockSql.toString());
+        try {
+            int parameter = 1;
+            for (int campsiteId : campsiteIds) {
+                lockStatement.setInt(parameter++, campsiteId);
+            }
+            Web_MYSQL_Helper.closeResultSet(lockStatement.executeQuery());
+        } finally {
+            Web_MYSQL_Helper.closePreparedStatement(lockStatement);
+        }
+    }
+
+    private List<AssignedSite> assignSitesLocked(int reservationId, List<AssignedSite> assignedSites,
+            Collection<Integer> campsiteIds, List<AssignedSite> results) {
+        StringBuilder checkSql = new StringBuilder("SELECT campsite_id, arrival_date, departure_date "
+                + "FROM assigned_site WHERE ");
+        for (int i = 0; i < assignedSites.size(); i++) {
+            if (i > 0) {
+                checkSql.append(" OR ");
+            }
+            checkSql.append("(campsite_id = ? AND arrival_date < ? AND departure_date > ?)");
+        }
+        String sql = "INSERT INTO assigned_site "
+                + "(assigned_site_id, reservation_id, customer_id, campsite_id, "
+                + "lock_site, deposit, checked_in, arrival_date,"
+                + "departure_date) VALUES (DEFAULT,?,?,?,?,?,?,?,?); ";
+        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in assignSites");
+            return results;
+        }
+        PreparedStatement checkStatement = null;
+        PreparedStatement insertStatement = null;
+        ResultSet rs = null;
+        ResultSet keys = null;
+        List<AssignedSite> accepted = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        try {
+            conn.setAutoCommit(false);
+            lockCampsiteRows(conn, campsiteIds);
+            checkStatement = Web_MYSQL_Helper.prepareStatement(conn, checkSql.toString());
+            int parameter = 1;
+            for (AssignedSite assignedSite : assignedSites) {
+                checkStatement.setInt(parameter++, assignedSite.getCampsiteId());
+                checkStatement.setTimestamp(parameter++, Timestamp.valueOf(assignedSite.getDepartureDate()));
+                checkStatement.setTimestamp(parameter++, Timestamp.valueOf(assignedSite.getArrivalDate()));
+            }
+            rs = checkStatement.executeQuery();
+            List<AssignedSite> taken = new ArrayList<>();
+            while (rs.next()) {
+                AssignedSite existing = new AssignedSite();
+                existing.setCampsiteId(rs.getInt("campsite_id"));
+                existing.setArrivalDate(rs.getTimestamp("arrival_date").toLocalDateTime());
+                existing.setDepartureDate(rs.getTimestamp("departure_date").toLocalDateTime());
+                taken.add(existing);
+            }
+
+            insertStatement = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < assignedSites.size(); i++) {
+                AssignedSite assignedSite = assignedSites.get(i);
+                if (SiteEdits.overlapsAny(assignedSite, taken)) {
+                    continue;
+                }
+                assignedSite.setReservationId(reservationId);
+                insertStatement.setInt(1, reservationId);
+                insertStatement.setInt(2, assignedSite.getCustomerId());
+                insertStatement.setInt(3, assignedSite.getCampsiteId());
+                insertStatement.setBoolean(4, assignedSite.getLockSite());
+                insertStatement.setBigDecimal(5, assignedSite.getSiteDeposit());
+                insertStatement.setBoolean(6, assignedSite.getCheckIn());
+                insertStatement.setTimestamp(7, Timestamp.valueOf(assignedSite.getArrivalDate()));
+                insertStatement.setTimestamp(8, Timestamp.valueOf(assignedSite.getDepartureDate()));
+                insertStatement.addBatch();
+                taken.add(assignedSite);
+                accepted.add(assignedSite);
+                positions.add(i);
+            }
+            if (!accepted.isEmpty()) {
+                insertStatement.executeBatch();
+                keys = insertStatement.getGeneratedKeys();
+                for (AssignedSite assignedSite : accepted) {
+                    keys.next();
+                    assignedSite.setAssignedSiteId(keys.getInt(1));
+                }
+                Web_MYSQL_Helper.closeResultSet(keys);
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in assignSites"
+                    + "(int reservationId, List<AssignedSite> assignedSites) reservationId="
+                    + reservationId + " error: " + ex);
+            rollback(conn);
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+            Web_MYSQL_Helper.closePreparedStatement(insertStatement);
+            Web_MYSQL_Helper.returnConnection(conn);
+            return results;
+        }
+        restoreAutoCommit(conn);
+        Web_MYSQL_Helper.closeResultSet(rs);
+        Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+        Web_MYSQL_Helper.closePreparedStatement(insertStatement);
+        Web_MYSQL_Helper.returnConnection(conn);
+        // Update the index before the campsite locks are released
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        for (int i = 0; i < accepted.size(); i++) {
+            index.put(accepted.get(i));
+            results.set(positions.get(i), accepted.get(i));
+        }
+        return results;
+    }
+
+    private boolean reassignSitesLocked(List<AssignedSite> assignedSites, Collection<Integer> campsiteIds) {
+        StringBuilder checkSql = new StringBuilder("SELECT assigned_site_id FROM assigned_site "
+                + "WHERE assigned_site_id NOT IN (");
+        for (int i = 0; i < assignedSites.size(); i++) {
+            checkSql.append(i == 0 ? "?" : ",?");
+        }
+        checkSql.append(") AND (");
+        for (int i = 0; i < assignedSites.size(); i++) {
+            if (i > 0) {
+                checkSql.append(" OR ");
+            }
+            checkSql.append("(campsite_id = ? AND arrival_date < ? AND departure_date > ?)");
+        }
+        checkSql.append(") LIMIT 1;");
+        String sql = "UPDATE assigned_site SET campsite_id=? "
+                + "WHERE assigned_site_id=? AND lock_site=FALSE;";
+        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in reassignSites");
+            return false;
+        }
+        PreparedStatement checkStatement = null;
+        PreparedStatement updateStatement = null;
+        ResultSet rs = null;
+        boolean moved = false;
+        try {
+            conn.setAutoCommit(false);
+            lockCampsiteRows(conn, campsiteIds);
+            checkStatement = Web_MYSQL_Helper.prepareStatement(conn, checkSql.toString());
+            int parameter = 1;
+            for (AssignedSite assignedSite : assignedSites) {
+                checkStatement.setInt(parameter++, assignedSite.getAssignedSiteId());
+            }
+            for (AssignedSite assignedSite : assignedSites) {
+                checkStatement.setInt(parameter++, assignedSite.getCampsiteId());
+                checkStatement.setTimestamp(parameter++, Timestamp.valueOf(assignedSite.getDepartureDate()));
+                checkStatement.setTimestamp(parameter++, Timestamp.valueOf(assignedSite.getArrivalDate()));
+            }
+            rs = checkStatement.executeQuery();
+            if (!rs.next()) {
+                updateStatement = Web_MYSQL_Helper.prepareStatement(conn, sql);
+                for (AssignedSite assignedSite : assignedSites) {
+                    updateStatement.setInt(1, assignedSite.getCampsiteId());
+                    updateStatement.setInt(2, assignedSite.getAssignedSiteId());
+                    updateStatement.addBatch();
+                }
+                moved = true;
+                for (int count : updateStatement.executeBatch()) {
+                    moved &= count == 1;
+                }
+            }
+            if (moved) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in reassignSites"
+                    + "(List<AssignedSite> assignedSites) assignedSites="
+                    + assignedSites.size() + " error: " + ex);
+            rollback(conn);
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+            Web_MYSQL_Helper.closePreparedStatement(updateStatement);
+            Web_MYSQL_Helper.returnConnection(conn);
+            return false;
+        }
+        restoreAutoCommit(conn);
+        Web_MYSQL_Helper.closeResultSet(rs);
+        Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+        Web_MYSQL_Helper.closePreparedStatement(updateStatement);
+        Web_MYSQL_Helper.returnConnection(conn);
+        if (moved) {
+            AvailabilityIndex index = AvailabilityIndex.getInstance();
+            for (AssignedSite assignedSite : assignedSites) {
+                index.put(assignedSite);
+            }
+        }
+        return moved;
+    }
+
+    private boolean updateSiteLocked(AssignedSite assignedSite, Collection<Integer> campsiteIds) {
+        String checkSql = "SELECT assigned_site_id FROM assigned_site WHERE assigned_site_id <> ? "
+                + "AND campsite_id = ? AND arrival_date < ? AND departure_date > ? LIMIT 1;";
+        String sql = "UPDATE assigned_site SET "
+                + "reservation_id =?, customer_id =?, campsite_id =?, "
+                + "lock_site =?, deposit =?, checked_in =?, arrival_date =?,"
+                + "departure_date =? WHERE assigned_site_id=?";
+        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in updateSite");
+            return false;
+        }
+        PreparedStatement checkStatement = null;
+        PreparedStatement updateStatement = null;
+        ResultSet rs = null;
+        boolean updated = false;
+        try {
+            conn.setAutoCommit(false);
+            lockCampsiteRows(conn, campsiteIds);
+            checkStatement = Web_MYSQL_Helper.prepareStatement(conn, checkSql);
+            checkStatement.setInt(1, assignedSite.getAssignedSiteId());
+            checkStatement.setInt(2, assignedSite.getCampsiteId());
+            checkStatement.setTimestamp(3, Timestamp.valueOf(assignedSite.getDepartureDate()));
+            checkStatement.setTimestamp(4, Timestamp.valueOf(assignedSite.getArrivalDate()));
+            rs = checkStatement.executeQuery();
+            if (!rs.next()) {
+                updateStatement = Web_MYSQL_Helper.prepareStatement(conn, sql);
+                updateStatement.setInt(1, assignedSite.getReservationId());
+                updateStatement.setInt(2, assignedSite.getCustomerId());
+                updateStatement.setInt(3, assignedSite.getCampsiteId());
+                updateStatement.setBoolean(4, assignedSite.getLockSite());
+                updateStatement.setBigDecimal(5, assignedSite.getSiteDeposit());
+                updateStatement.setBoolean(6, assignedSite.getCheckIn());
+                updateStatement.setTimestamp(7, Timestamp.valueOf(assignedSite.getArrivalDate()));
+                updateStatement.setTimestamp(8, Timestamp.valueOf(assignedSite.getDepartureDate()));
+                updateStatement.setInt(9, assignedSite.getAssignedSiteId());
+                updated = updateStatement.executeUpdate() == 1;
+            }
+            if (updated) {
+                conn.commit();
+            } else {
+                conn.rollback();
+            }
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in updateSite"
+                    + "(AssignedSite assignedSite) assignedSite=" + assignedSite + " error: " + ex);
+            rollback(conn);
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+            Web_MYSQL_Helper.closePreparedStatement(updateStatement);
+            Web_MYSQL_Helper.returnConnection(conn);
+            return false;
+        }
+        restoreAutoCommit(conn);
+        Web_MYSQL_Helper.closeResultSet(rs);
+        Web_MYSQL_Helper.closePreparedStatement(checkStatement);
+        Web_MYSQL_Helper.closePreparedStatement(updateStatement);
+        Web_MYSQL_Helper.returnConnection(conn);
+        if (updated) {
+            AvailabilityIndex.getInstance().put(assignedSite);
+        }
+        return updated;
+    }
+
+    /**
+     * Edits the sites of a reservation while the stripes of
+     * <code>campsiteIds</code> are held. A current site on a campsite that is
+     * not in <code>campsiteIds</code> is added to it and nothing is changed,
+     * so the caller can lock it and try again.
+     */
+    private List<AssignedSite> editSitesLocked(int reservationId, List<AssignedSite> submitted,
+            TreeSet<Integer> campsiteIds) {
+        String selectSql = "SELECT * FROM assigned_site WHERE reservation_id=? "
+                + "ORDER BY assigned_site_id FOR UPDATE;";
+        String deleteSql = "DELETE FROM assigned_site WHERE assigned_site_id=?;";
+        String updateSql = "UPDATE assigned_site SET customer_id=?, campsite_id=?, lock_site=?, "
+                + "arrival_date=?, departure_date=? WHERE assigned_site_id=?;";
+        String insertSql = "INSERT INTO assigned_site "
+                + "(assigned_site_id, reservation_id, customer_id, campsite_id, "
+                + "lock_site, deposit, checked_in, arrival_date,"
+                + "departure_date) VALUES (DEFAULT,?,?,?,?,?,?,?,?); ";
+        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in editSites");
+            return null;
+        }
+        PreparedStatement selectStatement = null;
+        PreparedStatement checkStatement = null;
+        PreparedStatement deleteStatement = null;
+        PreparedStatement updateStatement = null;
+        PreparedStatement insertStatement = null;
+        ResultSet rs = null;
+        ResultSet keys = null;
+        List<AssignedSite> kept = new ArrayList<>();
+        List<AssignedSite> deleted = new ArrayList<>();
+        List<AssignedSite> updated = new ArrayList<>();
+        List<AssignedSite> inserted = new ArrayList<>();
+        try {
+            conn.setAutoCommit(false);
+            if (!campsiteIds.isEmpty()) {
+                lockCampsiteRows(conn, campsiteIds);
+            }
+            selectStatement = Web_MYSQL_Helper.prepareStatement(conn, selectSql);
+            selectStatement.setInt(1, reservationId);
+            rs = selectStatement.executeQuery();
+            List<AssignedSite> existing = new ArrayList<>();
+            boolean moved = false;
+            while (rs.next()) {
+                AssignedSite site = SQLUtility.convertResultSetToAssignedSite(rs);
+                moved |= campsiteIds.add(site.getCampsiteId());
+                existing.add(site);
+            }
+            Web_MYSQL_Helper.closeResultSet(rs);
+            if (moved) {
+                rollback(conn);
+                closeStatements(selectStatement);
+                Web_MYSQL_Helper.returnConnection(conn);
+                return null;
+            }
+
+            List<AssignedSite> unpaired = new ArrayList<>(existing);
+            AssignedSite[] pairs = SiteEdits.pair(submitted, unpaired);
+            deleted.addAll(unpaired);
+
+            // What the changes must not overlap: the other bookings of the
+            // changed campsites and this reservation's unchanged sites. The
+            // changed sites' old stays are left out, so two sites may swap.
+            List<AssignedSite> changes = new ArrayList<>();
+            List<AssignedSite> taken = new ArrayList<>();
+            for (int i = 0; i < submitted.size(); i++) {
+                if (pairs[i] == null || !SiteEdits.isSameStay(pairs[i], submitted.get(i))) {
+                    changes.add(submitted.get(i));
+                } else {
+                    taken.add(pairs[i]);
+                }
+            }
+            if (!changes.isEmpty()) {
+                StringBuilder checkSql = new StringBuilder("SELECT campsite_id, arrival_date, departure_date "
+                        + "FROM assigned_site WHERE reservation_id <> ? AND (");
+                for (int i = 0; i < changes.size(); i++) {
+                    checkSql.append(i == 0 ? "" : " OR ")
+                            .append("(campsite_id = ? AND arrival_date < ? AND departure_date > ?)");
+                }
+                checkSql.append(");");
+                checkStatement = Web_MYSQL_Helper.prepareStatement(conn, checkSql.toString());
+                int parameter = 1;
+                checkStatement.setInt(parameter++, reservationId);
+                for (AssignedSite change : changes) {
+                    checkStatement.setInt(parameter++, change.getCampsiteId());
+                    checkStatement.setTimestamp(parameter++, Timestamp.valueOf(change.getDepartureDate()));
+                    checkStatement.setTimestamp(parameter++, Timestamp.valueOf(change.getArrivalDate()));
+                }
+                rs = checkStatement.executeQuery();
+                while (rs.next()) {
+                    AssignedSite other = new AssignedSite();
+                    other.setCampsiteId(rs.getInt("campsite_id"));
+                    other.setArrivalDate(rs.getTimestamp("arrival_date").toLocalDateTime());
+                    other.setDepartureDate(rs.getTimestamp("departure_date").toLocalDateTime());
+                    taken.add(other);
+                }
+            }
+
+            boolean[] accepted = SiteEdits.acceptChanges(submitted, pairs, taken);
+            for (int i = 0; i < submitted.size(); i++) {
+                AssignedSite site = submitted.get(i);
+                AssignedSite pair = pairs[i];
+                if (!accepted[i]) {
+                    if (pair != null) {
+                        kept.add(pair);
+                    }
+                    continue;
+                }
+                site.setReservationId(reservationId);
+                if (pair == null) {
+                    inserted.add(site);
+                } else {
+                    site.setAssignedSiteId(pair.getAssignedSiteId());
+                    site.setCheckIn(pair.getCheckIn());
+                    site.setSiteDeposit(pair.getSiteDeposit());
+                    updated.add(site);
+                }
+            }
+
+            if (!deleted.isEmpty()) {
+                deleteStatement = Web_MYSQL_Helper.prepareStatement(conn, deleteSql);
+                for (AssignedSite site : deleted) {
+                    deleteStatement.setInt(1, site.getAssignedSiteId());
+                    deleteStatement.addBatch();
+                }
+                deleteStatement.executeBatch();
+            }
+            if (!updated.isEmpty()) {
+                updateStatement = Web_MYSQL_Helper.prepareStatement(conn, updateSql);
+                for (AssignedSite site : updated) {
+                    updateStatement.setInt(1, site.getCustomerId());
+                    updateStatement.setInt(2, site.getCampsiteId());
+                    updateStatement.setBoolean(3, site.getLockSite());
+                    updateStatement.setTimestamp(4, Timestamp.valueOf(site.getArrivalDate()));
+                    updateStatement.setTimestamp(5, Timestamp.valueOf(site.getDepartureDate()));
+                    updateStatement.setInt(6, site.getAssignedSiteId());
+                    updateStatement.addBatch();
+                }
+                updateStatement.executeBatch();
+            }
+            if (!inserted.isEmpty()) {
+                insertStatement = Web_MYSQL_Helper.prepareStatement(conn, insertSql, Statement.RETURN_GENERATED_KEYS);
+                for (AssignedSite site : inserted) {
+                    insertStatement.setInt(1, reservationId);
+                    insertStatement.setInt(2, site.getCustomerId());
+                    insertStatement.setInt(3, site.getCampsiteId());
+                    insertStatement.setBoolean(4, site.getLockSite());
+                    insertStatement.setBigDecimal(5, site.getSiteDeposit());
+                    insertStatement.setBoolean(6, site.getCheckIn());
+                    insertStatement.setTimestamp(7, Timestamp.valueOf(site.getArrivalDate()));
+                    insertStatement.setTimestamp(8, Timestamp.valueOf(site.getDepartureDate()));
+                    insertStatement.addBatch();
+                }
+                insertStatement.executeBatch();
+                keys = insertStatement.getGeneratedKeys();
+                for (AssignedSite site : inserted) {
+                    keys.next();
+                    site.setAssignedSiteId(keys.getInt(1));
+                }
+                Web_MYSQL_Helper.closeResultSet(keys);
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in editSites"
+                    + "(int reservationId, List<AssignedSite> submitted) reservationId="
+                    + reservationId + " error: " + ex);
+            rollback(conn);
+            Web_MYSQL_Helper.closeResultSet(rs);
+            closeStatements(selectStatement, checkStatement, deleteStatement, updateStatement, insertStatement);
+            Web_MYSQL_Helper.returnConnection(conn);
+            return null;
+        }
+        restoreAutoCommit(conn);
+        Web_MYSQL_Helper.closeResultSet(rs);
+        closeStatements(selectStatement, checkStatement, deleteStatement, updateStatement, insertStatement);
+        Web_MYSQL_Helper.returnConnection(conn);
+        // Update the index before the campsite locks are released
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        for (AssignedSite site : deleted) {
+            index.remove(site.getAssignedSiteId());
+        }
+        List<AssignedSite> sites = new ArrayList<>(kept);
+        sites.addAll(updated);
+        sites.addAll(inserted);
+        for (AssignedSite site : updated) {
+            index.put(site);
+        }
+        for (AssignedSite site : inserted) {
+            index.put(site);
+        }
+        return sites;
+    }
+
+    private static void closeStatements(PreparedStatement... statements) {
+        for (PreparedStatement statement : statements) {
+            Web_MYSQL_Helper.closePreparedStatement(statement);
+        }
+    }
+
+    /**
+     * Rolls back the current transaction and puts the connection back into
+     * auto commit mode before it is returned to the pool.
+     */
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in rollback(Connection conn)", ex);
+        }
+        restoreAutoCommit(conn);
+    }
+
+    private static void restoreAutoCommit(Connection conn) {
+        try {
+            conn.setAutoCommit(true);
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in restoreAutoCommit(Connection conn)", ex);
+        }
+    }
+
+    /**
+     * A stress test for the coordinator. Many threads try to book random,
+     * mostly overlapping, ranges on a few campsites at the same time. The
+     * assigned sites that were created are then checked for overlaps and
+     * deleted again.
+     *
+     * This needs a database, so it takes the path to General.properties, the
+     * id of an existing reservation and customer to attach the test rows to,
+     * and the ids of the campsites to book.
+     *
+     * @param args propertyFilePath reservationId customerId campsiteId...
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 4) {
+            System.out.println("Usage: BookingCoordinator propertyFilePath reservationId customerId campsiteId...");
+            return;
+        }
+        PropertyManager.configure(args[0]);
+        PropertyManager.setProperty("UseDBPooling", "no");
+        final int reservationId = Integer.parseInt(args[1]);
+        final int customerId = Integer.parseInt(args[2]);
+        final int[] campsiteIds = new int[args.length - 3];
+        for (int i = 3; i < args.length; i++) {
+            campsiteIds[i - 3] = Integer.parseInt(args[i]);
+        }
+        final int threads = 16;
+        final int bookingsPerThread = 25;
+        final LocalDateTime base = LocalDateTime.of(2099, 6, 1, 14, 0);
+        final BookingCoordinator bookingCoordinator = BookingCoordinator.getInstance();
+        final AtomicInteger booked = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < bookingsPerThread; i++) {
+                        List<AssignedSite> request = new ArrayList<>();
+                        for (int j = 0; j < 1 + random.nextInt(3); j++) {
+                            LocalDateTime arrival = base.plusDays(random.nextInt(20));
+                            request.add(new AssignedSite(reservationId, customerId,
+                                    campsiteIds[random.nextInt(campsiteIds.length)], false,
+                                    BigDecimal.ZERO, false, arrival,
+                                    arrival.plusDays(1 + random.nextInt(4)).withHour(9)));
+                        }
+                        for (AssignedSite added : bookingCoordinator.assignSites(reservationId, request)) {
+                            if (added != null) {
+                                booked.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        done.await();
+        System.out.println(booked.get() + " sites booked by " + threads + " threads in "
+                + (System.nanoTime() - time) / 1000000 + " ms");
+
+        AssignedSiteManager assignedSiteManager = new AssignedSiteManager();
+        List<AssignedSite> created = new ArrayList<>();
+        for (AssignedSite assignedSite : assignedSiteManager.getAssignedSiteByReservationId(reservationId)) {
+            if (!assignedSite.getArrivalDate().isBefore(base)) {
+                created.add(assignedSite);
+            }
+        }
+        int overlaps = 0;
+        for (int i = 0; i < created.size(); i++) {
+            List<AssignedSite> others = created.subList(i + 1, created.size());
+            if (SiteEdits.overlapsAny(created.get(i), others)) {
+                overlaps++;
+            }
+        }
+        System.out.println(created.size() + " rows created, " + overlaps + " overlaps");
+        for (AssignedSite assignedSite : created) {
+            assignedSiteManager.deleteAssignedSiteById(assignedSite.getAssignedSiteId());
+        }
+    }
+}
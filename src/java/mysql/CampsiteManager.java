@@ -2,15 +2,24 @@
 package mysql;
 import common.Campsite;
 import common.SiteType;
+import database.AvailabilityIndex;
+import database.CampsiteSearch;
+import database.IdentityMap;
+import database.OccupancyBitmap;
 import database.SQLUtility;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
@@ -21,6 +30,16 @@ import utilities.WebErrorLogger;
  * @author Drew Wagner, Scott Harchar (2021)
  */
 public class CampsiteManager implements database.CampsiteManager  {
+
+    // Every column but the image, which is read on its own by readCampsiteImage
+    private static final String CAMPSITE_COLUMNS = "campsite_id, campsite_name, campsite_number, "
+            + "campsite_section, max_length, width, accepts_slide_out, pull_thru, campsite_type, notes";
+
+    // Each campsite probes the (campsite_id, arrival_date, departure_date) index
+    static final String UNASSIGNED_SQL = "SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information "
+            + "WHERE NOT EXISTS (SELECT 1 FROM assigned_site "
+            + "WHERE assigned_site.campsite_id = campsite_information.campsite_id "
+            + "AND assigned_site.arrival_date < ? AND assigned_site.departure_date > ?)";
     
     /**
      * Returns this <code>Campsite</code> object which has been added to the campsite's
@@ -29,7 +48,7 @@ public class CampsiteManager implements database.CampsiteManager  {
      * @param campsite A <code>Campsite</code> object which will be used to add 
      * to the database.
      * @return A <code>Campsite</code> object which has been added to the campsite's
-     * database.
+     * database, with its generated campsite id.
      */
     @Override
     public Campsite addCampsite(Campsite campsite){
@@ -37,10 +56,13 @@ public class CampsiteManager implements database.CampsiteManager  {
                 + "(campsite_id, campsite_name, campsite_number, campsite_section, max_length, "
                 + "width, accepts_slide_out, pull_thru, campsite_type,"
                 + "notes, image, image_path) VALUES (DEFAULT,?,?,?,?,?,?,?,?,?,?,?); ";
+        campsite.setCampsiteName(campsite.getCampsiteName().trim());
+        campsite.setNotes(campsite.getNotes().trim());
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
+        ResultSet keys;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);//Stop SQL insertion issues with prepared statements 
             stmt2.setString(1, campsite.getCampsiteName().trim());
             stmt2.setInt(2, campsite.getCampsiteNumber());
             stmt2.setString(3, String.valueOf(campsite.getCampsiteSection()));
@@ -54,17 +76,24 @@ public class CampsiteManager implements database.CampsiteManager  {
             stmt2.setString(11, campsite.getImageSource());
 
             stmt2.executeUpdate();
+            keys = stmt2.getGeneratedKeys();
+            keys.next();
+            campsite.setCampsiteId(keys.getInt(1));
+            Web_MYSQL_Helper.closeResultSet(keys);
 
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in addCampsite"
                     + "(Campsite campsite) campsite="+campsite+" error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
+            IdentityMap.remove(Campsite.class, campsite.getCampsiteId());
             return campsite;
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getCampsiteByCampsiteName(campsite.getCampsiteName());
+        OccupancyBitmap.getInstance().addCampsite(campsite.getCampsiteId());
+        CampsiteSearch.getInstance().put(campsite);
+        return IdentityMap.put(Campsite.class, campsite.getCampsiteId(), campsite);
     }
     
     
@@ -73,19 +102,24 @@ public class CampsiteManager implements database.CampsiteManager  {
      * the database. 
      *
      * @param campsite A <code>Campsite</code> object which contains the latest
-     * information.
-     * @return A <code>Campsite</code> object with latest update.
+     * information. If it has no image the stored image is kept.
+     * @return A <code>Campsite</code> object with latest update, or null if 
+     * there is no campsite with its id or the update failed.
      */
     @Override
     public Campsite updateCampsite(Campsite campsite){
+        boolean hasImage = campsite.getImage() != null;
         String sql="UPDATE campsite_information SET "
                 + "campsite_name=?, campsite_number=?, campsite_section=?, max_length=?, "
                 + "width=?, accepts_slide_out=?, pull_thru=?, campsite_type=?,"
-                + "notes=?, image=?, image_path=? WHERE campsite_id=?";
+                + "notes=?, image_path=?" + (hasImage ? ", image=?" : "") + " WHERE campsite_id=?";
+        campsite.setCampsiteName(campsite.getCampsiteName().trim());
+        campsite.setNotes(campsite.getNotes().trim());
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
+        int updateCount;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);//Stop SQL insertion issues with prepared statements 
             stmt2.setString(1, campsite.getCampsiteName().trim());
             stmt2.setInt(2, campsite.getCampsiteNumber());
             stmt2.setString(3, String.valueOf(campsite.getCampsiteSection()));
@@ -95,21 +129,29 @@ public class CampsiteManager implements database.CampsiteManager  {
             stmt2.setBoolean(7, campsite.getPullThru());
             stmt2.setString(8, campsite.getSiteType().getSiteTypeName());
             stmt2.setString(9, campsite.getNotes().trim());
-            stmt2.setBlob(10, campsite.getImage());
-            stmt2.setString(11, campsite.getImageSource());
-            stmt2.setInt(12, campsite.getCampsiteId());
+            stmt2.setString(10, campsite.getImageSource());
+            if (hasImage) {
+                stmt2.setBlob(11, campsite.getImage());
+            }
+            stmt2.setInt(hasImage ? 12 : 11, campsite.getCampsiteId());
 
-            stmt2.executeUpdate();
+            updateCount = stmt2.executeUpdate();
             } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in updateCampsite"
                     + "(Campsite campsite) campsite="+campsite+" error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
-            return campsite;
+            IdentityMap.remove(Campsite.class, campsite.getCampsiteId());
+            return null;
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getCampsiteWithNameNumberSection(campsite);
+        if (updateCount == 0) {
+            IdentityMap.remove(Campsite.class, campsite.getCampsiteId());
+            return null;
+        }
+        CampsiteSearch.getInstance().put(campsite);
+        return IdentityMap.put(Campsite.class, campsite.getCampsiteId(), campsite);
             
     }
     
@@ -121,13 +163,17 @@ public class CampsiteManager implements database.CampsiteManager  {
      */
     @Override
     public Campsite getCampsiteById(int campsiteId){
-        String sql="SELECT * FROM campsite_information WHERE campsite_id=?";
+        Campsite cached = IdentityMap.get(Campsite.class, campsiteId);
+        if(cached != null){
+            return cached;
+        }
+        String sql="SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information WHERE campsite_id=?";
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Campsite campsite = null;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, campsiteId);
             
             rs = stmt2.executeQuery();
@@ -147,7 +193,7 @@ public class CampsiteManager implements database.CampsiteManager  {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return campsite;
+        return IdentityMap.put(Campsite.class, campsiteId, campsite);
     }
     
     /**
@@ -158,13 +204,13 @@ public class CampsiteManager implements database.CampsiteManager  {
      */
     @Override
     public Campsite getCampsiteByCampsiteName(String campsiteName){
-        String sql="SELECT * FROM campsite_information WHERE campsite_name=?";
+        String sql="SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information WHERE campsite_name=?";
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Campsite campsite = null;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, campsiteName);
             
             rs = stmt2.executeQuery();
@@ -198,13 +244,13 @@ public class CampsiteManager implements database.CampsiteManager  {
     @Override
     public Collection<Campsite> getAllCampsitesBySiteType(SiteType siteType){
         Collection<Campsite> campsites = new ArrayList<>();
-        String sql = "SELECT * FROM campsite_information WHERE campsite_type = ?;";
+        String sql = "SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information WHERE campsite_type = ?;";
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Campsite campsite;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, siteType.getSiteTypeName());
             
             rs=stmt2.executeQuery();
@@ -229,27 +275,40 @@ public class CampsiteManager implements database.CampsiteManager  {
         return campsites;
     }
     
+    /**
+     * Returns a collection of <code>Campsite</code> objects that have no
+     * assigned site overlapping the given date range. Once the 
+     * <code>AvailabilityIndex</code> has been loaded the occupied campsites
+     * come from memory and only the campsite list is read from the database.
+     *
+     * @param startDate The start of the date range.
+     * @param endDate The end of the date range.
+     * @return A collection of the available <code>Campsite</code> objects.
+     */
     @Override
     public Collection<Campsite> getUnassignedSitesByDateRange(LocalDateTime startDate,
             LocalDateTime endDate){
         Collection<Campsite> campsites = new ArrayList<>();
-        String sql = "SELECT * FROM campsite_information WHERE NOT "
-                + "campsite_id = ANY (SELECT campsite_id FROM assigned_site "
-                + "WHERE ? BETWEEN arrival_date AND departure_date " 
-                + "OR ? BETWEEN arrival_date AND departure_date " 
-                + "OR campsite_id = ANY (SELECT campsite_id from assigned_site " 
-                + "WHERE ? <= arrival_date AND ? <=departure_date));";
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        if(index.isLoaded()){
+            Set<Integer> occupied = index.getOccupiedCampsiteIds(startDate, endDate);
+            for(Campsite campsite : getAllCampsites()){
+                if(!occupied.contains(campsite.getCampsiteId())){
+                    campsites.add(campsite);
+                }
+            }
+            return campsites;
+        }
+        String sql = UNASSIGNED_SQL;
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Campsite campsite;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             
-            stmt.setTimestamp(1, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(2, Timestamp.valueOf(endDate));
-            stmt.setTimestamp(3, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(4, Timestamp.valueOf(endDate));
+            stmt.setTimestamp(1, Timestamp.valueOf(endDate));
+            stmt.setTimestamp(2, Timestamp.valueOf(startDate));
             rs=stmt.executeQuery();
             if(rs == null || rs.next() == false){
                 Web_MYSQL_Helper.closePreparedStatement(stmt);
@@ -280,13 +339,13 @@ public class CampsiteManager implements database.CampsiteManager  {
     @Override
     public Collection<Campsite> getAllCampsites(){
         Collection<Campsite> campsites = new ArrayList<>();
-        String sql = "SELECT * FROM campsite_information;";
+        String sql = "SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information;";
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Campsite campsite;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -308,6 +367,16 @@ public class CampsiteManager implements database.CampsiteManager  {
         Web_MYSQL_Helper.returnConnection(conn);
         return campsites;
     }
+
+    /**
+     * Streams every campsite to the action without holding them in memory.
+     */
+    @Override
+    public boolean forEachCampsite(Consumer<? super Campsite> action){
+        return StreamingQuery.forEach("SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information "
+                + "ORDER BY campsite_id", null, SQLUtility::convertResultSetToCampsite, action,
+                "forEachCampsite(Consumer action)");
+    }
     
     /**
      * Return ture if the given campsite have been deleted from the database.
@@ -324,7 +393,7 @@ public class CampsiteManager implements database.CampsiteManager  {
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, campsiteId);
             stmt2.executeUpdate();
         }catch (SQLException ex) {
@@ -336,6 +405,10 @@ public class CampsiteManager implements database.CampsiteManager  {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
+        AvailabilityIndex.getInstance().removeCampsite(campsiteId);
+        OccupancyBitmap.getInstance().removeCampsite(campsiteId);
+        CampsiteSearch.getInstance().remove(campsiteId);
+        IdentityMap.remove(Campsite.class, campsiteId);
         return true;
     }
     
@@ -354,6 +427,47 @@ public class CampsiteManager implements database.CampsiteManager  {
         return deleteCampsiteById(campsite.getCampsiteId());
     }
     
+    /**
+     * Streams the stored image of a campsite to the consumer straight from
+     * the result set, without copying it into a <code>Campsite</code> or a
+     * byte array.
+     *
+     * @param campsiteId The id of the campsite.
+     * @param consumer Receives the image, if the campsite has one.
+     * @return True if the campsite has an image and it was passed to the
+     * consumer.
+     * @throws IOException If the consumer throws it.
+     */
+    @Override
+    public boolean readCampsiteImage(int campsiteId, ImageConsumer consumer) throws IOException {
+        String sql = "SELECT image, LENGTH(image) AS image_length FROM campsite_information "
+                + "WHERE campsite_id=? AND image IS NOT NULL";
+        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setInt(1, campsiteId);
+            rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return false;
+            }
+            try (InputStream image = rs.getBinaryStream(1)) {
+                consumer.accept(image, rs.getLong(2));
+            }
+            return true;
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in readCampsiteImage"
+                    + "(int campsiteId, ImageConsumer consumer) campsiteId="+campsiteId+" error: "+ex);
+            return false;
+        } finally {
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+            Web_MYSQL_Helper.returnConnection(conn);
+        }
+    }
+    
     /**
      * Returns a <code>Campsite</code> object according to the given campsite name, section, and number.
      * This is used in the to obtain the id of a recently created campsite object in which the
@@ -364,12 +478,12 @@ public class CampsiteManager implements database.CampsiteManager  {
      */
     @Override
     public Campsite getCampsiteWithNameNumberSection(Campsite campsite){
-        String sql="SELECT * FROM campsite_information WHERE campsite_name=? AND campsite_section=? AND campsite_number=?;";
+        String sql="SELECT " + CAMPSITE_COLUMNS + " FROM campsite_information WHERE campsite_name=? AND campsite_section=? AND campsite_number=?;";
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, campsite.getCampsiteName());
             stmt2.setString(2, String.valueOf(campsite.getCampsiteSection()));
             stmt2.setInt(3, campsite.getCampsiteNumber());
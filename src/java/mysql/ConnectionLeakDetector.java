@@ -0,0 +1,269 @@
+package mysql;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * Finds connections that are borrowed from <code>Web_MYSQL_Helper</code>
+ * and not given back.
+ *
+ * For each borrowed connection it keeps the time, the thread and the stack
+ * of the borrow. A connection held for longer than the threshold is logged
+ * once with the stack that borrowed it and counted against its call site,
+ * the first method outside <code>Web_MYSQL_Helper</code> on the stack, so a
+ * method that forgets to return its connection on one path stands out from
+ * the ones that are merely slow. If the connection is given back later, that
+ * is logged too.
+ *
+ * The borrowed connections are checked by a daemon thread every half
+ * threshold, at most once a minute. A borrow costs one map entry and one
+ * <code>Throwable</code>, whose stack is only turned into text when the
+ * connection is reported. To cost less still, the stack can be taken on one
+ * borrow in <code>stackSampling</code>; a connection borrowed without one is
+ * counted against the thread that borrowed it.
+ *
+ * <code>Web_MYSQL_Helper</code> creates one when the property
+ * <code>ConnectionLeakDetection</code> is <code>on</code>.
+ */
+public class ConnectionLeakDetector {
+
+    private static final long MAXIMUM_CHECK_MILLIS = 60000;
+
+    /**
+     * Where and when a connection was borrowed.
+     */
+    private static class Borrow {
+
+        private final long borrowedNanos = System.nanoTime();
+        private final long borrowedMillis = System.currentTimeMillis();
+        private final String threadName = Thread.currentThread().getName();
+        private final Throwable stack;
+        private volatile boolean reported = false;
+
+        private Borrow(Throwable stack) {
+            this.stack = stack;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final int stackSampling;
+    private final Map<Connection, Borrow> outstanding = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> leaksBySite = new ConcurrentHashMap<>();
+    private final AtomicLong borrows = new AtomicLong();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder lateReturns = new LongAdder();
+    private final ScheduledExecutorService checker;
+
+    /**
+     * Creates a detector and starts the thread that checks the borrowed
+     * connections.
+     *
+     * @param thresholdMillis How long a connection may be held before it is
+     * reported.
+     * @param stackSampling Take the stack of one borrow in this many, or of
+     * every borrow if it is 1 or less.
+     */
+    public ConnectionLeakDetector(long thresholdMillis, int stackSampling) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, thresholdMillis));
+        this.stackSampling = Math.max(1, stackSampling);
+        long checkMillis = Math.min(Math.max(thresholdMillis / 2, 1000), MAXIMUM_CHECK_MILLIS);
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ConnectionLeakDetector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::check, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Notes that the current thread borrowed a connection.
+     *
+     * @param connection The connection, which may be null.
+     */
+    void borrowed(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        long borrow = borrows.incrementAndGet();
+        outstanding.put(connection, new Borrow(borrow % stackSampling == 0 ? new Throwable() : null));
+    }
+
+    /**
+     * Notes that a connection was given back.
+     *
+     * @param connection The connection, which may be null.
+     */
+    void returned(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        Borrow borrow = outstanding.remove(connection);
+        if (borrow != null && borrow.reported) {
+            lateReturns.increment();
+            WebErrorLogger.log(Level.INFO, "Connection reported as leaked by " + siteOf(borrow)
+                    + " was returned after " + heldMillis(borrow, System.nanoTime()) + " ms");
+        }
+    }
+
+    /**
+     * Reports the connections held for longer than the threshold that have
+     * not been reported yet. Called by the detector's thread.
+     */
+    public void check() {
+        long now = System.nanoTime();
+        for (Borrow borrow : outstanding.values()) {
+            if (borrow.reported || now - borrow.borrowedNanos <= thresholdNanos) {
+                continue;
+            }
+            borrow.reported = true;
+            leaks.increment();
+            String site = siteOf(borrow);
+            leaksBySite.computeIfAbsent(site, key -> new LongAdder()).increment();
+            String message = "Connection held for " + heldMillis(borrow, now) + " ms, since "
+                    + new Date(borrow.borrowedMillis) + ", by " + site
+                    + " on thread " + borrow.threadName;
+            if (borrow.stack == null) {
+                WebErrorLogger.log(Level.WARNING, message);
+            } else {
+                WebErrorLogger.log(Level.WARNING, message, borrow.stack);
+            }
+        }
+    }
+
+    /**
+     * @return The number of connections borrowed and not yet given back.
+     */
+    public int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    /**
+     * @return The number of connections that were held for longer than the
+     * threshold.
+     */
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    /**
+     * @return The number of connections that were held for longer than the
+     * threshold and then given back.
+     */
+    public long getLateReturnCount() {
+        return lateReturns.sum();
+    }
+
+    /**
+     * @return The number of connections held for longer than the threshold
+     * by each call site, the most first.
+     */
+    public Map<String, Long> getLeaksBySite() {
+        List<Map.Entry<String, Long>> sites = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> site : leaksBySite.entrySet()) {
+            sites.add(new AbstractMap.SimpleEntry<>(site.getKey(), site.getValue().sum()));
+        }
+        sites.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> site : sites) {
+            sorted.put(site.getKey(), site.getValue());
+        }
+        return sorted;
+    }
+
+    /**
+     * Stops the thread that checks the borrowed connections.
+     */
+    public void shutdown() {
+        checker.shutdownNow();
+    }
+
+    /**
+     * Returns the method that borrowed the connection, as
+     * <code>class.method(file:line)</code>, or the thread if the stack was not
+     * taken.
+     */
+    private static String siteOf(Borrow borrow) {
+        if (borrow.stack == null) {
+            return "thread " + borrow.threadName + " (stack not sampled)";
+        }
+        for (StackTraceElement frame : borrow.stack.getStackTrace()) {
+            String className = frame.getClassName();
+            boolean isBorrow = className.equals(ConnectionLeakDetector.class.getName())
+                    && frame.getMethodName().equals("borrowed");
+            if (!isBorrow && !className.equals(Web_MYSQL_Helper.class.getName())) {
+                return frame.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    private static long heldMillis(Borrow borrow, long now) {
+        return TimeUnit.NANOSECONDS.toMillis(now - borrow.borrowedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionLeakDetector{outstanding=" + getOutstandingCount() + ", leaks=" + getLeakCount()
+                + ", lateReturns=" + getLateReturnCount() + ", bySite=" + getLeaksBySite() + '}';
+    }
+
+    /**
+     * Borrows stand-in connections from two methods, one of which forgets to
+     * give one back, and prints what the detector found.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ConnectionLeakDetector detector = new ConnectionLeakDetector(100, 1);
+        for (int i = 0; i < 3; i++) {
+            borrowAndReturn(detector);
+        }
+        Connection leaked = borrowAndForget(detector);
+        Thread.sleep(150);
+        detector.check();
+        System.out.println(detector);
+        detector.returned(leaked);
+        System.out.println(detector);
+        detector.shutdown();
+    }
+
+    private static void borrowAndReturn(ConnectionLeakDetector detector) {
+        Connection connection = standIn();
+        detector.borrowed(connection);
+        detector.returned(connection);
+    }
+
+    // Returns the connection only so main can give it back late
+    private static Connection borrowAndForget(ConnectionLeakDetector detector) {
+        Connection connection = standIn();
+        detector.borrowed(connection);
+        return connection;
+    }
+
+    private static Connection standIn() {
+        return (Connection) Proxy.newProxyInstance(ConnectionLeakDetector.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == methodArgs[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,602 @@
+package mysql;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * A pool of database connections for <code>Web_MYSQL_Helper</code>.
+ *
+ * Borrowing never takes a lock while connections are available: a permit is
+ * taken from a semaphore, which bounds the number of connections, and an idle
+ * connection is taken from a lock-free deque. Only when every connection is
+ * in use does a thread wait, and then for at most the acquisition timeout
+ * before it gets null back.
+ *
+ * A connection is only validated when it has been idle for longer than the
+ * validation interval, and is closed when it has been idle for longer than
+ * the maximum idle time.
+ *
+ * New connections come from a <code>ConnectionFactory</code>, which is either
+ * the JNDI <code>DataSource</code> of <code>ConnectionPoolMySQL</code> or the
+ * <code>DriverManager</code>.
+ *
+ * Each connection keeps a <code>StatementCache</code> of its prepared
+ * statements, so a statement borrowed with <code>prepareStatement</code> and
+ * given back with <code>returnStatement</code> is only prepared once per
+ * connection.
+ *
+ * Sample Usage:
+ * <pre>
+ * ConnectionPool pool = new ConnectionPool(factory, 20, 5000, 30000, 600000, 50);
+ * Connection connection = pool.getConnection();
+ * PreparedStatement statement = pool.prepareStatement(connection, sql, Statement.NO_GENERATED_KEYS);
+ * // Use the statement
+ * pool.returnStatement(statement);
+ * pool.returnConnection(connection);
+ * </pre>
+ */
+public class ConnectionPool {
+
+    /**
+     * Opens new physical connections for a <code>ConnectionPool</code>.
+     */
+    public interface ConnectionFactory {
+
+        /**
+         * Opens a new connection to the database.
+         *
+         * @return The new <code>Connection</code>.
+         * @throws SQLException If the connection could not be opened.
+         */
+        public Connection createConnection() throws SQLException;
+    }
+
+    /**
+     * A pooled connection, its statements and the time it was last returned.
+     */
+    private static class PooledConnection {
+
+        private final Connection connection;
+        private final StatementCache statements;
+        private final boolean readOnly;
+        private final int transactionIsolation;
+        private volatile long lastUsed = System.nanoTime();
+
+        private PooledConnection(Connection connection, int statementCacheSize) throws SQLException {
+            this.connection = connection;
+            this.statements = new StatementCache(statementCacheSize);
+            this.readOnly = connection.isReadOnly();
+            this.transactionIsolation = connection.getTransactionIsolation();
+        }
+    }
+
+    /**
+     * A statement that has been handed out, and where it goes back to.
+     */
+    private static class BorrowedStatement {
+
+        private final StatementCache cache;
+        private final String key;
+
+        private BorrowedStatement(StatementCache cache, String key) {
+            this.cache = cache;
+            this.key = key;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maximumSize;
+    private final long acquisitionTimeoutMillis;
+    private final long validationIntervalNanos;
+    private final long maximumIdleNanos;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<Connection, PooledConnection> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final Map<PreparedStatement, BorrowedStatement> borrowedStatements = new ConcurrentHashMap<>();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param factory Opens the connections.
+     * @param maximumSize The most connections open at once.
+     * @param acquisitionTimeoutMillis How long to wait for a connection when
+     * all are in use.
+     * @param validationIntervalMillis A connection that has been idle for
+     * longer than this is validated before it is handed out.
+     * @param maximumIdleMillis A connection that has been idle for longer
+     * than this is closed instead of handed out.
+     * @param statementCacheSize The most prepared statements cached per
+     * connection, or 0 to not cache statements.
+     */
+    public ConnectionPool(ConnectionFactory factory, int maximumSize, long acquisitionTimeoutMillis,
+            long validationIntervalMillis, long maximumIdleMillis, int statementCacheSize) {
+        this.factory = factory;
+        this.maximumSize = Math.max(1, maximumSize);
+        this.acquisitionTimeoutMillis = Math.max(0, acquisitionTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.maximumIdleNanos = TimeUnit.MILLISECONDS.toNanos(maximumIdleMillis);
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(this.maximumSize, true);
+    }
+
+    /**
+     * Borrows a connection. It must be given back with
+     * <code>returnConnection</code>.
+     *
+     * @return A <code>Connection</code>, or null if none became available
+     * within the acquisition timeout or a new one could not be opened.
+     */
+    public Connection getConnection() {
+        if (closed || !acquirePermit()) {
+            return null;
+        }
+        PooledConnection pooled = null;
+        try {
+            pooled = takeIdle();
+            if (pooled == null) {
+                pooled = create();
+            }
+        } finally {
+            if (pooled == null) {
+                permits.release();
+            }
+        }
+        if (pooled == null) {
+            return null;
+        }
+        borrowed.put(pooled.connection, pooled);
+        return pooled.connection;
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. An open transaction is
+     * rolled back. Connections that are closed, or that this pool did not
+     * hand out, are not pooled.
+     *
+     * @param connection The borrowed <code>Connection</code>.
+     */
+    public void returnConnection(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        PooledConnection pooled = borrowed.remove(connection);
+        if (pooled == null) {
+            // Returned twice, or not from this pool
+            return;
+        }
+        for (PreparedStatement leaked : pooled.statements.takeInUse()) {
+            borrowedStatements.remove(leaked);
+            StatementCache.closeQuietly(leaked);
+        }
+        if (!closed && reset(pooled)) {
+            pooled.lastUsed = System.nanoTime();
+            idle.offerFirst(pooled);
+            idleCount.incrementAndGet();
+        } else {
+            discard(pooled);
+        }
+        permits.release();
+    }
+
+    /**
+     * Borrows a prepared statement for a connection from this pool. A cached
+     * statement for the same SQL is reused when there is one. The statement
+     * must be given back with <code>returnStatement</code>.
+     *
+     * @param connection A connection borrowed from this pool.
+     * @param sql The SQL of the statement.
+     * @param autoGeneratedKeys <code>Statement.RETURN_GENERATED_KEYS</code> or
+     * <code>Statement.NO_GENERATED_KEYS</code>.
+     * @return The <code>PreparedStatement</code>.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public PreparedStatement prepareStatement(Connection connection, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        PooledConnection pooled = statementCacheSize == 0 ? null : borrowed.get(connection);
+        if (pooled == null) {
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+        String key = StatementCache.key(sql, autoGeneratedKeys);
+        PreparedStatement statement = pooled.statements.take(key);
+        if (statement == null) {
+            statementMisses.incrementAndGet();
+            statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        } else {
+            statementHits.incrementAndGet();
+        }
+        pooled.statements.checkOut(statement);
+        borrowedStatements.put(statement, new BorrowedStatement(pooled.statements, key));
+        return statement;
+    }
+
+    /**
+     * Gives a statement back to the cache of its connection, or closes it
+     * if it was not borrowed from this pool.
+     *
+     * @param statement The statement to give back.
+     */
+    public void returnStatement(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+        BorrowedStatement borrowedStatement = borrowedStatements.remove(statement);
+        if (borrowedStatement == null || !reset(statement)) {
+            StatementCache.closeQuietly(statement);
+            return;
+        }
+        List<PreparedStatement> evicted = borrowedStatement.cache.checkIn(borrowedStatement.key, statement);
+        for (PreparedStatement old : evicted) {
+            if (old != statement) {
+                statementEvictions.incrementAndGet();
+            }
+            StatementCache.closeQuietly(old);
+        }
+    }
+
+    /**
+     * Returns true if the connection was borrowed from this pool and has not
+     * been given back.
+     *
+     * @param connection A connection.
+     * @return True if the connection belongs to this pool.
+     */
+    public boolean isBorrowed(Connection connection) {
+        return connection != null && borrowed.containsKey(connection);
+    }
+
+    /**
+     * Returns true if the statement was borrowed from the statement cache of
+     * this pool and has not been given back.
+     *
+     * @param statement A statement.
+     * @return True if the statement belongs to this pool.
+     */
+    public boolean isBorrowed(PreparedStatement statement) {
+        return statement != null && borrowedStatements.containsKey(statement);
+    }
+
+    /**
+     * Closes the idle connections and stops handing out new ones. Borrowed
+     * connections are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            discard(pooled);
+        }
+    }
+
+    /**
+     * @return The number of connections that are borrowed.
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return The number of open connections waiting in the pool.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * @return The number of threads waiting for a connection.
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return The number of connections opened since the pool was created.
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * @return The number of connections closed because they were invalid,
+     * idle for too long or broken when returned.
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * @return The number of borrows that gave up after the acquisition timeout.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return The number of statements that were taken from a cache.
+     */
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+
+    /**
+     * @return The number of statements that had to be prepared.
+     */
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
+
+    /**
+     * @return The number of cached statements closed to make room.
+     */
+    public long getStatementCacheEvictions() {
+        return statementEvictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{active=" + getActiveCount() + ", idle=" + getIdleCount()
+                + ", waiting=" + getWaitingCount() + ", maximumSize=" + maximumSize
+                + ", created=" + getCreatedCount() + ", discarded=" + getDiscardedCount()
+                + ", timeouts=" + getTimeoutCount() + ", statementHits=" + getStatementCacheHits()
+                + ", statementMisses=" + getStatementCacheMisses()
+                + ", statementEvictions=" + getStatementCacheEvictions() + '}';
+    }
+
+    private boolean acquirePermit() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        waitingCount.incrementAndGet();
+        try {
+            if (permits.tryAcquire(acquisitionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waitingCount.decrementAndGet();
+        }
+        timeoutCount.incrementAndGet();
+        WebErrorLogger.log(Level.SEVERE, "Timed out after " + acquisitionTimeoutMillis
+                + " ms waiting for a database connection: " + this);
+        return false;
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still good.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            long idleNanos = System.nanoTime() - pooled.lastUsed;
+            if (idleNanos > maximumIdleNanos || (idleNanos > validationIntervalNanos && !isValid(pooled))) {
+                discard(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return null;
+    }
+
+    private PooledConnection create() {
+        Connection connection = null;
+        try {
+            connection = factory.createConnection();
+            if (connection != null) {
+                PooledConnection pooled = new PooledConnection(connection, statementCacheSize);
+                createdCount.incrementAndGet();
+                return pooled;
+            }
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException while opening a pooled connection: " + this, ex);
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException closeEx) {
+                    WebErrorLogger.log(Level.WARNING, "SQLException while closing a pooled connection", closeEx);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(1);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Clears what the last user of a statement set on it.
+     *
+     * @return False if the statement can not be used again.
+     */
+    private static boolean reset(PreparedStatement statement) {
+        try {
+            if (statement.isClosed()) {
+                return false;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            if (statement.getFetchSize() != 0) {
+                statement.setFetchSize(0);
+            }
+            if (statement.getMaxRows() != 0) {
+                statement.setMaxRows(0);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Puts a returned connection back into auto commit mode, and back to the
+     * read-only flag and transaction isolation it was opened with, so the
+     * next borrower does not inherit them.
+     *
+     * @return False if the connection can not be used again.
+     */
+    private static boolean reset(PooledConnection pooled) {
+        Connection connection = pooled.connection;
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (connection.isReadOnly() != pooled.readOnly) {
+                connection.setReadOnly(pooled.readOnly);
+            }
+            if (connection.getTransactionIsolation() != pooled.transactionIsolation) {
+                connection.setTransactionIsolation(pooled.transactionIsolation);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        discardedCount.incrementAndGet();
+        pooled.statements.close();
+        try {
+            pooled.connection.close();
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.WARNING, "SQLException while closing a pooled connection", ex);
+        }
+    }
+
+    /**
+     * Runs 32 threads against a pool of 8 stand-in connections that are
+     * held for a millisecond per borrow, each preparing one of a few
+     * statements, and prints the throughput and the pool metrics. No
+     * database is needed.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final AtomicInteger open = new AtomicInteger();
+        ConnectionFactory factory = () -> {
+            open.incrementAndGet();
+            final boolean[] isClosed = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, methodArgs) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                isClosed[0] = true;
+                                open.decrementAndGet();
+                                return null;
+                            case "isClosed":
+                                return isClosed[0];
+                            case "isValid":
+                            case "getAutoCommit":
+                                return true;
+                            case "isReadOnly":
+                                return false;
+                            case "getTransactionIsolation":
+                                return Connection.TRANSACTION_REPEATABLE_READ;
+                            case "prepareStatement":
+                                return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                                        new Class<?>[]{PreparedStatement.class}, (statement, statementMethod, statementArgs) -> {
+                                            switch (statementMethod.getName()) {
+                                                case "hashCode":
+                                                    return System.identityHashCode(statement);
+                                                case "equals":
+                                                    return statement == statementArgs[0];
+                                                case "isClosed":
+                                                    return false;
+                                                case "getFetchSize":
+                                                case "getMaxRows":
+                                                    return 0;
+                                                default:
+                                                    return null;
+                                            }
+                                        });
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == methodArgs[0];
+                            default:
+                                return null;
+                        }
+                    });
+        };
+        final ConnectionPool connectionPool = new ConnectionPool(factory, 8, 2000, 30000, 600000, 50);
+        final String[] sql = {"SELECT * FROM customers WHERE customer_id=?",
+            "SELECT * FROM reservations WHERE reservation_id=?",
+            "INSERT INTO assigned_site VALUES (DEFAULT,?,?,?,?,?,?,?,?)"};
+        final int threads = 32;
+        final int borrowsPerThread = 200;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < borrowsPerThread; i++) {
+                    Connection connection = connectionPool.getConnection();
+                    if (connection == null) {
+                        failures.incrementAndGet();
+                        continue;
+                    }
+                    try {
+                        PreparedStatement statement = connectionPool.prepareStatement(connection,
+                                sql[i % sql.length], i % sql.length == 2
+                                ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS);
+                        Thread.sleep(1);
+                        connectionPool.returnStatement(statement);
+                    } catch (SQLException ex) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    connectionPool.returnConnection(connection);
+                }
+                done.countDown();
+            }).start();
+        }
+        Thread.sleep(300);
+        System.out.println("under load: " + connectionPool);
+        done.await();
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(threads * borrowsPerThread + " borrows in " + millis + " ms, "
+                + failures.get() + " failed");
+        System.out.println("finished:   " + connectionPool);
+        connectionPool.close();
+        System.out.println("open after close: " + open.get());
+    }
+}
@@ -26,7 +26,8 @@ import utilities.PropertyManager;
 public class ConnectionPoolMySQL {
 
     private static ConnectionPoolMySQL pool = null;
-    private static DataSource dataSource = null;
+    private static ConnectionPoolMySQL replicaPool = null;
+    private DataSource dataSource = null;
 /**
  * Constructs a <code>ConnectionPool</code> object with the default <code> DataSource</code>.
  */
@@ -42,6 +43,19 @@ public class ConnectionPoolMySQL {
         }
     }
 
+/**
+ * Constructs a <code>ConnectionPool</code> object with an optional <code>DataSource</code>.
+ * @param name The JNDI name of the <code>DataSource</code>.
+ */
+    private ConnectionPoolMySQL(String name) {
+        try {
+            InitialContext ic = new InitialContext();
+            dataSource = (DataSource) ic.lookup(name);
+        } catch (NamingException e) {
+            WebErrorLogger.log(Level.INFO,"No data source "+name+", reads go to the primary");
+        }
+    }
+
     /**
      * 
      * Gets a object of this connection pool.
@@ -54,6 +68,19 @@ public class ConnectionPoolMySQL {
         return pool;
     }
 
+    /**
+     * Gets the pool of the read-only replica, whose <code>DataSource</code>
+     * is <code>jdbc/mysql/CampgroundReplica</code>. The replica is optional;
+     * see <code>isAvailable</code>.
+     * @return The <code>ConnectionPoolMySQL</code> of the replica.
+     */
+    public static synchronized ConnectionPoolMySQL getReplicaInstance() {
+        if (replicaPool == null) {
+            replicaPool = new ConnectionPoolMySQL("java:/comp/env/jdbc/mysql/CampgroundReplica");
+        }
+        return replicaPool;
+    }
+
     /**
      * Gets a connection to the database.
      * @return A connection to the database.
@@ -67,6 +94,23 @@ public class ConnectionPoolMySQL {
         }
     }
 
+    /**
+     * Returns true if the <code>DataSource</code> was found.
+     * @return True if connections can be taken from the <code>DataSource</code>.
+     */
+    public boolean isAvailable() {
+        return dataSource != null;
+    }
+
+    /**
+     * Gets a connection from the <code>DataSource</code> for a <code>ConnectionPool</code>.
+     * @return A connection to the database.
+     * @throws SQLException If no connection could be made.
+     */
+    public Connection createConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
     /**
      * Releases this connection from the connection pool.
      * @param c The name of this connection.
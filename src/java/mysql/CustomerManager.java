@@ -2,6 +2,9 @@ package mysql;
 
 import common.Customer;
 import common.CustomerType;
+import database.CustomerDirectory;
+import database.IdentityMap;
+import database.Page;
 import database.SQLUtility;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,6 +13,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
@@ -30,7 +35,7 @@ public class CustomerManager implements database.CustomerManager {
      * customers and customer information databases.
      * 
      * @return A customer object which has been added to the customers and 
-     * customer information databases.
+     * customer information databases, with its generated ids.
      */
     @Override
     public Customer addCustomer(Customer customer){
@@ -44,12 +49,13 @@ public class CustomerManager implements database.CustomerManager {
                 + "rv_type, rv_length, number_of_slide_outs, flagged)"
                 + "VALUES (DEFAULT, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, "
                 + "?, ?, ?);";
+        trimStoredFields(customer);
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement customerStatement = null;
         PreparedStatement informationStatement = null;
         ResultSet keys = null;
         try {
-            informationStatement = conn.prepareStatement(sql2, Statement.RETURN_GENERATED_KEYS);
+            informationStatement = Web_MYSQL_Helper.prepareStatement(conn, sql2, Statement.RETURN_GENERATED_KEYS);
             informationStatement.setString(1, customer.getFirstName().trim());
             informationStatement.setString(2, customer.getLastName().trim());
             informationStatement.setString(3, customer.getSpouseFirstName().trim());
@@ -72,14 +78,16 @@ public class CustomerManager implements database.CustomerManager {
             keys.next();
             int customerInformationId = keys.getInt(1);
             customer.setCustomerInformationId(customerInformationId);
+            Web_MYSQL_Helper.closeResultSet(keys);
             
-            customerStatement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            customerStatement = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
             customerStatement.setString(1, customer.getCustomerType().toString());
             customerStatement.setString(2, customer.getName().trim());
             customerStatement.setString(3, customer.getPrimaryPhone().trim());
             customerStatement.setInt(4, customerInformationId);
             customerStatement.setString(5, customer.getNotes());
             if(customer.getCustomerType() != CustomerType.Individual){
+                customer.setGroupId(customerInformationId);
                 customerStatement.setInt(6, customerInformationId);
             }else if(customer.getGroupId() == 0){
                 customerStatement.setNull(6, java.sql.Types.INTEGER);
@@ -91,18 +99,21 @@ public class CustomerManager implements database.CustomerManager {
             keys.next();
             int customerId = keys.getInt(1);
             customer.setCustomerId(customerId);
+            Web_MYSQL_Helper.closeResultSet(keys);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in addCustomer"
                     + "(Customer customer) customer="+customer+" error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(customerStatement);
             Web_MYSQL_Helper.closePreparedStatement(informationStatement);
             Web_MYSQL_Helper.returnConnection(conn);
+            IdentityMap.remove(Customer.class, customer.getCustomerId());
             return customer;
         }
         Web_MYSQL_Helper.closePreparedStatement(customerStatement);
         Web_MYSQL_Helper.closePreparedStatement(informationStatement);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getCustomerByID(customer.getCustomerId());
+        CustomerDirectory.getInstance().put(customer);
+        return IdentityMap.put(Customer.class, customer.getCustomerId(), customer);
     }
     
     /**
@@ -110,7 +121,7 @@ public class CustomerManager implements database.CustomerManager {
      * information in the customer_information database. 
      * 
      * @param customer Customer to be added.
-     * @return Customer successfully added.
+     * @return Customer successfully added, with its generated id.
      */
     @Override
     public Customer addOnlyCustomer(Customer customer){
@@ -118,11 +129,12 @@ public class CustomerManager implements database.CustomerManager {
                 + "primary_phone_number, customer_information_id, notes, group_id) "
                 + "VALUES (DEFAULT, ?, ?, ?, ?, ?, ?);";
         
+        trimStoredFields(customer);
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement customerStatement = null;
         ResultSet keys = null;
         try{
-            customerStatement = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            customerStatement = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
             customerStatement.setString(1, customer.getCustomerType().toString());
             customerStatement.setString(2, customer.getName().trim());
             customerStatement.setString(3, customer.getPrimaryPhone().trim());
@@ -134,16 +146,19 @@ public class CustomerManager implements database.CustomerManager {
             keys.next();
             int customerId = keys.getInt(1);
             customer.setCustomerId(customerId);
+            Web_MYSQL_Helper.closeResultSet(keys);
         }catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in addOnlyCustomer"
                     + "(Customer customer) customer="+customer+" error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(customerStatement);
             Web_MYSQL_Helper.returnConnection(conn);
+            IdentityMap.remove(Customer.class, customer.getCustomerId());
             return customer;
         }
         Web_MYSQL_Helper.closePreparedStatement(customerStatement);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getCustomerByID(customer.getCustomerId());
+        CustomerDirectory.getInstance().link(customer);
+        return IdentityMap.put(Customer.class, customer.getCustomerId(), customer);
     }
     
     /**
@@ -155,7 +170,8 @@ public class CustomerManager implements database.CustomerManager {
      * customers and customer information databases.
      * 
      * @return A customer object which has been updated in the customers and 
-     * customer information databases.
+     * customer information databases, or null if there is no customer with 
+     * its id.
      */
     @Override
     public Customer updateCustomer(Customer customer){
@@ -167,20 +183,22 @@ public class CustomerManager implements database.CustomerManager {
                 + "state=?, zip=?, email_address=?, spouse_email_address=?, "
                 + "rv_type=?, rv_length=?, number_of_slide_outs=?, flagged=? "
                 + "WHERE customer_information_id=?;";
+        trimStoredFields(customer);
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt = null;
         PreparedStatement stmt2 = null;
+        int updateCount;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setString(1, customer.getCustomerType().toString());
             stmt.setString(2, customer.getName().trim());
             stmt.setString(3, customer.getPrimaryPhone().trim());
             stmt.setString(4, customer.getNotes());
             stmt.setInt(5, customer.getGroupId());
             stmt.setInt(6, customer.getCustomerId());
-            stmt.executeUpdate();
+            updateCount = stmt.executeUpdate();
             
-            stmt2 = conn.prepareStatement(sql2);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql2);
             stmt2.setString(1, customer.getFirstName().trim());
             stmt2.setString(2, customer.getLastName().trim());
             stmt2.setString(3, customer.getSpouseFirstName().trim());
@@ -206,12 +224,20 @@ public class CustomerManager implements database.CustomerManager {
             Web_MYSQL_Helper.closePreparedStatement(stmt);
             Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
+            // Part of it may be written, and linked customers share it
+            IdentityMap.removeAll(Customer.class);
             return customer;
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getCustomerByID(customer.getCustomerId());
+        // Linked customers share the information just written
+        IdentityMap.removeAll(Customer.class);
+        if (updateCount == 0) {
+            return null;
+        }
+        CustomerDirectory.getInstance().put(customer);
+        return IdentityMap.put(Customer.class, customer.getCustomerId(), customer);
     }
     
     /**
@@ -226,20 +252,21 @@ public class CustomerManager implements database.CustomerManager {
     @Override
     public boolean deleteCustomer(Customer customer){
         String sql = "DELETE FROM customers WHERE customer_id=?;";
-        String sql2 = "DELETE FROM customer_information WHERE customer_information_id=?;";
+        // Keeps the information while another customer is still linked to it
+        String sql2 = "DELETE FROM customer_information WHERE customer_information_id=? "
+                + "AND NOT EXISTS (SELECT customer_id FROM customers WHERE customer_information_id=?);";
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt = null;
         PreparedStatement stmt2 = null;
         try {
-                stmt = conn.prepareStatement(sql);
+                stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
                 stmt.setInt(1, customer.getCustomerId());
                 stmt.executeUpdate();
 
-                if(!customerExists(customer.getCustomerInformationId())){
-                    stmt2 = conn.prepareStatement(sql2);
-                    stmt2.setInt(1, customer.getCustomerInformationId());
-                    stmt2.executeUpdate();
-                }
+                stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql2);
+                stmt2.setInt(1, customer.getCustomerInformationId());
+                stmt2.setInt(2, customer.getCustomerInformationId());
+                stmt2.executeUpdate();
             } catch (SQLException ex) {
                 WebErrorLogger.log(Level.SEVERE, "SQLException in deleteCustomer"
                         + "(Customer customer) " + customer + " error: " + ex);
@@ -251,7 +278,9 @@ public class CustomerManager implements database.CustomerManager {
             Web_MYSQL_Helper.closePreparedStatement(stmt);
             Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
-            return !isCustomer(customer);
+            CustomerDirectory.getInstance().remove(customer.getCustomerId());
+            IdentityMap.remove(Customer.class, customer.getCustomerId());
+            return true;
     }
     
     /**
@@ -268,44 +297,6 @@ public class CustomerManager implements database.CustomerManager {
         return deleteCustomer(customer);
     }
     
-    /**
-     * Determines if a customer information id is still linked to a different 
-     * customer.
-     * Example: A customer is entered once as an Individual, then added again as
-     * a Group. This will ensure that upon deletion of one version of the customer,
-     * the customer information is still kept for the other instance.
-     * 
-     * @param customerInformationId The customer information id to reference.
-     * 
-     * @return True if a link still exists.
-     */
-    private static boolean customerExists(int customerInformationId) {
-        String sql = "SELECT customer_id FROM customers WHERE "
-                + "customer_information_id=? LIMIT 1;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
-        ResultSet rs;
-        PreparedStatement stmt = null;
-        try{
-            stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, customerInformationId);
-            rs = stmt.executeQuery();
-            if(rs == null || rs.next() == false){
-                Web_MYSQL_Helper.closePreparedStatement(stmt);
-                Web_MYSQL_Helper.returnConnection(conn);
-                return false;
-            }else {
-                return true;
-            }
-        }catch (SQLException ex){
-            WebErrorLogger.log(Level.SEVERE, "SQLException in customerExists"
-                    + "(int customerInformationId) " + customerInformationId + 
-                    " error: " + ex);
-            Web_MYSQL_Helper.closePreparedStatement(stmt);
-            Web_MYSQL_Helper.returnConnection(conn);
-            return false;
-        }
-    }
-    
     /**
      * Determines if a reservation is linked to the customer.
      * 
@@ -322,7 +313,7 @@ public class CustomerManager implements database.CustomerManager {
         ResultSet rs;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, customerId);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
@@ -330,7 +321,10 @@ public class CustomerManager implements database.CustomerManager {
                 Web_MYSQL_Helper.returnConnection(conn);
                 return false;
             }else{
-               return true;}
+                Web_MYSQL_Helper.closePreparedStatement(stmt);
+                Web_MYSQL_Helper.returnConnection(conn);
+                return true;
+            }
         }catch (SQLException ex){
             WebErrorLogger.log(Level.SEVERE, "SQLException in reservationExists"
                     + "(int customerId) " + customerId + 
@@ -342,10 +336,24 @@ public class CustomerManager implements database.CustomerManager {
     }
     
     /**
-     * Returns true if the given customer is a customer in the customers database.
+     * Trims the fields that are stored trimmed, so the customer matches its
+     * row without reading it back.
      */
-    private boolean isCustomer(Customer customer){
-        return getCustomerByID(customer.getCustomerId()) != null;
+    private static void trimStoredFields(Customer customer){
+        customer.setName(trim(customer.getName()));
+        customer.setPrimaryPhone(trim(customer.getPrimaryPhone()));
+        customer.setFirstName(trim(customer.getFirstName()));
+        customer.setLastName(trim(customer.getLastName()));
+        customer.setSpouseFirstName(trim(customer.getSpouseFirstName()));
+        customer.setSpouseLastName(trim(customer.getSpouseLastName()));
+        customer.setMobilePhone(trim(customer.getMobilePhone()));
+        customer.setSpousePhone(trim(customer.getSpousePhone()));
+        customer.setEmailAddress(trim(customer.getEmailAddress()));
+        customer.setSpouseEmailAddress(trim(customer.getSpouseEmailAddress()));
+    }
+
+    private static String trim(String value){
+        return value == null ? null : value.trim();
     }
     
     /**
@@ -357,6 +365,14 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Customer getCustomerByID(int customerID){
+        Customer cached = IdentityMap.get(Customer.class, customerID);
+        if(cached != null){
+            return cached;
+        }
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return IdentityMap.put(Customer.class, customerID, directory.getCustomerById(customerID));
+        }
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id "
                 + "AND customer_id=?;";
@@ -365,7 +381,7 @@ public class CustomerManager implements database.CustomerManager {
         Customer customer = null;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, customerID);
             rs = stmt.executeQuery();
             if(rs == null){
@@ -385,7 +401,7 @@ public class CustomerManager implements database.CustomerManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.returnConnection(conn);
-        return customer;
+        return IdentityMap.put(Customer.class, customerID, customer);
     }
     
     /**
@@ -397,6 +413,10 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Customer getCustomerByName(String name){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return directory.getCustomerByName(name);
+        }
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id "
                 + "AND customer_name=? LIMIT 1;";
@@ -405,7 +425,7 @@ public class CustomerManager implements database.CustomerManager {
         Customer customer = null;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setString(1, name);
             rs = stmt.executeQuery();
             if(rs == null){
@@ -446,7 +466,7 @@ public class CustomerManager implements database.CustomerManager {
         PreparedStatement stmt = null;
         int groupID = getCustomerByID(customerID).getGroupId();
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, groupID);
             rs = stmt.executeQuery();
             if(rs == null){
@@ -479,16 +499,20 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Collection<Customer> getAllCustomersInGroup(int groupID){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return directory.getIndividualsInGroup(groupID);
+        }
         Collection<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id "
                 + "AND group_id=? AND customer_type='Individual';";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Customer customer = null;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, groupID);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
@@ -522,16 +546,20 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Collection<Customer> getAllCustomersWithEmailAddress(String emailAddress){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return directory.getCustomersWithEmailAddress(emailAddress);
+        }
         Collection<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id "
                 + "AND (email_address=? OR spouse_email_address=?);";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Customer customer = null;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setString(1, emailAddress);
             stmt.setString(2, emailAddress);
             rs = stmt.executeQuery();
@@ -567,16 +595,20 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Collection<Customer> getAllCustomersWithPhoneNumber(String phoneNumber){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return directory.getCustomersWithPhoneNumber(phoneNumber);
+        }
      Collection<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id "
                 + "AND (primary_phone_number=? OR mobile_phone=? OR spouse_phone=?);";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Customer customer = null;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setString(1, phoneNumber);
             stmt.setString(2, phoneNumber);
             stmt.setString(3, phoneNumber);
@@ -613,6 +645,19 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Collection<Customer> getAllCustomersWithFilter(ArrayList<String> filter){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            ArrayList<String> types = new ArrayList<>();
+            for(int i = 3; i <= 5; i++){
+                if(filter.get(i) != null){types.add(filter.get(i));}
+            }
+            if(filter.get(0) == null && filter.get(1) == null && filter.get(2) == null && types.isEmpty()){
+                //Nothing to filter on; the query below fails the same way
+                return new ArrayList<>();
+            }
+            return directory.search(filter.get(0), filter.get(1), filter.get(2), 
+                    types.isEmpty() ? null : types);
+        }
         Collection<Customer> customers = new ArrayList<>();
         String params[] = new String[7];
         int numParams = 0;
@@ -676,12 +721,12 @@ public class CustomerManager implements database.CustomerManager {
         }
         sql += ";";    
         
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Customer customer = null;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             for (int i = 1; i <= numParams; i++) {
                 if(i==1 && usedSearch && name){
                     stmt.setString(i, "%"+params[i-1]+"%");
@@ -718,15 +763,19 @@ public class CustomerManager implements database.CustomerManager {
      */
     @Override
     public Collection<Customer> getAllCustomers(){
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        if(directory.isLoaded()){
+            return directory.getAllCustomers();
+        }
         Collection<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers JOIN customer_information WHERE "
                 + "customers.customer_information_id=customer_information.customer_information_id;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Customer customer = null;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
                 Web_MYSQL_Helper.closePreparedStatement(stmt);
@@ -748,6 +797,51 @@ public class CustomerManager implements database.CustomerManager {
         Web_MYSQL_Helper.returnConnection(conn);
         return customers;
     }
+
+    /**
+     * Streams every customer to the action without holding them in memory.
+     */
+    @Override
+    public boolean forEachCustomer(Consumer<? super Customer> action) {
+        return StreamingQuery.forEach(CUSTOMER_SELECT + " ORDER BY customers.customer_id", null,
+                SQLUtility::convertResultSetToCustomer, action, "forEachCustomer(Consumer action)");
+    }
+
+    private static final String CUSTOMER_SELECT = "SELECT * FROM customers JOIN customer_information ON "
+            + "customers.customer_information_id=customer_information.customer_information_id";
+    private static final KeysetPager<Customer> BY_ID = new KeysetPager<>(CUSTOMER_SELECT,
+            "customers.customer_id", null, false, SQLUtility::convertResultSetToCustomer);
+    private static final KeysetPager<Customer> BY_NAME = new KeysetPager<>(CUSTOMER_SELECT,
+            "customers.customer_id", "customers.customer_name", false,
+            SQLUtility::convertResultSetToCustomer);
+    private static final KeysetPager<Customer> BY_LAST_NAME = new KeysetPager<>(CUSTOMER_SELECT,
+            "customers.customer_id", "customer_information.last_name", false,
+            SQLUtility::convertResultSetToCustomer);
+
+    /**
+     * Returns one page of the customers, reading only the rows on the page.
+     */
+    @Override
+    public Page<Customer> getCustomerPage(String after, int limit, Sort sort) {
+        KeysetPager<Customer> pager = sort == Sort.NAME ? BY_NAME
+                : sort == Sort.LAST_NAME ? BY_LAST_NAME : BY_ID;
+        return pager.page(after, limit, "getCustomerPage(String after, int limit, Sort sort) sort=" + sort);
+    }
+
+    /**
+     * Returns one page of the customers whose name starts with the given
+     * text, reading only the rows on the page.
+     */
+    @Override
+    public Page<Customer> getCustomerPageByName(String prefix, String after, int limit) {
+        String method = "getCustomerPageByName(String prefix, String after, int limit) prefix=" + prefix;
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return BY_NAME.page(after, limit, method);
+        }
+        String pattern = prefix.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return BY_NAME.page("customers.customer_name LIKE ?", Collections.singletonList(pattern),
+                after, limit, method);
+    }
     
     /**
      * Gets the customer IDs of potential preexisting versions of the given 
@@ -767,7 +861,7 @@ public class CustomerManager implements database.CustomerManager {
         int id;
         PreparedStatement stmt = null;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setString(1, customer.getName());
             stmt.setString(2, customer.getPrimaryPhone());
             rs = stmt.executeQuery();
@@ -6,6 +6,7 @@
 package mysql;
 
 import common.ErrorLog;
+import database.Page;
 import database.SQLUtility;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,6 +14,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
@@ -38,12 +40,12 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
     public Collection<ErrorLog> getAllErrorLogs() {
         Collection<ErrorLog> errorLogs = new ArrayList<>();
         String sql = "SELECT * FROM error_logs;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs = null;
         PreparedStatement stmt2 = null;
         ErrorLog errorLog = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
             if (rs == null) {
                 Web_MYSQL_Helper.returnConnection(conn);
@@ -64,6 +66,27 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
         return errorLogs;
     }
 
+    @Override
+    public boolean forEachErrorLog(Consumer<? super ErrorLog> action) {
+        return StreamingQuery.forEach("SELECT * FROM error_logs ORDER BY EVENT_ID", null,
+                SQLUtility::convertResultSetToErrorLog, action, "forEachErrorLog(Consumer action)");
+    }
+
+    private static final KeysetPager<ErrorLog> NEWEST_FIRST = new KeysetPager<>("SELECT * FROM error_logs",
+            "EVENT_ID", null, true, SQLUtility::convertResultSetToErrorLog);
+    private static final KeysetPager<ErrorLog> OLDEST_FIRST = new KeysetPager<>("SELECT * FROM error_logs",
+            "EVENT_ID", null, false, SQLUtility::convertResultSetToErrorLog);
+
+    /**
+     * Returns one page of the error logs. The logs are ordered by their id,
+     * which is the order they were written in.
+     */
+    @Override
+    public Page<ErrorLog> getErrorLogPage(String after, int limit, Sort sort) {
+        KeysetPager<ErrorLog> pager = sort == Sort.OLDEST_FIRST ? OLDEST_FIRST : NEWEST_FIRST;
+        return pager.page(after, limit, "getErrorLogPage(String after, int limit, Sort sort) sort=" + sort);
+    }
+
     //This method was not tested. 
     @Override
     public void addErrorLog(ErrorLog errorLog) {
@@ -74,7 +97,7 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, errorLog.getErrorLogDateTime().toString().trim());
             stmt2.setString(2, errorLog.getErrLevel().trim());
             stmt2.setString(3, errorLog.getLoggerName().trim());
@@ -100,7 +123,7 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
         PreparedStatement stmt2 = null;
         ErrorLog errorLog = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
             if (rs == null|| rs.next() == false) {
                 Web_MYSQL_Helper.returnConnection(conn);
@@ -124,9 +147,10 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
 
         try {
-            PreparedStatement stmt2 = conn.prepareStatement(sql);
+            PreparedStatement stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, id);
             stmt2.executeUpdate();
+            Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in deleteErrorLog(int " + id + " ) error: " + ex);
@@ -141,8 +165,9 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
 
         try {
-            PreparedStatement stmt2 = conn.prepareStatement(sql);
+            PreparedStatement stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.executeUpdate();
+            Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in deleteAllErrorLogs() error: " + ex);
@@ -153,12 +178,12 @@ public class DatabaseErrorLogManager implements database.DatabaseErrorLogManager
     @Override
     public String getAllErrorLogsAsHTMLTable() {
         String sql = "SELECT * FROM error_logs;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs = null;
         PreparedStatement stmt2 = null;
         String table="No data";
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
  
             table = utilities.SQLUtil.getHtmlTableFromResultSetNoHeaders(rs);
@@ -1,7 +1,9 @@
 package mysql;
 
+import common.Campsite;
 import database.DatabaseErrorLogManager;
 import database.DatabasePropertyManager;
+import java.time.LocalDate;
 
 /**
  * Represents a MySQL database that implements the <code>DatabaseManagement</code>
@@ -18,19 +20,71 @@ public class DatabaseManagement implements database.DatabaseManagement {
     private database.CustomerManager customerManager;
     private database.ReservationManager reservationManager;
     private database.CampsiteManager campsiteManager;
+    private database.CachingCampsiteManager campsiteCache;
     private database.AssignedSiteManager assignedSiteManager;
     private database.WaitingListManager waitingListManager;
     private database.YearlyInformationManager yearlyInformationManager;
 
 
+    /**
+     * Loads the in-memory structures that sit in front of the database. 
+     * This is called once when the web application starts. Everything is
+     * read from the primary, since a replica may be behind.
+     * 
+     * @see database.AvailabilityIndex
+     * @see database.OccupancyBitmap
+     * @see database.CampsiteSearch
+     * @see database.WaitingListMatcher
+     * @see database.CustomerDirectory
+     */
     @Override
     public void initializeDatabaseManagement() {
+        ReplicaRouter.pinToPrimary();
+        try {
+            loadIndexes();
+        } finally {
+            ReplicaRouter.clear();
+        }
+    }
 
+    private void loadIndexes() {
+        // A partial read is not loaded; lookups then stay on the database
+        java.util.List<common.AssignedSite> assignedSites = new java.util.ArrayList<>();
+        if (getAssignedSiteManager().forEachAssignedSite(null, null, assignedSites::add)) {
+            database.AvailabilityIndex.getInstance().load(assignedSites);
+        }
+        java.util.List<Campsite> campsites = new java.util.ArrayList<>();
+        if (getCampsiteManager().forEachCampsite(campsites::add)) {
+            database.OccupancyBitmap.getInstance().load(
+                    getYearlyInformationManager().getYearlyInformationByYear(LocalDate.now().getYear()),
+                    campsites);
+            database.CampsiteSearch.getInstance().load(campsites);
+        }
+        database.WaitingListMatcher matcher = database.WaitingListMatcher.getInstance();
+        matcher.addMatchListener(match -> utilities.WebErrorLogger.log(java.util.logging.Level.INFO,
+                "Waiting list entry can be booked: " + match));
+        // The matches are found from the index and the catalog, so they must
+        // be loaded too
+        java.util.List<common.WaitingList> waitingLists = new java.util.ArrayList<>();
+        if (database.AvailabilityIndex.getInstance().isLoaded() && database.CampsiteSearch.getInstance().isLoaded()
+                && getWaitingListManager().forEachWaitingList(waitingLists::add)) {
+            matcher.load(waitingLists);
+        }
+        java.util.List<common.Customer> customers = new java.util.ArrayList<>();
+        if (getCustomerManager().forEachCustomer(customers::add)) {
+            database.CustomerDirectory.getInstance().load(customers);
+        }
     }
 
+    /**
+     * Brings the schema up to date by applying the migrations the database
+     * does not have yet. It is safe to call on every start.
+     *
+     * @see SchemaMigrations
+     */
     @Override
     public void CreateTables() {
-        throw new UnsupportedOperationException("Not yet a supported operation!"); 
+        SchemaMigrations.migrate();
     }
 
     /**
@@ -42,20 +96,24 @@ public class DatabaseManagement implements database.DatabaseManagement {
      */
     @Override
     public database.UserManager getUserManager() {
-        if (userManager == null) userManager = new mysql.UserManager();
+        if (userManager == null) userManager = timed(database.UserManager.class, new mysql.UserManager());
         return userManager;
     }
 
     @Override
     public database.DatabasePropertyManager getDatabasePropertyManager() {
-        if (databasePropertyManager == null) databasePropertyManager = new mysql.DatabasePropertyManager();
+        if (databasePropertyManager == null) {
+            databasePropertyManager = timed(database.DatabasePropertyManager.class,
+                    new mysql.DatabasePropertyManager());
+        }
         return databasePropertyManager;
     }
 
     @Override
     public DatabaseErrorLogManager getDatabaseErrorLogManager() {
         if(databaseErrorLogManager==null) {
-            databaseErrorLogManager = new mysql.DatabaseErrorLogManager();
+            databaseErrorLogManager = timed(database.DatabaseErrorLogManager.class,
+                    new mysql.DatabaseErrorLogManager());
         }
         return  databaseErrorLogManager;
     }
@@ -63,7 +121,7 @@ public class DatabaseManagement implements database.DatabaseManagement {
     @Override
     public database.CustomerManager getCustomerManager() {
         if(customerManager==null) {
-            customerManager = new mysql.CustomerManager();
+            customerManager = timed(database.CustomerManager.class, new mysql.CustomerManager());
         }
         return customerManager;
     }
@@ -71,7 +129,7 @@ public class DatabaseManagement implements database.DatabaseManagement {
     @Override
     public database.ReservationManager getReservationManager() {
         if(reservationManager==null) {
-            reservationManager = new mysql.ReservationManager();
+            reservationManager = timed(database.ReservationManager.class, new mysql.ReservationManager());
         }
         return reservationManager;
     }
@@ -79,15 +137,28 @@ public class DatabaseManagement implements database.DatabaseManagement {
     @Override
     public database.CampsiteManager getCampsiteManager() {
         if(campsiteManager==null) {
-            campsiteManager = new mysql.CampsiteManager();
+            campsiteCache = new database.CachingCampsiteManager(new mysql.CampsiteManager());
+            campsiteManager = timed(database.CampsiteManager.class, campsiteCache);
         }
         return campsiteManager;
     }
+
+    /**
+     * Gets the cache in front of the campsite manager, for its hit and miss
+     * counts. <code>getCampsiteManager</code> may return it wrapped for
+     * timing, so it can not be cast from there.
+     *
+     * @return The <code>CachingCampsiteManager</code>.
+     */
+    public database.CachingCampsiteManager getCampsiteCache() {
+        getCampsiteManager();
+        return campsiteCache;
+    }
     
     @Override
     public database.AssignedSiteManager getAssignedSiteManager() {
         if(assignedSiteManager==null) {
-            assignedSiteManager = new mysql.AssignedSiteManager();
+            assignedSiteManager = timed(database.AssignedSiteManager.class, new mysql.AssignedSiteManager());
         }
         return assignedSiteManager;
     }
@@ -95,7 +166,7 @@ public class DatabaseManagement implements database.DatabaseManagement {
     @Override
     public database.WaitingListManager getWaitingListManager() {
         if(waitingListManager==null) {
-            waitingListManager = new mysql.WaitingListManager();
+            waitingListManager = timed(database.WaitingListManager.class, new mysql.WaitingListManager());
         }
         return waitingListManager;
     }
@@ -103,9 +174,20 @@ public class DatabaseManagement implements database.DatabaseManagement {
     @Override
     public database.YearlyInformationManager getYearlyInformationManager() {
         if(yearlyInformationManager==null) {
-            yearlyInformationManager = new mysql.YearlyInformationManager();
+            yearlyInformationManager = timed(database.YearlyInformationManager.class,
+                    new mysql.YearlyInformationManager());
         }
         return yearlyInformationManager;
     }
 
+    /**
+     * Wraps a new manager so its calls are measured when the property
+     * <code>ManagerTimings</code> is on.
+     *
+     * @see database.ManagerTimings
+     */
+    private static <T> T timed(Class<T> type, T manager) {
+        return database.ManagerTimings.instrument(type, manager);
+    }
+
  }
@@ -31,7 +31,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         PreparedStatement stmt2 = null;
         DatabaseProperty databaseProperty = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
             if (rs == null ) {
                 Web_MYSQL_Helper.returnConnection(conn);
@@ -67,7 +67,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         PreparedStatement stmt2 = null;
         DatabaseProperty databaseProperty = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, propertyName);
             rs = stmt2.executeQuery();
             if (rs == null || rs.next() == false) {
@@ -100,7 +100,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         PreparedStatement stmt2 = null;
         DatabaseProperty databaseProperty = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, propertyID);
             rs = stmt2.executeQuery();
             if (rs == null || rs.next() == false) {
@@ -145,7 +145,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, databaseProperty.getPropertyName().trim());
             stmt2.setString(2, databaseProperty.getPropertyValue().trim());
             stmt2.setString(3, databaseProperty.getDescription().trim());
@@ -179,7 +179,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, databaseProperty.getPropertyName().trim());
             stmt2.setString(2, databaseProperty.getPropertyValue().trim());
             stmt2.setString(3, databaseProperty.getDescription().trim());
@@ -209,7 +209,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         PreparedStatement stmt2 = null;
         DatabaseProperty databaseProperty = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, propertyName);
             rs = stmt2.executeQuery();
             if (rs == null || rs.next() == false) {
@@ -250,7 +250,7 @@ public class DatabasePropertyManager implements database.DatabasePropertyManager
         PreparedStatement stmt2 = null;
         DatabaseProperty databaseProperty = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
             table = utilities.SQLUtil.getHtmlTableFromResultSet(rs);
             
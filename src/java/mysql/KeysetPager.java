@@ -0,0 +1,186 @@
+package mysql;
+
+import database.Page;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * Reads one page of a table for the <code>get...Page</code> methods of the
+ * managers, using the key of the last row of the previous page instead of
+ * an offset.
+ *
+ * The rows are ordered by a sort column and then by the id, and the next
+ * page is found with a range condition on those two columns, for example
+ * <pre>
+ * WHERE arrival_date &gt;= ? AND (arrival_date &gt; ? OR reservation_id &gt; ?)
+ * ORDER BY arrival_date, reservation_id LIMIT 51
+ * </pre>
+ * so with an index on (sort column, id) the database starts reading at the
+ * first row of the page and stops after it, however deep the page is. One
+ * row more than the page holds is read to tell whether there is a next page.
+ *
+ * The sort value is carried in the cursor as the text the driver returns for
+ * the column and is bound back as text, which MySQL compares in the type of
+ * the column. A null sort value is ordered before all others, as MySQL
+ * orders nulls.
+ *
+ * Pages are read from the read-only replica when there is one; see
+ * <code>Web_MYSQL_Helper.getReadConnection</code>.
+ *
+ * Pagers hold no state between calls and are meant to be kept in static
+ * fields of the manager that uses them.
+ *
+ * @param <T> The type of object a row is converted to.
+ */
+final class KeysetPager<T> {
+
+    private final String select;
+    private final String idColumn;
+    private final String sortColumn;
+    private final boolean descending;
+    private final Function<ResultSet, T> converter;
+    private final String idLabel;
+    private final String sortLabel;
+
+    /**
+     * Creates a pager.
+     *
+     * @param select The query for all rows, without a <code>WHERE</code>,
+     * <code>ORDER BY</code> or <code>LIMIT</code>.
+     * @param idColumn The unique id column, qualified with its table if the
+     * query joins tables.
+     * @param sortColumn The column to sort on, or null to sort on the id
+     * alone.
+     * @param descending True to list the largest values first.
+     * @param converter Converts a row; see <code>SQLUtility</code>.
+     */
+    KeysetPager(String select, String idColumn, String sortColumn, boolean descending,
+            Function<ResultSet, T> converter) {
+        this.select = select;
+        this.idColumn = idColumn;
+        this.sortColumn = sortColumn;
+        this.descending = descending;
+        this.converter = converter;
+        this.idLabel = label(idColumn);
+        this.sortLabel = sortColumn == null ? null : label(sortColumn);
+    }
+
+    /**
+     * Reads a page.
+     *
+     * @param after The cursor of the previous page, or null for the first
+     * page. A cursor that cannot be read also gives the first page.
+     * @param limit The most rows to return; see <code>Page.clampLimit</code>.
+     * @param method The calling method, for the error log.
+     * @return The page, or null if the rows could not be read.
+     */
+    Page<T> page(String after, int limit, String method) {
+        return page(null, Collections.emptyList(), after, limit, method);
+    }
+
+    /**
+     * Reads a page of the rows that meet a condition.
+     *
+     * @param condition A condition on the rows, such as
+     * <code>customers.customer_name LIKE ?</code>, or null for every row.
+     * @param conditionParameters The values of the condition's placeholders.
+     * @param after The cursor of the previous page, or null for the first
+     * page.
+     * @param limit The most rows to return; see <code>Page.clampLimit</code>.
+     * @param method The calling method, for the error log.
+     * @return The page, or null if the rows could not be read.
+     */
+    Page<T> page(String condition, List<?> conditionParameters, String after, int limit, String method) {
+        limit = Page.clampLimit(limit);
+        int afterId = Page.cursorId(after);
+        String afterValue = Page.cursorValue(after);
+        List<Object> parameters = new ArrayList<>(conditionParameters);
+        String range = range(afterId, afterValue, parameters);
+        String where = condition == null ? range
+                : range == null ? condition : "(" + condition + ") AND (" + range + ")";
+        String sql = select + (where == null ? "" : " WHERE " + where) + orderBy() + " LIMIT " + (limit + 1);
+        Connection conn = Web_MYSQL_Helper.getReadConnection();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, parameters.get(i));
+            }
+            rs = stmt.executeQuery();
+            List<T> items = new ArrayList<>(Math.min(limit, Page.DEFAULT_LIMIT));
+            String nextCursor = null;
+            String lastCursor = null;
+            while (rs.next()) {
+                if (items.size() == limit) {
+                    nextCursor = lastCursor;
+                    break;
+                }
+                items.add(converter.apply(rs));
+                lastCursor = Page.encodeCursor(sortLabel == null ? null : rs.getString(sortLabel),
+                        rs.getInt(idLabel));
+            }
+            return new Page<>(items, nextCursor);
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in " + method + " after=" + after
+                    + " limit=" + limit + " error: " + ex);
+            return null;
+        } finally {
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+            Web_MYSQL_Helper.returnConnection(conn);
+        }
+    }
+
+    // The rows past the cursor, or null for every row
+    private String range(int afterId, String afterValue, List<Object> parameters) {
+        if (afterId < 0) {
+            return null;
+        }
+        String past = descending ? " < ?" : " > ?";
+        if (sortColumn == null) {
+            parameters.add(afterId);
+            return idColumn + past;
+        }
+        if (afterValue == null) {
+            // The previous page ended among the nulls
+            parameters.add(afterId);
+            return descending
+                    ? sortColumn + " IS NULL AND " + idColumn + past
+                    : "(" + sortColumn + " IS NULL AND " + idColumn + past + ") OR "
+                    + sortColumn + " IS NOT NULL";
+        }
+        parameters.add(afterValue);
+        parameters.add(afterValue);
+        parameters.add(afterId);
+        String range = sortColumn + (descending ? " <= ?" : " >= ?") + " AND (" + sortColumn + past
+                + " OR " + idColumn + past + ")";
+        return descending
+                ? "(" + range + ") OR " + sortColumn + " IS NULL"
+                : range;
+    }
+
+    private String orderBy() {
+        String direction = descending ? " DESC" : "";
+        return sortColumn == null
+                ? " ORDER BY " + idColumn + direction
+                : " ORDER BY " + sortColumn + direction + ", " + idColumn + direction;
+    }
+
+    private static String label(String column) {
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPager{" + select + orderBy() + '}';
+    }
+}
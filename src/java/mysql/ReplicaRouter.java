@@ -0,0 +1,308 @@
+package mysql;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * Decides whether a read may go to the read-only replica of the database,
+ * for <code>Web_MYSQL_Helper.getReadConnection</code>.
+ *
+ * A read goes to the replica unless
+ * <ul>
+ * <li>the thread has written to the primary within the last
+ * <code>maximumLag + checkInterval</code> milliseconds, so the replica may
+ * not have the write yet (read your own writes),</li>
+ * <li>the thread was pinned to the primary with <code>pinToPrimary</code>,</li>
+ * <li>the replica is further behind the primary than the maximum lag, or its
+ * lag is unknown because replication has stopped or the check failed, or</li>
+ * <li>the replica has no connection to give.</li>
+ * </ul>
+ * In every one of those cases the read goes to the primary instead.
+ *
+ * The replica's lag is checked at most once per check interval, by the first
+ * read after the interval has passed, so no thread is needed.
+ *
+ * A write is noticed by <code>Web_MYSQL_Helper.prepareStatement</code>. The
+ * time until which a thread must read from the primary is kept per thread;
+ * <code>servlets.filter.ReadYourWritesFilter</code> carries it from one
+ * request to the next in the session, so a page shown after a redirect sees
+ * the change the user just made.
+ */
+public final class ReplicaRouter {
+
+    /**
+     * Measures how far a replica is behind its primary.
+     */
+    public interface LagProbe {
+
+        /**
+         * @param replica A connection to the replica.
+         * @return The lag in milliseconds, or -1 if it is not known.
+         * @throws SQLException If the lag could not be read.
+         */
+        public long getLagMillis(Connection replica) throws SQLException;
+    }
+
+    /**
+     * Reads the lag from <code>SHOW REPLICA STATUS</code>, or from
+     * <code>SHOW SLAVE STATUS</code> on a server older than MySQL 8.0.22.
+     * The lag is unknown when the server is not a replica or replication has
+     * stopped.
+     */
+    public static final LagProbe REPLICA_STATUS = ReplicaRouter::readReplicaStatus;
+
+    /**
+     * Treats the replica as always current. For a second server that is not
+     * a replica, such as a copy of the database used to try the routing out.
+     */
+    public static final LagProbe NONE = replica -> 0;
+
+    private static final ThreadLocal<Long> PRIMARY_UNTIL = new ThreadLocal<>();
+    private static volatile long stickyMillis = 0;
+
+    private final ConnectionPool replica;
+    private final LagProbe probe;
+    private final long maximumLagMillis;
+    private final long checkIntervalMillis;
+    private final AtomicLong nextCheck = new AtomicLong();
+    private volatile long lagMillis = -1;
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong stickyReads = new AtomicLong();
+    private final AtomicLong lagFallbacks = new AtomicLong();
+
+    /**
+     * Creates a router for a replica.
+     *
+     * @param replica The pool of connections to the replica.
+     * @param probe Measures the replica's lag.
+     * @param maximumLagMillis The most the replica may be behind for reads
+     * to go to it.
+     * @param checkIntervalMillis How often the lag is measured.
+     */
+    public ReplicaRouter(ConnectionPool replica, LagProbe probe, long maximumLagMillis,
+            long checkIntervalMillis) {
+        this.replica = replica;
+        this.probe = probe;
+        this.maximumLagMillis = Math.max(0, maximumLagMillis);
+        this.checkIntervalMillis = Math.max(0, checkIntervalMillis);
+        stickyMillis = this.maximumLagMillis + this.checkIntervalMillis;
+    }
+
+    /**
+     * Borrows a connection for a read from the replica, if the read may go
+     * there.
+     *
+     * @return A replica connection, or null if the read must go to the
+     * primary.
+     */
+    Connection getReplicaConnection() {
+        if (isPinned()) {
+            stickyReads.incrementAndGet();
+            return null;
+        }
+        checkLag();
+        long lag = lagMillis;
+        if (lag < 0 || lag > maximumLagMillis) {
+            lagFallbacks.incrementAndGet();
+            return null;
+        }
+        Connection conn = replica.getConnection();
+        if (conn == null) {
+            lagFallbacks.incrementAndGet();
+            return null;
+        }
+        replicaReads.incrementAndGet();
+        return conn;
+    }
+
+    /**
+     * @return The pool of connections to the replica.
+     */
+    ConnectionPool getReplicaPool() {
+        return replica;
+    }
+
+    private void checkLag() {
+        long now = System.currentTimeMillis();
+        long next = nextCheck.get();
+        if (now < next || !nextCheck.compareAndSet(next, now + checkIntervalMillis)) {
+            return;
+        }
+        Connection conn = replica.getConnection();
+        if (conn == null) {
+            lagMillis = -1;
+            return;
+        }
+        try {
+            lagMillis = probe.getLagMillis(conn);
+        } catch (SQLException ex) {
+            lagMillis = -1;
+            WebErrorLogger.log(Level.WARNING, "SQLException in ReplicaRouter.checkLag() error: " + ex);
+        } finally {
+            replica.returnConnection(conn);
+        }
+    }
+
+    /**
+     * Notes that the current thread wrote to the primary, so its reads stay
+     * on the primary until the replica has had time to catch up.
+     */
+    public static void noteWrite() {
+        long until = System.currentTimeMillis() + stickyMillis;
+        if (until > getPrimaryUntil()) {
+            PRIMARY_UNTIL.set(until);
+        }
+    }
+
+    /**
+     * Sends every read of the current thread to the primary until
+     * <code>clear</code> is called, for work that must see the latest data,
+     * such as loading the in-memory indexes.
+     */
+    public static void pinToPrimary() {
+        PRIMARY_UNTIL.set(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return The time, in milliseconds since the epoch, until which the
+     * current thread reads from the primary, or 0.
+     */
+    public static long getPrimaryUntil() {
+        Long until = PRIMARY_UNTIL.get();
+        return until == null ? 0 : until;
+    }
+
+    /**
+     * Sets the time until which the current thread reads from the primary,
+     * as carried over from an earlier request.
+     *
+     * @param until The time, in milliseconds since the epoch.
+     */
+    public static void setPrimaryUntil(long until) {
+        if (until > System.currentTimeMillis()) {
+            PRIMARY_UNTIL.set(until);
+        } else {
+            PRIMARY_UNTIL.remove();
+        }
+    }
+
+    /**
+     * Forgets the current thread's writes and pin.
+     */
+    public static void clear() {
+        PRIMARY_UNTIL.remove();
+    }
+
+    private static boolean isPinned() {
+        Long until = PRIMARY_UNTIL.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Returns true if the statement changes data, so that the reads after it
+     * must see the change.
+     *
+     * @param sql The SQL of a statement.
+     * @return True for an INSERT, UPDATE, DELETE or REPLACE.
+     */
+    static boolean isWrite(String sql) {
+        int start = 0;
+        while (start < sql.length() && (Character.isWhitespace(sql.charAt(start)) || sql.charAt(start) == '(')) {
+            start++;
+        }
+        return sql.regionMatches(true, start, "INSERT", 0, 6)
+                || sql.regionMatches(true, start, "UPDATE", 0, 6)
+                || sql.regionMatches(true, start, "DELETE", 0, 6)
+                || sql.regionMatches(true, start, "REPLACE", 0, 7);
+    }
+
+    private static long readReplicaStatus(Connection replica) throws SQLException {
+        Statement stmt = replica.createStatement();
+        try {
+            ResultSet rs;
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException ex) {
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+            }
+            if (!rs.next()) {
+                return -1;
+            }
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                String label = metaData.getColumnLabel(column);
+                if (label.equalsIgnoreCase("Seconds_Behind_Source")
+                        || label.equalsIgnoreCase("Seconds_Behind_Master")) {
+                    long seconds = rs.getLong(column);
+                    return rs.wasNull() ? -1 : seconds * 1000;
+                }
+            }
+            return -1;
+        } finally {
+            Web_MYSQL_Helper.closeStatement(stmt);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaRouter{lag=" + (lagMillis < 0 ? "unknown" : lagMillis + "ms")
+                + ", maximumLag=" + maximumLagMillis + "ms, replicaReads=" + replicaReads.get()
+                + ", stickyReads=" + stickyReads.get() + ", lagFallbacks=" + lagFallbacks.get()
+                + ", replica=" + replica + '}';
+    }
+
+    /**
+     * Shows the routing with a replica made of stand-in connections, whose
+     * lag is set by hand.
+     */
+    public static void main(String[] args) {
+        ConnectionPool.ConnectionFactory factory = () -> (Connection) Proxy.newProxyInstance(
+                ReplicaRouter.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "isValid":
+                        case "getAutoCommit":
+                            return true;
+                        case "isClosed":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == methodArgs[0];
+                        default:
+                            return null;
+                    }
+                });
+        ConnectionPool pool = new ConnectionPool(factory, 4, 100, 30000, 600000, 0);
+        long[] lag = {0};
+        ReplicaRouter router = new ReplicaRouter(pool, replica -> lag[0], 2000, 0);
+        show(router, "A read with a current replica");
+        noteWrite();
+        show(router, "A read just after a write");
+        clear();
+        show(router, "A read in the next request, after the write was forgotten");
+        lag[0] = 5000;
+        show(router, "A read while the replica is 5 s behind");
+        lag[0] = -1;
+        show(router, "A read while replication is stopped");
+        lag[0] = 1000;
+        show(router, "A read when the replica has caught up");
+        pinToPrimary();
+        show(router, "A read while pinned to the primary");
+        clear();
+        System.out.println(router);
+    }
+
+    private static void show(ReplicaRouter router, String label) {
+        Connection conn = router.getReplicaConnection();
+        System.out.printf("%-60s %s%n", label, conn == null ? "primary" : "replica");
+        router.replica.returnConnection(conn);
+    }
+}
@@ -0,0 +1,189 @@
+package mysql;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the database work of one request: the statements prepared, the
+ * connections borrowed and the time the connections were held.
+ *
+ * <code>servlets.filter.RequestBudgetFilter</code> calls <code>start</code>
+ * before a request runs and <code>finish</code> after it, and
+ * <code>Web_MYSQL_Helper</code> reports each borrow, return and statement of
+ * the thread in between. A thread with no request started is not counted,
+ * so outside a request the cost is one thread-local lookup.
+ *
+ * Statements are also counted by shape, the SQL with its literals and the
+ * placeholders of an <code>IN</code> list folded together, so a loop that
+ * runs the same query once per row of an earlier query (the N+1 pattern)
+ * shows up as one shape prepared many times.
+ */
+public final class RequestBudget {
+
+    private static final ThreadLocal<RequestBudget> CURRENT = new ThreadLocal<>();
+
+    private static final int MAXIMUM_CACHED_SHAPES = 1000;
+    private static final Map<String, String> SHAPES = new ConcurrentHashMap<>();
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Connection, Long> borrowedAt = new IdentityHashMap<>();
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int statements = 0;
+    private int borrows = 0;
+    private long heldNanos = 0;
+
+    private RequestBudget() {
+    }
+
+    /**
+     * Starts counting the database work of the current thread, replacing
+     * any count left over from an earlier request.
+     *
+     * @return The new count.
+     */
+    public static RequestBudget start() {
+        RequestBudget budget = new RequestBudget();
+        CURRENT.set(budget);
+        return budget;
+    }
+
+    /**
+     * Stops counting the database work of the current thread. A connection
+     * that is still borrowed counts as held until now.
+     *
+     * @return The count, or null if none was started.
+     */
+    public static RequestBudget finish() {
+        RequestBudget budget = CURRENT.get();
+        CURRENT.remove();
+        if (budget != null) {
+            long now = System.nanoTime();
+            for (long borrowed : budget.borrowedAt.values()) {
+                budget.heldNanos += now - borrowed;
+            }
+            budget.borrowedAt.clear();
+        }
+        return budget;
+    }
+
+    static void noteBorrow(Connection connection) {
+        RequestBudget budget = CURRENT.get();
+        if (budget == null || connection == null) {
+            return;
+        }
+        budget.borrows++;
+        budget.borrowedAt.put(connection, System.nanoTime());
+    }
+
+    static void noteReturn(Connection connection) {
+        RequestBudget budget = CURRENT.get();
+        if (budget == null || connection == null) {
+            return;
+        }
+        Long borrowed = budget.borrowedAt.remove(connection);
+        if (borrowed != null) {
+            budget.heldNanos += System.nanoTime() - borrowed;
+        }
+    }
+
+    static void noteStatement(String sql) {
+        RequestBudget budget = CURRENT.get();
+        if (budget == null) {
+            return;
+        }
+        budget.statements++;
+        budget.shapes.merge(shapeOf(sql), 1, Integer::sum);
+    }
+
+    /**
+     * @return The number of statements prepared.
+     */
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return The number of connections borrowed.
+     */
+    public int getBorrows() {
+        return borrows;
+    }
+
+    /**
+     * @return The total time connections were held, in milliseconds. Two
+     * connections held at once both count.
+     */
+    public long getDatabaseMillis() {
+        return heldNanos / 1000000;
+    }
+
+    /**
+     * @return The time since the count was started, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    /**
+     * @return The shape of the statement prepared the most times, or null
+     * if none was prepared.
+     */
+    public String getMostRepeatedShape() {
+        String most = null;
+        int count = 0;
+        for (Map.Entry<String, Integer> shape : shapes.entrySet()) {
+            if (shape.getValue() > count) {
+                most = shape.getKey();
+                count = shape.getValue();
+            }
+        }
+        return most;
+    }
+
+    /**
+     * @return The number of times the most repeated statement shape was
+     * prepared.
+     */
+    public int getMostRepeatedCount() {
+        String most = getMostRepeatedShape();
+        return most == null ? 0 : shapes.get(most);
+    }
+
+    /**
+     * Returns the shape of a statement: its SQL with string and number
+     * literals replaced by <code>?</code>, a list of placeholders folded
+     * into one and the whitespace collapsed.
+     *
+     * @param sql The SQL of a statement.
+     * @return The shape.
+     */
+    static String shapeOf(String sql) {
+        String shape = SHAPES.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PLACEHOLDER_LIST.matcher(shape).replaceAll("?, ...");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        // Statements built with their values in the SQL could fill the cache
+        if (SHAPES.size() < MAXIMUM_CACHED_SHAPES) {
+            SHAPES.put(sql, shape);
+        }
+        return shape;
+    }
+
+    @Override
+    public String toString() {
+        return "statements=" + statements + " borrows=" + borrows + " dbTime=" + getDatabaseMillis()
+                + "ms elapsed=" + getElapsedMillis() + "ms";
+    }
+}
@@ -1,6 +1,9 @@
 package mysql;
 
 import common.Reservation;
+import database.AvailabilityIndex;
+import database.IdentityMap;
+import database.Page;
 import database.SQLUtility;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -12,6 +15,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 /**
@@ -22,6 +26,11 @@ import utilities.WebErrorLogger;
  * @author Scott Harchar(2021) Conor Smetana(2021)
  */
 public class ReservationManager implements database.ReservationManager {
+
+    // Also explained by SchemaMigrations.main, to check they use their indexes
+    static final String BY_CUSTOMER_SQL = "SELECT * FROM reservations WHERE customer_id=?;";
+    static final String BY_DATE_RANGE_SQL = "SELECT * FROM reservations "
+            + "WHERE arrival_date < ? AND departure_date > ?";
     
     /**
      * Adds a Reservation to the reservations database and returns this Reservation
@@ -30,7 +39,8 @@ public class ReservationManager implements database.ReservationManager {
      * @param reservation A reservation object which will be used to add to the 
      * reservations database.
      * 
-     * @return A reservation object which has been added to the reservations database.
+     * @return A reservation object which has been added to the reservations
+     * database, with its generated reservation id.
      */
     @Override
     public Reservation addReservation(Reservation reservation){
@@ -43,7 +53,7 @@ public class ReservationManager implements database.ReservationManager {
         PreparedStatement stmt = null;
         ResultSet keys = null;
         try {
-            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);
             stmt.setInt(1, reservation.getCustomerId());
             stmt.setTimestamp(2, Timestamp.valueOf(reservation.getArrivalDate()));
             stmt.setTimestamp(3, Timestamp.valueOf(reservation.getDepartureDate()));
@@ -58,6 +68,7 @@ public class ReservationManager implements database.ReservationManager {
             keys.next();
             int reservationId = keys.getInt(1);
             reservation.setReservationId(reservationId);
+            Web_MYSQL_Helper.closeResultSet(keys);
 
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in addReservation"
@@ -65,11 +76,12 @@ public class ReservationManager implements database.ReservationManager {
                     " error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(stmt);
             Web_MYSQL_Helper.returnConnection(conn);
+            IdentityMap.remove(Reservation.class, reservation.getReservationId());
             return reservation;
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getReservationByID(reservation.getReservationId());
+        return IdentityMap.put(Reservation.class, reservation.getReservationId(), reservation);
         
     }
     
@@ -80,7 +92,8 @@ public class ReservationManager implements database.ReservationManager {
      * @param reservation A reservation object which will be used to update the 
      * reservations database.
      * 
-     * @return A reservation object which has been successfully updated.
+     * @return A reservation object which has been successfully updated, or 
+     * null if there is no reservation with its id.
      */
     @Override
     public Reservation updateReservation(Reservation reservation){
@@ -89,8 +102,9 @@ public class ReservationManager implements database.ReservationManager {
                 + "number_of_sites_assigned=?, deposit=?, notes=? WHERE reservation_id=? ;";
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt = null;
+        int updateCount;
         try {
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setTimestamp(1, Timestamp.valueOf(reservation.getArrivalDate()));
             stmt.setTimestamp(2, Timestamp.valueOf(reservation.getDepartureDate()));
             stmt.setInt(3, reservation.getNumberOfNights());
@@ -99,17 +113,23 @@ public class ReservationManager implements database.ReservationManager {
             stmt.setBigDecimal(6, reservation.getDeposit());
             stmt.setString(7, reservation.getNotes());
             stmt.setInt(8, reservation.getReservationId());
-            stmt.executeUpdate();
+            updateCount = stmt.executeUpdate();
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in updateReservation"
                     + "(Reservation reservation) reservation="+reservation+" error: "+ex);
             Web_MYSQL_Helper.closePreparedStatement(stmt);
             Web_MYSQL_Helper.returnConnection(conn);
+            // The reservation was not saved, so later reads must not see it
+            IdentityMap.remove(Reservation.class, reservation.getReservationId());
             return reservation;
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getReservationByID(reservation.getReservationId());
+        if (updateCount == 0) {
+            IdentityMap.remove(Reservation.class, reservation.getReservationId());
+            return null;
+        }
+        return IdentityMap.put(Reservation.class, reservation.getReservationId(), reservation);
     }
     
     /**
@@ -126,7 +146,7 @@ public class ReservationManager implements database.ReservationManager {
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, reservation.getReservationId());
             stmt.executeUpdate();
         } catch (SQLException ex) {
@@ -138,7 +158,9 @@ public class ReservationManager implements database.ReservationManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.returnConnection(conn);
-        return !isReservation(reservation);
+        AvailabilityIndex.getInstance().removeReservation(reservation.getReservationId());
+        IdentityMap.remove(Reservation.class, reservation.getReservationId());
+        return true;
     }
     
      /**
@@ -155,14 +177,6 @@ public class ReservationManager implements database.ReservationManager {
         return deleteReservation(reservation);
     }
     
-    /**
-     * Returns true if the given reservation is a reservation in the 
-     * reservations database.
-     */
-    private boolean isReservation(Reservation reservation){
-        return getReservationByID(reservation.getReservationId()) != null;
-    }
-    
     /**
      * Gets a reservation object from the query results, searched by reservation
      * id.
@@ -173,13 +187,17 @@ public class ReservationManager implements database.ReservationManager {
      */
     @Override
     public Reservation getReservationByID(int reservationID){
+        Reservation cached = IdentityMap.get(Reservation.class, reservationID);
+        if(cached != null){
+            return cached;
+        }
         String sql = "SELECT * FROM reservations WHERE reservation_id=? LIMIT 1;";
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         ResultSet rs;
         Reservation reservation = null;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, reservationID);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
@@ -199,7 +217,7 @@ public class ReservationManager implements database.ReservationManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt);
         Web_MYSQL_Helper.returnConnection(conn);
-        return reservation;
+        return IdentityMap.put(Reservation.class, reservationID, reservation);
         
     } 
     
@@ -214,13 +232,13 @@ public class ReservationManager implements database.ReservationManager {
     @Override
     public Collection<Reservation> getReservationsByCustomerID(int customerID){
         Collection<Reservation> reservations = new ArrayList<>();
-        String sql = "SELECT * FROM reservations WHERE customer_id=?;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        String sql = BY_CUSTOMER_SQL;
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Reservation reservation = null;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt.setInt(1, customerID);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
@@ -260,21 +278,15 @@ public class ReservationManager implements database.ReservationManager {
     public Collection<Reservation> getReservationsByDateRange(LocalDateTime startDate,
             LocalDateTime endDate){
         Collection<Reservation> reservations = new ArrayList<>();
-        String sql = "SELECT * FROM reservations WHERE "
-                + "? BETWEEN arrival_date AND departure_date "
-                + "OR ? BETWEEN arrival_date AND departure_date "
-                + "OR reservation_id = ANY (SELECT reservation_id from reservations "
-                + "WHERE ? <= arrival_date AND ? >=departure_date)";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        String sql = BY_DATE_RANGE_SQL;
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Reservation reservation;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
-            stmt.setTimestamp(1, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(2, Timestamp.valueOf(endDate));
-            stmt.setTimestamp(3, Timestamp.valueOf(startDate));
-            stmt.setTimestamp(4, Timestamp.valueOf(endDate));
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
+            stmt.setTimestamp(1, Timestamp.valueOf(endDate));
+            stmt.setTimestamp(2, Timestamp.valueOf(startDate));
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
                 Web_MYSQL_Helper.closePreparedStatement(stmt);
@@ -312,6 +324,7 @@ public class ReservationManager implements database.ReservationManager {
         String params[] = new String[5];
         int numParams = 0;
         boolean isFirst = true;
+        boolean dateRange = false;
         boolean startDate = false;
         boolean endDate = false;
         boolean name = false;
@@ -320,18 +333,12 @@ public class ReservationManager implements database.ReservationManager {
         
         if(filter.get(0)!=null && filter.get(1)!=null){
             isFirst = false;
-            sql+="? BETWEEN arrival_date AND departure_date "
-                    + "OR ? BETWEEN arrival_date AND departure_date "
-                    + "OR reservation_id = ANY (SELECT reservation_id from reservations "
-                    + "WHERE ? <= arrival_date AND ? >=departure_date)";
-            params[numParams] = filter.get(0);
-            numParams++;
-            params[numParams] = filter.get(1);
-            numParams++;
+            sql+="arrival_date < ? AND departure_date > ?";
             params[numParams] = filter.get(0);
             numParams++;
             params[numParams] = filter.get(1);
             numParams++;
+            dateRange = true;
         }    
         else if(filter.get(0) != null){
             isFirst = false;
@@ -358,26 +365,23 @@ public class ReservationManager implements database.ReservationManager {
             name = true;
         }
         sql += ";";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Reservation reservation = null;
         PreparedStatement stmt = null;
         DateTimeFormatter format = DateTimeFormatter.ofPattern("MM/dd/yyyy");
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             for (int i = 1; i <= numParams; i++) {
-                //If both arrival and departure date are supplied there will be at least 4 parameters
-                if (numParams>=4)
+                //If both arrival and departure date are supplied they are the first 2 parameters
+                if (dateRange)
                 {
                     LocalDateTime start = LocalDateTime.of(Integer.parseInt(params[i-1].substring(6)), Integer.parseInt(params[i-1].substring(0,2)), Integer.parseInt(params[i-1].substring(3,5)), 14, 00);
                     LocalDateTime end = LocalDateTime.of(Integer.parseInt(params[i].substring(6)), Integer.parseInt(params[i].substring(0,2)), Integer.parseInt(params[i].substring(3,5)), 9, 00);
-                    stmt.setTimestamp(i, Timestamp.valueOf(start)); //set start date between
-                    i++;
-                    stmt.setTimestamp(i, Timestamp.valueOf(end)); //set end date between
+                    stmt.setTimestamp(i, Timestamp.valueOf(end)); //arrives before the end
                     i++;
-                    stmt.setTimestamp(i, Timestamp.valueOf(start)); //set start date after
-                    i++;
-                    stmt.setTimestamp(i, Timestamp.valueOf(end)); //set end date prior
+                    stmt.setTimestamp(i, Timestamp.valueOf(start)); //departs after the start
+                    dateRange = false;
                 }
                 else if(startDate){
                     LocalDateTime start = LocalDateTime.of(Integer.parseInt(params[i-1].substring(6)), Integer.parseInt(params[i-1].substring(0,2)), Integer.parseInt(params[i-1].substring(3,5)), 14, 00);
@@ -422,12 +426,12 @@ public class ReservationManager implements database.ReservationManager {
     public Collection<Reservation> getAllReservations(){
         Collection<Reservation> reservations = new ArrayList<>();
         String sql = "SELECT * FROM reservations;";
-        Connection conn = mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn = mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         Reservation reservation = null;
         PreparedStatement stmt = null;
         try{
-            stmt = conn.prepareStatement(sql);
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt.executeQuery();
             if(rs == null || rs.next() == false){
                 Web_MYSQL_Helper.closePreparedStatement(stmt);
@@ -449,5 +453,40 @@ public class ReservationManager implements database.ReservationManager {
         Web_MYSQL_Helper.returnConnection(conn);
         return reservations;
     }
+
+    /**
+     * Streams the reservations that overlap the given dates to the action
+     * without holding them in memory.
+     */
+    @Override
+    public boolean forEachReservation(LocalDateTime startDate, LocalDateTime endDate,
+            Consumer<? super Reservation> action) {
+        String sql = "SELECT * FROM reservations" + StreamingQuery.overlapping(startDate, endDate)
+                + " ORDER BY arrival_date, reservation_id";
+        return StreamingQuery.forEach(sql, StreamingQuery.bindRange(startDate, endDate),
+                SQLUtility::convertResultSetToReservation, action,
+                "forEachReservation(LocalDateTime startDate, LocalDateTime endDate, Consumer action) "
+                + "startDate=" + startDate + " endDate=" + endDate);
+    }
+
+    private static final String RESERVATION_SELECT = "SELECT * FROM reservations";
+    private static final KeysetPager<Reservation> BY_ID = new KeysetPager<>(RESERVATION_SELECT,
+            "reservation_id", null, false, SQLUtility::convertResultSetToReservation);
+    private static final KeysetPager<Reservation> BY_ARRIVAL_DATE = new KeysetPager<>(RESERVATION_SELECT,
+            "reservation_id", "arrival_date", false, SQLUtility::convertResultSetToReservation);
+    private static final KeysetPager<Reservation> BY_ARRIVAL_DATE_DESCENDING = new KeysetPager<>(
+            RESERVATION_SELECT, "reservation_id", "arrival_date", true,
+            SQLUtility::convertResultSetToReservation);
+
+    /**
+     * Returns one page of the reservations, reading only the rows on the
+     * page.
+     */
+    @Override
+    public Page<Reservation> getReservationPage(String after, int limit, Sort sort) {
+        KeysetPager<Reservation> pager = sort == Sort.ARRIVAL_DATE ? BY_ARRIVAL_DATE
+                : sort == Sort.ARRIVAL_DATE_DESCENDING ? BY_ARRIVAL_DATE_DESCENDING : BY_ID;
+        return pager.page(after, limit, "getReservationPage(String after, int limit, Sort sort) sort=" + sort);
+    }
     
 }
@@ -0,0 +1,364 @@
+package mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import utilities.PropertyManager;
+import utilities.WebErrorLogger;
+
+/**
+ * Brings the schema of the database up to date, for
+ * <code>DatabaseManagement.CreateTables</code>.
+ *
+ * The changes are numbered migrations, applied in order. The
+ * <code>schema_version</code> table records each migration that has been
+ * applied, so a migration runs once per database however often the
+ * application starts. A MySQL named lock keeps two servers that start
+ * together from applying the same migration twice.
+ *
+ * Migrations are only ever added to the end of the list. A migration that
+ * has been released is never changed; a later one changes what it did.
+ *
+ * The <code>main</code> method applies the migrations and then runs
+ * <code>EXPLAIN</code> on the managers' date range and customer statements,
+ * failing if one of them does not use its index.
+ */
+final class SchemaMigrations {
+
+    private static final String LOCK_NAME = "campground_schema_migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+
+    /**
+     * One change to the schema.
+     */
+    private interface Step {
+
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static final class Migration {
+
+        private final int version;
+        private final String description;
+        private final List<Step> steps;
+
+        private Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Arrays.asList(steps);
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Index the date range queries and the reservations of a customer",
+                    // Finds the stays of a campsite that overlap a date range
+                    index("assigned_site", "assigned_site_campsite_dates",
+                            "campsite_id, arrival_date, departure_date"),
+                    index("reservations", "reservations_customer", "customer_id"),
+                    index("reservations", "reservations_dates", "arrival_date, departure_date"))
+    );
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Applies every migration the database does not have yet.
+     *
+     * @return True if the schema is up to date; false if a migration failed,
+     * in which case the migrations before it stay applied.
+     */
+    static boolean migrate() {
+        Connection conn = Web_MYSQL_Helper.getConnection();
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in SchemaMigrations.migrate()");
+            return false;
+        }
+        boolean locked = false;
+        int version = 0;
+        try {
+            locked = lock(conn);
+            if (!locked) {
+                WebErrorLogger.log(Level.SEVERE, "SchemaMigrations.migrate() could not get the lock "
+                        + LOCK_NAME + " within " + LOCK_TIMEOUT_SECONDS + " seconds");
+                return false;
+            }
+            execute(conn, "CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT NOT NULL PRIMARY KEY, "
+                    + "description VARCHAR(255) NOT NULL, "
+                    + "applied_on DATETIME NOT NULL)");
+            version = getVersion(conn);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                for (Step step : migration.steps) {
+                    step.apply(conn);
+                }
+                record(conn, migration);
+                version = migration.version;
+                WebErrorLogger.log(Level.INFO, "Applied schema migration " + migration.version
+                        + ": " + migration.description);
+            }
+            return true;
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in SchemaMigrations.migrate() at version "
+                    + version + " error: " + ex);
+            return false;
+        } finally {
+            if (locked) {
+                unlock(conn);
+            }
+            Web_MYSQL_Helper.returnConnection(conn);
+        }
+    }
+
+    /**
+     * Builds a step that creates an index unless the table already has an
+     * index that starts with the same columns, whatever its name. MySQL has
+     * no <code>CREATE INDEX IF NOT EXISTS</code>, and an index may have been
+     * added by hand, or for a foreign key, before the migration was written.
+     */
+    private static Step index(String table, String name, String columns) {
+        return conn -> {
+            if (indexesStartingWith(conn, table, columns).isEmpty()) {
+                execute(conn, "CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+            }
+        };
+    }
+
+    /**
+     * Returns the names of the indexes of a table whose leading columns are
+     * the given columns, in order.
+     *
+     * @param columns The columns, separated by commas.
+     */
+    private static Set<String> indexesStartingWith(Connection conn, String table, String columns)
+            throws SQLException {
+        String sql = "SELECT index_name, column_name FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ? ORDER BY index_name, seq_in_index";
+        List<String> wanted = new ArrayList<>();
+        for (String column : columns.split(",")) {
+            wanted.add(column.trim().toLowerCase(Locale.ROOT));
+        }
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
+            stmt.setString(1, table);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                indexes.computeIfAbsent(rs.getString("index_name"), key -> new ArrayList<>())
+                        .add(rs.getString("column_name").toLowerCase(Locale.ROOT));
+            }
+        } finally {
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+        }
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+            List<String> indexColumns = index.getValue();
+            if (indexColumns.size() >= wanted.size()
+                    && indexColumns.subList(0, wanted.size()).equals(wanted)) {
+                names.add(index.getKey());
+            }
+        }
+        return names;
+    }
+
+    private static int getVersion(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version");
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            Web_MYSQL_Helper.closeStatement(stmt);
+        }
+    }
+
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn,
+                    "INSERT INTO schema_version (version, description, applied_on) VALUES (?, ?, ?)");
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+        } finally {
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            Web_MYSQL_Helper.closeStatement(stmt);
+        }
+    }
+
+    private static boolean lock(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('" + LOCK_NAME + "', "
+                    + LOCK_TIMEOUT_SECONDS + ")");
+            return rs.next() && rs.getInt(1) == 1;
+        } finally {
+            Web_MYSQL_Helper.closeStatement(stmt);
+        }
+    }
+
+    private static void unlock(Connection conn) {
+        try {
+            execute(conn, "DO RELEASE_LOCK('" + LOCK_NAME + "')");
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.WARNING, "SQLException in SchemaMigrations.unlock() error: " + ex);
+        }
+    }
+
+    /**
+     * A statement of a manager and the index it should read its table with.
+     */
+    private static final class IndexedQuery {
+
+        private final String description;
+        private final String sql;
+        private final StreamingQuery.Binder binder;
+        private final String table;
+        private final String columns;
+        private final boolean chosen;
+
+        /**
+         * @param chosen True if MySQL must choose the index; false if it is
+         * enough that MySQL can use it, for a range whose selectivity
+         * depends on the data.
+         */
+        private IndexedQuery(String description, String sql, StreamingQuery.Binder binder,
+                String table, String columns, boolean chosen) {
+            this.description = description;
+            this.sql = sql;
+            this.binder = binder;
+            this.table = table;
+            this.columns = columns;
+            this.chosen = chosen;
+        }
+    }
+
+    /**
+     * Runs <code>EXPLAIN</code> on a statement and checks that it reads its
+     * table with one of the indexes that start with the expected columns.
+     *
+     * @return True if it does.
+     */
+    private static boolean usesIndex(Connection conn, IndexedQuery query) throws SQLException {
+        Set<String> indexes = indexesStartingWith(conn, query.table, query.columns);
+        System.out.println(query.description + ": " + query.sql);
+        if (indexes.isEmpty()) {
+            System.out.println("    FAIL no index on " + query.table + " (" + query.columns + ")");
+            return false;
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        boolean found = false;
+        boolean used = false;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, "EXPLAIN " + query.sql);
+            query.binder.bind(stmt);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                String table = rs.getString("table");
+                String key = rs.getString("key");
+                String possibleKeys = rs.getString("possible_keys");
+                System.out.printf("    %-20s type=%-8s key=%-30s rows=%s%n", table,
+                        rs.getString("type"), key, rs.getString("rows"));
+                if (!query.table.equals(table)) {
+                    continue;
+                }
+                found = true;
+                if (query.chosen) {
+                    used = key != null && indexes.contains(key);
+                } else if (possibleKeys != null) {
+                    for (String possibleKey : possibleKeys.split(",")) {
+                        used |= indexes.contains(possibleKey.trim());
+                    }
+                }
+            }
+        } finally {
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+        }
+        System.out.println(found && used ? "    ok" : "    FAIL " + (query.chosen ? "does not use " : "can not use ")
+                + indexes);
+        return found && used;
+    }
+
+    /**
+     * Applies the migrations to the database named in the property file and
+     * runs <code>EXPLAIN</code> on the date range and customer statements of
+     * the managers, printing each plan. The program exits with status 1 if a
+     * statement does not read its table with the index that starts with the
+     * expected columns, whatever the index is named. The reservation date
+     * range only has to be able to use its index, since MySQL rightly scans
+     * the table when most reservations start before the end of the range.
+     *
+     * @param args The path of the property file, or nothing for the one in
+     * the project.
+     */
+    public static void main(String[] args) {
+        String propertyFilePath = args.length > 0 ? args[0]
+                : common.Paths.HOMEDIRECTORY + "/web/WEB-INF/config/General.properties";
+        PropertyManager.configure(propertyFilePath);
+        PropertyManager.setProperty("UseDBPooling", "no");
+        boolean migrated = migrate();
+        System.out.println("Migrated: " + migrated);
+        LocalDateTime start = LocalDateTime.of(2030, 7, 1, 12, 0);
+        StreamingQuery.Binder range = StreamingQuery.bindRange(start, start.plusDays(7));
+        StreamingQuery.Binder campsiteAndRange = stmt -> {
+            stmt.setInt(1, 1);
+            stmt.setTimestamp(2, Timestamp.valueOf(start.plusDays(7)));
+            stmt.setTimestamp(3, Timestamp.valueOf(start));
+        };
+        List<IndexedQuery> queries = Arrays.asList(
+                new IndexedQuery("AssignedSiteManager.sitesAvailableInDateRange",
+                        AssignedSiteManager.AVAILABILITY_SQL, campsiteAndRange,
+                        "assigned_site", "campsite_id, arrival_date, departure_date", true),
+                new IndexedQuery("CampsiteManager.getUnassignedSitesByDateRange",
+                        CampsiteManager.UNASSIGNED_SQL, range,
+                        "assigned_site", "campsite_id, arrival_date, departure_date", true),
+                new IndexedQuery("ReservationManager.getReservationsByCustomerID",
+                        ReservationManager.BY_CUSTOMER_SQL, stmt -> stmt.setInt(1, 1),
+                        "reservations", "customer_id", true),
+                new IndexedQuery("ReservationManager.getReservationsByDateRange",
+                        ReservationManager.BY_DATE_RANGE_SQL, range,
+                        "reservations", "arrival_date, departure_date", false));
+        boolean indexed = migrated;
+        Connection conn = Web_MYSQL_Helper.getConnection();
+        try {
+            for (IndexedQuery query : queries) {
+                indexed &= usesIndex(conn, query);
+            }
+        } catch (SQLException ex) {
+            System.out.println("EXPLAIN failed: " + ex);
+            indexed = false;
+        } finally {
+            Web_MYSQL_Helper.returnConnection(conn);
+            Web_MYSQL_Helper.closeConnectionsOnExit();
+        }
+        System.exit(indexed ? 0 : 1);
+    }
+}
@@ -0,0 +1,126 @@
+package mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * The prepared statements of one pooled connection, keyed by their SQL text.
+ *
+ * A statement is taken out of the cache while it is in use and put back
+ * when it is returned, so the same statement is never handed out twice. The
+ * least recently returned statement is closed when the cache is full.
+ *
+ * Only <code>ConnectionPool</code> uses this class.
+ */
+class StatementCache {
+
+    private final int maximumSize;
+    // Insertion order; a returned statement goes to the end
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>();
+    private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean closed = false;
+
+    StatementCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Takes the cached statement for the given key out of the cache.
+     *
+     * @return The statement, or null if none is cached.
+     */
+    synchronized PreparedStatement take(String key) {
+        return statements.remove(key);
+    }
+
+    /**
+     * Records a statement that has been handed out.
+     */
+    synchronized void checkOut(PreparedStatement statement) {
+        inUse.add(statement);
+    }
+
+    /**
+     * Puts a returned statement back in the cache.
+     *
+     * @return The statements that no longer fit and must be closed. This
+     * includes the returned statement when the cache already holds one with
+     * the same key or has been closed.
+     */
+    synchronized List<PreparedStatement> checkIn(String key, PreparedStatement statement) {
+        inUse.remove(statement);
+        if (closed || maximumSize <= 0 || statements.containsKey(key)) {
+            return Collections.singletonList(statement);
+        }
+        statements.put(key, statement);
+        List<PreparedStatement> evicted = new ArrayList<>();
+        Iterator<PreparedStatement> eldest = statements.values().iterator();
+        while (statements.size() > maximumSize) {
+            evicted.add(eldest.next());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes the statements that were handed out and never returned.
+     *
+     * @return The statements to close.
+     */
+    synchronized Collection<PreparedStatement> takeInUse() {
+        List<PreparedStatement> leaked = new ArrayList<>(inUse);
+        inUse.clear();
+        return leaked;
+    }
+
+    /**
+     * Empties the cache and closes its statements. Statements returned
+     * afterwards are closed as well.
+     */
+    void close() {
+        List<PreparedStatement> cached;
+        synchronized (this) {
+            closed = true;
+            cached = new ArrayList<>(statements.values());
+            statements.clear();
+            inUse.clear();
+        }
+        for (PreparedStatement statement : cached) {
+            closeQuietly(statement);
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.WARNING, "SQLException while closing a cached statement", ex);
+        }
+    }
+
+    /**
+     * Builds the cache key for a statement.
+     */
+    static String key(String sql, int autoGeneratedKeys) {
+        return autoGeneratedKeys == java.sql.Statement.RETURN_GENERATED_KEYS ? sql + "\u0000keys" : sql;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache{size=" + statements.size() + ", inUse=" + inUse.size() + '}';
+    }
+}
@@ -0,0 +1,144 @@
+package mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import utilities.WebErrorLogger;
+
+/**
+ * Runs a query for the <code>forEach...</code> methods of the managers and
+ * hands each row to the caller as it arrives, instead of collecting the rows
+ * first.
+ *
+ * The statement's fetch size is set to <code>Integer.MIN_VALUE</code>, which
+ * tells MySQL Connector/J to stream the result set one row at a time rather
+ * than read all of it into memory when the query runs. A report over every
+ * reservation of several seasons therefore holds one row at a time, plus
+ * whatever the caller keeps.
+ *
+ * A streamed connection can run nothing else until the result set is
+ * closed, so the connection is held for the whole walk and given back, with
+ * its statement, before <code>forEach</code> returns or throws. The action
+ * may use the managers, which borrow other connections from the pool, but
+ * should not be slow: the connection is busy until the last row is read.
+ * The statement's fetch size is put back when the pool takes it back.
+ *
+ * The rows come from the read-only replica when there is one; see
+ * <code>Web_MYSQL_Helper.getReadConnection</code>. Use
+ * <code>forEachOnPrimary</code> for rows that a write will be based on.
+ */
+final class StreamingQuery {
+
+    /**
+     * Sets the parameters of the query.
+     */
+    interface Binder {
+
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private StreamingQuery() {
+    }
+
+    /**
+     * Runs the query and passes every row, converted, to the action.
+     *
+     * @param sql The query.
+     * @param binder Sets the parameters of the query, or null if it has none.
+     * @param converter Converts a row; see <code>SQLUtility</code>.
+     * @param action Called once for each row, in the order of the query.
+     * @param method The calling method, for the error log.
+     * @return True if every row was read; false if the query failed part
+     * way, in which case the action has seen the rows read before the
+     * failure.
+     */
+    static <T> boolean forEach(String sql, Binder binder, Function<ResultSet, T> converter,
+            Consumer<? super T> action, String method) {
+        return forEach(Web_MYSQL_Helper.getReadConnection(), sql, binder, converter, action, method);
+    }
+
+    /**
+     * Runs the query on the primary, so that the rows include every write
+     * made so far, and passes every row, converted, to the action.
+     *
+     * @see #forEach(String, Binder, Function, Consumer, String)
+     */
+    static <T> boolean forEachOnPrimary(String sql, Binder binder, Function<ResultSet, T> converter,
+            Consumer<? super T> action, String method) {
+        return forEach(Web_MYSQL_Helper.getConnection(), sql, binder, converter, action, method);
+    }
+
+    private static <T> boolean forEach(Connection conn, String sql, Binder binder,
+            Function<ResultSet, T> converter, Consumer<? super T> action, String method) {
+        if (conn == null) {
+            WebErrorLogger.log(Level.SEVERE, "No connection available in " + method);
+            return false;
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = Web_MYSQL_Helper.prepareStatement(conn, sql);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            if (binder != null) {
+                binder.bind(stmt);
+            }
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                action.accept(converter.apply(rs));
+            }
+            return true;
+        } catch (SQLException ex) {
+            WebErrorLogger.log(Level.SEVERE, "SQLException in " + method + " error: " + ex);
+            return false;
+        } finally {
+            // Closing a streamed result set reads any rows the walk did not
+            Web_MYSQL_Helper.closeResultSet(rs);
+            Web_MYSQL_Helper.closePreparedStatement(stmt);
+            Web_MYSQL_Helper.returnConnection(conn);
+        }
+    }
+
+    /**
+     * Builds the condition for rows whose stay, from
+     * <code>arrival_date</code> up to <code>departure_date</code>, overlaps
+     * the given range. Bind its parameters with <code>bindRange</code>.
+     *
+     * @param startDate The start of the range, or null for no lower bound.
+     * @param endDate The end of the range, or null for no upper bound.
+     * @return The <code>WHERE</code> clause, or an empty string for no bounds.
+     */
+    static String overlapping(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate == null && endDate == null) {
+            return "";
+        }
+        if (startDate == null) {
+            return " WHERE arrival_date < ?";
+        }
+        if (endDate == null) {
+            return " WHERE departure_date > ?";
+        }
+        return " WHERE arrival_date < ? AND departure_date > ?";
+    }
+
+    /**
+     * Binds the parameters of the condition built by
+     * <code>overlapping</code>.
+     */
+    static Binder bindRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return statement -> {
+            int parameter = 1;
+            if (endDate != null) {
+                statement.setTimestamp(parameter++, Timestamp.valueOf(endDate));
+            }
+            if (startDate != null) {
+                statement.setTimestamp(parameter, Timestamp.valueOf(startDate));
+            }
+        };
+    }
+}
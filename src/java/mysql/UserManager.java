@@ -40,7 +40,7 @@ public class UserManager implements database.UserManager {
         PreparedStatement stmt2 = null;
         User user = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, loginName);
             stmt2.setString(2, password);
             rs = stmt2.executeQuery();
@@ -76,11 +76,11 @@ public class UserManager implements database.UserManager {
     @Override
     public User addUser(User user) {
         String sql = "INSERT INTO users (userNumber, loginName, userPassword, salt, firstName, lastName, emailAddress,"
-                + "userRole, lastLoginTime, loginCount) VALUES (DEFAULT,?,?,?,?,?,?,?,?,?,?); ";
+                + "userRole, lastLoginTime, loginCount) VALUES (DEFAULT,?,?,?,?,?,?,?,?,?); ";
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);//Stop SQL insertion issues with prepared statements 
             stmt2.setString(1, user.getLoginName().trim());
             stmt2.setString(2, user.getUserPassword().trim());
             stmt2.setString(3, user.getSalt().trim());
@@ -101,7 +101,8 @@ public class UserManager implements database.UserManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getUserByLoginName(user.getLoginName());//need to do it this way to get the user number set correctly
+        // Read back for the user number and the columns the table defaults
+        return getUserByLoginName(user.getLoginName());
     }
 
     /**
@@ -118,7 +119,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, userID);
 
             rs = stmt2.executeQuery();
@@ -157,7 +158,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, loginName);
 
             rs = stmt2.executeQuery();
@@ -198,7 +199,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, emailAddress);
 
             rs = stmt2.executeQuery();
@@ -242,7 +243,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             rs = stmt2.executeQuery();
             if (rs == null) {
                 Web_MYSQL_Helper.closePreparedStatement(stmt2);
@@ -283,10 +284,17 @@ public class UserManager implements database.UserManager {
                 + "userRole=?, lastLoginTime=?, lastAttemptedLoginTime=?, loginCount = ?, attemptedLoginCount=?,"
                 + " locked=? where userNumber = ? ; ";
         //User newUser = null;
+        user.setLoginName(user.getLoginName().trim());
+        user.setUserPassword(user.getUserPassword().trim());
+        user.setSalt(user.getSalt().trim());
+        user.setFirstName(user.getFirstName().trim());
+        user.setLastName(user.getLastName().trim());
+        user.setEmailAddress(user.getEmailAddress().trim());
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
+        int updateCount;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, user.getLoginName().trim());
             stmt2.setString(2, user.getUserPassword().trim());
             stmt2.setString(3, user.getSalt().trim());
@@ -302,7 +310,7 @@ public class UserManager implements database.UserManager {
             stmt2.setInt(13, user.getUserNumber());
             
 
-            stmt2.executeUpdate();
+            updateCount = stmt2.executeUpdate();
 
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in updateUser(User user) " + user + " error: " + ex);
@@ -312,7 +320,7 @@ public class UserManager implements database.UserManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getUserByID(user.getUserNumber());
+        return updateCount == 0 ? null : user;
     }
 
     /**
@@ -330,12 +338,12 @@ public class UserManager implements database.UserManager {
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, user.getUserNumber());
             stmt2.executeUpdate();
             Web_MYSQL_Helper.closePreparedStatement(stmt2);
             Web_MYSQL_Helper.returnConnection(conn);
-            return !isUser(user);
+            return true;
 
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in deleteUser(User user) " + user + " error: " + ex);
@@ -353,10 +361,6 @@ public class UserManager implements database.UserManager {
         return deleteUser(user);
     }
 
-    private boolean isUser(User user) {
-        return getUserByLoginName(user.getLoginName()) != null;
-    }
-
    @Override
     public Collection<User> getAllUsersWithoutSystemAdmins() {
         Collection<User> users = new ArrayList<>();
@@ -366,7 +370,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, common.UserRole.SystemAdmin.getRoleName());
             rs = stmt2.executeQuery();
             if (rs == null) {
@@ -400,7 +404,7 @@ public class UserManager implements database.UserManager {
         ResultSet rs;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, loginName.trim());
 
             rs = stmt2.executeQuery();
@@ -430,7 +434,7 @@ public class UserManager implements database.UserManager {
         User user = null;
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setString(1, common.UserRole.SystemAdmin.getRoleName());
             rs = stmt2.executeQuery();
             if (rs == null) {
@@ -2,17 +2,21 @@
 package mysql;
 
 import common.WaitingList;
+import database.Page;
 import database.SQLUtility;
+import database.WaitingListMatcher;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Date;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import utilities.WebErrorLogger;
 
@@ -44,7 +48,7 @@ public class WaitingListManager implements database.WaitingListManager {
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql, Statement.RETURN_GENERATED_KEYS);//Stop SQL insertion issues with prepared statements 
             stmt2.setInt(1, waitingList.getCustomerId());
             stmt2.setDate(2, Date.valueOf(waitingList.getDateOfRequest()));
             stmt2.setTimestamp(3, Timestamp.valueOf(waitingList.getArrivalDate()));
@@ -55,6 +59,11 @@ public class WaitingListManager implements database.WaitingListManager {
             stmt2.setString(8, waitingList.getNotes());
 
             stmt2.executeUpdate();
+            ResultSet keys = stmt2.getGeneratedKeys();
+            if (keys.next()) {
+                waitingList.setWaitingListId(keys.getInt(1));
+            }
+            Web_MYSQL_Helper.closeResultSet(keys);
 
         } catch (SQLException ex) {
             WebErrorLogger.log(Level.SEVERE, "SQLException in addWaitingList"
@@ -65,7 +74,9 @@ public class WaitingListManager implements database.WaitingListManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getWaitingListById(waitingList.getWaitingListId());
+        WaitingList added = getWaitingListById(waitingList.getWaitingListId());
+        WaitingListMatcher.getInstance().put(added);
+        return added;
     }
     
     
@@ -82,12 +93,12 @@ public class WaitingListManager implements database.WaitingListManager {
     public WaitingList updateWaitingList(WaitingList waitingList){
         String sql = "UPDATE waiting_list SET "
                 + "waiting_list_id=?, customer_id=?, date_of_request=?, arrival_date=?, departure_date=?, "
-                + "number_of_nights=?, number_of_sites=?, priority=?, notes=?"
+                + "number_of_nights=?, number_of_sites=?, priority=?, notes=? "
                 + "WHERE waiting_list_id=?";
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);//Stop SQL insertion issues with prepared statements 
             stmt2.setInt(1, waitingList.getWaitingListId());
             stmt2.setInt(2, waitingList.getCustomerId());
             stmt2.setDate(3, Date.valueOf(waitingList.getDateOfRequest()));
@@ -110,7 +121,9 @@ public class WaitingListManager implements database.WaitingListManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getWaitingListById(waitingList.getWaitingListId());
+        WaitingList updated = getWaitingListById(waitingList.getWaitingListId());
+        WaitingListMatcher.getInstance().put(updated);
+        return updated;
     }
     
     
@@ -128,7 +141,7 @@ public class WaitingListManager implements database.WaitingListManager {
         WaitingList waitingList = null;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, waitingListId);
             
             rs = stmt2.executeQuery();
@@ -155,12 +168,12 @@ public class WaitingListManager implements database.WaitingListManager {
     public Collection<WaitingList> getWaitingListsByCustomerId(int waitingListId){
         Collection<WaitingList> waitingLists = new ArrayList<>();
         String sql = "SELECT * FROM waiting_list WHERE waiting_list_id=?;";
-        Connection conn=mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn=mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         WaitingList waitingList;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, waitingListId);
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -192,12 +205,12 @@ public class WaitingListManager implements database.WaitingListManager {
     public Collection<WaitingList> getAllWaitingLists(){
         Collection<WaitingList> waitingLists = new ArrayList<>();
         String sql = "SELECT * FROM waiting_list;";
-        Connection conn=mysql.Web_MYSQL_Helper.getConnection();
+        Connection conn=mysql.Web_MYSQL_Helper.getReadConnection();
         ResultSet rs;
         WaitingList waitingList;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -219,6 +232,40 @@ public class WaitingListManager implements database.WaitingListManager {
         Web_MYSQL_Helper.returnConnection(conn);
         return waitingLists;
     }
+
+    /**
+     * Streams every waiting list entry to the action without holding them in
+     * memory.
+     */
+    @Override
+    public boolean forEachWaitingList(Consumer<? super WaitingList> action){
+        return StreamingQuery.forEach("SELECT * FROM waiting_list ORDER BY waiting_list_id", null,
+                SQLUtility::convertResultSetToWaitingList, action, "forEachWaitingList(Consumer action)");
+    }
+
+    private static final KeysetPager<WaitingList> BY_ID = new KeysetPager<>("SELECT * FROM waiting_list",
+            "waiting_list_id", null, false, SQLUtility::convertResultSetToWaitingList);
+    private static final KeysetPager<WaitingList> BY_ARRIVAL_DATE = new KeysetPager<>(
+            "SELECT * FROM waiting_list", "waiting_list_id", "arrival_date", false,
+            SQLUtility::convertResultSetToWaitingList);
+    private static final KeysetPager<WaitingList> BY_DATE_OF_REQUEST = new KeysetPager<>(
+            "SELECT * FROM waiting_list", "waiting_list_id", "date_of_request", false,
+            SQLUtility::convertResultSetToWaitingList);
+
+    /**
+     * Retrieves one page of the waiting list, reading only the rows on the
+     * page.
+     * @param after The cursor of the previous page, or null for the first page
+     * @param limit The most entries to return
+     * @param sort The order to list the entries in
+     * @return The page, or null if the entries could not be read
+     */
+    @Override
+    public Page<WaitingList> getWaitingListPage(String after, int limit, Sort sort){
+        KeysetPager<WaitingList> pager = sort == Sort.ARRIVAL_DATE ? BY_ARRIVAL_DATE
+                : sort == Sort.DATE_OF_REQUEST ? BY_DATE_OF_REQUEST : BY_ID;
+        return pager.page(after, limit, "getWaitingListPage(String after, int limit, Sort sort) sort=" + sort);
+    }
     
     /**
      * Return ture if the given waiting list has been deleted from the database.
@@ -235,7 +282,7 @@ public class WaitingListManager implements database.WaitingListManager {
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, waitingListId);
             stmt2.executeUpdate();
         }catch (SQLException ex) {
@@ -247,6 +294,7 @@ public class WaitingListManager implements database.WaitingListManager {
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
+        WaitingListMatcher.getInstance().remove(waitingListId);
         return true;
     }
     
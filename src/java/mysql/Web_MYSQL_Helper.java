@@ -12,12 +12,11 @@ import utilities.PropertyManager;
 
 /**
  * A helper class that implements multiple ways to get database connections. 
- * The best method is to use the Tomcat provided Database connection pool from a
- * MySQL database specified as a <code>DataSource</code> in the
- * context.xml file. 
- * A second method is to connect to a database specified in the properties 
- * for this web application. The flag that specifies if we are to use a connection 
- * pool comes from the properties for this application. 
+ * Connections are pooled by a <code>ConnectionPool</code>. The pool opens
+ * its connections from the Tomcat provided <code>DataSource</code> specified
+ * in the context.xml file, or from a database specified in the properties 
+ * for this web application. The flag that specifies if we are to use the 
+ * <code>DataSource</code> comes from the properties for this application. 
  * 
  * Example usage:
  * <pre>
@@ -33,11 +32,10 @@ import utilities.PropertyManager;
  * @author Curt Jones (2018)
  */
 public class Web_MYSQL_Helper { 
-    private static boolean initialized = false; 
-    private static final boolean REUSE_CONNECTION = false;
-    private static final ConnectionPoolMySQL connectionPool = ConnectionPoolMySQL.getInstance();
+    private static volatile ConnectionPool pool = null;
+    private static volatile ReplicaRouter replicaRouter = null;
+    private static volatile ConnectionLeakDetector leakDetector = null;
     private static boolean USE_DB_POOLING = false;
-    private static Connection connection = null;
 
     private static final String mysqlPrefix = "jdbc:mysql://";
 
@@ -47,108 +45,281 @@ public class Web_MYSQL_Helper {
     private static  String userName;
     private static  String password;
     
-    public static void initialize(){
-      initialized = true;  
-      USE_DB_POOLING = PropertyManager.getProperty("UseDBPooling").equalsIgnoreCase("yes");
+    /**
+     * Reads the database properties and creates the connection pool. The 
+     * pool opens its connections from the Tomcat <code>DataSource</code> when
+     * <code>UseDBPooling</code> is yes and the <code>DataSource</code> can be
+     * found, and from the <code>DriverManager</code> otherwise.
+     * 
+     * The pool can be tuned with the properties DBPoolMaximumSize (default 20),
+     * DBPoolTimeoutMillis (default 5000), DBPoolValidationIntervalMillis 
+     * (default 30000) and DBPoolMaximumIdleMillis (default 600000). Each 
+     * connection caches up to StatementCacheSize (default 50) prepared 
+     * statements; 0 turns the cache off.
+     * 
+     * Reads may also go to a read-only replica, found at the
+     * <code>DataSource</code> jdbc/mysql/CampgroundReplica when pooling, or
+     * at the MySQLReplicaHostName property otherwise. It uses the same
+     * database name, user and password. Reads fall back to the primary when
+     * the replica is more than ReplicaMaxLagMillis (default 5000) behind, as
+     * checked every ReplicaCheckIntervalMillis (default 1000). Setting
+     * ReplicaLagCheck to none skips the check, for a replica stand-in that
+     * is not replicating.
+     * 
+     * Setting ConnectionLeakDetection to on logs every connection held for
+     * longer than ConnectionLeakThresholdMillis (default 30000) with the
+     * stack that borrowed it, taken on one borrow in
+     * ConnectionLeakStackSampling (default 1).
+     * 
+     * All of these may also be set in the properties table, which is read
+     * before the pool is created.
+     * 
+     * @see ReplicaRouter
+     * @see ConnectionLeakDetector
+     */
+    public static synchronized void initialize(){
+      if (pool != null) {
+          return;
+      }
+      USE_DB_POOLING = "yes".equalsIgnoreCase(PropertyManager.getProperty("UseDBPooling"));
       hostname = PropertyManager.getProperty("MySQLHostName").trim();
       databaseName = PropertyManager.getProperty("DatabaseName").trim();
-      databaseURL = mysqlPrefix + hostname + "/" + databaseName+"?autoReconnect=true";
+      databaseURL = mysqlPrefix + hostname + "/" + databaseName+"?autoReconnect=true&useServerPrepStmts=true";
       userName = PropertyManager.getProperty("MySQLUserName").trim();
       password = PropertyManager.getProperty("MySQLPassword").trim();
+      ConnectionPool.ConnectionFactory factory = () -> DriverManager.getConnection(databaseURL, userName, password);
+      if (USE_DB_POOLING) {
+          ConnectionPoolMySQL connectionPool = ConnectionPoolMySQL.getInstance();
+          if (connectionPool.isAvailable()) {
+              factory = connectionPool::createConnection;
+          } else {
+              USE_DB_POOLING = false;
+          }
+      }
+      loadDatabaseProperties(factory);
+      pool = new ConnectionPool(factory, 
+              getIntProperty("DBPoolMaximumSize", 20),
+              getIntProperty("DBPoolTimeoutMillis", 5000),
+              getIntProperty("DBPoolValidationIntervalMillis", 30000),
+              getIntProperty("DBPoolMaximumIdleMillis", 600000),
+              getIntProperty("StatementCacheSize", 50));
+      replicaRouter = createReplicaRouter();
+      if ("on".equalsIgnoreCase(PropertyManager.getProperty("ConnectionLeakDetection"))) {
+          leakDetector = new ConnectionLeakDetector(
+                  getIntProperty("ConnectionLeakThresholdMillis", 30000),
+                  getIntProperty("ConnectionLeakStackSampling", 1));
+      }
+    }
+
+    private static ReplicaRouter createReplicaRouter() {
+      ConnectionPool.ConnectionFactory factory = null;
+      String replicaHostname = PropertyManager.getProperty("MySQLReplicaHostName");
+      if (USE_DB_POOLING && ConnectionPoolMySQL.getReplicaInstance().isAvailable()) {
+          factory = ConnectionPoolMySQL.getReplicaInstance()::createConnection;
+      } else if (replicaHostname != null && !replicaHostname.trim().isEmpty()) {
+          String replicaURL = mysqlPrefix + replicaHostname.trim() + "/" + databaseName
+                  + "?autoReconnect=true&useServerPrepStmts=true";
+          factory = () -> DriverManager.getConnection(replicaURL, userName, password);
+      }
+      if (factory == null) {
+          return null;
+      }
+      ConnectionPool replicaPool = new ConnectionPool(factory,
+              getIntProperty("DBPoolMaximumSize", 20),
+              getIntProperty("DBPoolTimeoutMillis", 5000),
+              getIntProperty("DBPoolValidationIntervalMillis", 30000),
+              getIntProperty("DBPoolMaximumIdleMillis", 600000),
+              getIntProperty("StatementCacheSize", 50));
+      boolean checkLag = !"none".equalsIgnoreCase(PropertyManager.getProperty("ReplicaLagCheck"));
+      return new ReplicaRouter(replicaPool, checkLag ? ReplicaRouter.REPLICA_STATUS : ReplicaRouter.NONE,
+              getIntProperty("ReplicaMaxLagMillis", 5000),
+              getIntProperty("ReplicaCheckIntervalMillis", 1000));
+    }
+
+    /**
+     * Copies the properties table into the <code>PropertyManager</code>
+     * through a connection of its own, since
+     * <code>PropertyManager.loadDatabaseProperties</code> borrows from the
+     * pool that these properties size. The file's values are kept if the
+     * table cannot be read.
+     */
+    private static void loadDatabaseProperties(ConnectionPool.ConnectionFactory factory) {
+      Connection conn = null;
+      Statement stmt = null;
+      ResultSet rs = null;
+      try {
+          conn = factory.createConnection();
+          stmt = conn.createStatement();
+          rs = stmt.executeQuery("SELECT propertyName, propertyValue FROM properties;");
+          while (rs.next()) {
+              String name = rs.getString("propertyName");
+              String value = rs.getString("propertyValue");
+              if (name != null && value != null) {
+                  PropertyManager.setProperty(name, value);
+              }
+          }
+      } catch (SQLException ex) {
+          WebErrorLogger.log(Level.WARNING, "SQLException in Web_MYSQL_Helper.loadDatabaseProperties() "
+                  + "error: " + ex + "; the pool uses the properties from the file");
+      } finally {
+          closeResultSet(rs);
+          closeStatement(stmt);
+          if (conn != null) {
+              try {
+                  conn.close();
+              } catch (SQLException ex) {
+                  WebErrorLogger.log(Level.WARNING, "SQLException closing the properties connection", ex);
+              }
+          }
+      }
+    }
+    
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = PropertyManager.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            WebErrorLogger.log(Level.WARNING, "Property " + key + " is not a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Borrows a connection to the database from the connection pool. Every
+     * connection must be given back with <code>returnConnection</code>.
+     *
+     * @return A <code>Connection</code> to the database, or null if none
+     * became available within the pool's acquisition timeout. Preparing a
+     * statement on a null connection throws a <code>SQLException</code>, so
+     * the managers log the timeout like any other database error.
+     * @see ConnectionPool#getConnection() 
+     */
+    public static Connection getConnection() {
+        ConnectionPool connectionPool = pool;
+        if (connectionPool == null) {
+            initialize();
+            connectionPool = pool;
+        }
+        Connection connection = connectionPool.getConnection();
+        noteBorrow(connection);
+        return connection;
     }
 
     /**
-     * Returns a connection to the database. (Needs better documentation)
+     * Borrows a connection for a query that may read slightly old data,
+     * such as a list or a report. It comes from the read-only replica when
+     * there is one that is current enough and the thread has not just
+     * written, and from the primary otherwise. Give it back with
+     * <code>returnConnection</code>.
      *
-     * @return A <code>Connection</code> to the database.
+     * @return A <code>Connection</code> to the replica or the primary, or
+     * null if none became available.
+     * @see ReplicaRouter
      */
-    public static synchronized Connection getConnection() {
-        if(!initialized) initialize();
-                //Best way first
-        if (USE_DB_POOLING) {
-            connection = connectionPool.getConnection();
-            int count = 0;
-            try { 
-                while((!connection.isValid(1)) && count++ < 8) {
-                    if(!connection.isClosed())returnConnection(connection);
-                    try{
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ex) {
-                        utilities.WebErrorLogger.log(Level.SEVERE, "Error in getConnection, Interrupted Exception", ex);
-                    }
-                    connection = connectionPool.getConnection();
-                }
-            } catch (SQLException ex) {
-                utilities.WebErrorLogger.log(Level.SEVERE, "Error in getConnection, SQLException " +ex.getMessage(), ex);
-            } 
-            if(count > 0) utilities.WebErrorLogger.log(Level.SEVERE, "Error in getConnection, it took  " +count+" attempts to get a connection");
-            return connection;
-            //return connectionPool.getConnection();
+    public static Connection getReadConnection() {
+        if (pool == null) {
+            initialize();
         }
-        //If we are not using Database pooling, then are we reusing connections?
-        if (REUSE_CONNECTION == false) {
-            return Web_MYSQL_Helper.getNewConnection();
+        ReplicaRouter router = replicaRouter;
+        Connection connection = router == null ? null : router.getReplicaConnection();
+        if (connection == null) {
+            return getConnection();
         }
-        //At this point, we are not using pooling and we are reusing connections
-        try {
-            if (connection == null || connection.isClosed()) {
-                connection = Web_MYSQL_Helper.getNewConnection();
-                return connection;
-            }
-            // If we get here the old connection did exist, but is it still valid?
+        noteBorrow(connection);
+        return connection;
+    }
 
-            //allow 1 seconds to see if connection is still valid
-            if (connection.isValid(1)) {
-                return connection;
-            } else {
-                connection = getNewConnection();
-                return connection;
-            }
-        } catch (SQLException e) {
-            return getNewConnection(); // if all else fails, get a new connection
+    private static void noteBorrow(Connection connection) {
+        RequestBudget.noteBorrow(connection);
+        ConnectionLeakDetector detector = leakDetector;
+        if (detector != null) {
+            detector.borrowed(connection);
         }
     }
+    
+    /**
+     * Borrows a prepared statement for the given connection. The statement 
+     * is taken from the connection's statement cache when the same SQL was
+     * prepared on it before. Give it back with <code>closePreparedStatement</code>.
+     *
+     * @param connection A connection from <code>getConnection</code>.
+     * @param sql The SQL of the statement.
+     * @return The <code>PreparedStatement</code>.
+     * @throws SQLException If the statement could not be prepared, or the
+     * connection is null because none became available.
+     */
+    public static PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        return prepareStatement(connection, sql, Statement.NO_GENERATED_KEYS);
+    }
 
     /**
-     * Creates a new connection with a DriverManager and returns it if the
-     * connection is established. Catches any SQLException exception thrown by
-     * the <code>getConnection(String url, String user, String password)</code>
-     * method of <code>DriverManager</code> class and logs an error message in
-     * the error log system. This method is only used if we are not using 
-     * connection pooling. 
+     * Borrows a prepared statement for the given connection that may return
+     * the keys generated by an insert.
      *
-     * @return A <code>Connection</code> to the database or null if none could
-     * be created.
+     * @param connection A connection from <code>getConnection</code>.
+     * @param sql The SQL of the statement.
+     * @param autoGeneratedKeys <code>Statement.RETURN_GENERATED_KEYS</code> or
+     * <code>Statement.NO_GENERATED_KEYS</code>.
+     * @return The <code>PreparedStatement</code>.
+     * @throws SQLException If the statement could not be prepared, or the
+     * connection is null because none became available.
      */
-    private static Connection getNewConnection() {
-        if(!initialized) initialize();
-        Connection conn = null;
-        /*
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver").newInstance(); //Not normally needed for MySQL - but ...
-        } catch (ClassNotFoundException ex) {
-            WebErrorLogger.log(Level.SEVERE, "Could not find the class com.mysql.jdbc.Driver \n"
-                    + "Program will now exit. ", ex);
-            System.exit(1);
-        } catch (InstantiationException ex) {
-            WebErrorLogger.log(Level.SEVERE, "Could not instaniate the class com.mysql.jdbc.Driver \n"
-                    + "Program will now exit. ", ex);
-            System.exit(1);
-        } catch (IllegalAccessException ex) {
-            WebErrorLogger.log(Level.SEVERE, "Could not access the class com.mysql.jdbc.Driver \n"
-                    + "Program will now exit. ", ex);
-            System.exit(1);
+    public static PreparedStatement prepareStatement(Connection connection, String sql, 
+            int autoGeneratedKeys) throws SQLException {
+        if (connection == null) {
+            // getConnection timed out; fail the way a lost connection would
+            throw new SQLException("No database connection available for: " + sql);
         }
-        */
-        try {
-            conn = DriverManager.getConnection(databaseURL, userName, password);
-        } catch (SQLException ex) {
-            WebErrorLogger.log(Level.SEVERE, "SQL Exception was thrown while "
-                    + "trying to connect to the database. Database string = "
-                    + databaseURL + " user =  " + userName + " password = " + password,ex);
+        if (ReplicaRouter.isWrite(sql)) {
+            ReplicaRouter.noteWrite();
         }
-        //Connection is thread safe, but only one thread can access the database at once now
-        return conn;
+        RequestBudget.noteStatement(sql);
+        ConnectionPool connectionPool = poolOf(connection);
+        if (connectionPool == null) {
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return connectionPool.prepareStatement(connection, sql, autoGeneratedKeys);
+    }
+
+    /**
+     * Gets the connection pool, for its metrics.
+     *
+     * @return The <code>ConnectionPool</code>, or null before the first connection.
+     */
+    public static ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the router of reads to the replica, for its metrics.
+     *
+     * @return The <code>ReplicaRouter</code>, or null if there is no replica.
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    /**
+     * Gets the detector of connections that are not given back, for its
+     * counts, which <code>ManagerTimingsServlet</code> shows.
+     *
+     * @return The <code>ConnectionLeakDetector</code>, or null if leak
+     * detection is off.
+     */
+    public static ConnectionLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    // The replica's pool if it lent the connection, and the primary's otherwise
+    private static ConnectionPool poolOf(Connection connection) {
+        ReplicaRouter router = replicaRouter;
+        if (router != null && router.getReplicaPool().isBorrowed(connection)) {
+            return router.getReplicaPool();
+        }
+        return pool;
     }
 
     /**
@@ -157,26 +328,15 @@ public class Web_MYSQL_Helper {
      * @param connection The Connection object being returned.
      */
     public static void returnConnection(Connection connection) {
-        if (USE_DB_POOLING) {
-            connectionPool.freeConnection(connection);
-            return;
+        RequestBudget.noteReturn(connection);
+        ConnectionLeakDetector detector = leakDetector;
+        if (detector != null) {
+            detector.returned(connection);
         }
-        if (REUSE_CONNECTION) {
-            return;
+        ConnectionPool connectionPool = poolOf(connection);
+        if (connectionPool != null) {
+            connectionPool.returnConnection(connection);
         }
-
-        // Close connection if we are not reusing them 
-        if (connection != null) {
-            try {
-                connection.close();
-                connection = null;
-            } catch (SQLException e) {
-                WebErrorLogger.log(Level.SEVERE, "SQL Exception is thrown while "
-                        + "trying to close a Connection object. The connection "
-                        + "object was not null.", e);
-            }
-        }
-
     }
     
     public static void closeConnection(Connection connection){
@@ -184,28 +344,21 @@ public class Web_MYSQL_Helper {
     }
 
     /**
-     * Closes the given <code>Connection</code> object if it is not null.
-     * Catches SQLException if it is thrown by the <code>close</code> method of
-     * <code>Connection</code> interface and logs an error message in the error
-     * log file.
-     *
+     * Closes the pooled connections when the program ends.
      */
     public static void closeConnectionsOnExit() {
-        if (USE_DB_POOLING) {
-            return;
+        ConnectionPool connectionPool = pool;
+        if (connectionPool != null) {
+            connectionPool.close();
         }
-        if (connection == null) {
-            return;
+        ReplicaRouter router = replicaRouter;
+        if (router != null) {
+            router.getReplicaPool().close();
         }
-        try {
-            connection.close();
-        } catch (SQLException e) {
-            WebErrorLogger.log(Level.SEVERE, "SQL Exception is thrown while "
-                    + "trying to close a Connection object during "
-                    + "program termination. The connection "
-                    + "object was not null.", e);
+        ConnectionLeakDetector detector = leakDetector;
+        if (detector != null) {
+            detector.shutdown();
         }
-
     }
 
     /**
@@ -229,7 +382,8 @@ public class Web_MYSQL_Helper {
     }
 
     /**
-     * Closes the given <code>PreparedStatement</code> object if it is not null.
+     * Gives the given <code>PreparedStatement</code> back to the statement
+     * cache of its connection, or closes it if it is not cached.
      * Catches SQLException if it is thrown by the <code>close</code> method of
      * <code>PreparedStatement</code> interface and logs an error message in the
      * error log file.
@@ -237,6 +391,15 @@ public class Web_MYSQL_Helper {
      * @param ps The PreparedStatement object to close.
      */
     public static void closePreparedStatement(PreparedStatement ps) {
+        ConnectionPool connectionPool = pool;
+        ReplicaRouter router = replicaRouter;
+        if (router != null && router.getReplicaPool().isBorrowed(ps)) {
+            connectionPool = router.getReplicaPool();
+        }
+        if (connectionPool != null) {
+            connectionPool.returnStatement(ps);
+            return;
+        }
         if (ps != null) {
             try {
                 ps.close();
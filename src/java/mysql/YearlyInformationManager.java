@@ -2,12 +2,14 @@
 package mysql;
 
 import common.YearlyInformation;
+import database.OccupancyBitmap;
 import database.SQLUtility;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.logging.Level;
@@ -41,7 +43,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);//Stop SQL insertion issues with prepared statements 
             stmt2.setInt(1, yearlyInformation.getYear());
             stmt2.setBigDecimal(2, yearlyInformation.getDailyRate());
             stmt2.setBigDecimal(3, yearlyInformation.getWeeklyRate());
@@ -70,7 +72,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getYearlyInformationByYear(yearlyInformation.getYear());
+        return reloadSeason(getYearlyInformationByYear(yearlyInformation.getYear()));
     }
     
     
@@ -94,7 +96,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         Connection conn = mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try {
-            stmt2 = conn.prepareStatement(sql);//Stop SQL insertion issues with prepared statements 
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);//Stop SQL insertion issues with prepared statements 
             stmt2.setBigDecimal(1, yearlyInformation.getDailyRate());
             stmt2.setBigDecimal(2, yearlyInformation.getWeeklyRate());
             stmt2.setBigDecimal(3, yearlyInformation.getMonthlyRate());
@@ -122,7 +124,22 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         }
         Web_MYSQL_Helper.closePreparedStatement(stmt2);
         Web_MYSQL_Helper.returnConnection(conn);
-        return getYearlyInformationByYear(yearlyInformation.getYear());
+        return reloadSeason(getYearlyInformationByYear(yearlyInformation.getYear()));
+    }
+    
+    /**
+     * Reloads the <code>OccupancyBitmap</code> when the opening or closing
+     * date of the current season has changed.
+     *
+     * @param yearlyInformation The yearly information that was just written.
+     * @return The same <code>YearlyInformation</code> object.
+     */
+    private static YearlyInformation reloadSeason(YearlyInformation yearlyInformation){
+        if(yearlyInformation != null && yearlyInformation.getYear() == LocalDate.now().getYear()){
+            OccupancyBitmap.getInstance().load(yearlyInformation,
+                    database.Database.getDatabaseManagement().getCampsiteManager().getAllCampsites());
+        }
+        return yearlyInformation;
     }
     
     /**
@@ -139,7 +156,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         YearlyInformation yearlyInformation = null;
         PreparedStatement stmt2=null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, year);
             
             rs = stmt2.executeQuery();
@@ -178,7 +195,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         YearlyInformation yearlyInformation;
         PreparedStatement stmt2=null;
         try{
-            stmt2 = conn.prepareStatement(sql);
+            stmt2 = Web_MYSQL_Helper.prepareStatement(conn, sql);
             
             rs=stmt2.executeQuery();
             if(rs == null){
@@ -216,7 +233,7 @@ public class YearlyInformationManager implements database.YearlyInformationManag
         Connection conn=mysql.Web_MYSQL_Helper.getConnection();
         PreparedStatement stmt2 = null;
         try{
-            stmt2=conn.prepareStatement(sql);
+            stmt2=Web_MYSQL_Helper.prepareStatement(conn, sql);
             stmt2.setInt(1, year);
             stmt2.executeUpdate();
         }catch (SQLException ex) {
@@ -112,8 +112,6 @@ public class AddCampsiteServlet extends HttpServlet {
         CampsiteManager cm = database.Database.getDatabaseManagement().getCampsiteManager();
         Campsite added = cm.addCampsite(campsite);
 
-        added = cm.getCampsiteWithNameNumberSection(campsite);
-
         int id = added.getCampsiteId();
 
         /**
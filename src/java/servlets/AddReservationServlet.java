@@ -5,9 +5,11 @@ import common.Campsite;
 import common.Customer;
 import common.Reservation;
 import database.AssignedSiteManager;
+import database.CampsiteSearch;
 import database.CampsiteManager;
 import database.CustomerManager;
 import database.ReservationManager;
+import database.SiteAllocator;
 import database.WaitingListManager;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,6 +18,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -78,6 +83,8 @@ public class AddReservationServlet extends HttpServlet {
         AssignedSiteManager asm = database.Database.getDatabaseManagement().getAssignedSiteManager();
         int reservationId = added.getReservationId();
         int sitesAssignedSuccessfully = 0; 
+        ArrayList<AssignedSite> requestedSites = new ArrayList<>();
+        Set<Integer> pickedSites = new HashSet<>();
         
         for(int i = 0; i < numberOfSitesRequested; i++)
         {
@@ -88,24 +95,34 @@ public class AddReservationServlet extends HttpServlet {
             int otherCustomerId = Integer.parseInt(request.getParameter("customer_"+i));
             
             if (arrivalStringSite!=null && departureStringSite!=null 
-                    && !arrivalStringSite.equals("") && !departureStringSite.equals("")
-                    && campsiteString!=null && !campsiteString.equals(""))
+                    && !arrivalStringSite.equals("") && !departureStringSite.equals(""))
             {
-                int campsiteId = Integer.parseInt(campsiteString);
                 arrivalStringSite += " 14:00:00";               // default arrival time always 2:00 PM?
                 departureStringSite += " 09:00:00";             // default departure time always 9:00 AM?
                 // turn strings into LocalDateTime with DateTimeFormatter and default times
                 LocalDateTime arrivalDateSite = LocalDateTime.parse(arrivalStringSite, formatter);
                 LocalDateTime departureDateSite = LocalDateTime.parse(departureStringSite, formatter);
-                if (asm.sitesAvailableInDateRange(campsiteId, arrivalDateSite, departureDateSite))
-                {
-                    AssignedSite as = new AssignedSite(reservationId, otherCustomerId, campsiteId, 
-                                true, deposit, false, arrivalDateSite, departureDateSite);
-                    AssignedSite addedSite = asm.addAssignedSite(as);
-                    if(addedSite!=null){
-                        sitesAssignedSuccessfully++;
-                    }
+                boolean lockSite = true;
+                int campsiteId;
+                if (campsiteString!=null && !campsiteString.equals("")) {
+                    campsiteId = Integer.parseInt(campsiteString);
+                } else {
+                    // no site was picked, let the allocator choose one that can be moved later
+                    campsiteId = allocateSite(cm.getCustomerByID(otherCustomerId), arrivalDateSite, 
+                            departureDateSite, pickedSites);
+                    lockSite = false;
                 }
+                if (campsiteId > 0) {
+                    pickedSites.add(campsiteId);
+                    requestedSites.add(new AssignedSite(reservationId, otherCustomerId, campsiteId, 
+                                lockSite, deposit, false, arrivalDateSite, departureDateSite));
+                }
+            }
+        }
+        // check and add all of the requested sites at once
+        for (AssignedSite addedSite : asm.assignSites(reservationId, requestedSites)) {
+            if(addedSite!=null){
+                sitesAssignedSuccessfully++;
             }
         }
         if (sitesAssignedSuccessfully!=numberOfSitesAssigned)
@@ -132,6 +149,27 @@ public class AddReservationServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Picks the best fitting free campsite for a customer's RV.
+     *
+     * @param customer The customer staying on the site.
+     * @param arrivalDate The arrival date of the stay.
+     * @param departureDate The departure date of the stay.
+     * @param pickedSites Campsites already picked for this reservation.
+     * @return The id of the campsite, or -1 if none is free.
+     */
+    private static int allocateSite(Customer customer, LocalDateTime arrivalDate,
+            LocalDateTime departureDate, Set<Integer> pickedSites) {
+        CampsiteSearch.Criteria criteria = new CampsiteSearch.Criteria();
+        if (customer != null) {
+            criteria.setRvLength(customer.getRvLength());
+            criteria.setSlideOuts(customer.getNumberOfSlideOuts());
+        }
+        List<Integer> campsiteIds = SiteAllocator.getInstance().allocate(arrivalDate.toLocalDate(), 
+                departureDate.toLocalDate(), 1, criteria, pickedSites);
+        return campsiteIds.isEmpty() ? -1 : campsiteIds.get(0);
+    }
+
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
     /**
      * Handles the HTTP <code>GET</code> method.
@@ -76,7 +76,8 @@ public class EditCustomerServlet extends HttpServlet {
         // set integers from EditCustomerModal
         int rvLength = Integer.parseInt(request.getParameter("rv_length")); 
         int numberOfSlideOuts = Integer.parseInt(request.getParameter("rv_slide_outs"));
-        boolean flagged = cm.getCustomerByID(customerId).isFlagged();
+        Customer existing = cm.getCustomerByID(customerId);
+        boolean flagged = existing.isFlagged();
         
         // create Customer object with variables
         Customer customer = new Customer(
@@ -89,7 +90,7 @@ public class EditCustomerServlet extends HttpServlet {
         );
         // set customer information id
         customer.setCustomerId(customerId);
-        customer.setCustomerInformationId(cm.getCustomerByID(customerId).getCustomerInformationId());
+        customer.setCustomerInformationId(existing.getCustomerInformationId());
         
         // update customer
         Customer updated = cm.updateCustomer(customer);
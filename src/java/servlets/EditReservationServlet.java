@@ -12,6 +12,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.List;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -43,7 +44,8 @@ public class EditReservationServlet extends HttpServlet {
         ReservationManager rm = database.Database.getDatabaseManagement().getReservationManager();
         CustomerManager cm = database.Database.getDatabaseManagement().getCustomerManager();
         int reservationId = Integer.parseInt(request.getParameter("reservation_id"));
-        int customerId = rm.getReservationByID(reservationId).getCustomerId();
+        Reservation existing = rm.getReservationByID(reservationId);
+        int customerId = existing.getCustomerId();
         
         // get LocalDateTimes from EditReservationModal datepickers
         DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
@@ -58,8 +60,8 @@ public class EditReservationServlet extends HttpServlet {
         // get rest of values
         int numberOfSitesRequested = Integer.parseInt(request.getParameter("sites_requested"));
         int numberOfSitesAssigned = Integer.parseInt(request.getParameter("sites_assigned"));
-        LocalDateTime dateReservationMade = rm.getReservationByID(reservationId).getDateReservationMade();
-        BigDecimal deposit = rm.getReservationByID(reservationId).getDeposit();
+        LocalDateTime dateReservationMade = existing.getDateReservationMade();
+        BigDecimal deposit = existing.getDeposit();
 
         String notes = request.getParameter("notes");
         
@@ -70,19 +72,10 @@ public class EditReservationServlet extends HttpServlet {
                 dateReservationMade, deposit, notes
         );
         
-        // update reservation
-        Reservation updated = rm.updateReservation(reservation);
-        
         AssignedSiteManager asm = database.Database.getDatabaseManagement().getAssignedSiteManager();
-        reservationId = updated.getReservationId();
         
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
-        ArrayList<AssignedSite> existingSites = new ArrayList<>(asm.getAssignedSiteByReservationId(reservationId));
-        
-        existingSites.forEach((existingSite) -> {
-            asm.deleteAssignedSite(existingSite);
-        });
-        int sitesAssignedSuccessfully = 0;
+        ArrayList<AssignedSite> requestedSites = new ArrayList<>();
         for(int i = 0; i < numberOfSitesRequested; i++)
         {
             // get arrival and departure date inputs
@@ -102,34 +95,66 @@ public class EditReservationServlet extends HttpServlet {
                 // turn strings into LocalDateTime with DateTimeFormatter and default times
                 LocalDateTime arrivalDateSite = LocalDateTime.parse(arrivalStringSite, formatter);
                 LocalDateTime departureDateSite = LocalDateTime.parse(departureStringSite, formatter);
-                if (asm.sitesAvailableInDateRange(campsiteId, arrivalDateSite, departureDateSite))
-                {
-                    AssignedSite as = new AssignedSite(reservationId, otherCustomerId, campsiteId, 
-                                true, deposit, false, arrivalDateSite, departureDateSite);
-                    asm.addAssignedSite(as);
-                    sitesAssignedSuccessfully++;
-                }
+                requestedSites.add(new AssignedSite(reservationId, otherCustomerId, campsiteId, 
+                            true, deposit, false, arrivalDateSite, departureDateSite));
             }
                     
         }
-        if (sitesAssignedSuccessfully!=numberOfSitesAssigned)
-        {
-            reservation.setNumberOfSitesAssigned(sitesAssignedSuccessfully);
-            rm.updateReservation(reservation);
+        // write only the sites that changed, then the reservation with the
+        // number of sites it ended up with
+        List<AssignedSite> sites = asm.editSites(reservationId, requestedSites);
+        if (sites == null) {
+            // Nothing was changed, so leave the reservation as it was too
+            alert(response, "The sites could not be updated, so the reservation was not changed");
+            return;
         }
+        reservation.setNumberOfSitesAssigned(sites.size());
+        Reservation updated = rm.updateReservation(reservation);
         
         if (updated == null) {
-            try (PrintWriter out = response.getWriter()) {
-                out.println("<script type=\"text/javascript\">");
-                out.println("alert('Reservation unsuccessfully Updated');");
-                out.println("location='/Campground/ReservationManager';");
-                out.println("</script>");
-            }
+            alert(response, "Reservation unsuccessfully Updated");
+        } else if (countWritten(requestedSites, sites) < requestedSites.size()) {
+            alert(response, "Reservation Updated, but some sites were not changed "
+                    + "because they overlap other bookings");
         } else {
             response.sendRedirect("/Campground/ReservationManager");
         }
     }
 
+    /**
+     * Returns the number of requested sites that the reservation now has,
+     * with the same campsite and dates.
+     */
+    private static int countWritten(List<AssignedSite> requested, List<AssignedSite> sites) {
+        List<AssignedSite> unmatched = new ArrayList<>(sites);
+        int written = 0;
+        for (AssignedSite site : requested) {
+            for (int i = 0; i < unmatched.size(); i++) {
+                AssignedSite candidate = unmatched.get(i);
+                if (candidate.getCampsiteId() == site.getCampsiteId()
+                        && candidate.getArrivalDate().equals(site.getArrivalDate())
+                        && candidate.getDepartureDate().equals(site.getDepartureDate())) {
+                    unmatched.remove(i);
+                    written++;
+                    break;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Shows a message and goes back to the reservation manager.
+     */
+    private static void alert(HttpServletResponse response, String message) throws IOException {
+        try (PrintWriter out = response.getWriter()) {
+            out.println("<script type=\"text/javascript\">");
+            out.println("alert('" + message + "');");
+            out.println("location='/Campground/ReservationManager';");
+            out.println("</script>");
+        }
+    }
+
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
     /**
      * Handles the HTTP <code>GET</code> method.
@@ -1,10 +1,14 @@
 package servlets;
 
 import common.Paths;
+import database.CampsiteManager;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLConnection;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -17,6 +21,10 @@ import javax.servlet.http.HttpServletResponse;
  * Right now the path is hardcoded. How you use it is using a link like:
  * ImageServlet?file=filename
  *
+ * The image stored with a campsite in the database is served with
+ * ImageServlet?campsite=id. It is copied from the result set to the response
+ * as it is read, so the servlet never holds the whole image.
+ *
  * @author Andrew Bower (2021)
  */
 @WebServlet(name = "ImageServlet", urlPatterns = {"/ImageServlet"})
@@ -34,8 +42,35 @@ public class ImageServlet extends HttpServlet {
     protected void processRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 
         String filename = request.getParameter("file");
+        String campsite = request.getParameter("campsite");
 
-        if (filename != null) {
+        if (campsite != null) {
+            int campsiteId;
+            try {
+                campsiteId = Integer.parseInt(campsite);
+            } catch (NumberFormatException ex) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            CampsiteManager cm = database.Database.getDatabaseManagement().getCampsiteManager();
+            boolean found = cm.readCampsiteImage(campsiteId, (image, length) -> {
+                // Peeks at the first bytes for the type, then streams the rest
+                InputStream in = new BufferedInputStream(image);
+                String mime = URLConnection.guessContentTypeFromStream(in);
+                response.setContentType(mime == null ? "application/octet-stream" : mime);
+                response.setContentLengthLong(length);
+                response.setHeader("Cache-Control", "private, max-age=3600");
+                OutputStream out = response.getOutputStream();
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, count);
+                }
+            });
+            if (!found && !response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } else if (filename != null) {
             ServletContext context = request.getServletContext();
 
             String filepath = Paths.IMAGEDIRECTORY + "/" + filename;
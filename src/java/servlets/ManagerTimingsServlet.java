@@ -0,0 +1,174 @@
+package servlets;
+
+import common.User;
+import common.UserRole;
+import database.CachingCampsiteManager;
+import database.Database;
+import database.DatabaseManagement;
+import database.LatencyHistogram;
+import database.ManagerTimings;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import mysql.ConnectionLeakDetector;
+import mysql.Web_MYSQL_Helper;
+import utilities.JSONUtil;
+
+/**
+ * Returns the time spent in each database manager method as JSON, the most
+ * total time first, for owners and system administrators. The times are
+ * only kept while the property <code>ManagerTimings</code> is on. A request
+ * with <code>reset=true</code> clears them after they are returned. The
+ * hit and miss counts of the campsite cache and, when
+ * <code>ConnectionLeakDetection</code> is on, the connections leaked by each
+ * call site are returned with them.
+ *
+ * @see ManagerTimings
+ */
+@WebServlet(name = "ManagerTimingsServlet", urlPatterns = {"/ManagerTimingsServlet"})
+public class ManagerTimingsServlet extends HttpServlet {
+
+    /**
+     * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
+     * methods.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        User user = (User) request.getSession().getAttribute("user");
+        if (user == null || (user.getUserRole() != UserRole.Owner && user.getUserRole() != UserRole.SystemAdmin)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        ManagerTimings timings = ManagerTimings.getInstance();
+        List<ManagerTimings.MethodStatistics> statistics = timings.getStatistics();
+        StringBuilder json = new StringBuilder("{\"enabled\":").append(ManagerTimings.isEnabled())
+                .append(",\"methods\":[");
+        for (int i = 0; i < statistics.size(); i++) {
+            ManagerTimings.MethodStatistics method = statistics.get(i);
+            LatencyHistogram histogram = method.getHistogram();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"method\":");
+            JSONUtil.appendString(json, method.getName());
+            json.append(",\"calls\":").append(method.getCalls())
+                    .append(",\"errors\":").append(method.getErrors())
+                    .append(",\"rows\":").append(method.getRows())
+                    .append(",\"totalMicros\":").append(histogram.getTotalNanos() / 1000)
+                    .append(",\"p50Micros\":").append(histogram.getPercentileNanos(50) / 1000)
+                    .append(",\"p90Micros\":").append(histogram.getPercentileNanos(90) / 1000)
+                    .append(",\"p99Micros\":").append(histogram.getPercentileNanos(99) / 1000)
+                    .append(",\"p999Micros\":").append(histogram.getPercentileNanos(99.9) / 1000)
+                    .append(",\"maxMicros\":").append(histogram.getMaxNanos() / 1000)
+                    .append('}');
+        }
+        json.append(']');
+        appendCampsiteCache(json);
+        appendConnectionLeaks(json);
+        json.append('}');
+        if ("true".equalsIgnoreCase(request.getParameter("reset"))) {
+            timings.reset();
+        }
+        try (PrintWriter out = response.getWriter()) {
+            out.print(json);
+        }
+    }
+
+    /**
+     * Appends the hit and miss counts of the campsite cache, or null when
+     * the campsites are not cached.
+     */
+    private static void appendCampsiteCache(StringBuilder json) {
+        json.append(",\"campsiteCache\":");
+        DatabaseManagement management = Database.getDatabaseManagement();
+        if (!(management instanceof mysql.DatabaseManagement)) {
+            json.append("null");
+            return;
+        }
+        CachingCampsiteManager cache = ((mysql.DatabaseManagement) management).getCampsiteCache();
+        json.append("{\"hits\":").append(cache.getHitCount())
+                .append(",\"misses\":").append(cache.getMissCount())
+                .append(",\"loads\":").append(cache.getLoadCount())
+                .append(",\"hitRatio\":").append(String.format(Locale.ROOT, "%.3f", cache.getHitRatio()))
+                .append('}');
+    }
+
+    /**
+     * Appends the counts of the connection leak detector, with the leaks by
+     * the method that borrowed the connection, or null when leak detection
+     * is off.
+     */
+    private static void appendConnectionLeaks(StringBuilder json) {
+        json.append(",\"connectionLeaks\":");
+        ConnectionLeakDetector detector = Web_MYSQL_Helper.getLeakDetector();
+        if (detector == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"outstanding\":").append(detector.getOutstandingCount())
+                .append(",\"leaks\":").append(detector.getLeakCount())
+                .append(",\"lateReturns\":").append(detector.getLateReturnCount())
+                .append(",\"bySite\":[");
+        boolean first = true;
+        for (Map.Entry<String, Long> site : detector.getLeaksBySite().entrySet()) {
+            json.append(first ? "" : ",").append("{\"site\":");
+            JSONUtil.appendString(json, site.getKey());
+            json.append(",\"leaks\":").append(site.getValue()).append('}');
+            first = false;
+        }
+        json.append("]}");
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Returns the time spent in each database manager method as JSON";
+    }// </editor-fold>
+
+}
@@ -5,6 +5,9 @@
  */
 package servlets;
 
+import common.ErrorLog;
+import database.DatabaseErrorLogManager;
+import database.Page;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.ServletException;
@@ -38,7 +41,12 @@ public class Options extends HttpServlet {
         if(action==null) url = "/CloudExpert" ;
         else if(action.equals("Display Error Logs")){
             database.DatabaseErrorLogManager databaseErrorLogManager = dm.getDatabaseErrorLogManager();
-            table = databaseErrorLogManager.getAllErrorLogsAsHTMLTable();
+            DatabaseErrorLogManager.Sort sort = Page.parseSort(request.getParameter("sort"),
+                    DatabaseErrorLogManager.Sort.class, DatabaseErrorLogManager.Sort.NEWEST_FIRST);
+            int limit = Page.parseLimit(request.getParameter("limit"));
+            Page<ErrorLog> page = databaseErrorLogManager.getErrorLogPage(
+                    request.getParameter("after"), limit, sort);
+            table = getErrorLogTable(page, limit, sort);
             request.setAttribute("table", table);
             String title = "Error Log Display";
             request.setAttribute("title", title);
@@ -56,6 +64,53 @@ public class Options extends HttpServlet {
         request.getRequestDispatcher(url).forward(request, response);
     }
 
+    /**
+     * Builds the HTML table for one page of error logs, with a link to the
+     * next page when there is one.
+     */
+    private static String getErrorLogTable(Page<ErrorLog> page, int limit,
+            DatabaseErrorLogManager.Sort sort) {
+        StringBuilder html = new StringBuilder("<table>");
+        if (page == null) {
+            return html.append("</table>").toString();
+        }
+        for (ErrorLog errorLog : page.getItems()) {
+            html.append("<tr>");
+            appendCell(html, Integer.toString(errorLog.getErrorLogID()));
+            appendCell(html, String.valueOf(errorLog.getErrorLogDateTime()));
+            appendCell(html, errorLog.getErrLevel());
+            appendCell(html, errorLog.getLoggerName());
+            appendCell(html, errorLog.getErrorMessage());
+            appendCell(html, errorLog.getException());
+            html.append("</tr>");
+        }
+        html.append("</table>");
+        if (page.hasNext()) {
+            // The cursor is URL safe Base64, so it needs no encoding
+            html.append("<a href=\"/Campground/Options?options=Display+Error+Logs&amp;sort=")
+                    .append(sort.name()).append("&amp;limit=").append(limit)
+                    .append("&amp;after=").append(page.getNextCursor()).append("\">Next</a>");
+        }
+        return html.toString();
+    }
+
+    private static void appendCell(StringBuilder html, String value) {
+        html.append("<td>");
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '<': html.append("&lt;"); break;
+                    case '>': html.append("&gt;"); break;
+                    case '&': html.append("&amp;"); break;
+                    case '"': html.append("&quot;"); break;
+                    default: html.append(c);
+                }
+            }
+        }
+        html.append("</td>");
+    }
+
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
     /**
      * Handles the HTTP <code>GET</code> method.
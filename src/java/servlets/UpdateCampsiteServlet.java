@@ -84,7 +84,10 @@ public class UpdateCampsiteServlet extends HttpServlet {
         }
 
         try {
-            image = new SerialBlob(output.toByteArray());
+            // Without an upload the stored image is kept
+            if (output.size() > 0) {
+                image = new SerialBlob(output.toByteArray());
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
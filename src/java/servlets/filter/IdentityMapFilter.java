@@ -0,0 +1,52 @@
+package servlets.filter;
+
+import database.IdentityMap;
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import utilities.PropertyManager;
+
+/**
+ * The <code>IdentityMapFilter</code> gives each request its own
+ * <code>database.IdentityMap</code>, so a reservation, customer or campsite
+ * read by id several times in one request is read from the database once.
+ * The map is dropped when the request ends, since the thread goes back to
+ * the server's pool.
+ *
+ * The filter does nothing unless the property
+ * <code>RequestIdentityMap</code> is <code>on</code>.
+ */
+@WebFilter(filterName = "IdentityMapFilter", urlPatterns = {"/*"})
+public class IdentityMapFilter implements Filter {
+
+    private boolean enabled = false;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        IdentityMap.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            IdentityMap.end();
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        enabled = "on".equalsIgnoreCase(PropertyManager.getProperty("RequestIdentityMap"));
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,62 @@
+package servlets.filter;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import mysql.ReplicaRouter;
+
+/**
+ * The <code>ReadYourWritesFilter</code> keeps the reads of a session on the
+ * primary database for a short time after the session writes, so a user
+ * never sees a list from the read-only replica that is missing the change
+ * they just made.
+ *
+ * The time is noted per thread by <code>ReplicaRouter</code> while a request
+ * runs. This filter keeps it in the session between requests and forgets
+ * it when the request ends, since the thread goes back to the server's pool.
+ */
+@WebFilter(filterName = "ReadYourWritesFilter", urlPatterns = {"/*"})
+public class ReadYourWritesFilter implements Filter {
+
+    private static final String PRIMARY_UNTIL = "primaryUntil";
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpSession session = req.getSession(false);
+        Object until = session == null ? null : session.getAttribute(PRIMARY_UNTIL);
+        ReplicaRouter.setPrimaryUntil(until instanceof Long ? (Long) until : 0);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long primaryUntil = ReplicaRouter.getPrimaryUntil();
+            ReplicaRouter.clear();
+            try {
+                if (primaryUntil > System.currentTimeMillis()) {
+                    req.getSession(true).setAttribute(PRIMARY_UNTIL, primaryUntil);
+                } else if (until != null) {
+                    session.removeAttribute(PRIMARY_UNTIL);
+                }
+            } catch (IllegalStateException ex) {
+                // The session was invalidated, or the response was committed
+                // before a session existed
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,105 @@
+package servlets.filter;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import mysql.RequestBudget;
+import utilities.PropertyManager;
+import utilities.WebErrorLogger;
+
+/**
+ * The <code>RequestBudgetFilter</code> counts the database work of each
+ * request with <code>mysql.RequestBudget</code> and logs a warning with the
+ * servlet path of a request that goes over its budget:
+ * <ul>
+ * <li>more than <code>DBRequestStatementBudget</code> statements, 50 by
+ * default,</li>
+ * <li>more than <code>DBRequestBorrowBudget</code> connections borrowed, 25
+ * by default,</li>
+ * <li>connections held for more than <code>DBRequestMillisBudget</code>
+ * milliseconds, 1000 by default, or</li>
+ * <li>one statement shape prepared <code>DBRequestRepeatLimit</code> times or
+ * more, 10 by default, which is usually a query run once per row of an
+ * earlier query.</li>
+ * </ul>
+ * A budget of 0 is never exceeded. The filter does nothing when the property
+ * <code>DBRequestBudget</code> is <code>off</code>.
+ */
+@WebFilter(filterName = "RequestBudgetFilter", urlPatterns = {"/*"})
+public class RequestBudgetFilter implements Filter {
+
+    private boolean enabled = true;
+    private int statementBudget;
+    private int borrowBudget;
+    private int millisBudget;
+    private int repeatLimit;
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RequestBudget.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestBudget budget = RequestBudget.finish();
+            StringBuilder excess = new StringBuilder();
+            if (statementBudget > 0 && budget.getStatements() > statementBudget) {
+                excess.append(" more than ").append(statementBudget).append(" statements;");
+            }
+            if (borrowBudget > 0 && budget.getBorrows() > borrowBudget) {
+                excess.append(" more than ").append(borrowBudget).append(" connections borrowed;");
+            }
+            if (millisBudget > 0 && budget.getDatabaseMillis() > millisBudget) {
+                excess.append(" connections held more than ").append(millisBudget).append("ms;");
+            }
+            if (repeatLimit > 0 && budget.getMostRepeatedCount() >= repeatLimit) {
+                excess.append(" statement repeated ").append(budget.getMostRepeatedCount())
+                        .append(" times: ").append(budget.getMostRepeatedShape()).append(';');
+            }
+            if (excess.length() > 0) {
+                HttpServletRequest req = (HttpServletRequest) request;
+                String control = req.getParameter("control");
+                WebErrorLogger.log(Level.WARNING, "Request over its database budget: " + req.getMethod()
+                        + " " + req.getServletPath() + (control == null ? "" : " control=" + control)
+                        + " " + budget + ";" + excess);
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        enabled = !"off".equalsIgnoreCase(PropertyManager.getProperty("DBRequestBudget"));
+        statementBudget = getIntProperty("DBRequestStatementBudget", 50);
+        borrowBudget = getIntProperty("DBRequestBorrowBudget", 25);
+        millisBudget = getIntProperty("DBRequestMillisBudget", 1000);
+        repeatLimit = getIntProperty("DBRequestRepeatLimit", 10);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = PropertyManager.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            WebErrorLogger.log(Level.WARNING, "Property " + key + " is not a number: " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -11,11 +11,29 @@
  *  </tr>
  * 
  *  <tr>
+ *      <td>IdentityMapFilter</td>
+ *      <td>This filter gives each request its own map of the entities it
+ *          has read by id.</td>
+ *  </tr>
+ * 
+ *  <tr>
  *      <td>LoginFilter</td>
  *      <td>This filter is used to check if the current session user is still
  *          logged in.</td>
  *  </tr>
  * 
+ *  <tr>
+ *      <td>ReadYourWritesFilter</td>
+ *      <td>This filter keeps a session's reads on the primary database for
+ *          a short time after it writes.</td>
+ *  </tr>
+ * 
+ *  <tr>
+ *      <td>RequestBudgetFilter</td>
+ *      <td>This filter logs requests that use too many database statements,
+ *          connections or time, or repeat the same statement.</td>
+ *  </tr>
+ * 
  * 
  * </table>
  */
@@ -7,23 +7,156 @@ package servlets;
 
 import common.Customer;
 import common.CustomerType;
+import database.CustomerDirectory;
 import database.CustomerManager;
+import database.Page;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import utilities.JSONUtil;
 
 /**
+ * Completes a customer name as it is typed and returns the matches as JSON,
+ * a page at a time. The reservation's customer and the members of its
+ * group are listed first, then every other customer whose name or last name
+ * starts with the typed text, in name order. The matches come from the
+ * sorted name index of <code>CustomerDirectory</code>, so a page costs the
+ * same however many customers there are. Until the directory is loaded,
+ * the customers whose name starts with the typed text are read a page at a
+ * time from the <code>CustomerManager</code> instead.
+ *
+ * Parameters:
+ * <ul>
+ * <li>q - The typed text; every customer when missing.</li>
+ * <li>mainCustomer - The name of the reservation's customer.</li>
+ * <li>limit - The most customers to return, 10 when missing.</li>
+ * <li>after - The <code>next</code> value of the previous page.</li>
+ * </ul>
  *
  * @author sth68511
  */
 @WebServlet(name = "getCustomersServlet", urlPatterns = {"/getCustomers"})
 public class getCustomersServlet extends HttpServlet {
 
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
+     * methods.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        CustomerDirectory directory = CustomerDirectory.getInstance();
+        CustomerManager cm = database.Database.getDatabaseManagement().getCustomerManager();
+        int limit = DEFAULT_LIMIT;
+        if (request.getParameter("limit") != null) {
+            limit = Page.parseLimit(request.getParameter("limit"));
+        }
+        List<Customer> firstCustomers = new ArrayList<>();
+        String mainCustomerName = request.getParameter("mainCustomer");
+        if (mainCustomerName != null && !mainCustomerName.isEmpty()) {
+            Customer mainCustomer = cm.getCustomerByName(mainCustomerName);
+            if (mainCustomer != null) {
+                firstCustomers.add(mainCustomer);
+                if (mainCustomer.getCustomerType() != CustomerType.Individual) {
+                    for (Customer member : cm.getAllCustomersInGroup(mainCustomer.getGroupId())) {
+                        if (member.getCustomerId() != mainCustomer.getCustomerId()) {
+                            firstCustomers.add(member);
+                        }
+                    }
+                }
+            }
+        }
+        List<Integer> first = new ArrayList<>();
+        for (Customer customer : firstCustomers) {
+            first.add(customer.getCustomerId());
+        }
+        Page<Customer> page;
+        if (directory.isLoaded()) {
+            page = directory.complete(request.getParameter("q"), first, request.getParameter("after"), limit);
+        } else {
+            page = completeFromDatabase(cm, request.getParameter("q"), firstCustomers,
+                    request.getParameter("after"), limit);
+            if (page == null) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The customers could not be read");
+                return;
+            }
+        }
+        StringBuilder json = new StringBuilder(64 + page.getItems().size() * 96);
+        json.append("{\"count\":").append(page.getItems().size()).append(",\"customers\":[");
+        for (int i = 0; i < page.getItems().size(); i++) {
+            Customer customer = page.getItems().get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"customerId\":").append(customer.getCustomerId()).append(",\"name\":");
+            JSONUtil.appendString(json, customer.getName());
+            json.append(",\"lastName\":");
+            JSONUtil.appendString(json, customer.getLastName());
+            json.append(",\"customerType\":");
+            JSONUtil.appendString(json,
+                    customer.getCustomerType() == null ? null : customer.getCustomerType().toString());
+            json.append(",\"groupId\":").append(customer.getGroupId())
+                    .append(",\"first\":").append(first.contains(customer.getCustomerId())).append('}');
+        }
+        json.append("],\"next\":");
+        JSONUtil.appendString(json, page.getNextCursor());
+        json.append('}');
+        try (PrintWriter out = response.getWriter()) {
+            out.print(json);
+        }
+    }
+
+    /**
+     * Completes a name from the database while the directory is loading. The
+     * first customers whose name starts with the typed text open the first
+     * page, and are left out of the pages read from the database.
+     *
+     * @return The page, or null if the customers could not be read.
+     */
+    private static Page<Customer> completeFromDatabase(CustomerManager cm, String prefix,
+            List<Customer> firstCustomers, String after, int limit) {
+        String start = prefix == null ? "" : prefix.trim();
+        limit = Page.clampLimit(limit);
+        List<Customer> customers = new ArrayList<>();
+        Set<Integer> first = new HashSet<>();
+        for (Customer customer : firstCustomers) {
+            first.add(customer.getCustomerId());
+            if (after == null && customers.size() < limit && customer.getName() != null
+                    && customer.getName().regionMatches(true, 0, start, 0, start.length())) {
+                customers.add(customer);
+            }
+        }
+        if (customers.size() == limit) {
+            // The next page starts before the first name
+            return new Page<>(customers, Page.encodeCursor("", 0));
+        }
+        Page<Customer> page = cm.getCustomerPageByName(start, after, limit - customers.size());
+        if (page == null) {
+            return null;
+        }
+        for (Customer customer : page.getItems()) {
+            if (!first.contains(customer.getCustomerId())) {
+                customers.add(customer);
+            }
+        }
+        return new Page<>(customers, page.getNextCursor());
+    }
+
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
     /**
      * Handles the HTTP <code>GET</code> method.
@@ -36,6 +169,7 @@ public class getCustomersServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        processRequest(request, response);
     }
 
     /**
@@ -49,28 +183,7 @@ public class getCustomersServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        CustomerManager cm = database.Database.getDatabaseManagement().getCustomerManager();
-        Customer mainCustomer = cm.getCustomerByName(request.getParameter("mainCustomer"));
-        ArrayList<Customer> groupMembers = null;
-        if(mainCustomer.getCustomerType()!=CustomerType.Individual){
-            groupMembers = new ArrayList<>(cm.getAllCustomersInGroup(mainCustomer.getGroupId()));
-        }       
-        ArrayList<Customer> otherCusts = new ArrayList<>(cm.getAllCustomers());
-        ArrayList<Customer> customers = new ArrayList<>();
-        customers.add(mainCustomer);
-        if(groupMembers != null && !groupMembers.isEmpty()){customers.addAll(groupMembers);}
-        if(!otherCusts.isEmpty()){
-            for (Customer cust : otherCusts) {
-                if (!customers.contains(cust)){customers.add(cust);}
-            }
-        }
-        
-        if(!customers.isEmpty()){
-            PrintWriter pw = response.getWriter();
-            for(Customer cust : customers){
-                pw.println("<option value="+cust.getCustomerId()+">"+cust.getName()+"</option>");
-            }
-        }
+        processRequest(request, response);
     }
 
     /**
@@ -80,7 +193,7 @@ public class getCustomersServlet extends HttpServlet {
      */
     @Override
     public String getServletInfo() {
-        return "Short description";
+        return "Completes a customer name and returns the matches as JSON";
     }// </editor-fold>
 
 }
@@ -0,0 +1,98 @@
+package servlets;
+
+import common.WaitingList;
+import database.WaitingListMatcher;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import utilities.JSONUtil;
+
+/**
+ * Returns the waiting list entries that can be booked now, with the
+ * campsites that are free for them, as JSON. The candidates are kept up to
+ * date by <code>WaitingListMatcher</code>, so this never reads the database.
+ */
+@WebServlet(name = "getWaitingListMatchesServlet", urlPatterns = {"/getWaitingListMatches"})
+public class getWaitingListMatchesServlet extends HttpServlet {
+
+    /**
+     * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
+     * methods.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        List<WaitingListMatcher.Match> matches = WaitingListMatcher.getInstance().getCandidates();
+        StringBuilder json = new StringBuilder("{\"count\":").append(matches.size()).append(",\"matches\":[");
+        for (int i = 0; i < matches.size(); i++) {
+            WaitingList waitingList = matches.get(i).getWaitingList();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"waitingListId\":").append(waitingList.getWaitingListId())
+                    .append(",\"customerId\":").append(waitingList.getCustomerId())
+                    .append(",\"priority\":").append(waitingList.isPriority())
+                    .append(",\"arrivalDate\":");
+            JSONUtil.appendString(json, String.valueOf(waitingList.getArrivalDate()));
+            json.append(",\"departureDate\":");
+            JSONUtil.appendString(json, String.valueOf(waitingList.getDepartureDate()));
+            json.append(",\"numberOfSites\":").append(waitingList.getNumberOfSites())
+                    .append(",\"campsiteIds\":").append(matches.get(i).getCampsiteIds().toString().replace(" ", ""))
+                    .append('}');
+        }
+        json.append("]}");
+        try (PrintWriter out = response.getWriter()) {
+            out.print(json);
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Returns the waiting list entries that can be booked as JSON";
+    }// </editor-fold>
+
+}
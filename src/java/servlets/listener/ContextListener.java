@@ -52,6 +52,8 @@ public class ContextListener implements ServletContextListener {
         PropertyManager.setProperty("UseDBPooling", sc.getInitParameter("UseDBPooling"));
         PropertyManager.setProperty("AdminEmail", sc.getInitParameter("AdminEmail"));
         PropertyManager.loadDatabaseProperties(); //This will override any changes to our properties
+        database.Database.getDatabaseManagement().CreateTables(); //Apply any new schema migrations
+        database.Database.getDatabaseManagement().initializeDatabaseManagement(); //Load the in-memory indexes
 
   //      WebErrorLogger.log(Level.WARNING, "Campground Context Loaded");
   //     String adminEmail = PropertyManager.getProperty("AdminEmail");
@@ -60,6 +62,8 @@ public class ContextListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        database.WaitingListMatcher.getInstance().shutdown();
+        database.ManagerTimings.getInstance().shutdown();
         Web_MYSQL_Helper.closeConnectionsOnExit();
     }
     
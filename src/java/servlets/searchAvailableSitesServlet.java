@@ -0,0 +1,153 @@
+package servlets;
+
+import common.Customer;
+import common.SiteType;
+import database.CampsiteSearch;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import utilities.JSONUtil;
+
+/**
+ * Returns the free campsites that fit an RV as JSON, best fit first. The
+ * search is answered from memory by <code>CampsiteSearch</code>, so it is
+ * cheap enough to call on every change of the reservation form.
+ *
+ * Parameters:
+ * <ul>
+ * <li>start, end - The arrival and departure dates (MM/dd/yyyy). Required.</li>
+ * <li>customerId - Takes the RV length and slide outs from this customer.</li>
+ * <li>rvLength, slideOuts - Override the customer's RV.</li>
+ * <li>pullThru - "true" or "false"; any campsite when missing.</li>
+ * <li>siteType - Seasonal, Monthly, Weekly or Daily; any type when missing.</li>
+ * <li>limit - The maximum number of campsites to return.</li>
+ * </ul>
+ */
+@WebServlet(name = "searchAvailableSitesServlet", urlPatterns = {"/searchAvailableSites"})
+public class searchAvailableSitesServlet extends HttpServlet {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+    /**
+     * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
+     * methods.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        LocalDate arrival;
+        LocalDate departure;
+        CampsiteSearch.Criteria criteria = new CampsiteSearch.Criteria();
+        try {
+            arrival = LocalDate.parse(request.getParameter("start"), FORMATTER);
+            departure = LocalDate.parse(request.getParameter("end"), FORMATTER);
+            String customerId = request.getParameter("customerId");
+            if (customerId != null && !customerId.isEmpty()) {
+                Customer customer = database.Database.getDatabaseManagement().getCustomerManager()
+                        .getCustomerByID(Integer.parseInt(customerId));
+                if (customer != null) {
+                    criteria.setRvLength(customer.getRvLength());
+                    criteria.setSlideOuts(customer.getNumberOfSlideOuts());
+                }
+            }
+            criteria.setRvLength(getInt(request, "rvLength", criteria.getRvLength()));
+            criteria.setSlideOuts(getInt(request, "slideOuts", criteria.getSlideOuts()));
+            criteria.setLimit(getInt(request, "limit", 0));
+            String pullThru = request.getParameter("pullThru");
+            if (pullThru != null && !pullThru.isEmpty()) {
+                criteria.setPullThru(Boolean.valueOf(pullThru));
+            }
+            String siteType = request.getParameter("siteType");
+            if (siteType != null && !siteType.isEmpty()) {
+                criteria.setSiteType(SiteType.getSiteType(siteType));
+            }
+        } catch (DateTimeParseException | NullPointerException | NumberFormatException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid search: " + ex.getMessage());
+            return;
+        }
+        List<CampsiteSearch.Match> matches = CampsiteSearch.getInstance().search(arrival, departure, criteria);
+        StringBuilder json = new StringBuilder(64 + matches.size() * 160);
+        json.append("{\"count\":").append(matches.size()).append(",\"campsites\":[");
+        for (int i = 0; i < matches.size(); i++) {
+            CampsiteSearch.Match match = matches.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"campsiteId\":").append(match.getCampsiteId())
+                    .append(",\"campsiteName\":");
+            JSONUtil.appendString(json, match.getCampsiteName());
+            json.append(",\"maxLength\":").append(match.getMaxLength())
+                    .append(",\"width\":").append(match.getWidth())
+                    .append(",\"acceptsSlideOut\":").append(match.getAcceptsSlideOut())
+                    .append(",\"pullThru\":").append(match.getPullThru())
+                    .append(",\"siteType\":");
+            JSONUtil.appendString(json, match.getSiteType() == null ? null : match.getSiteType().getSiteTypeName());
+            json.append(",\"score\":").append(match.getScore()).append('}');
+        }
+        json.append("]}");
+        try (PrintWriter out = response.getWriter()) {
+            out.print(json);
+        }
+    }
+
+    private static int getInt(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Searches the free campsites that fit an RV and returns them as JSON";
+    }// </editor-fold>
+
+}
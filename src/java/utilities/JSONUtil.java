@@ -0,0 +1,37 @@
+package utilities;
+
+/**
+ * Helps the servlets that answer with JSON build it by hand.
+ */
+public class JSONUtil {
+
+    private JSONUtil() {
+    }
+
+    /**
+     * Appends a quoted JSON string, escaping quotes, backslashes and control
+     * characters. The angle brackets are escaped too, so the JSON can be
+     * placed in a page.
+     *
+     * @param json The JSON being built.
+     * @param value The string, or null for a JSON null.
+     */
+    public static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20 || c == '<' || c == '>') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -17,6 +17,7 @@ import org.apache.logging.log4j.Logger;
 public class WebErrorLogger {
     static Logger logger= null; 
     static ServletContext servletContext = null;
+    private static final ThreadLocal<int[]> severeCount = ThreadLocal.withInitial(() -> new int[1]);
     public static void initialize(ServletContext sc) {
        servletContext = sc;
        logger = LogManager.getRootLogger();
@@ -57,6 +58,23 @@ public class WebErrorLogger {
     }
 
 
+    /**
+     * Returns the number of <code>SEVERE</code> messages the current thread
+     * has logged. The managers log a failure and return null or false, so
+     * comparing this before and after a call tells whether it failed.
+     *
+     * @return The number of <code>SEVERE</code> messages logged so far.
+     */
+    public static int getSevereCount() {
+        return severeCount.get()[0];
+    }
+
+    private static void countSevere(Level level) {
+        if (level.intValue() >= Level.SEVERE.intValue()) {
+            severeCount.get()[0]++;
+        }
+    }
+
     /**
      * Takes the given date and formats it into an easily readable String
      * representing this date. 
@@ -118,6 +136,7 @@ public class WebErrorLogger {
      * @param ex The exception that is being logged.
      */
      public static void log(Level level, String message, Throwable ex) {
+        countSevere(level);
         if(servletContext != null){
            servletContext.log(message, ex); //Put the message into the Tomcat error log
         } 
@@ -159,6 +178,7 @@ public class WebErrorLogger {
      * @param message The message to log.
      */
     public static void log(Level level, String message){
+        countSevere(level);
         if(servletContext != null){
            servletContext.log(message); //Put message into the Tomcat error log
         }
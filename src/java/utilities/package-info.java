@@ -6,6 +6,7 @@
  * sending email,encrypting, decrypting, hashing,export excel,
  * filter used to tell web browser not to cache web pages,
  * a safe way to access all properties and property files and 
- * a way to take table from database then formatted and  return as a HTML table.
+ * a way to take table from database then formatted and  return as a HTML table,
+ * and a way to write strings into JSON built by hand.
  */
 package utilities;